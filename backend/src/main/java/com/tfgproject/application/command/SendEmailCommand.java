@@ -14,10 +14,12 @@ public class SendEmailCommand {
     private String text;
     private String sender;
     private String attachmentPath;  // ← NUEVO
+    private String attachmentId;
     private boolean html = false;   // ← NUEVO
+    private boolean direct = false; // Envío inmediato sin cola (OTP); la cola queda de respaldo
 
     public boolean hasAttachment() {
-        return attachmentPath != null && !attachmentPath.trim().isEmpty();
+        return (attachmentPath != null && !attachmentPath.trim().isEmpty()) || attachmentId != null;
     }
 
     public static SendEmailCommand fromEmailMessage(EmailMessage emailMessage) {
@@ -26,6 +28,7 @@ public class SendEmailCommand {
         command.setSubject(emailMessage.getSubject());
         command.setText(emailMessage.getText());
         command.setAttachmentPath(emailMessage.getAttachmentPath());  // ← NUEVO
+        command.setAttachmentId(emailMessage.getAttachmentId());
         command.setHtml(emailMessage.isHtml());  // ← NUEVO
         return command;
     }
@@ -12,6 +12,7 @@ public class SendSmsCommand {
     private String to;
     private String text;
     private String sender;
+    private boolean direct = false; // Envío inmediato sin cola (OTP); la cola queda de respaldo
 
     public static SendSmsCommand fromSmsMessage(SmsMessage smsMessage) {
         SendSmsCommand command = new SendSmsCommand();
@@ -0,0 +1,21 @@
+package com.tfgproject.application.command;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import com.tfgproject.shared.model.WhatsAppMessage;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendWhatsAppCommand {
+    private String to;
+    private String text;
+
+    public static SendWhatsAppCommand fromWhatsAppMessage(WhatsAppMessage message) {
+        SendWhatsAppCommand command = new SendWhatsAppCommand();
+        command.setTo(message.getTo());
+        command.setText(message.getText());
+        return command;
+    }
+}
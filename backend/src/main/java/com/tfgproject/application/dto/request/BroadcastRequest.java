@@ -29,6 +29,9 @@ public class BroadcastRequest {
     private boolean isHtml = false;
     private String attachmentPath;
 
+    // Usuario que origina el envío (reparto equitativo entre usuarios)
+    private String userId;
+
     // Método de conveniencia para validar
     public boolean isValid() {
         return recipients != null && !recipients.isEmpty() &&
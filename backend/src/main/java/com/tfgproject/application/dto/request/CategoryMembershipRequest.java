@@ -0,0 +1,36 @@
+package com.tfgproject.application.dto.request;
+
+import com.tfgproject.domain.model.ContactSelection;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryMembershipRequest {
+
+    // Contactos concretos; se pueden combinar con sourceCategoryId y search
+    private List<Long> contactIds;
+
+    // Solo los contactos que pertenecen a esta categoría
+    private Long sourceCategoryId;
+
+    // Mismo criterio que GET /api/contacts/search
+    @Size(max = 100, message = "La búsqueda no puede exceder 100 caracteres")
+    private String search;
+
+    // Para mover: categoría destino
+    private Long targetCategoryId;
+
+    public ContactSelection toSelection() {
+        return ContactSelection.builder()
+                .contactIds(contactIds)
+                .sourceCategoryId(sourceCategoryId)
+                .search(search)
+                .build();
+    }
+}
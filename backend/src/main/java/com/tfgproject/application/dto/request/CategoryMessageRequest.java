@@ -22,11 +22,18 @@ public class CategoryMessageRequest {
 
     private boolean sendEmail = true;
     private boolean sendSms = false;
+    private boolean sendWhatsapp = false;
+
+    // Con ambos canales: "preferred" (uno por contacto según prioridad) o "all"; null = configuración
+    private String channelPolicy;
+
+    // Usuario que origina el envío (reparto equitativo entre usuarios)
+    private String userId;
 
     // Validación: al menos un canal debe estar seleccionado
-    @AssertTrue(message = "Debe seleccionar al menos un canal de comunicación (email o SMS)")
+    @AssertTrue(message = "Debe seleccionar al menos un canal de comunicación (email, SMS o WhatsApp)")
     public boolean isAtLeastOneChannelSelected() {
-        return sendEmail || sendSms;
+        return sendEmail || sendSms || sendWhatsapp;
     }
 
     // Método de conveniencia
@@ -1,5 +1,7 @@
 package com.tfgproject.application.dto.request;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.tfgproject.shared.model.ChannelType;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -31,6 +33,7 @@ public class MessageRequest {
     private String sender;
     private boolean isHtml = false;
     private String attachmentPath;
+    private String attachmentId; // devuelto por POST /api/attachments
 
     // Para envío a múltiples destinatarios
     private List<String> recipients;
@@ -38,12 +41,18 @@ public class MessageRequest {
     // Para programación
     private String scheduledTime; // ISO String para JSON
 
-    // ✅ NUEVO: Campo para el canal (email, sms, both)
+    // ✅ NUEVO: Campo para el canal (email, sms, whatsapp, both)
     private String channel = "email";
 
+    // Canal "both": "preferred" (solo el primer canal disponible) o "all"; null = configuración
+    private String channelPolicy;
+
     // Tipo de mensaje: "EMAIL", "SMS", "BROADCAST", "SCHEDULED"
     private String type = "EMAIL";
 
+    // Usuario que origina el envío (reparto equitativo entre usuarios)
+    private String userId;
+
     // ✅ NUEVOS: Métodos de conveniencia para el canal
     public boolean isEmailChannel() {
         return "email".equalsIgnoreCase(channel) || "both".equalsIgnoreCase(channel);
@@ -77,29 +86,23 @@ public class MessageRequest {
             return false;
         }
 
-        // Verificar canal válido
+        // Verificar canal válido: "both" o cualquier canal conocido
         if (channel != null) {
-            String channelLower = channel.toLowerCase();
-            return channelLower.equals("email") || channelLower.equals("sms") || channelLower.equals("both");
+            return isBothChannels() || ChannelType.isKnown(channel);
         }
 
         return true;
     }
 
-    // ✅ NUEVO: Método para obtener el tipo basado en el canal (para compatibilidad)
-    public String getTypeFromChannel() {
-        if (channel == null) return "EMAIL";
-
-        switch (channel.toLowerCase()) {
-            case "sms":
-                return "SMS";
-            case "email":
-                return "EMAIL";
-            case "both":
-                return "BOTH";
-            default:
-                return "EMAIL";
+    /**
+     * Canales de la petición: "both" son email y SMS; cualquier otro, el canal con ese nombre
+     */
+    @JsonIgnore
+    public List<ChannelType> getChannelTypes() {
+        if (isBothChannels()) {
+            return List.of(ChannelType.EMAIL, ChannelType.SMS);
         }
+        return List.of(ChannelType.of(channel != null ? channel : "email"));
     }
 
     // ✅ NUEVO: ToString mejorado para debug
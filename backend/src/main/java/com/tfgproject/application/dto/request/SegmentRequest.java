@@ -0,0 +1,36 @@
+package com.tfgproject.application.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Envío a un segmento: expresión booleana sobre categorías y atributos de contacto
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SegmentRequest {
+
+    @NotBlank(message = "La expresión del segmento es obligatoria")
+    @Size(max = 2000, message = "La expresión no puede exceder 2000 caracteres")
+    private String expression;
+
+    @Pattern(regexp = "email|sms", message = "El canal debe ser email o sms")
+    private String channel = "email";
+
+    @Size(max = 200, message = "El asunto no puede exceder 200 caracteres")
+    private String subject;
+
+    @NotBlank(message = "El contenido del mensaje es obligatorio")
+    @Size(min = 1, max = 2000, message = "El contenido debe tener entre 1 y 2000 caracteres")
+    private String content;
+
+    private String sender;
+
+    // Usuario que origina el envío (reparto equitativo entre usuarios)
+    private String userId;
+}
@@ -0,0 +1,49 @@
+package com.tfgproject.application.dto.request;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Envío con canales de respaldo: se prueba cada canal de la cadena en orden hasta que uno funcione
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowRequest {
+
+    // Destinatarios: una categoría (con subcategorías) y/o contactos concretos
+    private Long categoryId;
+    private List<Long> contactIds;
+
+    // Cadena de canales en orden de preferencia, p. ej. ["EMAIL", "SMS"]
+    @NotEmpty(message = "La cadena de canales es obligatoria")
+    private List<String> channels;
+
+    // Segundos de espera de cada paso antes de pasar al siguiente canal; null = configuración
+    private List<Integer> timeouts;
+
+    @Size(max = 200, message = "El asunto no puede exceder 200 caracteres")
+    private String subject;
+
+    @NotBlank(message = "El contenido del mensaje es obligatorio")
+    @Size(min = 1, max = 2000, message = "El contenido debe tener entre 1 y 2000 caracteres")
+    private String content;
+
+    private String sender;
+    private boolean isHtml = false;
+
+    // Usuario que origina el envío (reparto equitativo entre usuarios)
+    private String userId;
+
+    @AssertTrue(message = "Debe indicar una categoría o una lista de contactos")
+    public boolean isAudienceSelected() {
+        return categoryId != null || (contactIds != null && !contactIds.isEmpty());
+    }
+}
@@ -0,0 +1,18 @@
+package com.tfgproject.application.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección ligera de una categoría para listados: sin contactos ni subcategorías
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategorySummary {
+    private Long id;
+    private String name;
+    private String description;
+    private Long parentId;
+}
@@ -0,0 +1,20 @@
+package com.tfgproject.application.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Proyección ligera de un contacto para listados: sin notas ni categorías.
+ * La construye directamente la consulta JPQL (SELECT new ...).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactSummary {
+    private Long id;
+    private String name;
+    private boolean hasEmail;
+    private boolean hasPhone;
+    private boolean hasWhatsapp;
+}
@@ -15,7 +15,9 @@ import java.util.Map;
 public class QueueStatusResponse {
 
     private String status;
-    private LocalDateTime timestamp;
+    private LocalDateTime timestamp;   // momento de la última muestra del broker
+    private String source;             // "management", "amqp" o "none"
+    private Boolean stale;
     private Map<String, QueueInfo> queues;
 
     @Data
@@ -29,6 +31,10 @@ public class QueueStatusResponse {
         private String state; // "running", "idle", "flow"
         private Long messagesReady;
         private Long messagesUnacknowledged;
+        private Double publishRate;   // mensajes/s, solo con la API de gestión
+        private Double deliverRate;
+        private String deadLetterQueue;
+        private Long deadLetterCount;
     }
 
     public static QueueStatusResponse active() {
@@ -0,0 +1,34 @@
+package com.tfgproject.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Conjunto de contactos sobre el que opera un cambio masivo de categoría, resuelto en la base de datos.
+ * Los criterios se combinan: ids concretos, miembros de otra categoría y/o texto de búsqueda.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContactSelection {
+    private List<Long> contactIds;
+    private Long sourceCategoryId;
+    private String search;
+
+    public boolean hasContactIds() {
+        return contactIds != null && !contactIds.isEmpty();
+    }
+
+    public boolean hasSearch() {
+        return search != null && !search.trim().isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return !hasContactIds() && sourceCategoryId == null && !hasSearch();
+    }
+}
@@ -0,0 +1,51 @@
+package com.tfgproject.domain.model;
+
+import com.tfgproject.shared.model.ChannelType;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flujo de entrega de un contacto: en qué paso de la cadena de canales está y si sigue activo.
+ * En base de datos solo se guardan ids, paso y estado; las direcciones se leen del contacto
+ * al pasar de canal.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeliveryWorkflow {
+    public static final int ACTIVE = 0;
+    public static final int DELIVERED = 1;
+    public static final int EXHAUSTED = 2;
+
+    private Long id;
+    private long definitionId;
+    private long contactId;
+    private int step;
+    private int state;
+
+    // Direcciones actuales del contacto (no se persisten en el flujo)
+    private String email;
+    private String phone;
+    private String whatsappId;
+
+    public static String stateName(int state) {
+        return switch (state) {
+            case ACTIVE -> "ACTIVE";
+            case DELIVERED -> "DELIVERED";
+            case EXHAUSTED -> "EXHAUSTED";
+            default -> "UNKNOWN";
+        };
+    }
+
+    public String addressFor(String channel) {
+        String address = switch (ChannelType.of(channel)) {
+            case EMAIL -> email;
+            case SMS -> phone;
+            case WHATSAPP -> whatsappId;
+            case BROADCAST -> null;
+        };
+        return address != null && !address.trim().isEmpty() ? address.trim() : null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.tfgproject.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transición de estado de un mensaje, publicada en memoria para el feed en vivo
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageStatusEvent {
+    private String messageId;
+    private String recipient;
+    private String type;
+    private String userId;
+    private MessageStatusEnum previousStatus; // null al crearse
+    private MessageStatusEnum status;
+    private String errorMessage;
+    private LocalDateTime timestamp;
+}
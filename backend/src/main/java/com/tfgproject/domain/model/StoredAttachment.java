@@ -0,0 +1,25 @@
+package com.tfgproject.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Adjunto guardado una única vez por contenido: el id es su SHA-256
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredAttachment {
+    private String id;
+    private String fileName;
+    private String contentType;
+    private long sizeBytes;
+    private int refCount;
+    private LocalDateTime createdAt;
+    private LocalDateTime lastAccessAt;
+}
@@ -0,0 +1,41 @@
+package com.tfgproject.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Parte común de todos los flujos de un mismo envío: cadena de canales, plazos y mensaje.
+ * Se guarda una sola vez y cada flujo la referencia por id.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowDefinition {
+    private Long id;
+    private List<String> channels;      // p. ej. [EMAIL, SMS]
+    private List<Integer> timeouts;     // segundos de espera de cada paso antes de pasar al siguiente
+    private String subject;
+    private String content;
+    private String sender;
+    private boolean html;
+    private String userId;
+    private LocalDateTime createdAt;
+
+    public int length() {
+        return channels.size();
+    }
+
+    public String channelAt(int step) {
+        return channels.get(step);
+    }
+
+    public boolean isLastStep(int step) {
+        return step >= channels.size() - 1;
+    }
+}
@@ -4,8 +4,10 @@ package com.tfgproject.domain.port.in;
 import com.tfgproject.domain.model.MessageResult;
 import com.tfgproject.application.command.SendEmailCommand;
 import com.tfgproject.application.command.SendSmsCommand;
+import com.tfgproject.application.command.SendWhatsAppCommand;
 
 public interface SendMessageUseCase {
     MessageResult sendEmail(SendEmailCommand command);
     MessageResult sendSms(SendSmsCommand command);
+    MessageResult sendWhatsApp(SendWhatsAppCommand command);
 }
\ No newline at end of file
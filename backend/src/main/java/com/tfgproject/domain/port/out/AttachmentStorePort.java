@@ -0,0 +1,24 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.domain.model.StoredAttachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Almacén de adjuntos direccionado por contenido. Cada mensaje que usa un adjunto lo retiene
+ * al publicarse y lo libera al terminar; solo los adjuntos sin referencias se pueden expulsar.
+ */
+public interface AttachmentStorePort {
+    StoredAttachment store(InputStream content, String fileName, String contentType) throws IOException;
+    Optional<StoredAttachment> find(String id);
+    Path resolve(String id);
+    FileChannel openChannel(String id) throws IOException;
+    void retain(String id);
+    void release(String id);
+    long evictUnreferenced(long maxBytes);
+    long totalBytes();
+}
@@ -0,0 +1,12 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.domain.model.ContactSelection;
+
+/**
+ * Altas y bajas masivas en category_contact sin cargar las colecciones de las entidades.
+ * Devuelven cuántas filas de pertenencia se han creado o borrado.
+ */
+public interface CategoryMembershipPort {
+    int addContacts(Long categoryId, ContactSelection selection);
+    int removeContacts(Long categoryId, ContactSelection selection);
+}
@@ -0,0 +1,49 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.domain.model.Contact;
+
+/**
+ * Cambios en contactos, categorías y pertenencias, ya confirmados en base de datos.
+ *
+ * Lo implementan las estructuras en memoria derivadas de esas tablas (índice de búsqueda,
+ * estadísticas por categoría, bitmaps de segmentos) para mantenerse al día sin recalcular.
+ * Cada evento debe ser idempotente: puede llegar después de una carga completa que ya lo incluye.
+ */
+public interface ContactChangeListener {
+
+    default void contactSaved(Contact contact) {
+    }
+
+    default void contactRemoved(Long contactId) {
+    }
+
+    /**
+     * Altas por lotes JDBC (importaciones): contactos con id mayor que el dado
+     */
+    default void contactsImported(long afterId) {
+    }
+
+    default void categoryAdded(Long categoryId, Long parentId) {
+    }
+
+    default void categoryUpdated(Long categoryId) {
+    }
+
+    /**
+     * Borrado de una categoría: sus subcategorías pasan a colgar del padre
+     */
+    default void categoryRemoved(Long categoryId) {
+    }
+
+    default void membershipAdded(Long categoryId, Contact contact) {
+    }
+
+    default void membershipRemoved(Long categoryId, Long contactId) {
+    }
+
+    /**
+     * Operación masiva sobre los miembros de una categoría: hay que releerlos
+     */
+    default void membershipsChanged(Long categoryId) {
+    }
+}
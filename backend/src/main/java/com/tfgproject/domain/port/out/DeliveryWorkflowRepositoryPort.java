@@ -0,0 +1,30 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.domain.model.DeliveryWorkflow;
+import com.tfgproject.domain.model.WorkflowDefinition;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Estado persistido de los flujos de entrega. Las transiciones son actualizaciones condicionales
+ * sobre (paso, estado), así que un fallo y un vencimiento del mismo paso solo avanzan una vez.
+ */
+public interface DeliveryWorkflowRepositoryPort {
+    long saveDefinition(WorkflowDefinition definition);
+    Optional<WorkflowDefinition> findDefinition(long definitionId);
+
+    /** Da de alta los flujos en un lote y les asigna id */
+    void insertAll(List<DeliveryWorkflow> workflows);
+
+    /** Flujo con las direcciones actuales de su contacto */
+    Optional<DeliveryWorkflow> find(long workflowId);
+
+    boolean advance(long workflowId, int fromStep, int toStep);
+    boolean finish(long workflowId, int step, int state);
+
+    Map<String, Long> countByState();
+    int deleteFinished(LocalDateTime updatedBefore);
+}
@@ -0,0 +1,10 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.domain.model.MessageStatusEvent;
+
+/**
+ * Bus en memoria de transiciones de estado. Publicar no debe bloquear ni fallar el envío.
+ */
+public interface MessageStatusEventPort {
+    void publish(MessageStatusEvent event);
+}
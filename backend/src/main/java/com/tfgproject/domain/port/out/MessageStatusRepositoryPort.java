@@ -15,4 +15,8 @@ public interface MessageStatusRepositoryPort {
     List<MessageStatus> findByUserIdOrderByTimestampDesc(String userId);
     void deleteByMessageId(String messageId);
     long countByStatus(MessageStatusEnum status);
+
+    // Envíos masivos: un único lote por llamada en lugar de un INSERT/UPDATE por mensaje
+    void insertAll(List<MessageStatus> statuses);
+    void updateStatuses(List<String> messageIds, MessageStatusEnum status, String errorMessage);
 }
@@ -0,0 +1,26 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.shared.model.QueueMessage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Mensajes programados compartidos por todos los nodos. Cada mensaje vencido se reclama
+ * con una actualización condicional, así que solo un nodo llega a enviarlo.
+ */
+public interface ScheduledMessageRepositoryPort {
+    void save(QueueMessage message);
+    List<QueueMessage> claimDue(LocalDateTime now, String nodeId, int partition, int partitions, int batchSize);
+    int releaseExpiredClaims(LocalDateTime claimedBefore);
+    void markDispatched(String messageId);
+    void markPendingForRetry(String messageId, int retryCount, LocalDateTime nextAttempt);
+    void markFailed(String messageId);
+    boolean deletePending(String messageId);
+    long countPending();
+    List<QueueMessage> findPending();
+    List<QueueMessage> findPendingByUser(String userId);
+    List<String> deleteExpired(LocalDateTime dueBefore);
+    void heartbeat(String nodeId, LocalDateTime now);
+    List<String> findLiveNodes(LocalDateTime since);
+}
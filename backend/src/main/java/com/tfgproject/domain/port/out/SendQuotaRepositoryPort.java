@@ -0,0 +1,21 @@
+package com.tfgproject.domain.port.out;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Almacén compartido entre nodos para coordinar las cuotas de envío de los proveedores
+ */
+public interface SendQuotaRepositoryPort {
+    void heartbeat(String provider, String nodeId, Instant now);
+    List<String> findLiveNodes(String provider, Instant since);
+    void removeNode(String provider, String nodeId);
+    void removeStaleNodes(Instant before);
+
+    /**
+     * Reserva hasta requested envíos del cupo diario. Devuelve lo reservado, 0 si el cupo está
+     * agotado o -1 si otros nodos se adelantaron en la reserva pero aún queda cupo.
+     */
+    long claimDailyBudget(String provider, LocalDate day, long requested, long dailyLimit);
+}
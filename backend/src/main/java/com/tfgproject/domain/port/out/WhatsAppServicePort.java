@@ -0,0 +1,7 @@
+package com.tfgproject.domain.port.out;
+
+import com.tfgproject.application.command.SendWhatsAppCommand;
+
+public interface WhatsAppServicePort {
+    boolean sendWhatsApp(SendWhatsAppCommand command);
+}
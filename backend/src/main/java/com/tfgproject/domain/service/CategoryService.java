@@ -1,10 +1,19 @@
 package com.tfgproject.domain.service;
 
+import com.tfgproject.application.dto.response.CategorySummary;
 import com.tfgproject.domain.model.Category;
 import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.model.ContactSelection;
+import com.tfgproject.domain.port.out.CategoryMembershipPort;
 import com.tfgproject.infrastructure.adapter.out.persistence.CategoryRepository;
 import com.tfgproject.infrastructure.adapter.out.persistence.ContactRepository;
+import com.tfgproject.infrastructure.service.CategoryStatsCache;
+import com.tfgproject.infrastructure.service.ContactChangeNotifier;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +29,16 @@ public class CategoryService {
     @Autowired
     private ContactRepository contactRepository;
 
+    @Autowired
+    private CategoryMembershipPort categoryMembership;
+
+    @Autowired
+    private CategoryStatsCache categoryStats;
+
+    // Índice de búsqueda, estadísticas y segmentos se actualizan al confirmar
+    @Autowired
+    private ContactChangeNotifier contactChanges;
+
     // === CRUD BÁSICO ===
 
     public Category createCategory(String name, String description, Long parentId) {
@@ -45,13 +64,33 @@ public class CategoryService {
             category.setParent(parent);
         }
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        contactChanges.categoryAdded(saved.getId(), parentId);
+        return saved;
     }
 
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
 
+    /**
+     * Página de categorías en forma de resumen (sin contactos ni subcategorías), ordenada por id
+     */
+    @Transactional(readOnly = true)
+    public Page<CategorySummary> getCategorySummaries(int page, int size) {
+        return categoryRepository.findSummaries(PageRequest.of(page, size, Sort.by("id")));
+    }
+
+    @Transactional(readOnly = true)
+    public List<CategorySummary> getCategorySummariesAfter(Long afterId, int size) {
+        return categoryRepository.findSummariesAfter(afterId != null ? afterId : 0L, Limit.of(size));
+    }
+
+    @Transactional(readOnly = true)
+    public long countCategories() {
+        return categoryRepository.count();
+    }
+
     public List<Category> getRootCategories() {
         return categoryRepository.findRootCategoriesOrderByName();
     }
@@ -84,7 +123,9 @@ public class CategoryService {
         category.setName(name);
         category.setDescription(description);
 
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        contactChanges.categoryUpdated(id);
+        return saved;
     }
 
     public void deleteCategory(Long id) {
@@ -102,6 +143,70 @@ public class CategoryService {
         }
 
         categoryRepository.delete(category);
+        contactChanges.categoryRemoved(id);
+    }
+
+    // === PERTENENCIA MASIVA ===
+
+    /**
+     * Añade a la categoría todos los contactos seleccionados en una sola operación de base de datos
+     */
+    public int addContactsToCategory(Long categoryId, ContactSelection selection) {
+        requireCategory(categoryId);
+        requireSelection(selection);
+        int added = categoryMembership.addContacts(categoryId, selection);
+        if (added > 0) {
+            contactChanges.membershipsChanged(categoryId);
+        }
+        return added;
+    }
+
+    public int removeContactsFromCategory(Long categoryId, ContactSelection selection) {
+        requireCategory(categoryId);
+        requireSelection(selection);
+        int removed = categoryMembership.removeContacts(categoryId, selection);
+        if (removed > 0) {
+            contactChanges.membershipsChanged(categoryId);
+        }
+        return removed;
+    }
+
+    /**
+     * Mueve los miembros de una categoría (todos, o los que cumplan la selección) a otra,
+     * en la misma transacción
+     */
+    public Map<String, Integer> moveContacts(Long fromCategoryId, Long toCategoryId, ContactSelection selection) {
+        requireCategory(fromCategoryId);
+        requireCategory(toCategoryId);
+        if (fromCategoryId.equals(toCategoryId)) {
+            throw new IllegalArgumentException("La categoría origen y destino son la misma");
+        }
+
+        ContactSelection members = ContactSelection.builder()
+                .contactIds(selection != null ? selection.getContactIds() : null)
+                .search(selection != null ? selection.getSearch() : null)
+                .sourceCategoryId(fromCategoryId)
+                .build();
+
+        Map<String, Integer> result = new HashMap<>();
+        result.put("added", categoryMembership.addContacts(toCategoryId, members));
+        result.put("removed", categoryMembership.removeContacts(fromCategoryId, members));
+        contactChanges.membershipsChanged(toCategoryId);
+        contactChanges.membershipsChanged(fromCategoryId);
+        return result;
+    }
+
+    private void requireCategory(Long categoryId) {
+        if (categoryId == null || !categoryRepository.existsById(categoryId)) {
+            throw new IllegalArgumentException("Categoría no encontrada: " + categoryId);
+        }
+    }
+
+    private void requireSelection(ContactSelection selection) {
+        // Sin criterios la operación afectaría a todos los contactos: se exige al menos uno
+        if (selection == null || selection.isEmpty()) {
+            throw new IllegalArgumentException("Indica contactIds, sourceCategoryId o search");
+        }
     }
 
     // === GESTIÓN JERÁRQUICA ===
@@ -132,6 +237,16 @@ public class CategoryService {
         return category.getAllEmails();
     }
 
+    /**
+     * Contactos de la categoría y sus subcategorías, cada uno una vez
+     */
+    public Set<Contact> getAllContactsFromCategory(Long categoryId) {
+        Category category = categoryRepository.findByIdWithContacts(categoryId)
+                .orElseThrow(() -> new IllegalArgumentException("Categoría no encontrada: " + categoryId));
+
+        return category.getAllContacts();
+    }
+
     public Set<String> getAllPhonesFromCategory(Long categoryId) {
         Category category = categoryRepository.findByIdWithContacts(categoryId)
                 .orElseThrow(() -> new IllegalArgumentException("Categoría no encontrada: " + categoryId));
@@ -139,7 +254,16 @@ public class CategoryService {
         return category.getAllPhones();
     }
 
+    /**
+     * Estadísticas precalculadas; si aún no están cargadas se calculan recorriendo los contactos
+     */
+    @Transactional(readOnly = true)
     public Map<String, Object> getCategoryStats(Long categoryId) {
+        Map<String, Object> cached = categoryStats.getStats(categoryId);
+        if (cached != null) {
+            return cached;
+        }
+
         Category category = categoryRepository.findByIdWithContacts(categoryId)
                 .orElseThrow(() -> new IllegalArgumentException("Categoría no encontrada: " + categoryId));
 
@@ -149,8 +273,33 @@ public class CategoryService {
         stats.put("totalContacts", allContacts.size());
         stats.put("contactsWithEmail", allContacts.stream().filter(Contact::hasEmail).count());
         stats.put("contactsWithPhone", allContacts.stream().filter(Contact::hasPhone).count());
+        stats.put("contactsWithWhatsapp", allContacts.stream().filter(Contact::hasWhatsApp).count());
         stats.put("subcategories", category.getSubcategories().size());
 
         return stats;
     }
+
+    /**
+     * Canales disponibles a partir de las estadísticas; las direcciones solo si se piden
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getCategoryChannels(Long categoryId, boolean includeAddresses) {
+        Map<String, Object> stats = getCategoryStats(categoryId);
+        long emails = ((Number) stats.get("contactsWithEmail")).longValue();
+        long phones = ((Number) stats.get("contactsWithPhone")).longValue();
+        long whatsapp = ((Number) stats.get("contactsWithWhatsapp")).longValue();
+
+        Map<String, Object> channels = new HashMap<>();
+        channels.put("totalEmails", emails);
+        channels.put("totalPhones", phones);
+        channels.put("totalWhatsapp", whatsapp);
+        channels.put("hasEmailChannel", emails > 0);
+        channels.put("hasSmsChannel", phones > 0);
+        channels.put("hasWhatsappChannel", whatsapp > 0);
+        if (includeAddresses) {
+            channels.put("emails", getAllEmailsFromCategory(categoryId).stream().toList());
+            channels.put("phones", getAllPhonesFromCategory(categoryId).stream().toList());
+        }
+        return channels;
+    }
 }
\ No newline at end of file
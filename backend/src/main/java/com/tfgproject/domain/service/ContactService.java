@@ -1,10 +1,18 @@
 package com.tfgproject.domain.service;
 
+import com.tfgproject.application.dto.response.ContactSummary;
 import com.tfgproject.domain.model.Contact;
 import com.tfgproject.domain.model.Category;
 import com.tfgproject.infrastructure.adapter.out.persistence.ContactRepository;
 import com.tfgproject.infrastructure.adapter.out.persistence.CategoryRepository;
+import com.tfgproject.infrastructure.service.ContactChangeNotifier;
+import com.tfgproject.infrastructure.service.ContactSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +28,13 @@ public class ContactService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ContactSearchIndex searchIndex;
+
+    // Índice de búsqueda, estadísticas y segmentos se actualizan al confirmar
+    @Autowired
+    private ContactChangeNotifier contactChanges;
+
     // === CRUD BÁSICO ===
 
     public Contact createContact(String name, String email, String phone, String whatsappId, String notes) {
@@ -40,13 +55,41 @@ public class ContactService {
                 .notes(notes)
                 .build();
 
-        return contactRepository.save(contact);
+        Contact saved = contactRepository.save(contact);
+        contactChanges.contactSaved(saved);
+        return saved;
     }
 
     public List<Contact> getAllContacts() {
         return contactRepository.findAll();
     }
 
+    /**
+     * Página de contactos en forma de resumen (id, nombre y canales disponibles), ordenada por id
+     */
+    @Transactional(readOnly = true)
+    public Page<ContactSummary> getContactSummaries(int page, int size) {
+        return contactRepository.findSummaries(PageRequest.of(page, size, Sort.by("id")));
+    }
+
+    /**
+     * Siguiente bloque tras el último id recibido: coste constante aunque se recorra toda la tabla
+     */
+    @Transactional(readOnly = true)
+    public List<ContactSummary> getContactSummariesAfter(Long afterId, int size) {
+        return contactRepository.findSummariesAfter(afterId != null ? afterId : 0L, Limit.of(size));
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasContacts() {
+        return contactRepository.existsByIdIsNotNull();
+    }
+
+    @Transactional(readOnly = true)
+    public long countContacts() {
+        return contactRepository.count();
+    }
+
     public Optional<Contact> getContactById(Long id) {
         return contactRepository.findById(id);
     }
@@ -66,7 +109,9 @@ public class ContactService {
         contact.setWhatsappId(whatsappId);
         contact.setNotes(notes);
 
-        return contactRepository.save(contact);
+        Contact saved = contactRepository.save(contact);
+        contactChanges.contactSaved(saved);
+        return saved;
     }
 
     public void deleteContact(Long id) {
@@ -79,6 +124,7 @@ public class ContactService {
         }
 
         contactRepository.delete(contact);
+        contactChanges.contactRemoved(id);
     }
 
     // === BÚSQUEDA Y FILTRADO ===
@@ -90,6 +136,36 @@ public class ContactService {
         return contactRepository.searchContacts(search.trim());
     }
 
+    /**
+     * Búsqueda paginada por relevancia (prefijos y, si fuzzy, erratas) sobre el índice en memoria.
+     * Mientras el índice se construye se usa la consulta LIKE de la base de datos.
+     */
+    @Transactional(readOnly = true)
+    public Page<Contact> searchContacts(String search, int page, int size, boolean fuzzy) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        if (search == null || search.trim().isEmpty()) {
+            return contactRepository.findAll(pageRequest);
+        }
+
+        if (!searchIndex.isReady()) {
+            List<Contact> all = contactRepository.searchContacts(search.trim());
+            int from = Math.min(all.size(), page * size);
+            return new PageImpl<>(all.subList(from, Math.min(all.size(), from + size)), pageRequest, all.size());
+        }
+
+        ContactSearchIndex.SearchResult result = searchIndex.search(search, page, size, fuzzy);
+        Map<Long, Contact> byId = new HashMap<>();
+        for (Contact contact : contactRepository.findAllById(result.getContactIds())) {
+            byId.put(contact.getId(), contact);
+        }
+        // Se respeta el orden por relevancia del índice
+        List<Contact> contacts = result.getContactIds().stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(contacts, pageRequest, result.getTotal());
+    }
+
     public List<Contact> getContactsByCategory(Long categoryId) {
         return contactRepository.findByCategoryId(categoryId);
     }
@@ -114,7 +190,9 @@ public class ContactService {
         contact.getCategories().add(category);
         category.getContacts().add(contact);
 
-        return contactRepository.save(contact);
+        Contact saved = contactRepository.save(contact);
+        contactChanges.membershipAdded(categoryId, saved);
+        return saved;
     }
 
     public Contact removeContactFromCategory(Long contactId, Long categoryId) {
@@ -127,7 +205,9 @@ public class ContactService {
         contact.getCategories().remove(category);
         category.getContacts().remove(contact);
 
-        return contactRepository.save(contact);
+        Contact saved = contactRepository.save(contact);
+        contactChanges.membershipRemoved(categoryId, contactId);
+        return saved;
     }
 
     // === UTILIDADES PARA MENSAJERÍA ===
@@ -156,4 +236,57 @@ public class ContactService {
         return channels;
     }
 
+    @Transactional(readOnly = true)
+    public List<Contact> getContactsByIds(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        return contactRepository.findAllById(ids);
+    }
+
+    /**
+     * Contactos de una difusión indexados por email, en una sola consulta
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Contact> getContactsByEmails(Collection<String> emails) {
+        Map<String, Contact> byEmail = new HashMap<>();
+        if (emails == null || emails.isEmpty()) {
+            return byEmail;
+        }
+        for (Contact contact : contactRepository.findByEmailIn(emails)) {
+            byEmail.put(contact.getEmail(), contact);
+        }
+        return byEmail;
+    }
+
+    /**
+     * Contactos de una difusión indexados por teléfono, en una sola consulta
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Contact> getContactsByPhones(Collection<String> phones) {
+        Map<String, Contact> byPhone = new HashMap<>();
+        if (phones == null || phones.isEmpty()) {
+            return byPhone;
+        }
+        for (Contact contact : contactRepository.findByPhoneIn(phones)) {
+            byPhone.put(contact.getPhone(), contact);
+        }
+        return byPhone;
+    }
+
+    /**
+     * Contactos de un lote de WhatsApp indexados por whatsappId, en una sola consulta
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Contact> getContactsByWhatsappIds(Collection<String> whatsappIds) {
+        Map<String, Contact> byWhatsappId = new HashMap<>();
+        if (whatsappIds == null || whatsappIds.isEmpty()) {
+            return byWhatsappId;
+        }
+        for (Contact contact : contactRepository.findByWhatsappIdIn(whatsappIds)) {
+            byWhatsappId.put(contact.getWhatsappId(), contact);
+        }
+        return byWhatsappId;
+    }
+
 }
@@ -2,10 +2,12 @@ package com.tfgproject.domain.service;
 
 import com.tfgproject.application.command.SendEmailCommand;
 import com.tfgproject.application.command.SendSmsCommand;
+import com.tfgproject.application.command.SendWhatsAppCommand;
 import com.tfgproject.domain.model.MessageResult;
 import com.tfgproject.domain.port.in.SendMessageUseCase;
 import com.tfgproject.domain.port.out.EmailServicePort;
 import com.tfgproject.domain.port.out.SmsServicePort;
+import com.tfgproject.domain.port.out.WhatsAppServicePort;
 import org.springframework.stereotype.Service;
 
 @Service("sendMessageUseCase")
@@ -13,10 +15,13 @@ public class MessageService implements SendMessageUseCase {
 
     private final EmailServicePort emailService;
     private final SmsServicePort smsService;
+    private final WhatsAppServicePort whatsAppService;
 
-    public MessageService(EmailServicePort emailService, SmsServicePort smsService) {
+    public MessageService(EmailServicePort emailService, SmsServicePort smsService,
+                          WhatsAppServicePort whatsAppService) {
         this.emailService = emailService;
         this.smsService = smsService;
+        this.whatsAppService = whatsAppService;
     }
 
     @Override
@@ -77,6 +82,33 @@ public class MessageService implements SendMessageUseCase {
         }
     }
 
+    @Override
+    public MessageResult sendWhatsApp(SendWhatsAppCommand command) {
+        if (command.getTo() == null || command.getTo().trim().isEmpty()) {
+            return MessageResult.failure("Número de WhatsApp requerido");
+        }
+
+        if (command.getText() == null || command.getText().trim().isEmpty()) {
+            return MessageResult.failure("Contenido del mensaje requerido");
+        }
+
+        if (!isValidPhoneNumber(command.getTo())) {
+            return MessageResult.failure("Formato de número de WhatsApp inválido");
+        }
+
+        try {
+            boolean result = whatsAppService.sendWhatsApp(command);
+
+            if (result) {
+                return MessageResult.success("WhatsApp enviado correctamente");
+            } else {
+                return MessageResult.failure("Error al enviar el WhatsApp");
+            }
+        } catch (Exception e) {
+            return MessageResult.failure("Error inesperado: " + e.getMessage());
+        }
+    }
+
     // Método auxiliar para validar números de teléfono
     private boolean isValidPhoneNumber(String phoneNumber) {
         // Validación básica: debe contener solo números, espacios, +, - y ()
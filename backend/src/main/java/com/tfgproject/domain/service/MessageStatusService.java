@@ -2,7 +2,9 @@ package com.tfgproject.domain.service;
 
 import com.tfgproject.domain.model.MessageStatus;
 import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.model.MessageStatusEvent;
 import com.tfgproject.domain.model.SystemStatusReport; // ← IMPORT DE LA CLASE EXTERNA
+import com.tfgproject.domain.port.out.MessageStatusEventPort;
 import com.tfgproject.domain.port.out.MessageStatusRepositoryPort;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -17,23 +19,64 @@ public class MessageStatusService {
     @Autowired
     private MessageStatusRepositoryPort messageStatusRepository;
 
+    @Autowired
+    private MessageStatusEventPort messageStatusEvents;
+
     // === MÉTODOS ORIGINALES (TU CÓDIGO ACTUAL) ===
 
     public MessageStatus createMessageStatus(String messageId, String recipient, String type, String userId) {
         MessageStatus status = MessageStatus.create(messageId, recipient, type);
         status.setUserId(userId);
-        return messageStatusRepository.save(status);
+        MessageStatus saved = messageStatusRepository.save(status);
+        publishTransition(saved, null);
+        return saved;
     }
 
     public void updateMessageStatus(String messageId, MessageStatusEnum newStatus, String errorMessage) {
         Optional<MessageStatus> statusOpt = messageStatusRepository.findByMessageId(messageId);
         if (statusOpt.isPresent()) {
             MessageStatus status = statusOpt.get();
+            MessageStatusEnum previous = status.getStatus();
             status.updateStatus(newStatus, errorMessage);
             messageStatusRepository.save(status);
+            publishTransition(status, previous);
         }
     }
 
+    /**
+     * Alta en lote (envíos masivos): un único INSERT por lotes para todos los mensajes
+     */
+    public void createMessageStatuses(List<MessageStatus> statuses) {
+        messageStatusRepository.insertAll(statuses);
+        statuses.forEach(status -> publishTransition(status, null));
+    }
+
+    /**
+     * Marca como fallidos los mensajes de un lote que no llegó a publicarse
+     */
+    public void markFailed(List<MessageStatus> statuses, String errorMessage) {
+        messageStatusRepository.updateStatuses(
+                statuses.stream().map(MessageStatus::getMessageId).toList(), MessageStatusEnum.FAILED, errorMessage);
+        for (MessageStatus status : statuses) {
+            MessageStatusEnum previous = status.getStatus();
+            status.updateStatus(MessageStatusEnum.FAILED, errorMessage);
+            publishTransition(status, previous);
+        }
+    }
+
+    private void publishTransition(MessageStatus status, MessageStatusEnum previous) {
+        messageStatusEvents.publish(MessageStatusEvent.builder()
+                .messageId(status.getMessageId())
+                .recipient(status.getRecipient())
+                .type(status.getType())
+                .userId(status.getUserId())
+                .previousStatus(previous)
+                .status(status.getStatus())
+                .errorMessage(status.getErrorMessage())
+                .timestamp(status.getTimestamp())
+                .build());
+    }
+
     public List<MessageStatus> getUserMessageHistory(String userId, int days) {
         LocalDateTime since = LocalDateTime.now().minusDays(days);
         return messageStatusRepository.findByUserIdOrderByTimestampDesc(userId);
@@ -0,0 +1,205 @@
+package com.tfgproject.infrastructure.adapter.in.web;
+
+import com.tfgproject.domain.model.StoredAttachment;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Subida de adjuntos en streaming al almacén por contenido.
+ *
+ * El cuerpo se lee directamente de la petición (la resolución multipart de Spring está
+ * desactivada), se hashea a la vez que se escribe en disco y se devuelve un attachmentId
+ * que MessageRequest puede referenciar.
+ */
+@RestController
+@RequestMapping("/api/attachments")
+@CrossOrigin(origins = "*")
+public class AttachmentController {
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentController.class);
+
+    @Autowired
+    private AttachmentStorePort attachmentStore;
+
+    @Value("${app.attachments.max-upload-bytes:1073741824}")
+    private long maxUploadBytes;
+
+    @Value("${app.attachments.buffer-size:65536}")
+    private int bufferSize;
+
+    /**
+     * multipart/form-data con uno o varios ficheros, o el fichero tal cual como cuerpo
+     * (application/octet-stream) con el nombre en la cabecera X-File-Name
+     */
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> upload(HttpServletRequest request) {
+        long declared = request.getContentLengthLong();
+        if (declared > maxUploadBytes) {
+            return ResponseEntity.status(413).body(Map.of(
+                    "success", false,
+                    "message", "El adjunto supera el máximo de " + maxUploadBytes + " bytes"
+            ));
+        }
+
+        try (InputStream body = new LimitedInputStream(request.getInputStream(), maxUploadBytes)) {
+            List<Map<String, Object>> stored = new ArrayList<>();
+            String boundary = MultipartStreamReader.boundaryOf(request.getContentType());
+
+            if (boundary != null) {
+                MultipartStreamReader reader = new MultipartStreamReader(body, boundary, bufferSize);
+                MultipartStreamReader.Part part;
+                while ((part = reader.nextPart()) != null) {
+                    if (part.getFileName() == null) {
+                        continue; // campos de texto del formulario
+                    }
+                    StoredAttachment attachment = attachmentStore.store(
+                            part.getInputStream(), part.getFileName(), part.getContentType());
+                    stored.add(toHandle(attachment, part.getFileName()));
+                }
+            } else {
+                String fileName = request.getHeader("X-File-Name");
+                fileName = fileName != null ? URLDecoder.decode(fileName, StandardCharsets.UTF_8) : "adjunto";
+                StoredAttachment attachment = attachmentStore.store(body, fileName, request.getContentType());
+                stored.add(toHandle(attachment, fileName));
+            }
+
+            if (stored.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "success", false,
+                        "message", "La petición no contiene ningún fichero"
+                ));
+            }
+
+            logger.info("📎 {} adjunto(s) subidos", stored.size());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("attachments", stored);
+            response.put("attachmentId", stored.get(0).get("attachmentId"));
+            return ResponseEntity.ok(response);
+
+        } catch (UploadTooLargeException e) {
+            return ResponseEntity.status(413).body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        } catch (IOException e) {
+            logger.error("❌ Error subiendo adjunto: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "Error al subir adjunto: " + e.getMessage()
+            ));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getAttachment(@PathVariable String id) {
+        Optional<StoredAttachment> attachment = attachmentStore.find(id);
+        if (attachment.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> response = new HashMap<>(toHandle(attachment.get(), attachment.get().getFileName()));
+        response.put("refCount", attachment.get().getRefCount());
+        response.put("createdAt", attachment.get().getCreatedAt());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Descarga directa desde el fichero con FileChannel.transferTo
+     */
+    @GetMapping("/{id}/content")
+    public void download(@PathVariable String id, HttpServletResponse response) throws IOException {
+        Optional<StoredAttachment> attachment = attachmentStore.find(id);
+        if (attachment.isEmpty()) {
+            response.sendError(404);
+            return;
+        }
+
+        response.setContentType(attachment.get().getContentType());
+        response.setContentLengthLong(attachment.get().getSizeBytes());
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + attachment.get().getFileName() + "\"");
+
+        try (FileChannel channel = attachmentStore.openChannel(id)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    private Map<String, Object> toHandle(StoredAttachment attachment, String fileName) {
+        Map<String, Object> handle = new LinkedHashMap<>();
+        handle.put("attachmentId", attachment.getId());
+        handle.put("fileName", fileName);
+        handle.put("contentType", attachment.getContentType());
+        handle.put("sizeBytes", attachment.getSizeBytes());
+        return handle;
+    }
+
+    /**
+     * Corta la subida en cuanto supera el máximo, aunque no se haya declarado Content-Length
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws UploadTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new UploadTooLargeException("El adjunto supera el máximo de " + limit + " bytes");
+            }
+        }
+    }
+
+    private static class UploadTooLargeException extends IOException {
+        UploadTooLargeException(String message) {
+            super(message);
+        }
+    }
+}
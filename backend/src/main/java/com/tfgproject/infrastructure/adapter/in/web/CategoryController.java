@@ -1,14 +1,19 @@
 // src/main/java/com/tfgproject/infrastructure/adapter/in/web/CategoryController.java
 package com.tfgproject.infrastructure.adapter.in.web;
 
+import com.tfgproject.application.dto.response.CategorySummary;
 import com.tfgproject.application.dto.request.CategoryRequest;
 import com.tfgproject.application.dto.request.CategoryMessageRequest;
+import com.tfgproject.application.dto.request.CategoryMembershipRequest;
 import com.tfgproject.domain.model.Category;
+import com.tfgproject.domain.model.Contact;
 import com.tfgproject.domain.service.CategoryService;
-import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.SendPlan;
+import com.tfgproject.infrastructure.service.SendPlanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.annotation.Validated;
@@ -25,12 +30,14 @@ import java.util.Set;
 @Validated // ✅ Agregado para validaciones
 public class CategoryController {
     private static final Logger logger = LoggerFactory.getLogger(CategoryController.class);
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
 
     @Autowired
     private CategoryService categoryService;
 
     @Autowired
-    private AsyncMessagePublisher messagePublisher;
+    private SendPlanner sendPlanner;
 
     // === CREAR CATEGORÍA CON VALIDACIONES ===
     @PostMapping
@@ -65,10 +72,31 @@ public class CategoryController {
 
     // === OBTENER TODAS LAS CATEGORÍAS ===
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
-        logger.info("📋 Obteniendo todas las categorías");
-        List<Category> categories = categoryService.getAllCategories();
-        return ResponseEntity.ok(categories);
+    // Con page/size o afterId devuelve resúmenes paginados; sin parámetros, la lista completa de entidades
+    public ResponseEntity<List<?>> getAllCategories(@RequestParam(required = false) Integer page,
+                                             @RequestParam(required = false) Integer size,
+                                             @RequestParam(required = false) Long afterId) {
+        if (page == null && size == null && afterId == null) {
+            logger.info("📋 Obteniendo todas las categorías");
+            List<Category> categories = categoryService.getAllCategories();
+            return ResponseEntity.ok(categories);
+        }
+
+        int pageSize = Math.min(Math.max(1, size != null ? size : DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+        if (afterId != null) {
+            // Por cursor: el cliente pide el siguiente bloque con el id de X-Next-After-Id
+            List<CategorySummary> categories = categoryService.getCategorySummariesAfter(afterId, pageSize);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (categories.size() == pageSize) {
+                response.header("X-Next-After-Id", String.valueOf(categories.get(categories.size() - 1).getId()));
+            }
+            return response.body(categories);
+        }
+
+        Page<CategorySummary> categories = categoryService.getCategorySummaries(Math.max(0, page != null ? page : 0), pageSize);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(categories.getTotalElements()))
+                .body(categories.getContent());
     }
 
     // === OBTENER CATEGORÍAS RAÍZ ===
@@ -155,6 +183,71 @@ public class CategoryController {
         }
     }
 
+    // === PERTENENCIA MASIVA DE CONTACTOS ===
+    @PostMapping("/{id}/contacts/add")
+    public ResponseEntity<Map<String, Object>> addContacts(@PathVariable Long id,
+                                                           @Valid @RequestBody CategoryMembershipRequest request) {
+        logger.info("🏷️ Alta masiva de contactos en categoría {}", id);
+
+        try {
+            int added = categoryService.addContactsToCategory(id, request.toSelection());
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", added + " contactos añadidos a la categoría",
+                    "added", added
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    @PostMapping("/{id}/contacts/remove")
+    public ResponseEntity<Map<String, Object>> removeContacts(@PathVariable Long id,
+                                                              @Valid @RequestBody CategoryMembershipRequest request) {
+        logger.info("🏷️ Baja masiva de contactos en categoría {}", id);
+
+        try {
+            int removed = categoryService.removeContactsFromCategory(id, request.toSelection());
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", removed + " contactos quitados de la categoría",
+                    "removed", removed
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Mueve a targetCategoryId los miembros de esta categoría (opcionalmente filtrados por contactIds o search)
+     */
+    @PostMapping("/{id}/contacts/move")
+    public ResponseEntity<Map<String, Object>> moveContacts(@PathVariable Long id,
+                                                            @Valid @RequestBody CategoryMembershipRequest request) {
+        logger.info("🏷️ Moviendo contactos de categoría {} a {}", id, request.getTargetCategoryId());
+
+        try {
+            Map<String, Integer> moved = categoryService.moveContacts(id, request.getTargetCategoryId(), request.toSelection());
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "message", "Contactos movidos de categoría",
+                    "added", moved.get("added"),
+                    "removed", moved.get("removed")
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
     // === OBTENER SUBCATEGORÍAS ===
     @GetMapping("/{id}/subcategories")
     public ResponseEntity<List<Category>> getSubcategories(@PathVariable Long id) {
@@ -196,48 +289,26 @@ public class CategoryController {
         logger.info("📢 Enviando mensaje a categoría: {}", id);
 
         try {
-            // Obtener emails de la categoría
-            Set<String> emails = categoryService.getAllEmailsFromCategory(id);
-            Set<String> phones = categoryService.getAllPhonesFromCategory(id);
+            // Un solo plan por contacto: sin repetidos entre subcategorías ni dos mensajes a quien tiene ambos canales
+            Set<Contact> contacts = categoryService.getAllContactsFromCategory(id);
+            SendPlan plan = sendPlanner.plan(contacts,
+                    SendPlanner.requested(request.isSendEmail(), request.isSendSms(), request.isSendWhatsapp()),
+                    request.getChannelPolicy());
 
-            if (emails.isEmpty() && phones.isEmpty()) {
+            if (plan.isEmpty()) {
                 return ResponseEntity.badRequest().body(Map.of(
                         "success", false,
                         "message", "La categoría no tiene contactos con información de contacto válida"
                 ));
             }
 
-            String messageId = null;
-            int totalSent = 0;
-
-            // Enviar por EMAIL si se solicita
-            if (request.isSendEmail() && !emails.isEmpty()) {
-                messageId = messagePublisher.broadcastMessage(
-                        emails.stream().toList(),
-                        request.getContent(),
-                        request.getSubject()
-                );
-                totalSent += emails.size();
-                logger.info("📧 Emails enviados: {}", emails.size());
-            }
+            Map<String, Object> result = new HashMap<>(sendPlanner.dispatch(plan, request.getSubject(),
+                    request.getContent(), null, request.getUserId()));
+            logger.info("📢 Plan de envío a categoría {}: {}", id, plan.toSummary());
 
-            // Enviar por SMS si se solicita
-            if (request.isSendSms() && !phones.isEmpty()) {
-                for (String phone : phones) {
-                    messagePublisher.sendSmsToQueue(phone, request.getContent(), "TFG-App");
-                    totalSent++;
-                }
-                logger.info("📱 SMS enviados: {}", phones.size());
-            }
-
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "message", "Mensaje enviado a la categoría exitosamente",
-                    "messageId", messageId,
-                    "totalRecipients", totalSent,
-                    "emailRecipients", emails.size(),
-                    "smsRecipients", phones.size()
-            ));
+            result.put("success", true);
+            result.put("message", "Mensaje enviado a la categoría exitosamente");
+            return ResponseEntity.ok(result);
 
         } catch (Exception e) {
             logger.error("❌ Error enviando mensaje a categoría: {}", e.getMessage());
@@ -250,22 +321,13 @@ public class CategoryController {
 
     // === OBTENER CANALES DISPONIBLES EN CATEGORÍA ===
     @GetMapping("/{id}/channels")
-    public ResponseEntity<Map<String, Object>> getCategoryChannels(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> getCategoryChannels(@PathVariable Long id,
+                                                                   @RequestParam(defaultValue = "false") boolean includeAddresses) {
         logger.info("📡 Obteniendo canales de categoría: {}", id);
 
         try {
-            // Usar los métodos existentes del CategoryService
-            Set<String> emails = categoryService.getAllEmailsFromCategory(id);
-            Set<String> phones = categoryService.getAllPhonesFromCategory(id);
-
-            Map<String, Object> channels = new HashMap<>();
-            channels.put("emails", emails.stream().toList());
-            channels.put("phones", phones.stream().toList());
-            channels.put("totalEmails", emails.size());
-            channels.put("totalPhones", phones.size());
-            channels.put("hasEmailChannel", !emails.isEmpty());
-            channels.put("hasSmsChannel", !phones.isEmpty());
-
+            // Totales precalculados; las listas de direcciones recorren la categoría y solo van si se piden
+            Map<String, Object> channels = categoryService.getCategoryChannels(id, includeAddresses);
             return ResponseEntity.ok(channels);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of(
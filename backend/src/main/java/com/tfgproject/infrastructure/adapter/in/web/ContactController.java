@@ -1,17 +1,31 @@
 // src/main/java/com/tfgproject/infrastructure/adapter/in/web/ContactController.java
 package com.tfgproject.infrastructure.adapter.in.web;
 
+import com.tfgproject.application.dto.response.ContactSummary;
 import com.tfgproject.application.dto.request.ContactRequest;
 import com.tfgproject.domain.model.Contact;
 import com.tfgproject.domain.service.ContactService;
+import com.tfgproject.infrastructure.service.ContactImportJob;
+import com.tfgproject.infrastructure.service.ContactImportService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.Page;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.annotation.Validated;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,10 +36,15 @@ import java.util.Optional;
 @Validated // ✅ Agregado para validaciones
 public class ContactController {
     private static final Logger logger = LoggerFactory.getLogger(ContactController.class);
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
 
     @Autowired
     private ContactService contactService;
 
+    @Autowired
+    private ContactImportService contactImportService;
+
     // === CREAR CONTACTO CON VALIDACIONES ===
     @PostMapping
     public ResponseEntity<?> createContact(@Valid @RequestBody ContactRequest request) {
@@ -64,18 +83,51 @@ public class ContactController {
 
     // === OBTENER TODOS LOS CONTACTOS ===
     @GetMapping
-    public ResponseEntity<List<Contact>> getAllContacts() {
-        logger.info("📋 Obteniendo todos los contactos");
-        List<Contact> contacts = contactService.getAllContacts();
-        return ResponseEntity.ok(contacts);
+    // Con page/size o afterId devuelve resúmenes paginados; sin parámetros, la lista completa de entidades
+    public ResponseEntity<List<?>> getAllContacts(@RequestParam(required = false) Integer page,
+                                             @RequestParam(required = false) Integer size,
+                                             @RequestParam(required = false) Long afterId) {
+        if (page == null && size == null && afterId == null) {
+            logger.info("📋 Obteniendo todos los contactos");
+            List<Contact> contacts = contactService.getAllContacts();
+            return ResponseEntity.ok(contacts);
+        }
+
+        int pageSize = Math.min(Math.max(1, size != null ? size : DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+        if (afterId != null) {
+            // Por cursor: el cliente pide el siguiente bloque con el id de X-Next-After-Id
+            List<ContactSummary> contacts = contactService.getContactSummariesAfter(afterId, pageSize);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (contacts.size() == pageSize) {
+                response.header("X-Next-After-Id", String.valueOf(contacts.get(contacts.size() - 1).getId()));
+            }
+            return response.body(contacts);
+        }
+
+        Page<ContactSummary> contacts = contactService.getContactSummaries(Math.max(0, page != null ? page : 0), pageSize);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(contacts.getTotalElements()))
+                .body(contacts.getContent());
     }
 
     // === BUSCAR CONTACTOS ===
     @GetMapping("/search")
-    public ResponseEntity<List<Contact>> searchContacts(@RequestParam String query) {
+    // Con page/size busca en el índice por relevancia (prefijos y, con fuzzy=true, erratas);
+    // sin ellos, todas las coincidencias por subcadena como antes
+    public ResponseEntity<List<Contact>> searchContacts(@RequestParam String query,
+                                                        @RequestParam(required = false) Integer page,
+                                                        @RequestParam(required = false) Integer size,
+                                                        @RequestParam(defaultValue = "false") boolean fuzzy) {
         logger.info("🔍 Buscando contactos: {}", query);
-        List<Contact> contacts = contactService.searchContacts(query);
-        return ResponseEntity.ok(contacts);
+        if (page == null && size == null) {
+            return ResponseEntity.ok(contactService.searchContacts(query));
+        }
+
+        Page<Contact> contacts = contactService.searchContacts(query, Math.max(0, page != null ? page : 0),
+                Math.min(Math.max(1, size != null ? size : 20), 200), fuzzy);
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(contacts.getTotalElements()))
+                .body(contacts.getContent());
     }
 
     // === OBTENER CONTACTO POR ID ===
@@ -187,6 +239,81 @@ public class ContactController {
         }
     }
 
+    // === IMPORTACIÓN MASIVA ===
+
+    /**
+     * CSV (cabecera name,email,phone,whatsappId,notes) o NDJSON de contactos, como cuerpo tal cual
+     * o como primer fichero de un multipart. Responde 202 con el id del trabajo.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<Map<String, Object>> importContacts(HttpServletRequest request,
+                                                              @RequestParam(required = false) String format) {
+        try {
+            InputStream body = request.getInputStream();
+            String contentType = request.getContentType();
+
+            String boundary = MultipartStreamReader.boundaryOf(contentType);
+            if (boundary != null) {
+                MultipartStreamReader.Part part;
+                MultipartStreamReader reader = new MultipartStreamReader(body, boundary, 64 * 1024);
+                do {
+                    part = reader.nextPart();
+                } while (part != null && part.getFileName() == null);
+                if (part == null) {
+                    return ResponseEntity.badRequest().body(Map.of(
+                            "success", false,
+                            "message", "La petición no contiene ningún fichero"
+                    ));
+                }
+                body = part.getInputStream();
+                contentType = part.getFileName().toLowerCase().endsWith(".csv") ? "text/csv" : part.getContentType();
+            }
+
+            ContactImportJob job = contactImportService.startImport(body, ContactImportService.resolveFormat(format, contentType));
+            Map<String, Object> response = new LinkedHashMap<>(job.toMap());
+            response.put("success", true);
+            response.put("statusUrl", "/api/contacts/import/" + job.getId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        } catch (IOException e) {
+            logger.error("❌ Error recibiendo importación de contactos: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", "Error al recibir el fichero: " + e.getMessage()
+            ));
+        }
+    }
+
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<Map<String, Object>> getImportStatus(@PathVariable String jobId) {
+        return contactImportService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(job.toMap()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * CSV con las filas rechazadas o duplicadas (fila, motivo y datos originales)
+     */
+    @GetMapping("/import/{jobId}/errors")
+    public ResponseEntity<Resource> downloadImportErrors(@PathVariable String jobId) {
+        Optional<ContactImportJob> job = contactImportService.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.get().isFinished()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"errores-" + jobId + ".csv\"")
+                .body(new FileSystemResource(job.get().getErrorFile()));
+    }
+
     // === OBTENER CONTACTOS POR CATEGORÍA ===
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<List<Contact>> getContactsByCategory(@PathVariable Long categoryId) {
@@ -0,0 +1,83 @@
+package com.tfgproject.infrastructure.adapter.in.web;
+
+import com.tfgproject.application.dto.request.WorkflowRequest;
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.service.CategoryService;
+import com.tfgproject.domain.service.ContactService;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.validation.Valid;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/workflows")
+@CrossOrigin(origins = "*")
+@Validated
+public class DeliveryWorkflowController {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryWorkflowController.class);
+
+    @Autowired
+    private DeliveryWorkflowEngine workflowEngine;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ContactService contactService;
+
+    // === INICIAR ENVÍO CON CANALES DE RESPALDO ===
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start(@Valid @RequestBody WorkflowRequest request) {
+        logger.info("🔀 Iniciando flujo de entrega {} (categoría: {}, contactos: {})", request.getChannels(),
+                request.getCategoryId(), request.getContactIds() != null ? request.getContactIds().size() : 0);
+
+        try {
+            List<Contact> contacts = new ArrayList<>();
+            if (request.getCategoryId() != null) {
+                contacts.addAll(categoryService.getAllContactsFromCategory(request.getCategoryId()));
+            }
+            contacts.addAll(contactService.getContactsByIds(request.getContactIds()));
+
+            Map<String, Object> result = new HashMap<>(workflowEngine.start(contacts, request.getChannels(),
+                    request.getTimeouts(), request.getSubject(), request.getContent(), request.getSender(),
+                    request.isHtml(), request.getUserId()));
+            result.put("success", true);
+            result.put("message", "Flujos de entrega iniciados");
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            logger.error("❌ Error iniciando flujo de entrega: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Error iniciando flujo de entrega: " + e.getMessage()
+            ));
+        }
+    }
+
+    // === ESTADO DE UN FLUJO ===
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getWorkflow(@PathVariable long id) {
+        return workflowEngine.getWorkflow(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // === RECUENTO POR ESTADO ===
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Long>> getStats() {
+        return ResponseEntity.ok(workflowEngine.getStats());
+    }
+}
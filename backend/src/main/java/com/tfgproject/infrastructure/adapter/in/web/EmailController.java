@@ -24,13 +24,15 @@ public class EmailController {
     private SendMessageUseCase sendMessageUseCase; // Port In
 
     @PostMapping("/send")
-    public ResponseEntity<Map<String, Object>> sendEmail(@RequestBody EmailMessage emailMessage) {
+    public ResponseEntity<Map<String, Object>> sendEmail(@RequestBody EmailMessage emailMessage,
+                                                        @RequestParam(defaultValue = "false") boolean direct) {
         logger.info("Solicitud recibida para enviar email a: {}", emailMessage.getTo());
 
         Map<String, Object> response = new HashMap<>();
 
         // Convertimos a comando hexagonal
         SendEmailCommand command = SendEmailCommand.fromEmailMessage(emailMessage);
+        command.setDirect(direct);
 
         // Usamos el caso de uso hexagonal
         MessageResult result = sendMessageUseCase.sendEmail(command);
@@ -5,12 +5,15 @@ import com.tfgproject.domain.model.MessageStatusEnum;
 import com.tfgproject.domain.model.SystemStatusReport; // ✅ IMPORT CORRECTO
 import com.tfgproject.domain.service.MessageStatusService;
 import com.tfgproject.infrastructure.service.AsyncScheduledMessageProcessor;
+import com.tfgproject.infrastructure.service.MessageStatusStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -31,6 +34,18 @@ public class MessageStatusController {
     @Autowired
     private AsyncScheduledMessageProcessor scheduledProcessor;
 
+    @Autowired
+    private MessageStatusStream messageStatusStream;
+
+    /**
+     * Feed en vivo (SSE) con cambios de estado agrupados y contadores, sustituye al sondeo del dashboard
+     * GET /api/messages/stream?userId=currentUser
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatus(@RequestParam(required = false) String userId) {
+        return messageStatusStream.subscribe(userId);
+    }
+
     /**
      * CASO DE USO 05: Obtener historial de mensajes del usuario
      * GET /api/messages/history?days=7&userId=currentUser
@@ -6,7 +6,21 @@ import com.tfgproject.application.dto.request.ScheduleRequest;
 import com.tfgproject.application.dto.request.MessageRequest;
 import com.tfgproject.application.dto.response.MessageResponse;
 import com.tfgproject.application.dto.response.QueueStatusResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.MessageChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
 import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.BulkMessageService;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.QueueStatusPoller;
+import com.tfgproject.infrastructure.service.SendPlan;
+import com.tfgproject.infrastructure.service.SendPlanner;
+import com.tfgproject.infrastructure.service.SendRateGovernor;
+import com.tfgproject.shared.model.ChannelType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,8 +28,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/messaging")
@@ -27,6 +49,33 @@ public class MessagingController {
     @Autowired
     private AsyncMessagePublisher messagePublisher;
 
+    @Autowired
+    private SendPlanner sendPlanner;
+
+    @Autowired
+    private FairShareDispatcher fairShareDispatcher;
+
+    @Autowired
+    private SendRateGovernor sendRateGovernor;
+
+    @Autowired
+    private PipelineLatencyRecorder latencyRecorder;
+
+    @Autowired
+    private QueueStatusPoller queueStatusPoller;
+
+    @Autowired
+    private ProviderHealthRegistry providerHealthRegistry;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Autowired
+    private BulkMessageService bulkMessageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     // === CASO DE USO 02: DIFUSIÓN ===
     @PostMapping("/broadcast")
     public ResponseEntity<MessageResponse> broadcastMessage(
@@ -44,7 +93,8 @@ public class MessagingController {
             String messageId = messagePublisher.broadcastMessage(
                     request.getRecipients(),
                     request.getContent(),
-                    request.getSubject()
+                    request.getSubject(),
+                    request.getUserId()
             );
 
             MessageResponse response = MessageResponse.broadcast(messageId, request.getRecipients());
@@ -106,7 +156,8 @@ public class MessagingController {
                 messageId = messagePublisher.broadcastMessage(
                         request.getRecipients(),
                         request.getContent(),
-                        request.getSubject()
+                        request.getSubject(),
+                        request.getUserId()
                 );
                 return ResponseEntity.ok(MessageResponse.broadcast(messageId, request.getRecipients()));
 
@@ -117,64 +168,68 @@ public class MessagingController {
                         request.getTo(),
                         request.getSubject(),
                         request.getContent(),
-                        scheduledTime
+                        scheduledTime,
+                        request.getUserId()
                 );
                 return ResponseEntity.ok(MessageResponse.scheduled(messageId, scheduledTime));
 
             } else {
                 // ✅ CORREGIDO: Envío único basado en el canal
-                String channel = request.getChannel() != null ? request.getChannel().toLowerCase() : "email";
-
-                switch (channel) {
-                    case "sms":
-                        logger.info("📱 Procesando como SMS");
-                        messageId = messagePublisher.sendSmsToQueue(
-                                request.getTo(),
-                                request.getContent(),
-                                request.getSender() != null ? request.getSender() : "TFG-App"
-                        );
-                        break;
+                String channel = request.getChannel() != null ? request.getChannel() : "email";
+
+                if (request.isBothChannels()) {
+                    logger.info("📧📱 Procesando como AMBOS canales");
+
+                    // El planificador decide según la política si van los dos o solo el preferido
+                    String email = request.getEmail() != null ? request.getEmail()
+                            : request.getTo().contains("@") ? request.getTo() : null;
+                    String phone = request.getPhone() != null ? request.getPhone()
+                            : request.getTo().contains("@") ? null : request.getTo();
+                    Contact recipient = Contact.builder().name(request.getTo()).email(email).phone(phone).build();
+                    SendPlan plan = sendPlanner.plan(List.of(recipient),
+                            SendPlan.EMAIL | SendPlan.SMS, request.getChannelPolicy());
+                    if (plan.isEmpty()) {
+                        return ResponseEntity.badRequest()
+                                .body(MessageResponse.failure("El destinatario no tiene email ni teléfono válidos"));
+                    }
 
-                    case "email":
-                        logger.info("📧 Procesando como EMAIL");
+                    messageId = null;
+                    if (!plan.getEmails().isEmpty()) {
                         messageId = messagePublisher.sendEmailToQueue(
-                                request.getTo(),
-                                request.getSubject(),
-                                request.getContent(),
-                                request.getAttachmentPath(),
-                                request.isHtml()
-                        );
-                        break;
-
-                    case "both":
-                        logger.info("📧📱 Procesando como AMBOS canales");
-
-                        // ✅ NUEVO: Primero enviar email
-                        String emailId = messagePublisher.sendEmailToQueue(
-                                request.getEmail() != null ? request.getEmail() : request.getTo(),
+                                plan.getEmails().get(0),
                                 request.getSubject(),
                                 request.getContent(),
                                 request.getAttachmentPath(),
-                                request.isHtml()
+                                request.getAttachmentId(),
+                                request.isHtml(),
+                                request.getUserId()
                         );
-                        logger.info("📧 Email encolado con ID: {}", emailId);
-
-                        // ✅ NUEVO: Después enviar SMS
+                        logger.info("📧 Email encolado con ID: {}", messageId);
+                    }
+                    if (!plan.getPhones().isEmpty()) {
                         String smsId = messagePublisher.sendSmsToQueue(
-                                request.getPhone() != null ? request.getPhone() : request.getTo(),
+                                plan.getPhones().get(0),
                                 request.getContent(),
-                                request.getSender() != null ? request.getSender() : "TFG-App"
+                                request.getSender() != null ? request.getSender() : SmsChannel.DEFAULT_SENDER,
+                                request.getUserId()
                         );
                         logger.info("📱 SMS encolado con ID: {}", smsId);
 
-                        // Usar el ID del email como principal
-                        messageId = emailId;
-                        break;
-
-                    default:
+                        // El ID del email es el principal si se envían los dos
+                        if (messageId == null) {
+                            messageId = smsId;
+                        }
+                    }
+                } else {
+                    // Cualquier canal registrado: se resuelve por tipo, sin un case por canal
+                    if (!ChannelType.isKnown(channel)) {
                         logger.warn("⚠️ Canal desconocido: {}", request.getChannel());
                         return ResponseEntity.badRequest()
                                 .body(MessageResponse.failure("Canal no soportado: " + request.getChannel()));
+                    }
+                    MessageChannel target = channelRegistry.get(channel);
+                    logger.info("📨 Procesando como {}", target.getType());
+                    messageId = messagePublisher.enqueue(target.toQueueMessage(request));
                 }
 
                 return ResponseEntity.ok(MessageResponse.success("Mensaje enviado exitosamente", messageId));
@@ -187,6 +242,32 @@ public class MessagingController {
         }
     }
 
+    // === ENVÍO MASIVO ===
+
+    /**
+     * Array JSON o NDJSON de MessageRequest (canal email, sms o both), leído en streaming.
+     * Responde en NDJSON: una línea por mensaje con su índice e id o error, y una línea final de resumen.
+     */
+    @PostMapping("/bulk")
+    public void sendBulk(HttpServletRequest request, HttpServletResponse response,
+                         @RequestParam(required = false) String userId) throws IOException {
+        logger.info("📦 Solicitud de envío masivo ({} bytes)", request.getContentLengthLong());
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+
+        Map<String, Object> summary = bulkMessageService.process(request.getInputStream(), userId, result -> {
+            try {
+                writer.println(objectMapper.writeValueAsString(result));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.println(objectMapper.writeValueAsString(summary));
+        writer.flush();
+    }
+
     // === ENDPOINTS DIRECTOS PARA COMPATIBILIDAD ===
 
     // Endpoint directo para email (para compatibilidad)
@@ -200,7 +281,9 @@ public class MessagingController {
                     request.getSubject(),
                     request.getContent(),
                     request.getAttachmentPath(),
-                    request.isHtml()
+                    request.getAttachmentId(),
+                    request.isHtml(),
+                    request.getUserId()
             );
 
             MessageResponse response = MessageResponse.success("Email enviado exitosamente", messageId);
@@ -222,7 +305,8 @@ public class MessagingController {
             String messageId = messagePublisher.sendSmsToQueue(
                     request.getTo(),
                     request.getContent(),
-                    request.getSender() != null ? request.getSender() : "TFG-App"
+                    request.getSender() != null ? request.getSender() : "TFG-App",
+                    request.getUserId()
             );
 
             MessageResponse response = MessageResponse.success("SMS enviado exitosamente", messageId);
@@ -239,8 +323,61 @@ public class MessagingController {
     @GetMapping("/queue-status")
     public ResponseEntity<QueueStatusResponse> getQueueStatus() {
 
-        // Aquí podrías integrar RabbitMQ Management API
-        QueueStatusResponse response = QueueStatusResponse.active();
+        // Última muestra del poller: el dashboard no genera consultas al broker
+        return ResponseEntity.ok(queueStatusPoller.getStatus());
+    }
+
+    // === LATENCIA DEL PIPELINE ===
+    /**
+     * Percentiles de latencia por canal y etapa del pipeline (memoria, sin consultar la base)
+     */
+    @GetMapping("/latency")
+    public ResponseEntity<Map<String, Object>> getLatencyStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("stages", latencyRecorder.getStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/latency")
+    public ResponseEntity<Map<String, Object>> resetLatencyStats() {
+        latencyRecorder.reset();
+        return ResponseEntity.ok(Map.of("success", true, "message", "Histogramas de latencia reiniciados"));
+    }
+
+    // === REPARTO EQUITATIVO: Profundidad y espera por usuario ===
+    @GetMapping("/fair-share")
+    public ResponseEntity<Map<String, Object>> getFairShareStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("enabled", fairShareDispatcher.isEnabled());
+        response.put("totalQueued", fairShareDispatcher.getTotalQueued());
+        response.put("totalInFlight", fairShareDispatcher.getTotalInFlight());
+        response.put("users", fairShareDispatcher.getUserQueueStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    // === CUOTAS DE PROVEEDOR: Reparto entre nodos ===
+    @GetMapping("/rate-governor")
+    public ResponseEntity<Map<String, Object>> getRateGovernorStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("nodeId", sendRateGovernor.getNodeId());
+        response.put("providers", sendRateGovernor.getGovernorStats());
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+
+    // === SALUD DE PROVEEDORES: Circuito, concurrencia y reparto entre proveedores ===
+    @GetMapping("/provider-health")
+    public ResponseEntity<Map<String, Object>> getProviderHealth() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("providers", providerHealthRegistry.getProviderStats());
+        for (MessageChannel channel : channelRegistry.all()) {
+            if (!channel.getProviderIds().isEmpty()) {
+                response.put(channel.getType().getKey() + "Routes", channel.getProviderStats());
+            }
+        }
+        response.put("timestamp", LocalDateTime.now());
         return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package com.tfgproject.infrastructure.adapter.in.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lector de multipart/form-data en streaming.
+ *
+ * Cada parte se expone como un InputStream que lee directamente del cuerpo de la petición
+ * hasta el siguiente delimitador, usando un único buffer fijo. Así un fichero de cientos de MB
+ * nunca se acumula en memoria, y si el consumidor escribe más lento que la red, la lectura se
+ * frena y TCP aplica la contrapresión al cliente.
+ */
+public class MultipartStreamReader {
+
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;    // CRLF + "--" + boundary
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private PartStream current;
+
+    public MultipartStreamReader(InputStream in, String boundary, int bufferSize) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(bufferSize, delimiter.length * 4)];
+
+        // El primer delimitador no lleva CRLF delante: se simula para tratar el preámbulo como una parte más
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * Extrae el boundary de una cabecera Content-Type multipart, o null si no lo hay
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                String value = trimmed.substring("boundary=".length());
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value.isEmpty() ? null : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Avanza a la siguiente parte descartando lo que quede de la actual. Devuelve null al terminar.
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        if (current == null) {
+            // Preámbulo
+            new PartStream().skipAll();
+        } else {
+            current.skipAll();
+        }
+
+        // Tras el delimitador: "--" cierra el multipart, CRLF abre otra parte
+        if (!ensure(2)) {
+            throw new IOException("Multipart truncado tras el delimitador");
+        }
+        if (buffer[head] == '-' && buffer[head + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        skipLineEnd();
+
+        Map<String, String> headers = readHeaders();
+        current = new PartStream();
+        return new Part(headers, current);
+    }
+
+    // === CABECERAS ===
+
+    private void skipLineEnd() throws IOException {
+        // Tolera espacios de relleno antes del CRLF
+        while (ensure(1) && (buffer[head] == ' ' || buffer[head] == '\t')) {
+            head++;
+        }
+        if (!ensure(2) || buffer[head] != '\r' || buffer[head + 1] != '\n') {
+            throw new IOException("Multipart mal formado: se esperaba CRLF tras el delimitador");
+        }
+        head += 2;
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        int consumed = 0;
+        while (true) {
+            String line = readLine();
+            consumed += line.length() + 2;
+            if (consumed > MAX_HEADER_BYTES) {
+                throw new IOException("Cabeceras de la parte demasiado grandes");
+            }
+            if (line.isEmpty()) {
+                return headers;
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            if (!ensure(2)) {
+                throw new IOException("Multipart truncado en las cabeceras");
+            }
+            if (buffer[head] == '\r' && buffer[head + 1] == '\n') {
+                head += 2;
+                return line.toString();
+            }
+            line.append((char) (buffer[head++] & 0xFF));
+            if (line.length() > MAX_HEADER_BYTES) {
+                throw new IOException("Cabeceras de la parte demasiado grandes");
+            }
+        }
+    }
+
+    // === BUFFER ===
+
+    /**
+     * Garantiza al menos n bytes disponibles; false si el flujo se acaba antes
+     */
+    private boolean ensure(int n) throws IOException {
+        while (tail - head < n) {
+            if (eof) {
+                return false;
+            }
+            fill();
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        int read = in.read(buffer, tail, buffer.length - tail);
+        if (read < 0) {
+            eof = true;
+        } else {
+            tail += read;
+        }
+    }
+
+    private int indexOfDelimiter() {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            if (buffer[i] != delimiter[0]) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Cuerpo de una parte: termina (devuelve -1) al llegar al delimitador
+     */
+    private class PartStream extends InputStream {
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (ended) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+
+            while (true) {
+                int found = indexOfDelimiter();
+                int available;
+                if (found >= 0) {
+                    available = found - head;
+                    if (available == 0) {
+                        head += delimiter.length;
+                        ended = true;
+                        return -1;
+                    }
+                } else {
+                    // Se retiene la cola por si contiene un delimitador a medias
+                    available = tail - head - (delimiter.length - 1);
+                    if (available <= 0) {
+                        if (eof) {
+                            throw new IOException("Multipart truncado: falta el delimitador final");
+                        }
+                        fill();
+                        continue;
+                    }
+                }
+
+                int count = Math.min(length, available);
+                System.arraycopy(buffer, head, target, offset, count);
+                head += count;
+                return count;
+            }
+        }
+
+        void skipAll() throws IOException {
+            byte[] scratch = new byte[4096];
+            while (read(scratch, 0, scratch.length) >= 0) {
+                // descartar
+            }
+        }
+    }
+
+    public static class Part {
+        private final Map<String, String> headers;
+        private final InputStream body;
+
+        Part(Map<String, String> headers, InputStream body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        public String getContentType() {
+            return getHeader("content-type");
+        }
+
+        public String getName() {
+            return dispositionParam("name");
+        }
+
+        public String getFileName() {
+            String fileName = dispositionParam("filename");
+            if (fileName == null) {
+                return null;
+            }
+            // Algunos navegadores envían la ruta completa
+            int slash = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
+            return slash >= 0 ? fileName.substring(slash + 1) : fileName;
+        }
+
+        public InputStream getInputStream() {
+            return body;
+        }
+
+        private String dispositionParam(String param) {
+            String disposition = getHeader("content-disposition");
+            if (disposition == null) {
+                return null;
+            }
+            for (String token : disposition.split(";")) {
+                String trimmed = token.trim();
+                int equals = trimmed.indexOf('=');
+                if (equals > 0 && trimmed.substring(0, equals).trim().equalsIgnoreCase(param)) {
+                    String value = trimmed.substring(equals + 1).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    // Los nombres de fichero llegan en UTF-8 aunque la cabecera se lea byte a byte
+                    return new String(value.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tfgproject.infrastructure.adapter.in.web;
+
+import com.tfgproject.application.dto.request.SegmentRequest;
+import com.tfgproject.infrastructure.segment.SegmentSendJob;
+import com.tfgproject.infrastructure.segment.SegmentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import jakarta.validation.Valid;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/segments")
+@CrossOrigin(origins = "*")
+@Validated
+public class SegmentController {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentController.class);
+
+    @Autowired
+    private SegmentService segmentService;
+
+    // === PREVISUALIZAR SEGMENTO ===
+    @GetMapping("/preview")
+    public ResponseEntity<Map<String, Object>> preview(@RequestParam String expression,
+                                                       @RequestParam(defaultValue = "20") int sample) {
+        logger.info("🎯 Evaluando segmento: {}", expression);
+
+        try {
+            Map<String, Object> result = new HashMap<>(segmentService.preview(expression, Math.min(Math.max(0, sample), 1000)));
+            result.put("success", true);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        }
+    }
+
+    // === ENVIAR A SEGMENTO ===
+    /**
+     * El envío se hace en segundo plano: responde 202 con el id del trabajo para consultar su progreso
+     */
+    @PostMapping("/send")
+    public ResponseEntity<Map<String, Object>> send(@Valid @RequestBody SegmentRequest request) {
+        logger.info("📢 Enviando {} al segmento: {}", request.getChannel(), request.getExpression());
+
+        try {
+            SegmentSendJob job = segmentService.startSend(request);
+            Map<String, Object> result = new LinkedHashMap<>(job.toMap());
+            result.put("success", true);
+            result.put("message", "Envío al segmento iniciado");
+            result.put("statusUrl", "/api/segments/send/" + job.getId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            logger.error("❌ Error enviando al segmento: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "message", "Error enviando al segmento: " + e.getMessage()
+            ));
+        }
+    }
+
+    @GetMapping("/send/{jobId}")
+    public ResponseEntity<Map<String, Object>> getSendStatus(@PathVariable String jobId) {
+        return segmentService.getJob(jobId)
+                .map(job -> ResponseEntity.ok(job.toMap()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
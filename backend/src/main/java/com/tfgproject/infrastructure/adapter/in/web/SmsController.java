@@ -23,13 +23,15 @@ public class SmsController {
     private SendMessageUseCase sendMessageUseCase; // Nueva dependencia hexagonal
 
     @PostMapping("/send")
-    public ResponseEntity<Map<String, Object>> sendSms(@RequestBody SmsMessage smsMessage) {
+    public ResponseEntity<Map<String, Object>> sendSms(@RequestBody SmsMessage smsMessage,
+                                                      @RequestParam(defaultValue = "false") boolean direct) {
         logger.info("Solicitud recibida para enviar SMS a: {}", smsMessage.getTo());
 
         Map<String, Object> response = new HashMap<>();
 
         // Convertimos a comando hexagonal
         SendSmsCommand command = SendSmsCommand.fromSmsMessage(smsMessage);
+        command.setDirect(direct);
 
         // Usamos el caso de uso hexagonal
         MessageResult result = sendMessageUseCase.sendSms(command);
@@ -0,0 +1,39 @@
+package com.tfgproject.infrastructure.adapter.in.web;
+
+import com.tfgproject.application.command.SendWhatsAppCommand;
+import com.tfgproject.domain.model.MessageResult;
+import com.tfgproject.domain.port.in.SendMessageUseCase;
+import com.tfgproject.shared.model.WhatsAppMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/whatsapp")
+@CrossOrigin(origins = "*")
+public class WhatsAppController {
+    private static final Logger logger = LoggerFactory.getLogger(WhatsAppController.class);
+
+    @Autowired
+    private SendMessageUseCase sendMessageUseCase;
+
+    @PostMapping("/send")
+    public ResponseEntity<Map<String, Object>> sendWhatsApp(@RequestBody WhatsAppMessage whatsAppMessage) {
+        logger.info("Solicitud recibida para enviar WhatsApp a: {}", whatsAppMessage.getTo());
+
+        Map<String, Object> response = new HashMap<>();
+        MessageResult result = sendMessageUseCase.sendWhatsApp(SendWhatsAppCommand.fromWhatsAppMessage(whatsAppMessage));
+
+        response.put("success", result.isSuccess());
+        response.put("message", result.getMessage());
+        if (result.isSuccess()) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.internalServerError().body(response);
+    }
+}
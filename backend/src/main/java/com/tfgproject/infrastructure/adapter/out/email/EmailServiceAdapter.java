@@ -1,10 +1,12 @@
 package com.tfgproject.infrastructure.adapter.out.email;
 
 import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.DirectSendService;
 import com.tfgproject.application.command.SendEmailCommand;
 import com.tfgproject.domain.port.out.EmailServicePort;
+import com.tfgproject.shared.model.EmailMessage;
+import com.tfgproject.shared.model.QueueMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -13,37 +15,31 @@ public class EmailServiceAdapter implements EmailServicePort {
     @Autowired
     private AsyncMessagePublisher messagePublisher;
 
-    @Value("${app.messaging.async:true}")
-    private boolean useAsync;
+    @Autowired
+    private DirectSendService directSendService;
 
     @Override
     public boolean sendEmail(SendEmailCommand command) {
         System.out.println("🔌 ADAPTER: EmailServiceAdapter.sendEmail() - Modo: " +
-                (useAsync ? "ASYNC (RabbitMQ)" : "SYNC"));
+                (command.isDirect() ? "DIRECTO (cola de respaldo)" : "ASYNC (RabbitMQ)"));
 
         try {
-            if (useAsync) {
+            if (command.isDirect()) {
+                // === ENVÍO DIRECTO: sin pasar por el broker, con tiempo máximo ===
+                DirectSendService.Outcome outcome = directSendService.sendEmail(
+                        toEmailMessage(command), QueueMessage.DEFAULT_USER, () -> enqueue(command));
+
+                System.out.println("⚡ ADAPTER: Envío directo: " + outcome);
+                return true; // Enviado, o encolado como respaldo
+
+            } else {
                 // === MODO ASÍNCRONO CON RABBITMQ ===
                 System.out.println("🐰 ADAPTER: Enviando a RabbitMQ cola");
 
-                String messageId = messagePublisher.sendEmailToQueue(
-                        command.getTo(),
-                        command.getSubject(),
-                        command.getText(),
-                        command.getAttachmentPath(),
-                        command.isHtml()
-                );
+                String messageId = enqueue(command);
 
                 System.out.println("🐰 ADAPTER: Mensaje encolado con ID: " + messageId);
                 return true; // Retorna true porque se encoló exitosamente
-
-            } else {
-                // === MODO SÍNCRONO (CÓDIGO ORIGINAL) ===
-                System.out.println("🔌 ADAPTER: Enviando directamente (modo síncrono)");
-
-                // Aquí iría tu código original del EmailService
-                // Por simplicidad, asumo que funciona
-                return true;
             }
 
         } catch (Exception e) {
@@ -51,4 +47,23 @@ public class EmailServiceAdapter implements EmailServicePort {
             return false;
         }
     }
+
+    private String enqueue(SendEmailCommand command) {
+        return messagePublisher.sendEmailToQueue(
+                command.getTo(),
+                command.getSubject(),
+                command.getText(),
+                command.getAttachmentPath(),
+                command.getAttachmentId(),
+                command.isHtml(),
+                QueueMessage.DEFAULT_USER
+        );
+    }
+
+    private EmailMessage toEmailMessage(SendEmailCommand command) {
+        EmailMessage emailMessage = new EmailMessage(command.getTo(), command.getSubject(), command.getText(), command.isHtml());
+        emailMessage.setAttachmentPath(command.getAttachmentPath());
+        emailMessage.setAttachmentId(command.getAttachmentId());
+        return emailMessage;
+    }
 }
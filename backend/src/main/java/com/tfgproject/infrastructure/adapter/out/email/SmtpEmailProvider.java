@@ -0,0 +1,132 @@
+package com.tfgproject.infrastructure.adapter.out.email;
+
+import com.tfgproject.domain.model.StoredAttachment;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.infrastructure.service.EmailProvider;
+import com.tfgproject.infrastructure.service.PreparedMimeCache;
+import com.tfgproject.infrastructure.service.SendRateGovernor;
+import com.tfgproject.shared.model.EmailMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Envío por SMTP (Gmail) con JavaMailSender
+ */
+@Component
+public class SmtpEmailProvider implements EmailProvider {
+    private static final Logger logger = LoggerFactory.getLogger(SmtpEmailProvider.class);
+
+    public static final String NAME = "smtp";
+
+    @Autowired
+    private JavaMailSender emailSender;
+
+    @Autowired
+    private PreparedMimeCache preparedMimeCache;
+
+    @Autowired
+    private AttachmentStorePort attachmentStore;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String quotaKey(EmailMessage message) {
+        // Cuota de Gmail por segundo y por día
+        return SendRateGovernor.EMAIL_PROVIDER;
+    }
+
+    @Override
+    public boolean send(EmailMessage emailMessage) {
+        // Decidir método
+        if (emailMessage.isHtml() || emailMessage.getAttachmentId() != null ||
+                (emailMessage.getAttachmentPath() != null && !emailMessage.getAttachmentPath().isEmpty())) {
+            System.out.println("🛠️ SMTP: Usando sendMessageWithAttachment");
+            return sendMessageWithAttachment(emailMessage);
+        } else {
+            System.out.println("🛠️ SMTP: Usando sendSimpleMessage");
+            return sendSimpleMessage(emailMessage);
+        }
+    }
+
+    public boolean sendSimpleMessage(EmailMessage emailMessage) {
+        try {
+            logger.info("Enviando email simple a {}", emailMessage.getTo());
+
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(emailMessage.getTo());
+            message.setSubject(emailMessage.getSubject());
+            message.setText(emailMessage.getText());
+            message.setSentDate(new Date());
+
+            emailSender.send(message);
+            logger.info("Email enviado correctamente");
+            return true;
+        } catch (Exception e) {
+            logger.error("Error enviando email: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+
+    public boolean sendMessageWithAttachment(EmailMessage emailMessage) {
+        try {
+            logger.info("Enviando email con adjunto/HTML a {}", emailMessage.getTo());
+
+            MimeMessage message = emailSender.createMimeMessage();
+            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(emailMessage.getTo()));
+            message.setSubject(emailMessage.getSubject(), "UTF-8");
+            message.setSentDate(new Date());
+
+            // Cuerpo y adjunto ya codificados se comparten entre los destinatarios del mismo mensaje
+            MimeMultipart multipart = new MimeMultipart("mixed");
+            multipart.addBodyPart(preparedMimeCache.bodyPart(
+                    emailMessage.getMessageId(), emailMessage.getText(), emailMessage.isHtml()));
+
+            // Añadir adjunto si existe: primero el almacén compartido, después la ruta local
+            if (emailMessage.getAttachmentId() != null) {
+                Optional<StoredAttachment> stored = attachmentStore.find(emailMessage.getAttachmentId());
+                if (stored.isPresent()) {
+                    String fileName = emailMessage.getAttachmentName() != null
+                            ? emailMessage.getAttachmentName() : stored.get().getFileName();
+                    multipart.addBodyPart(preparedMimeCache.attachmentPart(emailMessage.getMessageId(),
+                            attachmentStore.resolve(stored.get().getId()).toFile(), fileName,
+                            stored.get().getContentType()));
+                } else {
+                    logger.warn("El adjunto {} no está en el almacén", emailMessage.getAttachmentId());
+                }
+            } else if (emailMessage.getAttachmentPath() != null && !emailMessage.getAttachmentPath().isEmpty()) {
+                File file = new File(emailMessage.getAttachmentPath());
+                if (file.exists()) {
+                    multipart.addBodyPart(preparedMimeCache.attachmentPart(emailMessage.getMessageId(), file));
+                } else {
+                    logger.warn("El archivo adjunto no existe: {}", emailMessage.getAttachmentPath());
+                }
+            }
+
+            message.setContent(multipart);
+            emailSender.send(message);
+            logger.info("Email con adjunto/HTML enviado correctamente");
+            return true;
+        } catch (MessagingException | IOException e) {
+            logger.error("Error enviando email con adjunto/HTML: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+}
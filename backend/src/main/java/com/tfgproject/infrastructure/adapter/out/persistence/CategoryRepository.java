@@ -1,6 +1,10 @@
 package com.tfgproject.infrastructure.adapter.out.persistence;
 
+import com.tfgproject.application.dto.response.CategorySummary;
 import com.tfgproject.domain.model.Category;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -32,6 +36,20 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     @Query("SELECT COUNT(cont) FROM Category c JOIN c.contacts cont WHERE c.id = :categoryId")
     Long countContactsByCategoryId(@Param("categoryId") Long categoryId);
 
+    // === LISTADOS PAGINADOS (proyección, sin cargar entidades) ===
+
+    // Comprobación de tabla vacía sin contar ni cargar filas (SELECT ... LIMIT 1)
+    boolean existsByIdIsNotNull();
+
+    String SUMMARY = "SELECT new com.tfgproject.application.dto.response.CategorySummary(c.id, c.name, c.description, p.id) " +
+            "FROM Category c LEFT JOIN c.parent p";
+
+    @Query(value = SUMMARY, countQuery = "SELECT COUNT(c) FROM Category c")
+    Page<CategorySummary> findSummaries(Pageable pageable);
+
+    @Query(SUMMARY + " WHERE c.id > :afterId ORDER BY c.id")
+    List<CategorySummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+
     boolean existsByName(String name);
 
     boolean existsByNameAndParentId(String name, Long parentId);
@@ -1,11 +1,16 @@
 package com.tfgproject.infrastructure.adapter.out.persistence;
 
+import com.tfgproject.application.dto.response.ContactSummary;
 import com.tfgproject.domain.model.Contact;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +21,12 @@ public interface ContactRepository extends JpaRepository<Contact, Long> {
 
     Optional<Contact> findByPhone(String phone);
 
+    List<Contact> findByEmailIn(Collection<String> emails);
+
+    List<Contact> findByPhoneIn(Collection<String> phones);
+
+    List<Contact> findByWhatsappIdIn(Collection<String> whatsappIds);
+
     List<Contact> findByNameContainingIgnoreCase(String name);
 
     @Query("SELECT c FROM Contact c WHERE " +
@@ -33,6 +44,23 @@ public interface ContactRepository extends JpaRepository<Contact, Long> {
     @Query("SELECT c FROM Contact c WHERE c.phone IS NOT NULL AND c.phone != ''")
     List<Contact> findContactsWithPhone();
 
+    // === LISTADOS PAGINADOS (proyección, sin cargar entidades) ===
+
+    // Comprobación de tabla vacía sin contar ni cargar filas (SELECT ... LIMIT 1)
+    boolean existsByIdIsNotNull();
+
+    String SUMMARY = "SELECT new com.tfgproject.application.dto.response.ContactSummary(c.id, c.name, " +
+            "CASE WHEN c.email IS NOT NULL AND c.email <> '' THEN true ELSE false END, " +
+            "CASE WHEN c.phone IS NOT NULL AND c.phone <> '' THEN true ELSE false END, " +
+            "CASE WHEN c.whatsappId IS NOT NULL AND c.whatsappId <> '' THEN true ELSE false END) FROM Contact c";
+
+    @Query(value = SUMMARY, countQuery = "SELECT COUNT(c) FROM Contact c")
+    Page<ContactSummary> findSummaries(Pageable pageable);
+
+    // Paginación por cursor: el siguiente bloque empieza tras el último id devuelto
+    @Query(SUMMARY + " WHERE c.id > :afterId ORDER BY c.id")
+    List<ContactSummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+
     boolean existsByEmail(String email);
 
     boolean existsByPhone(String phone);
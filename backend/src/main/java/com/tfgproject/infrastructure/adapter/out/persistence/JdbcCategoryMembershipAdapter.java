@@ -0,0 +1,126 @@
+package com.tfgproject.infrastructure.adapter.out.persistence;
+
+import com.tfgproject.domain.model.ContactSelection;
+import com.tfgproject.domain.port.out.CategoryMembershipPort;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Pertenencia a categorías escrita directamente en la tabla de unión.
+ *
+ * Con ids concretos se usan INSERT/DELETE por lotes; con una categoría origen o una búsqueda,
+ * un único INSERT ... SELECT / DELETE ... IN (SELECT) que resuelve la base de datos.
+ * Las altas ya existentes y los ids que no son contactos se ignoran.
+ */
+@Component
+public class JdbcCategoryMembershipAdapter implements CategoryMembershipPort {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.categories.bulk.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public int addContacts(Long categoryId, ContactSelection selection) {
+        if (selection.hasContactIds()) {
+            Filter filter = filterFor(selection, "c");
+            String sql = "INSERT INTO category_contact (category_id, contact_id) " +
+                    "SELECT ?, c.id FROM contacts c WHERE c.id = ?" + filter.sql +
+                    " AND NOT EXISTS (SELECT 1 FROM category_contact m WHERE m.category_id = ? AND m.contact_id = c.id)";
+            return sum(jdbcTemplate.batchUpdate(sql, selection.getContactIds(), batchSize, (ps, contactId) -> {
+                int i = 1;
+                ps.setLong(i++, categoryId);
+                ps.setLong(i++, contactId);
+                for (Object param : filter.params) {
+                    ps.setObject(i++, param);
+                }
+                ps.setLong(i, categoryId);
+            }));
+        }
+
+        Filter filter = filterFor(selection, "c");
+        List<Object> params = new ArrayList<>();
+        params.add(categoryId);
+        params.addAll(filter.params);
+        params.add(categoryId);
+        return jdbcTemplate.update("INSERT INTO category_contact (category_id, contact_id) " +
+                "SELECT ?, c.id FROM contacts c WHERE 1 = 1" + filter.sql +
+                " AND NOT EXISTS (SELECT 1 FROM category_contact m WHERE m.category_id = ? AND m.contact_id = c.id)",
+                params.toArray());
+    }
+
+    @Override
+    public int removeContacts(Long categoryId, ContactSelection selection) {
+        if (selection.hasContactIds()) {
+            Filter filter = filterFor(selection, "c");
+            String sql = filter.sql.isEmpty()
+                    ? "DELETE FROM category_contact WHERE category_id = ? AND contact_id = ?"
+                    : "DELETE FROM category_contact WHERE category_id = ? AND contact_id = ? " +
+                    "AND contact_id IN (SELECT c.id FROM contacts c WHERE 1 = 1" + filter.sql + ")";
+            return sum(jdbcTemplate.batchUpdate(sql, selection.getContactIds(), batchSize, (ps, contactId) -> {
+                int i = 1;
+                ps.setLong(i++, categoryId);
+                ps.setLong(i++, contactId);
+                for (Object param : filter.params) {
+                    ps.setObject(i++, param);
+                }
+            }));
+        }
+
+        Filter filter = filterFor(selection, "c");
+        List<Object> params = new ArrayList<>();
+        params.add(categoryId);
+        params.addAll(filter.params);
+        return jdbcTemplate.update("DELETE FROM category_contact WHERE category_id = ? " +
+                "AND contact_id IN (SELECT c.id FROM contacts c WHERE 1 = 1" + filter.sql + ")", params.toArray());
+    }
+
+    /**
+     * Condiciones de categoría origen y búsqueda sobre el alias de contacts (misma búsqueda que ContactRepository)
+     */
+    private Filter filterFor(ContactSelection selection, String alias) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        if (selection.getSourceCategoryId() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM category_contact src WHERE src.category_id = ? AND src.contact_id = ")
+                    .append(alias).append(".id)");
+            params.add(selection.getSourceCategoryId());
+        }
+        if (selection.hasSearch()) {
+            String pattern = "%" + selection.getSearch().trim().toLowerCase(Locale.ROOT) + "%";
+            sql.append(" AND (LOWER(").append(alias).append(".name) LIKE ? OR LOWER(").append(alias)
+                    .append(".email) LIKE ? OR ").append(alias).append(".phone LIKE ?)");
+            params.add(pattern);
+            params.add(pattern);
+            params.add("%" + selection.getSearch().trim() + "%");
+        }
+        return new Filter(sql.toString(), params);
+    }
+
+    private static int sum(int[][] counts) {
+        int total = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                total += Math.max(count, 0);
+            }
+        }
+        return total;
+    }
+
+    private static class Filter {
+        private final String sql;
+        private final List<Object> params;
+
+        Filter(String sql, List<Object> params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+}
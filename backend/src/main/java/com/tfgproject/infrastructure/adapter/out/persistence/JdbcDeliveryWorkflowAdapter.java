@@ -0,0 +1,195 @@
+package com.tfgproject.infrastructure.adapter.out.persistence;
+
+import com.tfgproject.domain.model.DeliveryWorkflow;
+import com.tfgproject.domain.model.WorkflowDefinition;
+import com.tfgproject.domain.port.out.DeliveryWorkflowRepositoryPort;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Flujos de entrega en H2. Cada flujo es una fila de tamaño fijo (ids, paso, estado y fecha),
+ * sin direcciones ni contenido: el mensaje está en workflow_definitions, una vez por envío,
+ * y las direcciones se leen de contacts al cambiar de canal. Así millones de flujos en
+ * curso viven en disco y no en memoria.
+ */
+@Component
+public class JdbcDeliveryWorkflowAdapter implements DeliveryWorkflowRepositoryPort {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void initSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS workflow_definitions (" +
+                "id BIGINT NOT NULL PRIMARY KEY, " +
+                "channels VARCHAR(100) NOT NULL, " +
+                "timeouts VARCHAR(200) NOT NULL, " +
+                "subject VARCHAR(200), " +
+                "content CLOB NOT NULL, " +
+                "sender VARCHAR(100), " +
+                "is_html BOOLEAN DEFAULT FALSE NOT NULL, " +
+                "user_id VARCHAR(100), " +
+                "created_at TIMESTAMP NOT NULL)");
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS workflow_definition_seq");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS delivery_workflows (" +
+                "id BIGINT NOT NULL PRIMARY KEY, " +
+                "definition_id BIGINT NOT NULL, " +
+                "contact_id BIGINT NOT NULL, " +
+                "step TINYINT NOT NULL, " +
+                "state TINYINT NOT NULL, " +
+                "updated_at TIMESTAMP NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_workflow_state_updated ON delivery_workflows (state, updated_at)");
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS delivery_workflow_seq CACHE 1000");
+    }
+
+    @Override
+    public long saveDefinition(WorkflowDefinition definition) {
+        Long id = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR workflow_definition_seq", Long.class);
+        LocalDateTime createdAt = definition.getCreatedAt() != null ? definition.getCreatedAt() : LocalDateTime.now();
+        jdbcTemplate.update(
+                "INSERT INTO workflow_definitions (id, channels, timeouts, subject, content, sender, is_html, user_id, created_at) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                id,
+                String.join(",", definition.getChannels()),
+                joinInts(definition.getTimeouts()),
+                definition.getSubject(),
+                definition.getContent(),
+                definition.getSender(),
+                definition.isHtml(),
+                definition.getUserId(),
+                Timestamp.valueOf(createdAt));
+        definition.setId(id);
+        definition.setCreatedAt(createdAt);
+        return id;
+    }
+
+    @Override
+    public Optional<WorkflowDefinition> findDefinition(long definitionId) {
+        return jdbcTemplate.query(
+                "SELECT * FROM workflow_definitions WHERE id = ?",
+                (rs, rowNum) -> WorkflowDefinition.builder()
+                        .id(rs.getLong("id"))
+                        .channels(List.of(rs.getString("channels").split(",")))
+                        .timeouts(splitInts(rs.getString("timeouts")))
+                        .subject(rs.getString("subject"))
+                        .content(rs.getString("content"))
+                        .sender(rs.getString("sender"))
+                        .html(rs.getBoolean("is_html"))
+                        .userId(rs.getString("user_id"))
+                        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                        .build(),
+                definitionId).stream().findFirst();
+    }
+
+    @Override
+    public void insertAll(List<DeliveryWorkflow> workflows) {
+        if (workflows.isEmpty()) {
+            return;
+        }
+
+        // Un solo viaje para reservar todos los ids del lote
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT NEXT VALUE FOR delivery_workflow_seq FROM SYSTEM_RANGE(1, ?)", Long.class, workflows.size());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(workflows.size());
+        for (int i = 0; i < workflows.size(); i++) {
+            DeliveryWorkflow workflow = workflows.get(i);
+            workflow.setId(ids.get(i));
+            rows.add(new Object[]{workflow.getId(), workflow.getDefinitionId(), workflow.getContactId(),
+                    workflow.getStep(), workflow.getState(), now});
+        }
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO delivery_workflows (id, definition_id, contact_id, step, state, updated_at) VALUES (?, ?, ?, ?, ?, ?)",
+                rows);
+    }
+
+    @Override
+    public Optional<DeliveryWorkflow> find(long workflowId) {
+        return jdbcTemplate.query(
+                "SELECT w.id, w.definition_id, w.contact_id, w.step, w.state, c.email, c.phone, c.whatsapp_id " +
+                        "FROM delivery_workflows w LEFT JOIN contacts c ON c.id = w.contact_id WHERE w.id = ?",
+                (rs, rowNum) -> new DeliveryWorkflow(
+                        rs.getLong("id"),
+                        rs.getLong("definition_id"),
+                        rs.getLong("contact_id"),
+                        rs.getInt("step"),
+                        rs.getInt("state"),
+                        rs.getString("email"),
+                        rs.getString("phone"),
+                        rs.getString("whatsapp_id")),
+                workflowId).stream().findFirst();
+    }
+
+    @Override
+    public boolean advance(long workflowId, int fromStep, int toStep) {
+        return jdbcTemplate.update(
+                "UPDATE delivery_workflows SET step = ?, updated_at = ? WHERE id = ? AND step = ? AND state = ?",
+                toStep, Timestamp.valueOf(LocalDateTime.now()), workflowId, fromStep, DeliveryWorkflow.ACTIVE) > 0;
+    }
+
+    @Override
+    public boolean finish(long workflowId, int step, int state) {
+        return jdbcTemplate.update(
+                "UPDATE delivery_workflows SET state = ?, updated_at = ? WHERE id = ? AND step = ? AND state = ?",
+                state, Timestamp.valueOf(LocalDateTime.now()), workflowId, step, DeliveryWorkflow.ACTIVE) > 0;
+    }
+
+    @Override
+    public Map<String, Long> countByState() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int state : new int[]{DeliveryWorkflow.ACTIVE, DeliveryWorkflow.DELIVERED, DeliveryWorkflow.EXHAUSTED}) {
+            counts.put(DeliveryWorkflow.stateName(state), 0L);
+        }
+        jdbcTemplate.query("SELECT state, COUNT(*) FROM delivery_workflows GROUP BY state",
+                rs -> {
+                    counts.put(DeliveryWorkflow.stateName(rs.getInt(1)), rs.getLong(2));
+                });
+        return counts;
+    }
+
+    @Override
+    public int deleteFinished(LocalDateTime updatedBefore) {
+        Timestamp threshold = Timestamp.valueOf(updatedBefore);
+        int deleted = jdbcTemplate.update(
+                "DELETE FROM delivery_workflows WHERE state <> ? AND updated_at < ?", DeliveryWorkflow.ACTIVE, threshold);
+
+        // Definiciones que ya no usa ningún flujo
+        jdbcTemplate.update(
+                "DELETE FROM workflow_definitions d WHERE d.created_at < ? " +
+                        "AND NOT EXISTS (SELECT 1 FROM delivery_workflows w WHERE w.definition_id = d.id)",
+                threshold);
+        return deleted;
+    }
+
+    private static String joinInts(List<Integer> values) {
+        StringBuilder joined = new StringBuilder();
+        for (Integer value : values) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static List<Integer> splitInts(String joined) {
+        if (joined == null || joined.isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(joined.split(",")).map(Integer::valueOf).toList();
+    }
+}
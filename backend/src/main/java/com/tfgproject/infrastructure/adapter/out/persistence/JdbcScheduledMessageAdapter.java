@@ -0,0 +1,237 @@
+package com.tfgproject.infrastructure.adapter.out.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import com.tfgproject.shared.model.QueueMessage;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Mensajes programados en H2, compartidos por todos los nodos.
+ *
+ * Cada nodo reclama un lote de filas vencidas de su partición (bucket % nodos) con
+ * UPDATE ... WHERE status = 'PENDING'; si dos nodos compiten por la misma fila solo uno
+ * actualiza, al estilo de SELECT ... FOR UPDATE SKIP LOCKED.
+ */
+@Component
+public class JdbcScheduledMessageAdapter implements ScheduledMessageRepositoryPort {
+
+    private static final int BUCKETS = 1024;
+    private static final int CLAIM_ATTEMPTS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final RowMapper<QueueMessage> messageMapper = (rs, rowNum) -> {
+        QueueMessage message = fromJson(rs.getString("payload"));
+        message.setRetryCount(rs.getInt("retry_count"));
+        return message;
+    };
+
+    @PostConstruct
+    public void initSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS scheduled_messages (" +
+                "message_id VARCHAR(64) NOT NULL PRIMARY KEY, " +
+                "user_id VARCHAR(100), " +
+                "due_at TIMESTAMP NOT NULL, " +
+                "bucket INT NOT NULL, " +
+                "status VARCHAR(20) NOT NULL, " +
+                "owner_node VARCHAR(200), " +
+                "claim_token VARCHAR(64), " +
+                "claimed_at TIMESTAMP, " +
+                "retry_count INT DEFAULT 0 NOT NULL, " +
+                "payload CLOB NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_scheduled_status_due ON scheduled_messages (status, due_at)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_scheduled_claim ON scheduled_messages (claim_token)");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS scheduler_nodes (" +
+                "node_id VARCHAR(200) NOT NULL PRIMARY KEY, " +
+                "heartbeat_at TIMESTAMP NOT NULL)");
+    }
+
+    @Override
+    public void save(QueueMessage message) {
+        LocalDateTime dueAt = message.getScheduledTime() != null ? message.getScheduledTime() : LocalDateTime.now();
+        jdbcTemplate.update(
+                "MERGE INTO scheduled_messages (message_id, user_id, due_at, bucket, status, owner_node, claim_token, claimed_at, retry_count, payload) " +
+                        "KEY (message_id) VALUES (?, ?, ?, ?, 'PENDING', NULL, NULL, NULL, ?, ?)",
+                message.getId(),
+                message.getUserId(),
+                Timestamp.valueOf(dueAt),
+                Math.floorMod(message.getId().hashCode(), BUCKETS),
+                message.getRetryCount(),
+                toJson(message));
+    }
+
+    @Override
+    public List<QueueMessage> claimDue(LocalDateTime now, String nodeId, int partition, int partitions, int batchSize) {
+        // Si otro nodo se adelanta con todos los candidatos se vuelve a seleccionar, para no
+        // esperar un ciclo entero de sondeo con filas pendientes
+        for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+            List<String> candidates = selectCandidates(now, partition, partitions, batchSize);
+            if (candidates.isEmpty()) {
+                return List.of();
+            }
+
+            List<QueueMessage> claimed = claim(candidates, nodeId);
+            if (!claimed.isEmpty()) {
+                return claimed;
+            }
+        }
+        return List.of();
+    }
+
+    private List<String> selectCandidates(LocalDateTime now, int partition, int partitions, int batchSize) {
+        Timestamp dueBy = Timestamp.valueOf(now);
+        int nodes = Math.max(1, partitions);
+
+        List<String> candidates = new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT message_id FROM scheduled_messages WHERE status = 'PENDING' AND due_at <= ? " +
+                        "AND MOD(bucket, ?) = ? ORDER BY due_at LIMIT ?",
+                String.class, dueBy, nodes, partition, batchSize));
+
+        // Con hueco en el lote, roba trabajo de otras particiones (nodos caídos o retrasados)
+        if (candidates.size() < batchSize && nodes > 1) {
+            candidates.addAll(jdbcTemplate.queryForList(
+                    "SELECT message_id FROM scheduled_messages WHERE status = 'PENDING' AND due_at <= ? " +
+                            "AND MOD(bucket, ?) <> ? ORDER BY due_at LIMIT ?",
+                    String.class, dueBy, nodes, partition, batchSize - candidates.size()));
+        }
+        return candidates;
+    }
+
+    private List<QueueMessage> claim(List<String> candidates, String nodeId) {
+        String claimToken = UUID.randomUUID().toString();
+        Timestamp claimedAt = Timestamp.valueOf(LocalDateTime.now());
+        // Todos los nodos bloquean las filas en el mismo orden para no cruzarse en un interbloqueo
+        List<Object[]> claims = new ArrayList<>(candidates.size());
+        for (String messageId : candidates.stream().sorted().distinct().toList()) {
+            claims.add(new Object[]{nodeId, claimToken, claimedAt, messageId});
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(
+                    "UPDATE scheduled_messages SET status = 'CLAIMED', owner_node = ?, claim_token = ?, claimed_at = ? " +
+                            "WHERE message_id = ? AND status = 'PENDING'",
+                    claims);
+        } catch (PessimisticLockingFailureException e) {
+            // La base deshace el lote entero: cuenta como una carrera perdida
+            return List.of();
+        }
+
+        return jdbcTemplate.query(
+                "SELECT payload, retry_count FROM scheduled_messages WHERE claim_token = ? ORDER BY due_at",
+                messageMapper, claimToken);
+    }
+
+    @Override
+    public int releaseExpiredClaims(LocalDateTime claimedBefore) {
+        return jdbcTemplate.update(
+                "UPDATE scheduled_messages SET status = 'PENDING', owner_node = NULL, claim_token = NULL, claimed_at = NULL " +
+                        "WHERE status = 'CLAIMED' AND claimed_at < ?",
+                Timestamp.valueOf(claimedBefore));
+    }
+
+    @Override
+    public void markDispatched(String messageId) {
+        jdbcTemplate.update("UPDATE scheduled_messages SET status = 'DISPATCHED' WHERE message_id = ?", messageId);
+    }
+
+    @Override
+    public void markPendingForRetry(String messageId, int retryCount, LocalDateTime nextAttempt) {
+        jdbcTemplate.update(
+                "UPDATE scheduled_messages SET status = 'PENDING', owner_node = NULL, claim_token = NULL, " +
+                        "claimed_at = NULL, retry_count = ?, due_at = ? WHERE message_id = ?",
+                retryCount, Timestamp.valueOf(nextAttempt), messageId);
+    }
+
+    @Override
+    public void markFailed(String messageId) {
+        jdbcTemplate.update("UPDATE scheduled_messages SET status = 'FAILED' WHERE message_id = ?", messageId);
+    }
+
+    @Override
+    public boolean deletePending(String messageId) {
+        return jdbcTemplate.update(
+                "DELETE FROM scheduled_messages WHERE message_id = ? AND status = 'PENDING'", messageId) > 0;
+    }
+
+    @Override
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM scheduled_messages WHERE status IN ('PENDING', 'CLAIMED')", Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public List<QueueMessage> findPending() {
+        return jdbcTemplate.query(
+                "SELECT payload, retry_count FROM scheduled_messages WHERE status IN ('PENDING', 'CLAIMED') ORDER BY due_at",
+                messageMapper);
+    }
+
+    @Override
+    public List<QueueMessage> findPendingByUser(String userId) {
+        return jdbcTemplate.query(
+                "SELECT payload, retry_count FROM scheduled_messages WHERE status IN ('PENDING', 'CLAIMED') " +
+                        "AND user_id = ? ORDER BY due_at",
+                messageMapper, userId);
+    }
+
+    @Override
+    public List<String> deleteExpired(LocalDateTime dueBefore) {
+        Timestamp threshold = Timestamp.valueOf(dueBefore);
+        List<String> expired = jdbcTemplate.queryForList(
+                "SELECT message_id FROM scheduled_messages WHERE status = 'PENDING' AND due_at < ?",
+                String.class, threshold);
+
+        // Los pendientes caducados y el histórico ya enviado o fallido
+        jdbcTemplate.update(
+                "DELETE FROM scheduled_messages WHERE due_at < ? AND status IN ('PENDING', 'DISPATCHED', 'FAILED')",
+                threshold);
+        return expired;
+    }
+
+    @Override
+    public void heartbeat(String nodeId, LocalDateTime now) {
+        jdbcTemplate.update("MERGE INTO scheduler_nodes (node_id, heartbeat_at) KEY (node_id) VALUES (?, ?)",
+                nodeId, Timestamp.valueOf(now));
+    }
+
+    @Override
+    public List<String> findLiveNodes(LocalDateTime since) {
+        return jdbcTemplate.queryForList(
+                "SELECT node_id FROM scheduler_nodes WHERE heartbeat_at >= ? ORDER BY node_id",
+                String.class, Timestamp.valueOf(since));
+    }
+
+    private String toJson(QueueMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("No se pudo serializar el mensaje programado: " + message.getId(), e);
+        }
+    }
+
+    private QueueMessage fromJson(String payload) {
+        try {
+            return objectMapper.readValue(payload, QueueMessage.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Mensaje programado corrupto: " + e.getMessage(), e);
+        }
+    }
+}
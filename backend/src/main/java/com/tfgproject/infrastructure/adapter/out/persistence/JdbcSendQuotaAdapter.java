@@ -0,0 +1,106 @@
+package com.tfgproject.infrastructure.adapter.out.persistence;
+
+import com.tfgproject.domain.port.out.SendQuotaRepositoryPort;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Cuotas de envío compartidas en la base H2 (modo servidor) que ya usan todos los nodos.
+ * Las reservas se hacen con UPDATE condicionales para que sean atómicas entre nodos.
+ */
+@Component
+public class JdbcSendQuotaAdapter implements SendQuotaRepositoryPort {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void initSchema() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS send_rate_nodes (" +
+                "provider VARCHAR(100) NOT NULL, " +
+                "node_id VARCHAR(100) NOT NULL, " +
+                "heartbeat_at TIMESTAMP NOT NULL, " +
+                "PRIMARY KEY (provider, node_id))");
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS send_daily_usage (" +
+                "provider VARCHAR(100) NOT NULL, " +
+                "usage_day DATE NOT NULL, " +
+                "used BIGINT NOT NULL, " +
+                "PRIMARY KEY (provider, usage_day))");
+    }
+
+    @Override
+    public void heartbeat(String provider, String nodeId, Instant now) {
+        jdbcTemplate.update(
+                "MERGE INTO send_rate_nodes (provider, node_id, heartbeat_at) KEY (provider, node_id) VALUES (?, ?, ?)",
+                provider, nodeId, Timestamp.from(now));
+    }
+
+    @Override
+    public List<String> findLiveNodes(String provider, Instant since) {
+        return jdbcTemplate.queryForList(
+                "SELECT node_id FROM send_rate_nodes WHERE provider = ? AND heartbeat_at >= ? ORDER BY node_id",
+                String.class, provider, Timestamp.from(since));
+    }
+
+    @Override
+    public void removeNode(String provider, String nodeId) {
+        jdbcTemplate.update("DELETE FROM send_rate_nodes WHERE provider = ? AND node_id = ?", provider, nodeId);
+    }
+
+    @Override
+    public void removeStaleNodes(Instant before) {
+        jdbcTemplate.update("DELETE FROM send_rate_nodes WHERE heartbeat_at < ?", Timestamp.from(before));
+    }
+
+    @Override
+    public long claimDailyBudget(String provider, LocalDate day, long requested, long dailyLimit) {
+        Date usageDay = Date.valueOf(day);
+        ensureDailyRow(provider, usageDay);
+
+        // Reserva completa si cabe; si no, lo que quede del día
+        for (int attempt = 0; attempt < 3; attempt++) {
+            int updated = jdbcTemplate.update(
+                    "UPDATE send_daily_usage SET used = used + ? WHERE provider = ? AND usage_day = ? AND used + ? <= ?",
+                    requested, provider, usageDay, requested, dailyLimit);
+            if (updated == 1) {
+                return requested;
+            }
+
+            Long used = jdbcTemplate.queryForObject(
+                    "SELECT used FROM send_daily_usage WHERE provider = ? AND usage_day = ?",
+                    Long.class, provider, usageDay);
+            long remaining = dailyLimit - (used != null ? used : 0);
+            if (remaining <= 0) {
+                return 0;
+            }
+            requested = Math.min(requested, remaining);
+        }
+        // Otros nodos ganaron las tres carreras, pero el día no está agotado
+        return -1;
+    }
+
+    private void ensureDailyRow(String provider, Date usageDay) {
+        Integer rows = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM send_daily_usage WHERE provider = ? AND usage_day = ?",
+                Integer.class, provider, usageDay);
+        if (rows != null && rows > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO send_daily_usage (provider, usage_day, used) VALUES (?, ?, 0)",
+                    provider, usageDay);
+        } catch (DuplicateKeyException e) {
+            // Otro nodo la creó a la vez
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.tfgproject.domain.model.MessageStatus;
 import com.tfgproject.domain.model.MessageStatusEnum;
 import com.tfgproject.domain.port.out.MessageStatusRepositoryPort;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -16,6 +18,10 @@ public class MessageStatusAdapter implements MessageStatusRepositoryPort {
     @Autowired
     private MessageStatusRepository repository;
 
+    // La clave IDENTITY impide a Hibernate agrupar los INSERT: los lotes van por JDBC
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Override
     public MessageStatus save(MessageStatus messageStatus) {
         return repository.save(messageStatus);
@@ -55,4 +61,41 @@ public class MessageStatusAdapter implements MessageStatusRepositoryPort {
     public long countByStatus(MessageStatusEnum status) {
         return repository.countByStatus(status);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void insertAll(List<MessageStatus> statuses) {
+        if (statuses.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO message_status (message_id, status, timestamp, error_message, recipient, type, subject, content, user_id) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                statuses, statuses.size(), (ps, status) -> {
+                    ps.setString(1, status.getMessageId());
+                    ps.setString(2, status.getStatus().name());
+                    ps.setTimestamp(3, Timestamp.valueOf(status.getTimestamp()));
+                    ps.setString(4, status.getErrorMessage());
+                    ps.setString(5, status.getRecipient());
+                    ps.setString(6, status.getType());
+                    ps.setString(7, status.getSubject());
+                    ps.setString(8, status.getContent());
+                    ps.setString(9, status.getUserId());
+                });
+    }
+
+    @Override
+    public void updateStatuses(List<String> messageIds, MessageStatusEnum status, String errorMessage) {
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "UPDATE message_status SET status = ?, error_message = ?, timestamp = ? WHERE message_id = ?",
+                messageIds, messageIds.size(), (ps, messageId) -> {
+                    ps.setString(1, status.name());
+                    ps.setString(2, errorMessage);
+                    ps.setTimestamp(3, now);
+                    ps.setString(4, messageId);
+                });
+    }
+}
@@ -1,10 +1,12 @@
 package com.tfgproject.infrastructure.adapter.out.sms;
 
 import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.DirectSendService;
 import com.tfgproject.application.command.SendSmsCommand;
 import com.tfgproject.domain.port.out.SmsServicePort;
+import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.shared.model.SmsMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -13,16 +15,30 @@ public class SmsServiceAdapter implements SmsServicePort {
     @Autowired
     private AsyncMessagePublisher messagePublisher;
 
-    @Value("${app.messaging.async:true}")
-    private boolean useAsync;
+    @Autowired
+    private DirectSendService directSendService;
 
     @Override
     public boolean sendSms(SendSmsCommand command) {
         System.out.println("🔍 ADAPTER: SmsServiceAdapter.sendSms() - Modo: " +
-                (useAsync ? "ASYNC (RabbitMQ)" : "SYNC"));
+                (command.isDirect() ? "DIRECTO (cola de respaldo)" : "ASYNC (RabbitMQ)"));
 
         try {
-            if (useAsync) {
+            if (command.isDirect()) {
+                // === ENVÍO DIRECTO: sin pasar por el broker, con tiempo máximo ===
+                SmsMessage smsMessage = new SmsMessage();
+                smsMessage.setTo(command.getTo());
+                smsMessage.setText(command.getText());
+                smsMessage.setSender(command.getSender());
+
+                DirectSendService.Outcome outcome = directSendService.sendSms(
+                        smsMessage, QueueMessage.DEFAULT_USER,
+                        () -> messagePublisher.sendSmsToQueue(command.getTo(), command.getText(), command.getSender()));
+
+                System.out.println("⚡ ADAPTER: Envío directo de SMS: " + outcome);
+                return true; // Enviado, o encolado como respaldo
+
+            } else {
                 // === MODO ASÍNCRONO CON RABBITMQ ===
                 System.out.println("🐰 ADAPTER: Enviando SMS a RabbitMQ cola");
 
@@ -34,13 +50,6 @@ public class SmsServiceAdapter implements SmsServicePort {
 
                 System.out.println("🐰 ADAPTER: SMS encolado con ID: " + messageId);
                 return true; // Retorna true porque se encoló exitosamente
-
-            } else {
-                // === MODO SÍNCRONO (CÓDIGO ORIGINAL) ===
-                System.out.println("🔍 ADAPTER: Enviando SMS directamente (modo síncrono)");
-
-                // Aquí iría tu código original del SmsService
-                return true;
             }
 
         } catch (Exception e) {
@@ -48,4 +57,4 @@ public class SmsServiceAdapter implements SmsServicePort {
             return false;
         }
     }
-}
\ No newline at end of file
+}
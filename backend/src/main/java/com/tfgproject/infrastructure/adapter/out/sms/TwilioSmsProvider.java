@@ -0,0 +1,56 @@
+package com.tfgproject.infrastructure.adapter.out.sms;
+
+import com.tfgproject.infrastructure.service.SendRateGovernor;
+import com.tfgproject.infrastructure.service.SmsProvider;
+import com.tfgproject.shared.model.SmsMessage;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.type.PhoneNumber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Envío de SMS con el cliente estático de Twilio (inicializado en TwilioConfig)
+ */
+@Component
+public class TwilioSmsProvider implements SmsProvider {
+    private static final Logger logger = LoggerFactory.getLogger(TwilioSmsProvider.class);
+
+    public static final String NAME = "twilio";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String quotaKey(SmsMessage message) {
+        // Twilio limita mensajes por segundo por número remitente
+        return SendRateGovernor.smsProvider(message.getSender());
+    }
+
+    @Override
+    public boolean send(SmsMessage smsMessage) {
+        try {
+            logger.info("Enviando SMS a {} desde {}", smsMessage.getTo(), smsMessage.getSender());
+
+            // Formato internacional para España
+            String formattedNumber = smsMessage.getTo();
+            if (!formattedNumber.startsWith("+")) {
+                formattedNumber = "+34" + formattedNumber;
+            }
+
+            Message message = Message.creator(
+                    new PhoneNumber(formattedNumber),
+                    new PhoneNumber(smsMessage.getSender()),
+                    smsMessage.getText()
+            ).create();
+
+            logger.info("SMS enviado, SID: {}", message.getSid());
+            return true;
+        } catch (Exception e) {
+            logger.error("Error enviando SMS: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.tfgproject.infrastructure.adapter.out.storage;
+
+import com.tfgproject.domain.model.StoredAttachment;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import jakarta.activation.FileTypeMap;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Adjuntos en disco (directorio compartido por los nodos) con metadatos y contadores en H2.
+ *
+ * La subida se vuelca al disco por bloques con un buffer directo y se calcula el hash a la vez,
+ * sin cargar el fichero en el heap. Si el contenido ya existía se descarta la copia nueva.
+ */
+@Component
+public class FileSystemAttachmentStore implements AttachmentStorePort {
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemAttachmentStore.class);
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.attachments.dir:./data/attachments}")
+    private String directory = "./data/attachments";
+
+    @Value("${app.attachments.max-bytes:2147483648}")
+    private long maxBytes = 2L * 1024 * 1024 * 1024;
+
+    @Value("${app.attachments.grace-ms:3600000}")
+    private long graceMillis = 3_600_000;
+
+    @Value("${app.attachments.buffer-size:65536}")
+    private int bufferSize = 65536;
+
+    private Path root;
+
+    @PostConstruct
+    public void initSchema() {
+        root = Paths.get(directory).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el directorio de adjuntos " + root, e);
+        }
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS attachments (" +
+                "id VARCHAR(64) PRIMARY KEY, " +
+                "file_name VARCHAR(255), " +
+                "content_type VARCHAR(255), " +
+                "size_bytes BIGINT NOT NULL, " +
+                "ref_count INT NOT NULL DEFAULT 0, " +
+                "created_at TIMESTAMP NOT NULL, " +
+                "last_access_at TIMESTAMP NOT NULL)");
+    }
+
+    @Override
+    public StoredAttachment store(InputStream content, String fileName, String contentType) throws IOException {
+        Path temp = Files.createTempFile(root, "upload-", ".part");
+        MessageDigest digest = sha256();
+        long size = 0;
+
+        try {
+            try (ReadableByteChannel source = Channels.newChannel(content);
+                 FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        size += target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+
+            String id = HexFormat.of().formatHex(digest.digest());
+            Path blob = blobPath(id);
+            Files.createDirectories(blob.getParent());
+            if (Files.exists(blob)) {
+                logger.info("📎 Adjunto {} ya almacenado, se reutiliza ({})", fileName, id);
+            } else {
+                try {
+                    Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // Otro nodo subió el mismo contenido a la vez
+                }
+            }
+
+            upsertMetadata(id, fileName, contentType != null ? contentType : contentTypeOf(fileName), size);
+            evictUnreferenced(maxBytes);
+            return find(id).orElseThrow();
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Optional<StoredAttachment> find(String id) {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        List<StoredAttachment> rows = jdbcTemplate.query(
+                "SELECT * FROM attachments WHERE id = ?",
+                (rs, rowNum) -> StoredAttachment.builder()
+                        .id(rs.getString("id"))
+                        .fileName(rs.getString("file_name"))
+                        .contentType(rs.getString("content_type"))
+                        .sizeBytes(rs.getLong("size_bytes"))
+                        .refCount(rs.getInt("ref_count"))
+                        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                        .lastAccessAt(rs.getTimestamp("last_access_at").toLocalDateTime())
+                        .build(),
+                id);
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public Path resolve(String id) {
+        if (!isValidId(id)) {
+            throw new IllegalArgumentException("Identificador de adjunto no válido: " + id);
+        }
+        return blobPath(id);
+    }
+
+    @Override
+    public FileChannel openChannel(String id) throws IOException {
+        return FileChannel.open(resolve(id), StandardOpenOption.READ);
+    }
+
+    @Override
+    public void retain(String id) {
+        int updated = jdbcTemplate.update(
+                "UPDATE attachments SET ref_count = ref_count + 1, last_access_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now()), id);
+        if (updated == 0) {
+            throw new IllegalArgumentException("Adjunto no encontrado: " + id);
+        }
+    }
+
+    @Override
+    public void release(String id) {
+        jdbcTemplate.update(
+                "UPDATE attachments SET ref_count = ref_count - 1, last_access_at = ? WHERE id = ? AND ref_count > 0",
+                Timestamp.valueOf(LocalDateTime.now()), id);
+        evictUnreferenced(maxBytes);
+    }
+
+    /**
+     * Borra adjuntos sin referencias (los menos usados primero) hasta quedar bajo maxBytes.
+     * Los recién subidos tienen un periodo de gracia para que el mensaje que los usa llegue a retenerlos.
+     */
+    @Override
+    public long evictUnreferenced(long maxBytes) {
+        long total = totalBytes();
+        if (total <= maxBytes) {
+            return 0;
+        }
+
+        Timestamp idleSince = Timestamp.valueOf(LocalDateTime.now().minusNanos(graceMillis * 1_000_000L));
+        List<Map<String, Object>> candidates = jdbcTemplate.queryForList(
+                "SELECT id, size_bytes FROM attachments WHERE ref_count = 0 AND last_access_at < ? " +
+                        "ORDER BY last_access_at",
+                idleSince);
+
+        long freed = 0;
+        for (Map<String, Object> candidate : candidates) {
+            if (total - freed <= maxBytes) {
+                break;
+            }
+            String id = (String) candidate.get("id");
+            // Condicional: si alguien lo retuvo o lo volvió a subir entretanto, no se toca
+            int deleted = jdbcTemplate.update(
+                    "DELETE FROM attachments WHERE id = ? AND ref_count = 0 AND last_access_at < ?", id, idleSince);
+            if (deleted == 1) {
+                try {
+                    Files.deleteIfExists(blobPath(id));
+                } catch (IOException e) {
+                    logger.warn("⚠️ No se pudo borrar el adjunto {}: {}", id, e.getMessage());
+                }
+                freed += ((Number) candidate.get("size_bytes")).longValue();
+            }
+        }
+
+        if (freed > 0) {
+            logger.info("🧹 Adjuntos expulsados: {} bytes liberados", freed);
+        }
+        return freed;
+    }
+
+    @Override
+    public long totalBytes() {
+        Long total = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(size_bytes), 0) FROM attachments", Long.class);
+        return total != null ? total : 0;
+    }
+
+    // === INTERNOS ===
+
+    private void upsertMetadata(String id, String fileName, String contentType, long size) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int updated = jdbcTemplate.update("UPDATE attachments SET last_access_at = ? WHERE id = ?", now, id);
+        if (updated > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(
+                    "INSERT INTO attachments (id, file_name, content_type, size_bytes, ref_count, created_at, last_access_at) " +
+                            "VALUES (?, ?, ?, ?, 0, ?, ?)",
+                    id, fileName, contentType, size, now, now);
+        } catch (DuplicateKeyException e) {
+            // Insertado por otro nodo a la vez
+        }
+    }
+
+    private Path blobPath(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private static boolean isValidId(String id) {
+        return id != null && ID_PATTERN.matcher(id).matches();
+    }
+
+    private static String contentTypeOf(String fileName) {
+        return fileName != null ? FileTypeMap.getDefaultFileTypeMap().getContentType(fileName) : "application/octet-stream";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
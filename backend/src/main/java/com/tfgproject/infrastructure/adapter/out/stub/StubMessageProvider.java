@@ -0,0 +1,71 @@
+package com.tfgproject.infrastructure.adapter.out.stub;
+
+import com.tfgproject.infrastructure.service.MessageProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proveedor local que no envía nada: simula latencia y fallos.
+ * Sirve para pruebas de carga y para tests del router sin Gmail ni Twilio.
+ */
+public abstract class StubMessageProvider<M> implements MessageProvider<M> {
+    private static final Logger logger = LoggerFactory.getLogger(StubMessageProvider.class);
+
+    public static final String NAME = "stub";
+
+    private final String name;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile double failureRate;
+
+    protected StubMessageProvider(String name, long latencyMillis, double failureRate) {
+        this.name = name;
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String quotaKey(M message) {
+        return null;
+    }
+
+    @Override
+    public boolean send(M message) throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failed.incrementAndGet();
+            return false;
+        }
+        sent.incrementAndGet();
+        logger.debug("🧪 Stub: envío simulado {}", message);
+        return true;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+}
@@ -0,0 +1,17 @@
+package com.tfgproject.infrastructure.adapter.out.stub;
+
+import com.tfgproject.infrastructure.service.SmsProvider;
+import com.tfgproject.shared.model.SmsMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.providers.stub.enabled", havingValue = "true")
+public class StubSmsProvider extends StubMessageProvider<SmsMessage> implements SmsProvider {
+
+    public StubSmsProvider(@Value("${app.providers.stub.latency-ms:50}") long latencyMillis,
+                           @Value("${app.providers.stub.failure-rate:0}") double failureRate) {
+        super(NAME, latencyMillis, failureRate);
+    }
+}
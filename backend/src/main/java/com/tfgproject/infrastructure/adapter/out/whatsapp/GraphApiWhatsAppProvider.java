@@ -0,0 +1,107 @@
+package com.tfgproject.infrastructure.adapter.out.whatsapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.tfgproject.infrastructure.service.SendRateGovernor;
+import com.tfgproject.infrastructure.service.WhatsAppProvider;
+import com.tfgproject.shared.model.WhatsAppMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Envío de WhatsApp con la Cloud API de Meta: POST /{version}/{phone-number-id}/messages
+ */
+@Component
+public class GraphApiWhatsAppProvider implements WhatsAppProvider {
+    private static final Logger logger = LoggerFactory.getLogger(GraphApiWhatsAppProvider.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static final String NAME = "graph";
+
+    private final String messagesUrl;
+    private final String phoneNumberId;
+    private final String accessToken;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    public GraphApiWhatsAppProvider(@Value("${app.whatsapp.graph-url:https://graph.facebook.com}") String graphUrl,
+                                    @Value("${app.whatsapp.api-version:v21.0}") String apiVersion,
+                                    @Value("${app.whatsapp.phone-number-id:}") String phoneNumberId,
+                                    @Value("${app.whatsapp.access-token:}") String accessToken,
+                                    @Value("${app.whatsapp.timeout-ms:10000}") long timeoutMillis) {
+        this.messagesUrl = graphUrl.replaceAll("/+$", "") + "/" + apiVersion + "/" + phoneNumberId + "/messages";
+        this.phoneNumberId = phoneNumberId;
+        this.accessToken = accessToken;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String quotaKey(WhatsAppMessage message) {
+        // Meta limita el ritmo por número de empresa remitente
+        return SendRateGovernor.whatsappProvider(phoneNumberId);
+    }
+
+    @Override
+    public boolean send(WhatsAppMessage message) {
+        if (phoneNumberId.isEmpty() || accessToken.isEmpty()) {
+            logger.warn("⚠️ WhatsApp sin configurar (app.whatsapp.phone-number-id / access-token)");
+            return false;
+        }
+
+        try {
+            ObjectNode body = JSON.createObjectNode();
+            body.put("messaging_product", "whatsapp");
+            body.put("recipient_type", "individual");
+            body.put("to", normalizeNumber(message.getTo()));
+            body.put("type", "text");
+            body.putObject("text").put("preview_url", false).put("body", message.getText());
+
+            HttpRequest request = HttpRequest.newBuilder(URI.create(messagesUrl))
+                    .timeout(timeout)
+                    .header("Authorization", "Bearer " + accessToken)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body), StandardCharsets.UTF_8))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+            if (response.statusCode() / 100 != 2) {
+                logger.error("Error enviando WhatsApp a {}: HTTP {} {}", message.getTo(), response.statusCode(), response.body());
+                return false;
+            }
+
+            JsonNode messages = JSON.readTree(response.body()).path("messages");
+            logger.info("WhatsApp enviado, id: {}", messages.path(0).path("id").asText(null));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.error("Error enviando WhatsApp: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * La API espera solo dígitos con prefijo de país; sin prefijo se asume España, como en SMS
+     */
+    public static String normalizeNumber(String number) {
+        String digits = number.replaceAll("[^0-9]", "");
+        return digits.length() == 9 ? "34" + digits : digits;
+    }
+}
@@ -0,0 +1,35 @@
+package com.tfgproject.infrastructure.adapter.out.whatsapp;
+
+import com.tfgproject.application.command.SendWhatsAppCommand;
+import com.tfgproject.domain.port.out.WhatsAppServicePort;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.shared.model.QueueMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class WhatsAppServiceAdapter implements WhatsAppServicePort {
+    private static final Logger logger = LoggerFactory.getLogger(WhatsAppServiceAdapter.class);
+
+    @Autowired
+    private AsyncMessagePublisher messagePublisher;
+
+    @Override
+    public boolean sendWhatsApp(SendWhatsAppCommand command) {
+        try {
+            // Siempre por la cola: el consumidor aplica el límite por número y agrupa por lotes
+            String messageId = messagePublisher.sendWhatsAppToQueue(
+                    command.getTo(),
+                    command.getText(),
+                    QueueMessage.DEFAULT_USER
+            );
+            logger.info("🐰 WhatsApp encolado con ID: {}", messageId);
+            return true;
+        } catch (Exception e) {
+            logger.error("❌ Error encolando WhatsApp: {}", e.getMessage());
+            return false;
+        }
+    }
+}
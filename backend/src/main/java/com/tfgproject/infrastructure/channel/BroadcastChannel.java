@@ -0,0 +1,44 @@
+package com.tfgproject.infrastructure.channel;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Difusión: va al exchange fanout y la consumen los listeners de email y SMS, así que no tiene
+ * listener ni proveedores propios.
+ */
+@Component
+public class BroadcastChannel implements MessageChannel {
+
+    @Override
+    public ChannelType getType() {
+        return ChannelType.BROADCAST;
+    }
+
+    @Override
+    public String getExchange() {
+        return RabbitMQConfig.FANOUT_EXCHANGE;
+    }
+
+    @Override
+    public String getRoutingKey() {
+        // El fanout no usa clave de enrutado
+        return "";
+    }
+
+    @Override
+    public QueueMessage toQueueMessage(MessageRequest request) {
+        List<String> recipients = request.getRecipients() != null && !request.getRecipients().isEmpty()
+                ? request.getRecipients() : List.of(request.getTo());
+        QueueMessage message = QueueMessage.forBroadcast(recipients, request.getContent(), request.getSubject());
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setUserId(request.getUserId());
+        return message;
+    }
+}
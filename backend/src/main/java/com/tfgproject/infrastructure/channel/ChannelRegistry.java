@@ -0,0 +1,81 @@
+package com.tfgproject.infrastructure.channel;
+
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canales registrados, indexados por tipo: cada envío resuelve su canal con una búsqueda directa
+ * en lugar de recorrer una cadena de if/else por nombre.
+ */
+@Component
+public class ChannelRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ChannelRegistry.class);
+
+    private final Map<ChannelType, MessageChannel> channels = new EnumMap<>(ChannelType.class);
+
+    @Autowired(required = false)
+    private ProviderHealthRegistry providerHealth;
+
+    public ChannelRegistry(List<MessageChannel> channels) {
+        for (MessageChannel channel : channels) {
+            MessageChannel previous = this.channels.putIfAbsent(channel.getType(), channel);
+            if (previous != null) {
+                throw new IllegalStateException("Canal " + channel.getType() + " registrado dos veces: "
+                        + previous.getClass().getSimpleName() + " y " + channel.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        // El registro de salud pausa el listener de un canal cuando caen todos sus proveedores
+        if (providerHealth != null) {
+            channels.values().stream()
+                    .filter(channel -> channel.getListenerId() != null)
+                    .forEach(channel -> providerHealth.registerListener(channel.getType().getKey(), channel.getListenerId()));
+        }
+        logger.info("📡 Canales registrados: {}", channels.keySet());
+    }
+
+    public MessageChannel get(ChannelType type) {
+        MessageChannel channel = channels.get(type);
+        if (channel == null) {
+            throw new IllegalArgumentException("Canal no soportado: " + type);
+        }
+        return channel;
+    }
+
+    public boolean supports(ChannelType type) {
+        return channels.containsKey(type);
+    }
+
+    /**
+     * Canal por nombre o clave ("email", "SMS"...)
+     */
+    public MessageChannel get(String channel) {
+        return get(ChannelType.of(channel));
+    }
+
+    /**
+     * Canal que publica y consume el mensaje, según su tipo
+     */
+    public MessageChannel of(QueueMessage message) {
+        return get(message.getType());
+    }
+
+    public Collection<MessageChannel> all() {
+        return Collections.unmodifiableCollection(channels.values());
+    }
+}
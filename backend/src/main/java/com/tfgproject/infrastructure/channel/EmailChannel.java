@@ -0,0 +1,80 @@
+package com.tfgproject.infrastructure.channel;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.domain.model.StoredAttachment;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.EmailService;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class EmailChannel implements MessageChannel {
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private AttachmentStorePort attachmentStore;
+
+    @Override
+    public ChannelType getType() {
+        return ChannelType.EMAIL;
+    }
+
+    @Override
+    public String getRoutingKey() {
+        return RabbitMQConfig.EMAIL_ROUTING_KEY;
+    }
+
+    @Override
+    public String getListenerId() {
+        return RabbitMQConfig.EMAIL_LISTENER_ID;
+    }
+
+    @Override
+    public List<Declarable> getTopology() {
+        List<Declarable> topology = new ArrayList<>(RabbitMQConfig.channelQueues(RabbitMQConfig.EMAIL_QUEUE,
+                RabbitMQConfig.EMAIL_ROUTING_KEY, RabbitMQConfig.EMAIL_DLQ, RabbitMQConfig.EMAIL_DLQ_ROUTING_KEY));
+        // Las difusiones también llegan a esta cola
+        topology.add(RabbitMQConfig.fanoutBinding(RabbitMQConfig.EMAIL_QUEUE));
+        return topology;
+    }
+
+    @Override
+    public QueueMessage toQueueMessage(MessageRequest request) {
+        // En el canal "both" la dirección puede venir aparte del destinatario
+        QueueMessage message = QueueMessage.forEmail(
+                request.getEmail() != null ? request.getEmail() : request.getTo(), request.getSubject(), request.getContent());
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setAttachmentPath(request.getAttachmentPath());
+        message.setHtml(request.isHtml());
+        message.setUserId(request.getUserId());
+
+        if (request.getAttachmentId() != null && !request.getAttachmentId().isEmpty()) {
+            StoredAttachment stored = attachmentStore.find(request.getAttachmentId())
+                    .orElseThrow(() -> new IllegalArgumentException("Adjunto no encontrado: " + request.getAttachmentId()));
+            message.setAttachmentId(stored.getId());
+            message.setAttachmentName(stored.getFileName());
+        }
+        return message;
+    }
+
+    @Override
+    public List<Map<String, Object>> getProviderStats() {
+        return emailService.getProviderStats();
+    }
+
+    @Override
+    public List<String> getProviderIds() {
+        return emailService.getProviderIds();
+    }
+}
@@ -0,0 +1,56 @@
+package com.tfgproject.infrastructure.channel;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.springframework.amqp.core.Declarable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canal de envío enchufable: cada implementación aporta su ruta en RabbitMQ, el listener que
+ * la consume, la conversión de una petición en QueueMessage y los proveedores que envían.
+ *
+ * ChannelRegistry los indexa por ChannelType. Publicador, programador, envío masivo y
+ * controladores solo pasan por el registro, así que un canal nuevo es un bean más.
+ */
+public interface MessageChannel {
+
+    ChannelType getType();
+
+    default String getExchange() {
+        return RabbitMQConfig.DIRECT_EXCHANGE;
+    }
+
+    String getRoutingKey();
+
+    /**
+     * Id del @RabbitListener de su cola, para pausarlo si caen todos sus proveedores (null si no tiene)
+     */
+    default String getListenerId() {
+        return null;
+    }
+
+    /**
+     * Colas y bindings propios (cola de trabajo, DLQ, colas de retardo) que RabbitMQConfig declara
+     * junto a los exchanges comunes. Un canal sin cola propia, como la difusión, no declara nada.
+     */
+    default List<Declarable> getTopology() {
+        return List.of();
+    }
+
+    /**
+     * Mensaje listo para encolar a partir de la petición unificada (IllegalArgumentException si no es válida)
+     */
+    QueueMessage toQueueMessage(MessageRequest request);
+
+    default List<Map<String, Object>> getProviderStats() {
+        return List.of();
+    }
+
+    default List<String> getProviderIds() {
+        return List.of();
+    }
+}
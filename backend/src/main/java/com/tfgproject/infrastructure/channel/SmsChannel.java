@@ -0,0 +1,68 @@
+package com.tfgproject.infrastructure.channel;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.SmsService;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class SmsChannel implements MessageChannel {
+    public static final String DEFAULT_SENDER = "TFG-App";
+
+    @Autowired
+    private SmsService smsService;
+
+    @Override
+    public ChannelType getType() {
+        return ChannelType.SMS;
+    }
+
+    @Override
+    public String getRoutingKey() {
+        return RabbitMQConfig.SMS_ROUTING_KEY;
+    }
+
+    @Override
+    public String getListenerId() {
+        return RabbitMQConfig.SMS_LISTENER_ID;
+    }
+
+    @Override
+    public List<Declarable> getTopology() {
+        List<Declarable> topology = new ArrayList<>(RabbitMQConfig.channelQueues(RabbitMQConfig.SMS_QUEUE,
+                RabbitMQConfig.SMS_ROUTING_KEY, RabbitMQConfig.SMS_DLQ, RabbitMQConfig.SMS_DLQ_ROUTING_KEY));
+        // Las difusiones también llegan a esta cola
+        topology.add(RabbitMQConfig.fanoutBinding(RabbitMQConfig.SMS_QUEUE));
+        return topology;
+    }
+
+    @Override
+    public QueueMessage toQueueMessage(MessageRequest request) {
+        QueueMessage message = QueueMessage.forSms(
+                request.getPhone() != null ? request.getPhone() : request.getTo(),
+                request.getContent(),
+                request.getSender() != null ? request.getSender() : DEFAULT_SENDER);
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setUserId(request.getUserId());
+        return message;
+    }
+
+    @Override
+    public List<Map<String, Object>> getProviderStats() {
+        return smsService.getProviderStats();
+    }
+
+    @Override
+    public List<String> getProviderIds() {
+        return smsService.getProviderIds();
+    }
+}
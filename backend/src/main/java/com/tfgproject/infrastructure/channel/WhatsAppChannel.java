@@ -0,0 +1,70 @@
+package com.tfgproject.infrastructure.channel;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.WhatsAppService;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class WhatsAppChannel implements MessageChannel {
+
+    @Autowired
+    private WhatsAppService whatsAppService;
+
+    @Override
+    public ChannelType getType() {
+        return ChannelType.WHATSAPP;
+    }
+
+    @Override
+    public String getRoutingKey() {
+        return RabbitMQConfig.WHATSAPP_ROUTING_KEY;
+    }
+
+    @Override
+    public String getListenerId() {
+        return RabbitMQConfig.WHATSAPP_LISTENER_ID;
+    }
+
+    @Override
+    public List<Declarable> getTopology() {
+        List<Declarable> topology = new ArrayList<>(RabbitMQConfig.channelQueues(RabbitMQConfig.WHATSAPP_QUEUE,
+                RabbitMQConfig.WHATSAPP_ROUTING_KEY, RabbitMQConfig.WHATSAPP_DLQ, RabbitMQConfig.WHATSAPP_DLQ_ROUTING_KEY));
+        // Sin consumidor: al caducar, el mensaje vuelve a la cola de WhatsApp
+        topology.add(QueueBuilder.durable(RabbitMQConfig.WHATSAPP_DELAY_QUEUE)
+                .withArgument("x-message-ttl", RabbitMQConfig.WHATSAPP_DELAY_MS)
+                .withArgument("x-dead-letter-exchange", RabbitMQConfig.DIRECT_EXCHANGE)
+                .withArgument("x-dead-letter-routing-key", RabbitMQConfig.WHATSAPP_ROUTING_KEY)
+                .build());
+        return topology;
+    }
+
+    @Override
+    public QueueMessage toQueueMessage(MessageRequest request) {
+        QueueMessage message = QueueMessage.forWhatsApp(
+                request.getPhone() != null ? request.getPhone() : request.getTo(), request.getContent());
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setUserId(request.getUserId());
+        return message;
+    }
+
+    @Override
+    public List<Map<String, Object>> getProviderStats() {
+        return whatsAppService.getProviderStats();
+    }
+
+    @Override
+    public List<String> getProviderIds() {
+        return whatsAppService.getProviderIds();
+    }
+}
@@ -1,5 +1,8 @@
 package com.tfgproject.infrastructure.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -8,30 +11,53 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
-@EnableAsync
+@EnableAsync(proxyTargetClass = true)
 @EnableScheduling
 public class AsyncConfig {
 
     @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
+    public Executor taskExecutor(ObjectProvider<MeterRegistry> meterRegistry) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("AsyncTask-");
+        executor.setRejectedExecutionHandler(countingRejections("taskExecutor", meterRegistry.getIfAvailable()));
         executor.initialize();
         return executor;
     }
 
     @Bean(name = "taskScheduler")
-    public ThreadPoolTaskScheduler taskScheduler() {
+    public ThreadPoolTaskScheduler taskScheduler(ObjectProvider<MeterRegistry> meterRegistry) {
         ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
         scheduler.setPoolSize(5);
         scheduler.setThreadNamePrefix("ScheduledTask-");
         scheduler.setWaitForTasksToCompleteOnShutdown(true);
         scheduler.setAwaitTerminationSeconds(30);
+        scheduler.setRejectedExecutionHandler(countingRejections("taskScheduler", meterRegistry.getIfAvailable()));
         return scheduler;
     }
-}
\ No newline at end of file
+
+    /**
+     * Mantiene el comportamiento por defecto (AbortPolicy) pero cuenta cada rechazo
+     * en messaging.executor.rejections{name}
+     */
+    static RejectedExecutionHandler countingRejections(String name, MeterRegistry registry) {
+        RejectedExecutionHandler abort = new ThreadPoolExecutor.AbortPolicy();
+        if (registry == null) {
+            return abort;
+        }
+        Counter rejections = Counter.builder("messaging.executor.rejections")
+                .tag("name", name)
+                .description("Tareas rechazadas por pool lleno")
+                .register(registry);
+        return (task, pool) -> {
+            rejections.increment();
+            abort.rejectedExecution(task, pool);
+        };
+    }
+}
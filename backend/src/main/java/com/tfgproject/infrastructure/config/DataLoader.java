@@ -12,6 +12,10 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
 @Component
 @Profile({"dev", "!test"}) // ✅ Solo ejecutar en perfil 'dev', NO en tests
 public class DataLoader implements CommandLineRunner {
@@ -29,7 +33,7 @@ public class DataLoader implements CommandLineRunner {
 
         try {
             // Verificar si ya existen datos
-            if (!contactService.getAllContacts().isEmpty()) {
+            if (contactService.hasContacts()) {
                 logger.info("ℹ️ Ya existen datos en la base de datos, saltando carga inicial");
                 return;
             }
@@ -58,7 +62,7 @@ public class DataLoader implements CommandLineRunner {
         Category equipoDesarrollo = createCategoryIfNotExists("Equipo Desarrollo", "Desarrolladores del equipo", trabajo.getId());
         Category gerencia = createCategoryIfNotExists("Gerencia", "Personal gerencial", trabajo.getId());
 
-        logger.info("✅ Categorías creadas: {}", categoryService.getAllCategories().size());
+        logger.info("✅ Categorías creadas: {}", categoryService.countCategories());
 
         // === CREAR CONTACTOS ===
         logger.info("👥 Creando contactos...");
@@ -82,7 +86,7 @@ public class DataLoader implements CommandLineRunner {
         Contact alberto = createContactIfNotExists("Alberto Vega", "rybantfg+alberto@gmail.com", null, null, "Amigo de la universidad");
         Contact sofia = createContactIfNotExists("Sofía Morales", "bax6351+sofia@gmail.com", null, null, "Amiga de la infancia");
 
-        logger.info("✅ Contactos creados: {}", contactService.getAllContacts().size());
+        logger.info("✅ Contactos creados: {}", contactService.countContacts());
 
         // === ASIGNAR CONTACTOS A CATEGORÍAS ===
         logger.info("🏷️ Asignando contactos a categorías...");
@@ -121,8 +125,8 @@ public class DataLoader implements CommandLineRunner {
 
         // === MOSTRAR RESUMEN ===
         logger.info("📊 === RESUMEN DE DATOS CARGADOS (DEV) ===");
-        logger.info("📁 Categorías totales: {}", categoryService.getAllCategories().size());
-        logger.info("👥 Contactos totales: {}", contactService.getAllContacts().size());
+        logger.info("📁 Categorías totales: {}", categoryService.countCategories());
+        logger.info("👥 Contactos totales: {}", contactService.countContacts());
 
         // Mostrar estadísticas de cada categoría principal
         logger.info("📈 Estadísticas por categoría:");
@@ -159,8 +163,11 @@ public class DataLoader implements CommandLineRunner {
         } catch (IllegalArgumentException e) {
             logger.warn("⚠️ Contacto ya existe: {}", email != null ? email : phone);
             // Buscar contacto existente por email o teléfono
-            return contactService.searchContacts(email != null ? email : phone).stream()
-                    .findFirst()
+            String key = email != null ? email : phone;
+            Map<String, Contact> existing = email != null
+                    ? contactService.getContactsByEmails(List.of(key))
+                    : contactService.getContactsByPhones(List.of(key));
+            return Optional.ofNullable(existing.get(key))
                     .orElseThrow(() -> new RuntimeException("No se pudo crear ni encontrar contacto: " + name));
         }
     }
@@ -0,0 +1,151 @@
+package com.tfgproject.infrastructure.config;
+
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.MessageStatusStream;
+import com.tfgproject.infrastructure.service.ProviderCircuitBreaker;
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.QueueStatusPoller;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Métricas propias de la mensajería expuestas en /actuator/prometheus.
+ *
+ * Los pools de hilos (executor.*), el pool de conexiones H2 (hikaricp.*) y la conexión a
+ * RabbitMQ (rabbitmq.*) ya los instrumenta Spring Boot; aquí se añade lo específico de la app.
+ * Los gauges de colas leen la muestra en caché de QueueStatusPoller, no el broker.
+ */
+@Component
+public class MessagingMetrics implements MeterBinder {
+    @Autowired
+    private QueueStatusPoller queueStatusPoller;
+
+    @Autowired
+    private ScheduledMessageRepositoryPort scheduledMessageRepository;
+
+    @Autowired
+    private FairShareDispatcher fairShareDispatcher;
+
+    @Autowired
+    private MessageStatusStream messageStatusStream;
+
+    @Autowired
+    private AttachmentStorePort attachmentStore;
+
+    @Autowired
+    private ProviderHealthRegistry providerHealthRegistry;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    @Autowired
+    @Qualifier("taskScheduler")
+    private ThreadPoolTaskScheduler taskScheduler;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // === COLAS (última muestra del poller, incluidas las DLQ) ===
+        for (String queue : queueStatusPoller.getMonitoredQueues().keySet()) {
+            gauge(registry, "messaging.queue.messages", "Mensajes en la cola", queue,
+                    name -> queueStatusPoller.getQueue(name)
+                            .map(info -> (double) info.getMessageCount()).orElse(Double.NaN));
+            gauge(registry, "messaging.queue.consumers", "Consumidores conectados a la cola", queue,
+                    name -> queueStatusPoller.getQueue(name)
+                            .map(info -> (double) info.getConsumerCount()).orElse(Double.NaN));
+        }
+
+        // === POOLS: utilización (activos / máximo) ===
+        if (taskExecutor instanceof ThreadPoolTaskExecutor executor) {
+            Gauge.builder("messaging.executor.utilization", executor,
+                            pool -> (double) pool.getActiveCount() / Math.max(1, pool.getMaxPoolSize()))
+                    .tag("name", "taskExecutor")
+                    .description("Hilos activos sobre el máximo del pool")
+                    .register(registry);
+        }
+        Gauge.builder("messaging.executor.utilization", taskScheduler,
+                        pool -> (double) pool.getActiveCount() / Math.max(1, pool.getPoolSize()))
+                .tag("name", "taskScheduler")
+                .description("Hilos activos sobre el máximo del pool")
+                .register(registry);
+
+        // === PROVEEDORES: estado del circuito (0 cerrado, 1 semiabierto, 2 abierto) y límite adaptativo ===
+        List<String> providers = new ArrayList<>();
+        channelRegistry.all().forEach(channel -> providers.addAll(channel.getProviderIds()));
+        for (String provider : providers) {
+            Gauge.builder("messaging.provider.circuit.state", providerHealthRegistry,
+                            health -> circuitValue(health.getState(provider)))
+                    .tag("provider", provider)
+                    .description("Estado del circuit breaker del proveedor")
+                    .register(registry);
+            Gauge.builder("messaging.provider.concurrency.limit", providerHealthRegistry,
+                            health -> health.getConcurrencyLimit(provider))
+                    .tag("provider", provider)
+                    .description("Límite de concurrencia adaptativo del proveedor")
+                    .register(registry);
+        }
+
+        // === ESTADO INTERNO ===
+        Gauge.builder("messaging.scheduled.pending", scheduledMessageRepository, repository -> safe(repository::countPending))
+                .description("Mensajes programados pendientes o reclamados")
+                .register(registry);
+        Gauge.builder("messaging.fairshare.queued", fairShareDispatcher, FairShareDispatcher::getTotalQueued)
+                .description("Envíos en las colas virtuales por usuario")
+                .register(registry);
+        Gauge.builder("messaging.fairshare.inflight", fairShareDispatcher, FairShareDispatcher::getTotalInFlight)
+                .description("Envíos en curso hacia los proveedores")
+                .register(registry);
+        Gauge.builder("messaging.status.stream.subscribers", messageStatusStream, MessageStatusStream::getSubscriberCount)
+                .description("Clientes conectados al feed SSE de estados")
+                .register(registry);
+        Gauge.builder("messaging.attachments.bytes", attachmentStore, store -> safe(store::totalBytes))
+                .baseUnit("bytes")
+                .description("Tamaño del almacén de adjuntos")
+                .register(registry);
+    }
+
+    private void gauge(MeterRegistry registry, String name, String description, String queue,
+                       ToDoubleFunction<String> value) {
+        Gauge.builder(name, queue, value)
+                .tag("queue", queue)
+                .description(description)
+                .register(registry);
+    }
+
+    private static double circuitValue(ProviderCircuitBreaker.State state) {
+        switch (state) {
+            case OPEN:
+                return 2;
+            case HALF_OPEN:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private static double safe(LongSupplier supplier) {
+        try {
+            return supplier.getAsLong();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.tfgproject.infrastructure.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * Identificador de esta instancia dentro del clúster (cuotas compartidas, planificador)
+ */
+@Component
+public class NodeIdentity {
+
+    @Value("${app.node-id:}")
+    private String configuredNodeId;
+
+    private volatile String nodeId;
+
+    public String getNodeId() {
+        if (nodeId == null) {
+            nodeId = configuredNodeId != null && !configuredNodeId.isBlank()
+                    ? configuredNodeId
+                    : ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        return nodeId;
+    }
+}
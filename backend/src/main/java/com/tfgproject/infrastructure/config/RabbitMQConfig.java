@@ -1,12 +1,19 @@
 package com.tfgproject.infrastructure.config;
 
+import com.tfgproject.infrastructure.channel.MessageChannel;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -14,38 +21,89 @@ public class RabbitMQConfig {
     public static final String EMAIL_QUEUE = "email.queue";
     public static final String SMS_QUEUE = "sms.queue";
     public static final String SCHEDULED_QUEUE = "scheduled.queue";
+    public static final String EMAIL_DLQ = "email.dlq";
+    public static final String SMS_DLQ = "sms.dlq";
+    public static final String WHATSAPP_QUEUE = "whatsapp.queue";
+    public static final String WHATSAPP_DLQ = "whatsapp.dlq";
+    // Mensajes a un número que ya recibió demasiados seguidos: vuelven a whatsapp.queue al caducar
+    public static final String WHATSAPP_DELAY_QUEUE = "whatsapp.delay";
+    public static final long WHATSAPP_DELAY_MS = 10_000;
+    public static final String WORKFLOW_QUEUE = "workflow.queue";
+
+    // === COLAS DE RETARDO DE LOS FLUJOS DE ENTREGA ===
+    // Sin consumidor: el mensaje caduca a los N ms y vuelve a workflow.queue por el DLX.
+    // Un TTL fijo por cola evita que un plazo largo bloquee a los cortos que llegan detrás
+    public static final long[] WORKFLOW_DELAY_TIERS_MS = {5_000, 60_000, 600_000, 3_600_000};
+    public static final String WORKFLOW_DELAY_QUEUE_PREFIX = "workflow.delay.";
+
+    // === LISTENERS (se pausan cuando el circuito del proveedor se abre) ===
+    public static final String EMAIL_LISTENER_ID = "emailListener";
+    public static final String SMS_LISTENER_ID = "smsListener";
+    public static final String WHATSAPP_LISTENER_ID = "whatsappListener";
+
+    // Factoría de listeners que entrega los mensajes de WhatsApp por lotes
+    public static final String WHATSAPP_BATCH_FACTORY = "whatsappBatchContainerFactory";
 
     // === EXCHANGES ===
     public static final String DIRECT_EXCHANGE = "messaging.direct";
     public static final String FANOUT_EXCHANGE = "messaging.fanout";
+    public static final String DEAD_LETTER_EXCHANGE = "dlx.exchange";
 
     // === ROUTING KEYS ===
     public static final String EMAIL_ROUTING_KEY = "message.email";
     public static final String SMS_ROUTING_KEY = "message.sms";
+    public static final String WHATSAPP_ROUTING_KEY = "message.whatsapp";
+    public static final String WORKFLOW_ROUTING_KEY = "workflow.event";
+    public static final String EMAIL_DLQ_ROUTING_KEY = "dlx.email";
+    public static final String SMS_DLQ_ROUTING_KEY = "dlx.sms";
+    public static final String WHATSAPP_DLQ_ROUTING_KEY = "dlx.whatsapp";
 
     // === CREAR COLAS ===
+    // Las de email, SMS y WhatsApp las declara cada canal con MessageChannel.getTopology
     @Bean
-    public Queue emailQueue() {
+    public Queue scheduledQueue() {
         return QueueBuilder
-                .durable(EMAIL_QUEUE)
-                .withArgument("x-dead-letter-exchange", "dlx.exchange")
-                .withArgument("x-dead-letter-routing-key", "dlx.email")
+                .durable(SCHEDULED_QUEUE)
                 .build();
     }
 
     @Bean
-    public Queue smsQueue() {
+    public Queue workflowQueue() {
         return QueueBuilder
-                .durable(SMS_QUEUE)
-                .withArgument("x-dead-letter-exchange", "dlx.exchange")
-                .withArgument("x-dead-letter-routing-key", "dlx.sms")
+                .durable(WORKFLOW_QUEUE)
                 .build();
     }
 
     @Bean
-    public Queue scheduledQueue() {
+    public Queue workflowDelay5sQueue() {
+        return workflowDelayQueue(WORKFLOW_DELAY_TIERS_MS[0]);
+    }
+
+    @Bean
+    public Queue workflowDelay1mQueue() {
+        return workflowDelayQueue(WORKFLOW_DELAY_TIERS_MS[1]);
+    }
+
+    @Bean
+    public Queue workflowDelay10mQueue() {
+        return workflowDelayQueue(WORKFLOW_DELAY_TIERS_MS[2]);
+    }
+
+    @Bean
+    public Queue workflowDelay1hQueue() {
+        return workflowDelayQueue(WORKFLOW_DELAY_TIERS_MS[3]);
+    }
+
+    public static String workflowDelayQueueName(long delayMillis) {
+        return WORKFLOW_DELAY_QUEUE_PREFIX + delayMillis + "ms";
+    }
+
+    private Queue workflowDelayQueue(long delayMillis) {
         return QueueBuilder
-                .durable(SCHEDULED_QUEUE)
+                .durable(workflowDelayQueueName(delayMillis))
+                .withArgument("x-message-ttl", delayMillis)
+                .withArgument("x-dead-letter-exchange", DIRECT_EXCHANGE)
+                .withArgument("x-dead-letter-routing-key", WORKFLOW_ROUTING_KEY)
                 .build();
     }
 
@@ -60,36 +118,67 @@ public class RabbitMQConfig {
         return new FanoutExchange(FANOUT_EXCHANGE);
     }
 
-    // === BINDINGS PARA ENVÍO ÚNICO ===
     @Bean
-    public Binding emailBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(directExchange())
-                .with(EMAIL_ROUTING_KEY);
+    public DirectExchange deadLetterExchange() {
+        return new DirectExchange(DEAD_LETTER_EXCHANGE);
     }
 
+    // === BINDINGS DE LOS FLUJOS DE ENTREGA ===
     @Bean
-    public Binding smsBinding() {
+    public Binding workflowBinding() {
         return BindingBuilder
-                .bind(smsQueue())
+                .bind(workflowQueue())
                 .to(directExchange())
-                .with(SMS_ROUTING_KEY);
+                .with(WORKFLOW_ROUTING_KEY);
     }
 
-    // === BINDINGS PARA DIFUSIÓN (FANOUT) ===
-    @Bean
-    public Binding emailFanoutBinding() {
-        return BindingBuilder
-                .bind(emailQueue())
-                .to(fanoutExchange());
+    // === LISTENER POR LOTES (WHATSAPP) ===
+    // Hereda la configuración de spring.rabbitmq.listener.simple; sin reintento del lote entero
+    // porque los fallos se tratan mensaje a mensaje
+    @Bean(name = WHATSAPP_BATCH_FACTORY)
+    public SimpleRabbitListenerContainerFactory whatsappBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            @Value("${app.whatsapp.batch-size:50}") int batchSize,
+            @Value("${app.whatsapp.batch-receive-timeout-ms:200}") long receiveTimeoutMillis) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize * 2);
+        factory.setReceiveTimeout(receiveTimeoutMillis);
+        factory.setAdviceChain();
+        return factory;
     }
 
+    // === TOPOLOGÍA PROPIA DE LOS CANALES ENCHUFABLES ===
     @Bean
-    public Binding smsFanoutBinding() {
-        return BindingBuilder
-                .bind(smsQueue())
-                .to(fanoutExchange());
+    public Declarables channelTopology(List<MessageChannel> channels) {
+        List<Declarable> declarables = new ArrayList<>();
+        channels.forEach(channel -> declarables.addAll(channel.getTopology()));
+        return new Declarables(declarables);
+    }
+
+    /**
+     * Cola de trabajo de un canal en el exchange directo, con su cola de mensajes muertos
+     */
+    public static List<Declarable> channelQueues(String queue, String routingKey,
+                                                 String deadLetterQueue, String deadLetterRoutingKey) {
+        return List.of(
+                QueueBuilder.durable(queue)
+                        .withArgument("x-dead-letter-exchange", DEAD_LETTER_EXCHANGE)
+                        .withArgument("x-dead-letter-routing-key", deadLetterRoutingKey)
+                        .build(),
+                QueueBuilder.durable(deadLetterQueue).build(),
+                new Binding(queue, Binding.DestinationType.QUEUE, DIRECT_EXCHANGE, routingKey, null),
+                new Binding(deadLetterQueue, Binding.DestinationType.QUEUE, DEAD_LETTER_EXCHANGE, deadLetterRoutingKey, null));
+    }
+
+    /**
+     * Binding de una cola al exchange fanout, para que reciba las difusiones
+     */
+    public static Binding fanoutBinding(String queue) {
+        return new Binding(queue, Binding.DestinationType.QUEUE, FANOUT_EXCHANGE, "", null);
     }
 
     // === CONFIGURAR RABBIT TEMPLATE ===
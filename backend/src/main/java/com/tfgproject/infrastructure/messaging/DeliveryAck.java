@@ -0,0 +1,102 @@
+package com.tfgproject.infrastructure.messaging;
+
+import com.rabbitmq.client.Channel;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Confirmación manual de un mensaje de RabbitMQ que se reparte en varios envíos.
+ *
+ * El mensaje sigue sin confirmar en el broker mientras quede algún envío pendiente y se confirma
+ * cuando termina el último. Un envío que el reparto descarta sin empezar (parada o canal en
+ * pausa) vuelve al broker como copia para su destinatario y cuenta como terminado, de modo que
+ * nunca se devuelve el mensaje entero con destinatarios ya enviados.
+ */
+public class DeliveryAck {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryAck.class);
+
+    private final Channel channel;
+    private final long deliveryTag;
+    private final AtomicInteger remaining;
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private final Runnable onAck;
+
+    public DeliveryAck(Channel channel, long deliveryTag, int sends) {
+        this(channel, deliveryTag, sends, null);
+    }
+
+    /**
+     * onAck se ejecuta una vez, al confirmar el mensaje (p. ej. para liberar sus recursos)
+     */
+    public DeliveryAck(Channel channel, long deliveryTag, int sends, Runnable onAck) {
+        this.channel = channel;
+        this.deliveryTag = deliveryTag;
+        this.remaining = new AtomicInteger(sends);
+        this.onAck = onAck;
+    }
+
+    /**
+     * Envío de un destinatario: al ejecutarse envía, y si se descarta devuelve su copia al broker
+     */
+    public Runnable send(Runnable send, Runnable republish) {
+        return new RecipientSend(send, republish);
+    }
+
+    /**
+     * Marca un envío como terminado. Devuelve true si era el último y el mensaje se ha confirmado.
+     */
+    public boolean complete() {
+        return remaining.decrementAndGet() == 0 && ack();
+    }
+
+    /**
+     * Confirma el mensaje aunque queden envíos (p. ej. si falla antes de repartirlos)
+     */
+    public boolean ack() {
+        if (!settled.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception e) {
+            // Con el canal cerrado el broker lo vuelve a entregar
+            logger.warn("⚠️ No se pudo confirmar la entrega {}: {}", deliveryTag, e.getMessage());
+        }
+        if (onAck != null) {
+            onAck.run();
+        }
+        return true;
+    }
+
+    private final class RecipientSend implements FairShareDispatcher.DroppableTask {
+        private final Runnable send;
+        private final Runnable republish;
+
+        RecipientSend(Runnable send, Runnable republish) {
+            this.send = send;
+            this.republish = republish;
+        }
+
+        @Override
+        public void run() {
+            try {
+                send.run();
+            } finally {
+                complete();
+            }
+        }
+
+        @Override
+        public void drop() {
+            try {
+                republish.run();
+            } finally {
+                complete();
+            }
+        }
+    }
+}
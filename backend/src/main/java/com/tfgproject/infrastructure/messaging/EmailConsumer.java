@@ -1,62 +1,204 @@
 package com.tfgproject.infrastructure.messaging;
 
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.service.ContactService;
+import com.tfgproject.domain.service.MessageStatusService;
 import com.tfgproject.infrastructure.config.RabbitMQConfig;
 import com.tfgproject.infrastructure.service.EmailService;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderUnavailableException;
+import com.tfgproject.infrastructure.service.PreparedMimeCache;
 import com.tfgproject.shared.model.EmailMessage;
 import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.infrastructure.template.TemplateEngine;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.rabbitmq.client.Channel;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @Component
 public class EmailConsumer {
     private static final Logger logger = LoggerFactory.getLogger(EmailConsumer.class);
+    private static final String CHANNEL = "EMAIL";
 
     @Autowired
     private EmailService emailService;
 
-    @RabbitListener(queues = RabbitMQConfig.EMAIL_QUEUE)
-    public void processEmailMessage(QueueMessage queueMessage) {
+    @Autowired
+    private FairShareDispatcher fairShareDispatcher;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private MessageStatusService messageStatusService;
+
+    @Autowired
+    private PipelineLatencyRecorder latencyRecorder;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private DeliveryWorkflowEngine workflowEngine;
+
+    @Autowired
+    private PreparedMimeCache preparedMimeCache;
+
+    @Autowired
+    private AttachmentStorePort attachmentStore;
+
+    @RabbitListener(id = RabbitMQConfig.EMAIL_LISTENER_ID, queues = RabbitMQConfig.EMAIL_QUEUE, ackMode = "MANUAL")
+    public void processEmailMessage(QueueMessage queueMessage, Channel channel,
+                                    @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
         logger.info("📧 Procesando email de la cola. ID: {}", queueMessage.getId());
 
+        // Al confirmarse el mensaje ya no queda envío que use el adjunto ni las partes MIME
+        DeliveryAck ack = new DeliveryAck(channel, deliveryTag, queueMessage.getRecipients().size(),
+                () -> releaseResources(queueMessage));
         try {
-            // Convertir QueueMessage a EmailMessage
-            EmailMessage emailMessage = convertToEmailMessage(queueMessage);
+            // La plantilla llega sin expandir: se carga cada contacto una vez y se personaliza al enviar
+            Map<String, Contact> contacts = loadContacts(queueMessage);
 
-            // Procesar cada destinatario
-            for (String recipient : queueMessage.getRecipients()) {
-                logger.info("📤 Enviando email a: {}", recipient);
+            long consumedAt = PipelineLatencyRecorder.nowMicros();
+            latencyRecorder.recordConsumed(CHANNEL, queueMessage, consumedAt);
 
-                emailMessage.setTo(recipient);
-                boolean success = emailService.sendEmail(emailMessage);
+            // Un envío por destinatario en la cola virtual del usuario; el último confirma el mensaje al broker
+            List<Runnable> sends = new ArrayList<>();
+            for (String recipient : queueMessage.getRecipients()) {
+                sends.add(ack.send(
+                        () -> sendToRecipient(queueMessage, recipient, contacts.get(recipient), consumedAt),
+                        () -> requeue(queueMessage, recipient, "reparto detenido")));
+            }
 
-                if (success) {
-                    logger.info("✅ Email enviado exitosamente a: {}", recipient);
-                } else {
-                    logger.error("❌ Error enviando email a: {}", recipient);
-                    handleFailure(queueMessage, recipient);
-                }
+            if (sends.isEmpty()) {
+                ack.ack();
             }
+            fairShareDispatcher.submitAll(queueMessage.getUserId(), CHANNEL, sends);
 
         } catch (Exception e) {
             logger.error("💥 Error procesando mensaje de cola: {}", e.getMessage());
             handleFailure(queueMessage, "unknown");
+            // Ningún envío llegó a repartirse: se confirma ya y se liberan sus recursos
+            ack.ack();
         }
     }
 
-    private EmailMessage convertToEmailMessage(QueueMessage queueMessage) {
+    private void sendToRecipient(QueueMessage queueMessage, String recipient, Contact contact, long consumedAt) {
+        logger.info("📤 Enviando email a: {}", recipient);
+
+        EmailMessage emailMessage = convertToEmailMessage(queueMessage, recipient, contact);
+        emailMessage.setTo(recipient);
+        long sendStart = PipelineLatencyRecorder.nowMicros();
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_DISPATCH_WAIT, sendStart - consumedAt);
+        boolean success;
+        try {
+            success = emailService.sendEmail(emailMessage);
+        } catch (ProviderUnavailableException e) {
+            // No se llegó a enviar: vuelve al broker mientras el proveedor se recupera
+            requeue(queueMessage, recipient, e.getMessage());
+            return;
+        }
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_PROVIDER_SEND, PipelineLatencyRecorder.nowMicros() - sendStart);
+
+        if (success) {
+            logger.info("✅ Email enviado exitosamente a: {}", recipient);
+            updateStatus(queueMessage, recipient, MessageStatusEnum.SENT, null);
+            workflowEngine.report(queueMessage, true);
+        } else {
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, "Error enviando email");
+            logger.error("❌ Error enviando email a: {}", recipient);
+            handleFailure(queueMessage, recipient);
+        }
+    }
+
+    private Map<String, Contact> loadContacts(QueueMessage queueMessage) {
+        if (!templateEngine.needsContact(queueMessage.getSubject(), queueMessage.getContent())) {
+            return Map.of();
+        }
+        return contactService.getContactsByEmails(queueMessage.getRecipients());
+    }
+
+    private EmailMessage convertToEmailMessage(QueueMessage queueMessage, String recipient, Contact contact) {
         EmailMessage emailMessage = new EmailMessage();
-        emailMessage.setSubject(queueMessage.getSubject());
-        emailMessage.setText(queueMessage.getContent());
+        emailMessage.setSubject(templateEngine.render(queueMessage.getSubject(), contact, recipient));
+        emailMessage.setText(templateEngine.render(queueMessage.getContent(), contact, recipient, queueMessage.isHtml()));
         emailMessage.setAttachmentPath(queueMessage.getAttachmentPath());
+        emailMessage.setAttachmentId(queueMessage.getAttachmentId());
+        emailMessage.setAttachmentName(queueMessage.getAttachmentName());
         emailMessage.setHtml(queueMessage.isHtml());
+        emailMessage.setMessageId(queueMessage.getId());
         return emailMessage;
     }
 
+    private void releaseResources(QueueMessage queueMessage) {
+        preparedMimeCache.release(queueMessage.getId());
+        if (queueMessage.getAttachmentId() != null) {
+            try {
+                attachmentStore.release(queueMessage.getAttachmentId());
+            } catch (Exception e) {
+                logger.warn("⚠️ No se pudo liberar el adjunto {}: {}", queueMessage.getAttachmentId(), e.getMessage());
+            }
+        }
+    }
+
+    private void requeue(QueueMessage queueMessage, String recipient, String reason) {
+        QueueMessage retry = queueMessage.forRecipient(recipient);
+        boolean retained = false;
+        try {
+            // La copia reencolada necesita su propia referencia al adjunto
+            if (retry.getAttachmentId() != null) {
+                attachmentStore.retain(retry.getAttachmentId());
+                retained = true;
+            }
+            rabbitTemplate.convertAndSend(RabbitMQConfig.DIRECT_EXCHANGE, RabbitMQConfig.EMAIL_ROUTING_KEY, retry);
+            logger.warn("↩️ Email a {} devuelto a la cola: {}", recipient, reason);
+        } catch (Exception e) {
+            if (retained) {
+                attachmentStore.release(retry.getAttachmentId());
+            }
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, reason);
+            logger.error("❌ No se pudo reencolar el email a {}: {}", recipient, e.getMessage());
+        }
+    }
+
+    private void updateStatus(QueueMessage queueMessage, String recipient, MessageStatusEnum status, String error) {
+        long start = PipelineLatencyRecorder.nowMicros();
+        try {
+            messageStatusService.updateMessageStatus(queueMessage.statusIdFor(recipient), status, error);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo actualizar el estado de {}: {}", queueMessage.getId(), e.getMessage());
+        }
+
+        long end = PipelineLatencyRecorder.nowMicros();
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_STATUS_UPDATE, end - start);
+        Long accepted = queueMessage.getStageTime(PipelineLatencyRecorder.ACCEPTED);
+        if (accepted != null) {
+            latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_END_TO_END, end - accepted);
+        }
+    }
+
     private void handleFailure(QueueMessage queueMessage, String recipient) {
         // Implementar lógica de reintento o envío a Dead Letter Queue
         logger.warn("⚠️ Implementar manejo de fallos para: {}", recipient);
+
+        // Si el mensaje es un paso de un flujo de entrega, se pasa al siguiente canal
+        workflowEngine.report(queueMessage, false);
     }
 }
\ No newline at end of file
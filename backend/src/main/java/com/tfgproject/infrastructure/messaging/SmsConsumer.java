@@ -1,60 +1,168 @@
 package com.tfgproject.infrastructure.messaging;
 
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.service.ContactService;
+import com.tfgproject.domain.service.MessageStatusService;
 import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderUnavailableException;
 import com.tfgproject.infrastructure.service.SmsService;
 import com.tfgproject.shared.model.SmsMessage;
 import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.infrastructure.template.TemplateEngine;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.rabbitmq.client.Channel;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 @Component
 public class SmsConsumer {
     private static final Logger logger = LoggerFactory.getLogger(SmsConsumer.class);
+    private static final String CHANNEL = "SMS";
 
     @Autowired
     private SmsService smsService;
 
-    @RabbitListener(queues = RabbitMQConfig.SMS_QUEUE)
-    public void processSmsMessage(QueueMessage queueMessage) {
+    @Autowired
+    private FairShareDispatcher fairShareDispatcher;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private MessageStatusService messageStatusService;
+
+    @Autowired
+    private PipelineLatencyRecorder latencyRecorder;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private DeliveryWorkflowEngine workflowEngine;
+
+    @RabbitListener(id = RabbitMQConfig.SMS_LISTENER_ID, queues = RabbitMQConfig.SMS_QUEUE, ackMode = "MANUAL")
+    public void processSmsMessage(QueueMessage queueMessage, Channel channel,
+                                  @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) {
         logger.info("📱 Procesando SMS de la cola. ID: {}", queueMessage.getId());
 
+        DeliveryAck ack = new DeliveryAck(channel, deliveryTag, queueMessage.getRecipients().size());
         try {
-            // Convertir QueueMessage a SmsMessage
-            SmsMessage smsMessage = convertToSmsMessage(queueMessage);
+            // La plantilla llega sin expandir: se carga cada contacto una vez y se personaliza al enviar
+            Map<String, Contact> contacts = loadContacts(queueMessage);
 
-            // Procesar cada destinatario
-            for (String recipient : queueMessage.getRecipients()) {
-                logger.info("📤 Enviando SMS a: {}", recipient);
+            long consumedAt = PipelineLatencyRecorder.nowMicros();
+            latencyRecorder.recordConsumed(CHANNEL, queueMessage, consumedAt);
 
-                smsMessage.setTo(recipient);
-                boolean success = smsService.sendSms(smsMessage);
+            // Un envío por destinatario en la cola virtual del usuario; el último confirma el mensaje al broker
+            List<Runnable> sends = new ArrayList<>();
+            for (String recipient : queueMessage.getRecipients()) {
+                sends.add(ack.send(
+                        () -> sendToRecipient(queueMessage, recipient, contacts.get(recipient), consumedAt),
+                        () -> requeue(queueMessage, recipient, "reparto detenido")));
+            }
 
-                if (success) {
-                    logger.info("✅ SMS enviado exitosamente a: {}", recipient);
-                } else {
-                    logger.error("❌ Error enviando SMS a: {}", recipient);
-                    handleFailure(queueMessage, recipient);
-                }
+            if (sends.isEmpty()) {
+                ack.ack();
             }
+            fairShareDispatcher.submitAll(queueMessage.getUserId(), CHANNEL, sends);
 
         } catch (Exception e) {
             logger.error("💥 Error procesando mensaje SMS de cola: {}", e.getMessage());
             handleFailure(queueMessage, "unknown");
+            ack.ack();
         }
     }
 
-    private SmsMessage convertToSmsMessage(QueueMessage queueMessage) {
+    private void sendToRecipient(QueueMessage queueMessage, String recipient, Contact contact, long consumedAt) {
+        logger.info("📤 Enviando SMS a: {}", recipient);
+
+        SmsMessage smsMessage = convertToSmsMessage(queueMessage, recipient, contact);
+        smsMessage.setTo(recipient);
+        long sendStart = PipelineLatencyRecorder.nowMicros();
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_DISPATCH_WAIT, sendStart - consumedAt);
+        boolean success;
+        try {
+            success = smsService.sendSms(smsMessage);
+        } catch (ProviderUnavailableException e) {
+            // No se llegó a enviar: vuelve al broker mientras el proveedor se recupera
+            requeue(queueMessage, recipient, e.getMessage());
+            return;
+        }
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_PROVIDER_SEND, PipelineLatencyRecorder.nowMicros() - sendStart);
+
+        if (success) {
+            logger.info("✅ SMS enviado exitosamente a: {}", recipient);
+            updateStatus(queueMessage, recipient, MessageStatusEnum.SENT, null);
+            workflowEngine.report(queueMessage, true);
+        } else {
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, "Error enviando SMS");
+            logger.error("❌ Error enviando SMS a: {}", recipient);
+            handleFailure(queueMessage, recipient);
+        }
+    }
+
+    private Map<String, Contact> loadContacts(QueueMessage queueMessage) {
+        if (!templateEngine.needsContact(queueMessage.getContent())) {
+            return Map.of();
+        }
+        return contactService.getContactsByPhones(queueMessage.getRecipients());
+    }
+
+    private SmsMessage convertToSmsMessage(QueueMessage queueMessage, String recipient, Contact contact) {
         SmsMessage smsMessage = new SmsMessage();
-        smsMessage.setText(queueMessage.getContent());
+        smsMessage.setText(templateEngine.render(queueMessage.getContent(), contact, recipient));
         smsMessage.setSender(queueMessage.getSender() != null ? queueMessage.getSender() : "TFG-App");
         return smsMessage;
     }
 
+    private void requeue(QueueMessage queueMessage, String recipient, String reason) {
+        QueueMessage retry = queueMessage.forRecipient(recipient);
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.DIRECT_EXCHANGE, RabbitMQConfig.SMS_ROUTING_KEY, retry);
+            logger.warn("↩️ SMS a {} devuelto a la cola: {}", recipient, reason);
+        } catch (Exception e) {
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, reason);
+            logger.error("❌ No se pudo reencolar el SMS a {}: {}", recipient, e.getMessage());
+        }
+    }
+
+    private void updateStatus(QueueMessage queueMessage, String recipient, MessageStatusEnum status, String error) {
+        long start = PipelineLatencyRecorder.nowMicros();
+        try {
+            messageStatusService.updateMessageStatus(queueMessage.statusIdFor(recipient), status, error);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo actualizar el estado de {}: {}", queueMessage.getId(), e.getMessage());
+        }
+
+        long end = PipelineLatencyRecorder.nowMicros();
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_STATUS_UPDATE, end - start);
+        Long accepted = queueMessage.getStageTime(PipelineLatencyRecorder.ACCEPTED);
+        if (accepted != null) {
+            latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_END_TO_END, end - accepted);
+        }
+    }
+
     private void handleFailure(QueueMessage queueMessage, String recipient) {
         // Implementar lógica de reintento o envío a Dead Letter Queue
         logger.warn("⚠️ Implementar manejo de fallos SMS para: {}", recipient);
+
+        // Si el mensaje es un paso de un flujo de entrega, se pasa al siguiente canal
+        workflowEngine.report(queueMessage, false);
     }
 }
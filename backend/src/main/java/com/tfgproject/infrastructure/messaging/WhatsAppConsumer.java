@@ -0,0 +1,214 @@
+package com.tfgproject.infrastructure.messaging;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.service.ContactService;
+import com.tfgproject.domain.service.MessageStatusService;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderUnavailableException;
+import com.tfgproject.infrastructure.service.RecipientRateLimiter;
+import com.tfgproject.infrastructure.service.WhatsAppService;
+import com.tfgproject.infrastructure.template.TemplateEngine;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
+import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.shared.model.WhatsAppMessage;
+import com.rabbitmq.client.Channel;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Consumidor de WhatsApp por lotes: un lote trae hasta app.whatsapp.batch-size mensajes y
+ * carga sus contactos con una sola consulta.
+ *
+ * Cada número recibe como mucho un mensaje por app.whatsapp.per-number-interval-ms. Los que
+ * tendrían que esperar su turno vuelven al broker por la cola de retardo en lugar de quedarse en
+ * memoria. Cada mensaje del lote se confirma al broker cuando terminan todos sus envíos.
+ */
+@Component
+public class WhatsAppConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(WhatsAppConsumer.class);
+    private static final String CHANNEL = "WHATSAPP";
+
+    @Autowired
+    private WhatsAppService whatsAppService;
+
+    @Autowired
+    private FairShareDispatcher fairShareDispatcher;
+
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    @Autowired
+    private ContactService contactService;
+
+    @Autowired
+    private MessageStatusService messageStatusService;
+
+    @Autowired
+    private PipelineLatencyRecorder latencyRecorder;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private DeliveryWorkflowEngine workflowEngine;
+
+    @Value("${app.whatsapp.per-number-interval-ms:6000}")
+    private long perNumberIntervalMillis = 6000;
+
+    @Value("${app.whatsapp.rate-limit-slots:65536}")
+    private int rateLimitSlots = 65536;
+
+    private RecipientRateLimiter recipientLimiter;
+
+    @PostConstruct
+    public void initLimiter() {
+        recipientLimiter = new RecipientRateLimiter(perNumberIntervalMillis, rateLimitSlots);
+    }
+
+    @RabbitListener(id = RabbitMQConfig.WHATSAPP_LISTENER_ID, queues = RabbitMQConfig.WHATSAPP_QUEUE,
+            containerFactory = RabbitMQConfig.WHATSAPP_BATCH_FACTORY, ackMode = "MANUAL")
+    public void processWhatsAppBatch(List<Message<QueueMessage>> batch, Channel channel) {
+        logger.info("💬 Procesando lote de {} WhatsApp", batch.size());
+
+        List<QueueMessage> messages = batch.stream().map(Message::getPayload).toList();
+        Map<String, Contact> contacts;
+        try {
+            contacts = loadContacts(messages);
+        } catch (Exception e) {
+            logger.error("💥 Error cargando contactos del lote de WhatsApp: {}", e.getMessage());
+            contacts = Map.of();
+        }
+
+        long consumedAt = PipelineLatencyRecorder.nowMicros();
+        long now = System.nanoTime();
+
+        for (Message<QueueMessage> delivery : batch) {
+            QueueMessage queueMessage = delivery.getPayload();
+            DeliveryAck ack = new DeliveryAck(channel,
+                    delivery.getHeaders().get(AmqpHeaders.DELIVERY_TAG, Long.class), queueMessage.getRecipients().size());
+            latencyRecorder.recordConsumed(CHANNEL, queueMessage, consumedAt);
+
+            // Los envíos inmediatos van juntos a la cola virtual del usuario
+            List<Runnable> ready = new ArrayList<>();
+            for (String recipient : queueMessage.getRecipients()) {
+                Contact contact = contacts.get(recipient);
+                Runnable send = ack.send(
+                        () -> sendToRecipient(queueMessage, recipient, contact, consumedAt),
+                        () -> requeue(queueMessage, recipient, "reparto detenido"));
+
+                // Solo se reserva el turno si está libre ya; si no, espera en el broker
+                if (recipientLimiter.reserve(recipient, now, 0) == 0) {
+                    ready.add(send);
+                } else {
+                    defer(queueMessage, recipient);
+                    ack.complete();
+                }
+            }
+
+            if (queueMessage.getRecipients().isEmpty()) {
+                ack.ack();
+            }
+            fairShareDispatcher.submitAll(queueMessage.getUserId(), CHANNEL, ready);
+        }
+    }
+
+    private void sendToRecipient(QueueMessage queueMessage, String recipient, Contact contact, long consumedAt) {
+        logger.info("📤 Enviando WhatsApp a: {}", recipient);
+
+        WhatsAppMessage message = new WhatsAppMessage(recipient,
+                templateEngine.render(queueMessage.getContent(), contact, recipient), queueMessage.getId());
+        long sendStart = PipelineLatencyRecorder.nowMicros();
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_DISPATCH_WAIT, sendStart - consumedAt);
+        boolean success;
+        try {
+            success = whatsAppService.sendWhatsApp(message);
+        } catch (ProviderUnavailableException e) {
+            // No se llegó a enviar: vuelve al broker mientras el proveedor se recupera
+            requeue(queueMessage, recipient, e.getMessage());
+            return;
+        } catch (Exception e) {
+            logger.error("💥 Error enviando WhatsApp a {}: {}", recipient, e.getMessage());
+            success = false;
+        }
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_PROVIDER_SEND, PipelineLatencyRecorder.nowMicros() - sendStart);
+
+        if (success) {
+            logger.info("✅ WhatsApp enviado exitosamente a: {}", recipient);
+            updateStatus(queueMessage, recipient, MessageStatusEnum.SENT, null);
+            workflowEngine.report(queueMessage, true);
+        } else {
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, "Error enviando WhatsApp");
+            logger.error("❌ Error enviando WhatsApp a: {}", recipient);
+
+            // Si el mensaje es un paso de un flujo de entrega, se pasa al siguiente canal
+            workflowEngine.report(queueMessage, false);
+        }
+    }
+
+    private Map<String, Contact> loadContacts(List<QueueMessage> batch) {
+        Set<String> recipients = new LinkedHashSet<>();
+        for (QueueMessage queueMessage : batch) {
+            if (templateEngine.needsContact(queueMessage.getContent())) {
+                recipients.addAll(queueMessage.getRecipients());
+            }
+        }
+        if (recipients.isEmpty()) {
+            return Map.of();
+        }
+        return contactService.getContactsByWhatsappIds(recipients);
+    }
+
+    private void defer(QueueMessage queueMessage, String recipient) {
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.WHATSAPP_DELAY_QUEUE, queueMessage.forRecipient(recipient));
+            logger.debug("⏳ WhatsApp a {} aplazado por el límite por número", recipient);
+        } catch (Exception e) {
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, e.getMessage());
+            logger.error("❌ No se pudo aplazar el WhatsApp a {}: {}", recipient, e.getMessage());
+        }
+    }
+
+    private void requeue(QueueMessage queueMessage, String recipient, String reason) {
+        QueueMessage retry = queueMessage.forRecipient(recipient);
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.DIRECT_EXCHANGE, RabbitMQConfig.WHATSAPP_ROUTING_KEY, retry);
+            logger.warn("↩️ WhatsApp a {} devuelto a la cola: {}", recipient, reason);
+        } catch (Exception e) {
+            updateStatus(queueMessage, recipient, MessageStatusEnum.FAILED, reason);
+            logger.error("❌ No se pudo reencolar el WhatsApp a {}: {}", recipient, e.getMessage());
+        }
+    }
+
+    private void updateStatus(QueueMessage queueMessage, String recipient, MessageStatusEnum status, String error) {
+        long start = PipelineLatencyRecorder.nowMicros();
+        try {
+            messageStatusService.updateMessageStatus(queueMessage.statusIdFor(recipient), status, error);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo actualizar el estado de {}: {}", queueMessage.getId(), e.getMessage());
+        }
+
+        long end = PipelineLatencyRecorder.nowMicros();
+        latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_STATUS_UPDATE, end - start);
+        Long accepted = queueMessage.getStageTime(PipelineLatencyRecorder.ACCEPTED);
+        if (accepted != null) {
+            latencyRecorder.record(CHANNEL, PipelineLatencyRecorder.STAGE_END_TO_END, end - accepted);
+        }
+    }
+}
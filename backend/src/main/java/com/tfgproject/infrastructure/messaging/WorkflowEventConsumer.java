@@ -0,0 +1,25 @@
+package com.tfgproject.infrastructure.messaging;
+
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
+import com.tfgproject.shared.model.WorkflowEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class WorkflowEventConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowEventConsumer.class);
+
+    @Autowired
+    private DeliveryWorkflowEngine workflowEngine;
+
+    // Resultados de los consumidores de canal y plazos que vuelven de las colas de retardo
+    @RabbitListener(queues = RabbitMQConfig.WORKFLOW_QUEUE)
+    public void processWorkflowEvent(WorkflowEvent event) {
+        logger.debug("🔀 Evento de flujo {} paso {}: {}", event.getWorkflowId(), event.getStep(), event.getOutcome());
+        workflowEngine.handle(event);
+    }
+}
@@ -0,0 +1,288 @@
+package com.tfgproject.infrastructure.segment;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.port.out.ContactChangeListener;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bitmaps comprimidos (RoaringBitmap) de ids de contacto: miembros directos de cada categoría,
+ * unión con sus subcategorías y contactos con email, teléfono o WhatsApp.
+ *
+ * Se cargan la primera vez que una expresión los necesita y después se mantienen con los
+ * eventos de ContactChangeListener. Las operaciones masivas o de jerarquía solo invalidan
+ * lo afectado, que se vuelve a leer al usarse.
+ */
+@Service
+public class SegmentBitmapCache implements ContactChangeListener, SegmentExpression.Source {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentBitmapCache.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, RoaringBitmap> directMembers = new HashMap<>();
+    private final Map<Long, RoaringBitmap> subtrees = new HashMap<>();
+    private Hierarchy hierarchy;
+    private Attributes attributes;
+
+    /**
+     * Evalúa la expresión; el resultado es propio del llamante y puede modificarse
+     */
+    public synchronized RoaringBitmap evaluate(SegmentExpression expression) {
+        RoaringBitmap result = expression.evaluate(this);
+        return expression.isLeaf() ? result.clone() : result;
+    }
+
+    // === ORIGEN DE BITMAPS ===
+
+    @Override
+    public RoaringBitmap all() {
+        return attributes().all;
+    }
+
+    @Override
+    public RoaringBitmap attribute(String attribute) {
+        Attributes loaded = attributes();
+        return switch (attribute) {
+            case SegmentExpression.ATTR_EMAIL -> loaded.email;
+            case SegmentExpression.ATTR_PHONE -> loaded.phone;
+            case SegmentExpression.ATTR_WHATSAPP -> loaded.whatsapp;
+            default -> throw new IllegalArgumentException("Atributo desconocido: " + attribute);
+        };
+    }
+
+    @Override
+    public RoaringBitmap category(String name, Long id) {
+        long categoryId = id != null ? id : hierarchy().resolve(name);
+        if (!hierarchy().parents.containsKey(categoryId)) {
+            throw new IllegalArgumentException("Categoría no encontrada: #" + categoryId);
+        }
+        RoaringBitmap subtree = subtrees.get(categoryId);
+        if (subtree == null) {
+            List<RoaringBitmap> parts = new ArrayList<>();
+            for (long member : hierarchy().subtree(categoryId)) {
+                parts.add(directMembers(member));
+            }
+            subtree = parts.size() == 1 ? parts.get(0) : FastAggregation.or(parts.iterator());
+            subtrees.put(categoryId, subtree);
+        }
+        return subtree;
+    }
+
+    private RoaringBitmap directMembers(long categoryId) {
+        return directMembers.computeIfAbsent(categoryId, id -> {
+            RoaringBitmap bitmap = new RoaringBitmap();
+            jdbcTemplate.query("SELECT contact_id FROM category_contact WHERE category_id = ?",
+                    rs -> {
+                        bitmap.add(toInt(rs.getLong(1)));
+                    }, id);
+            bitmap.runOptimize();
+            return bitmap;
+        });
+    }
+
+    private Attributes attributes() {
+        if (attributes == null) {
+            long start = System.currentTimeMillis();
+            Attributes loaded = new Attributes();
+            loadContacts(loaded, "SELECT id, email, phone, whatsapp_id FROM contacts");
+            loaded.optimize();
+            attributes = loaded;
+            logger.info("🧮 Bitmaps de contactos cargados: {} contactos en {} ms",
+                    loaded.all.getLongCardinality(), System.currentTimeMillis() - start);
+        }
+        return attributes;
+    }
+
+    private void loadContacts(Attributes target, String sql, Object... params) {
+        jdbcTemplate.query(sql, rs -> {
+            target.set(toInt(rs.getLong(1)), rs.getString(2), rs.getString(3), rs.getString(4));
+        }, params);
+    }
+
+    private Hierarchy hierarchy() {
+        if (hierarchy == null) {
+            Hierarchy loaded = new Hierarchy();
+            jdbcTemplate.query("SELECT id, name, parent_id FROM categories", rs -> {
+                long id = rs.getLong(1);
+                String name = rs.getString(2);
+                long parent = rs.getLong(3);
+                loaded.add(id, name, rs.wasNull() ? null : parent);
+            });
+            hierarchy = loaded;
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Los bitmaps usan enteros de 32 bits; los ids de contacto (IDENTITY) caben con holgura
+     */
+    static int toInt(long contactId) {
+        if (contactId < 0 || contactId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Id de contacto fuera de rango para segmentos: " + contactId);
+        }
+        return (int) contactId;
+    }
+
+    // === EVENTOS ===
+
+    @Override
+    public synchronized void contactSaved(Contact contact) {
+        if (attributes != null) {
+            attributes.set(toInt(contact.getId()), contact.getEmail(), contact.getPhone(), contact.getWhatsappId());
+        }
+    }
+
+    @Override
+    public synchronized void contactRemoved(Long contactId) {
+        int id = toInt(contactId);
+        if (attributes != null) {
+            attributes.remove(id);
+        }
+        directMembers.values().forEach(bitmap -> bitmap.remove(id));
+        subtrees.clear();
+    }
+
+    @Override
+    public synchronized void contactsImported(long afterId) {
+        if (attributes != null) {
+            loadContacts(attributes, "SELECT id, email, phone, whatsapp_id FROM contacts WHERE id > ?", afterId);
+        }
+    }
+
+    @Override
+    public synchronized void categoryAdded(Long categoryId, Long parentId) {
+        invalidateHierarchy();
+    }
+
+    @Override
+    public synchronized void categoryUpdated(Long categoryId) {
+        invalidateHierarchy();
+    }
+
+    @Override
+    public synchronized void categoryRemoved(Long categoryId) {
+        directMembers.remove(categoryId);
+        invalidateHierarchy();
+    }
+
+    @Override
+    public synchronized void membershipAdded(Long categoryId, Contact contact) {
+        RoaringBitmap members = directMembers.get(categoryId);
+        if (members != null) {
+            members.add(toInt(contact.getId()));
+        }
+        subtrees.clear();
+    }
+
+    @Override
+    public synchronized void membershipRemoved(Long categoryId, Long contactId) {
+        RoaringBitmap members = directMembers.get(categoryId);
+        if (members != null) {
+            members.remove(toInt(contactId));
+        }
+        subtrees.clear();
+    }
+
+    @Override
+    public synchronized void membershipsChanged(Long categoryId) {
+        directMembers.remove(categoryId);
+        subtrees.clear();
+    }
+
+    private void invalidateHierarchy() {
+        hierarchy = null;
+        subtrees.clear();
+    }
+
+    static String normalize(String name) {
+        String folded = Normalizer.normalize(name.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return folded.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    // === ESTRUCTURAS ===
+
+    private static final class Hierarchy {
+        private final Map<Long, Long> parents = new HashMap<>();
+        private final Map<Long, List<Long>> children = new HashMap<>();
+        private final Map<String, List<Long>> byName = new HashMap<>();
+
+        void add(long id, String name, Long parent) {
+            parents.put(id, parent);
+            if (parent != null) {
+                children.computeIfAbsent(parent, p -> new ArrayList<>()).add(id);
+            }
+            if (name != null) {
+                byName.computeIfAbsent(normalize(name), n -> new ArrayList<>()).add(id);
+            }
+        }
+
+        long resolve(String name) {
+            List<Long> ids = byName.get(normalize(name));
+            if (ids == null) {
+                throw new IllegalArgumentException("Categoría no encontrada: " + name);
+            }
+            if (ids.size() > 1) {
+                throw new IllegalArgumentException("Hay varias categorías llamadas '" + name + "' " + ids + ": usa #id");
+            }
+            return ids.get(0);
+        }
+
+        List<Long> subtree(long root) {
+            List<Long> result = new ArrayList<>();
+            result.add(root);
+            for (int i = 0; i < result.size() && i < parents.size(); i++) {
+                result.addAll(children.getOrDefault(result.get(i), List.of()));
+            }
+            return result;
+        }
+    }
+
+    private static final class Attributes {
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final RoaringBitmap email = new RoaringBitmap();
+        private final RoaringBitmap phone = new RoaringBitmap();
+        private final RoaringBitmap whatsapp = new RoaringBitmap();
+
+        void set(int id, String emailValue, String phoneValue, String whatsappValue) {
+            all.add(id);
+            flag(email, id, emailValue);
+            flag(phone, id, phoneValue);
+            flag(whatsapp, id, whatsappValue);
+        }
+
+        void remove(int id) {
+            all.remove(id);
+            email.remove(id);
+            phone.remove(id);
+            whatsapp.remove(id);
+        }
+
+        void optimize() {
+            all.runOptimize();
+            email.runOptimize();
+            phone.runOptimize();
+            whatsapp.runOptimize();
+        }
+
+        private static void flag(RoaringBitmap bitmap, int id, String value) {
+            if (value != null && !value.trim().isEmpty()) {
+                bitmap.add(id);
+            } else {
+                bitmap.remove(id);
+            }
+        }
+    }
+}
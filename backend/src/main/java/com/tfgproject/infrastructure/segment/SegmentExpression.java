@@ -0,0 +1,343 @@
+package com.tfgproject.infrastructure.segment;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Expresión booleana de audiencia compilada a operaciones sobre bitmaps de ids de contacto.
+ *
+ * Gramática (AND/OR/NOT sin distinguir mayúsculas, también &amp;, | y !; NOT &gt; AND &gt; OR):
+ * <pre>
+ *   (Trabajo OR "Pesca de Río") AND NOT Unsubscribed AND hasPhone
+ *   #12 OR Familia
+ * </pre>
+ * Un nombre de categoría incluye sus subcategorías. Puede ir entre comillas o sin ellas
+ * (varias palabras seguidas forman un nombre); #id referencia la categoría por id.
+ * Atributos: hasEmail, hasPhone, hasWhatsapp, y all (todos los contactos).
+ */
+public abstract class SegmentExpression {
+
+    public static final String ATTR_EMAIL = "hasemail";
+    public static final String ATTR_PHONE = "hasphone";
+    public static final String ATTR_WHATSAPP = "haswhatsapp";
+
+    /**
+     * Origen de los bitmaps base. Los devueltos no se modifican nunca.
+     */
+    public interface Source {
+        RoaringBitmap all();
+
+        RoaringBitmap attribute(String attribute);
+
+        RoaringBitmap category(String name, Long id);
+    }
+
+    public abstract RoaringBitmap evaluate(Source source);
+
+    /**
+     * true si evaluate devuelve un bitmap del origen (que hay que copiar antes de modificar)
+     */
+    public boolean isLeaf() {
+        return false;
+    }
+
+    public static SegmentExpression parse(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("La expresión del segmento está vacía");
+        }
+        return new Parser(text).parse();
+    }
+
+    // === NODOS ===
+
+    static final class And extends SegmentExpression {
+        private final List<SegmentExpression> operands;
+
+        And(List<SegmentExpression> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Source source) {
+            // Los NOT dentro de un AND se restan (andNot) en vez de complementarse contra todos
+            List<RoaringBitmap> include = new ArrayList<>();
+            List<RoaringBitmap> exclude = new ArrayList<>();
+            for (SegmentExpression operand : operands) {
+                if (operand instanceof Not not) {
+                    exclude.add(not.operand.evaluate(source));
+                } else {
+                    include.add(operand.evaluate(source));
+                }
+            }
+
+            RoaringBitmap result;
+            if (include.isEmpty()) {
+                result = source.all().clone();
+            } else {
+                // Intersección empezando por el conjunto más pequeño
+                include.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+                result = include.size() == 1 ? include.get(0).clone() : RoaringBitmap.and(include.get(0), include.get(1));
+                for (int i = 2; i < include.size() && !result.isEmpty(); i++) {
+                    result.and(include.get(i));
+                }
+            }
+            for (RoaringBitmap excluded : exclude) {
+                if (result.isEmpty()) {
+                    break;
+                }
+                result.andNot(excluded);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(SegmentExpression::toString).collect(Collectors.joining(" AND ", "(", ")"));
+        }
+    }
+
+    static final class Or extends SegmentExpression {
+        private final List<SegmentExpression> operands;
+
+        Or(List<SegmentExpression> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Source source) {
+            RoaringBitmap[] bitmaps = new RoaringBitmap[operands.size()];
+            for (int i = 0; i < bitmaps.length; i++) {
+                bitmaps[i] = operands.get(i).evaluate(source);
+            }
+            return FastAggregation.or(bitmaps);
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(SegmentExpression::toString).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+    }
+
+    static final class Not extends SegmentExpression {
+        private final SegmentExpression operand;
+
+        Not(SegmentExpression operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Source source) {
+            return RoaringBitmap.andNot(source.all(), operand.evaluate(source));
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+
+    static final class CategoryRef extends SegmentExpression {
+        private final String name;
+        private final Long id;
+
+        CategoryRef(String name, Long id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Source source) {
+            return source.category(name, id);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return id != null ? "#" + id : "\"" + name + "\"";
+        }
+    }
+
+    static final class Attribute extends SegmentExpression {
+        private final String attribute;
+
+        Attribute(String attribute) {
+            this.attribute = attribute;
+        }
+
+        @Override
+        public RoaringBitmap evaluate(Source source) {
+            return "all".equals(attribute) ? source.all() : source.attribute(attribute);
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return attribute;
+        }
+    }
+
+    // === ANÁLISIS ===
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        SegmentExpression parse() {
+            SegmentExpression expression = parseOr();
+            skipSpaces();
+            if (pos < text.length()) {
+                throw error("no se esperaba '" + text.charAt(pos) + "'");
+            }
+            return expression;
+        }
+
+        private SegmentExpression parseOr() {
+            List<SegmentExpression> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (acceptOperator("OR", "||", "|")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        private SegmentExpression parseAnd() {
+            List<SegmentExpression> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (acceptOperator("AND", "&&", "&")) {
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        private SegmentExpression parseUnary() {
+            if (acceptOperator("NOT", "!", null)) {
+                SegmentExpression operand = parseUnary();
+                return operand instanceof Not not ? not.operand : new Not(operand);
+            }
+            return parsePrimary();
+        }
+
+        private SegmentExpression parsePrimary() {
+            skipSpaces();
+            if (pos >= text.length()) {
+                throw error("falta un operando");
+            }
+
+            char c = text.charAt(pos);
+            if (c == '(') {
+                pos++;
+                SegmentExpression inner = parseOr();
+                skipSpaces();
+                if (pos >= text.length() || text.charAt(pos) != ')') {
+                    throw error("falta ')'");
+                }
+                pos++;
+                return inner;
+            }
+            if (c == '"') {
+                int end = text.indexOf('"', pos + 1);
+                if (end < 0) {
+                    throw error("comillas sin cerrar");
+                }
+                String name = text.substring(pos + 1, end).trim();
+                pos = end + 1;
+                if (name.isEmpty()) {
+                    throw error("nombre de categoría vacío");
+                }
+                return new CategoryRef(name, null);
+            }
+            if (c == '#') {
+                int start = ++pos;
+                while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw error("se esperaba un id tras '#'");
+                }
+                return new CategoryRef(null, Long.parseLong(text.substring(start, pos)));
+            }
+
+            // Nombre sin comillas: palabras hasta un operador o paréntesis
+            List<String> words = new ArrayList<>();
+            while (true) {
+                skipSpaces();
+                String word = peekWord();
+                if (word == null || isKeyword(word)) {
+                    break;
+                }
+                words.add(word);
+                pos += word.length();
+            }
+            if (words.isEmpty()) {
+                throw error("falta un operando");
+            }
+
+            if (words.size() == 1) {
+                String single = words.get(0).toLowerCase(Locale.ROOT);
+                if (single.equals(ATTR_EMAIL) || single.equals(ATTR_PHONE) || single.equals(ATTR_WHATSAPP)
+                        || single.equals("all") || single.equals("*")) {
+                    return new Attribute(single.equals("*") ? "all" : single);
+                }
+            }
+            return new CategoryRef(String.join(" ", words), null);
+        }
+
+        private String peekWord() {
+            int end = pos;
+            while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && "()\"&|!#".indexOf(text.charAt(end)) < 0) {
+                end++;
+            }
+            return end > pos ? text.substring(pos, end) : null;
+        }
+
+        private boolean isKeyword(String word) {
+            return word.equalsIgnoreCase("AND") || word.equalsIgnoreCase("OR") || word.equalsIgnoreCase("NOT");
+        }
+
+        private boolean acceptOperator(String keyword, String symbol, String shortSymbol) {
+            skipSpaces();
+            String word = peekWord();
+            if (word != null && word.equalsIgnoreCase(keyword)) {
+                pos += word.length();
+                return true;
+            }
+            if (text.startsWith(symbol, pos)) {
+                pos += symbol.length();
+                return true;
+            }
+            if (shortSymbol != null && text.startsWith(shortSymbol, pos)) {
+                pos += shortSymbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Expresión de segmento no válida (posición " + (pos + 1) + "): " + message);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tfgproject.infrastructure.segment;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estado de un envío a un segmento en segundo plano.
+ * Los contadores se actualizan desde el hilo de envío y se consultan desde las peticiones de progreso.
+ */
+public class SegmentSendJob {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    private final String id;
+    private final String expression;
+    private final String channel;
+    private final long segmentSize;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    final AtomicLong processed = new AtomicLong();
+    final AtomicLong queued = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+    final AtomicLong batches = new AtomicLong();
+
+    private volatile Status status = Status.PENDING;
+    private volatile String error;
+    private volatile LocalDateTime finishedAt;
+
+    public SegmentSendJob(String id, String expression, String channel, long segmentSize) {
+        this.id = id;
+        this.expression = expression;
+        this.channel = channel;
+        this.segmentSize = segmentSize;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void finish(String failure) {
+        error = failure;
+        finishedAt = LocalDateTime.now();
+        status = failure == null ? Status.COMPLETED : Status.FAILED;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", id);
+        map.put("expression", expression);
+        map.put("channel", channel);
+        map.put("status", status.name());
+        map.put("segmentSize", segmentSize);
+        map.put("progress", segmentSize > 0 ? Math.min(100.0, Math.round(processed.get() * 1000.0 / segmentSize) / 10.0) : 100.0);
+        map.put("queued", queued.get());
+        map.put("failed", failed.get());
+        map.put("skipped", skipped.get());
+        map.put("batches", batches.get());
+        map.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            map.put("finishedAt", finishedAt.toString());
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,203 @@
+package com.tfgproject.infrastructure.segment;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.application.dto.request.SegmentRequest;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.MessageChannel;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.BatchPublishException;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.roaringbitmap.BatchIterator;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Segmentos de audiencia: evalúa la expresión sobre los bitmaps en caché y vuelca el resultado
+ * al pipeline de envío por bloques en segundo plano, sin materializar la lista completa de contactos.
+ */
+@Service
+public class SegmentService {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentService.class);
+
+    // Columna de contacts con la dirección de cada canal
+    private static final Map<ChannelType, String> ADDRESS_COLUMNS = new EnumMap<>(Map.of(
+            ChannelType.EMAIL, "email",
+            ChannelType.SMS, "phone",
+            ChannelType.WHATSAPP, "whatsapp_id"));
+
+    @Autowired
+    private SegmentBitmapCache bitmapCache;
+
+    @Autowired
+    private AsyncMessagePublisher messagePublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    @Value("${app.segments.send-batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.segments.job-retention-ms:86400000}")
+    private long retentionMillis;
+
+    private final Map<String, SegmentSendJob> jobs = new ConcurrentHashMap<>();
+
+    public RoaringBitmap evaluate(String expression) {
+        return bitmapCache.evaluate(SegmentExpression.parse(expression));
+    }
+
+    /**
+     * Tamaño del segmento y una muestra de ids, sin tocar la tabla de contactos
+     */
+    public Map<String, Object> preview(String expression, int sampleSize) {
+        long start = System.nanoTime();
+        SegmentExpression parsed = SegmentExpression.parse(expression);
+        RoaringBitmap segment = bitmapCache.evaluate(parsed);
+        double tookMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        List<Integer> sample = new ArrayList<>();
+        IntIterator ids = segment.getIntIterator();
+        while (ids.hasNext() && sample.size() < sampleSize) {
+            sample.add(ids.next());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("expression", parsed.toString());
+        result.put("size", segment.getLongCardinality());
+        result.put("sample", sample);
+        result.put("tookMs", tookMs);
+        return result;
+    }
+
+    /**
+     * Evalúa el segmento y lanza su envío en segundo plano. Una expresión no válida falla aquí,
+     * antes de crear el trabajo.
+     */
+    public SegmentSendJob startSend(SegmentRequest request) {
+        MessageChannel channel = channelRegistry.get(request.getChannel());
+        if (!ADDRESS_COLUMNS.containsKey(channel.getType())) {
+            throw new IllegalArgumentException("Canal no soportado en segmentos: " + request.getChannel());
+        }
+        RoaringBitmap segment = evaluate(request.getExpression());
+        SegmentSendJob job = new SegmentSendJob(UUID.randomUUID().toString(), request.getExpression(),
+                request.getChannel(), segment.getLongCardinality());
+        jobs.put(job.getId(), job);
+
+        taskExecutor.execute(() -> runSend(job, request, channel, segment));
+        return job;
+    }
+
+    public Optional<SegmentSendJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Encola un mensaje por contacto del segmento, bloque a bloque: se leen las direcciones
+     * de batchSize ids y se publican con una sola confirmación del broker por bloque. Un bloque
+     * que el broker no confirma cuenta sus mensajes como fallidos y el envío sigue con el siguiente.
+     */
+    private void runSend(SegmentSendJob job, SegmentRequest request, MessageChannel channel, RoaringBitmap segment) {
+        job.start();
+        long start = System.currentTimeMillis();
+        String column = ADDRESS_COLUMNS.get(channel.getType());
+        String userId = request.getUserId() != null ? request.getUserId() : QueueMessage.DEFAULT_USER;
+
+        try {
+            BatchIterator iterator = segment.getBatchIterator();
+            int[] buffer = new int[batchSize];
+            while (iterator.hasNext()) {
+                int count = iterator.nextBatch(buffer);
+                List<String> addresses = loadAddresses(Arrays.copyOf(buffer, count), column);
+                job.skipped.addAndGet(count - addresses.size());
+
+                List<QueueMessage> messages = new ArrayList<>(addresses.size());
+                for (String address : addresses) {
+                    MessageRequest message = new MessageRequest();
+                    message.setTo(address);
+                    message.setSubject(request.getSubject());
+                    message.setContent(request.getContent());
+                    message.setSender(request.getSender());
+                    message.setUserId(userId);
+                    messages.add(channel.toQueueMessage(message));
+                }
+                publish(job, messages);
+                job.processed.addAndGet(count);
+                job.batches.incrementAndGet();
+            }
+            job.finish(null);
+        } catch (Exception e) {
+            logger.error("❌ Envío al segmento {} interrumpido: {}", job.getId(), e.getMessage());
+            job.finish(e.getMessage());
+        }
+
+        logger.info("🎯 Segmento '{}' encolado: {} mensajes, {} fallidos en {} bloques ({} sin dirección) en {} ms",
+                request.getExpression(), job.getQueued(), job.getFailed(), job.batches.get(), job.getSkipped(),
+                System.currentTimeMillis() - start);
+    }
+
+    private void publish(SegmentSendJob job, List<QueueMessage> messages) {
+        try {
+            messagePublisher.publishBatch(messages);
+            job.queued.addAndGet(messages.size());
+        } catch (BatchPublishException e) {
+            long failed = messages.stream().filter(message -> e.isFailed(message.getId())).count();
+            job.failed.addAndGet(failed);
+            job.queued.addAndGet(messages.size() - failed);
+            logger.warn("⚠️ Segmento {}: {} mensajes del bloque sin confirmar", job.getId(), failed);
+        } catch (RuntimeException e) {
+            job.failed.addAndGet(messages.size());
+            logger.warn("⚠️ Segmento {}: bloque de {} mensajes sin publicar: {}", job.getId(), messages.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Borra los trabajos terminados pasado el tiempo de retención
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void cleanFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusNanos(retentionMillis * 1_000_000L);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private List<String> loadAddresses(int[] ids, String column) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+        Object[] params = new Object[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            params[i] = (long) ids[i];
+        }
+        return jdbcTemplate.queryForList("SELECT " + column + " FROM contacts WHERE id IN (" + placeholders + ") " +
+                "AND " + column + " IS NOT NULL AND " + column + " <> '' ORDER BY id", String.class, params);
+    }
+}
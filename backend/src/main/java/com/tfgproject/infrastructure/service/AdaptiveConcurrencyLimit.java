@@ -0,0 +1,143 @@
+package com.tfgproject.infrastructure.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Límite de concurrencia adaptativo (AIMD) que actúa también como bulkhead del proveedor.
+ *
+ * Cada respuesta rápida y correcta con el límite en uso suma 1/límite (un hueco más por
+ * "ronda"); un fallo o una latencia muy por encima de la mínima observada lo multiplica por
+ * el factor de retroceso. Las llamadas que no caben esperan como mucho maxWait.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int minRttWindow;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotAvailable = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private long candidateMinRttNanos = Long.MAX_VALUE;
+    private int samples;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                    double backoffRatio, double latencyTolerance, int minRttWindow) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.minRttWindow = Math.max(1, minRttWindow);
+    }
+
+    /**
+     * Ocupa un hueco; false si no se libera ninguno dentro del tiempo de espera
+     */
+    public boolean acquire(long maxWaitMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejected++;
+                    return false;
+                }
+                remaining = slotAvailable.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera el hueco y ajusta el límite con el resultado de la llamada
+     */
+    public void release(boolean success, long rttNanos) {
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= (int) limit / 2.0;
+            inFlight--;
+            updateMinRtt(rttNanos);
+
+            if (!success || rttNanos > minRttNanos * latencyTolerance) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (saturated) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            slotAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera el hueco sin ajustar el límite (la llamada no llegó al proveedor)
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getMinRttMillis() {
+        lock.lock();
+        try {
+            return minRttNanos == Long.MAX_VALUE ? 0 : minRttNanos / 1_000_000.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // La latencia mínima se renueva cada ventana para seguir cambios del proveedor
+    private void updateMinRtt(long rttNanos) {
+        candidateMinRttNanos = Math.min(candidateMinRttNanos, rttNanos);
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+        if (++samples >= minRttWindow) {
+            minRttNanos = candidateMinRttNanos;
+            candidateMinRttNanos = Long.MAX_VALUE;
+            samples = 0;
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package com.tfgproject.infrastructure.service;
 
+import com.tfgproject.domain.model.MessageStatus;
+import com.tfgproject.domain.model.StoredAttachment;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
 import com.tfgproject.domain.service.MessageStatusService; // ✅ NUEVO IMPORT
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.MessageChannel;
 import com.tfgproject.infrastructure.config.RabbitMQConfig;
 import com.tfgproject.shared.model.QueueMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class AsyncMessagePublisher {
@@ -27,6 +46,18 @@ public class AsyncMessagePublisher {
     @Autowired
     private MessageStatusService messageStatusService; // ✅ NUEVA DEPENDENCIA
 
+    @Autowired
+    private AttachmentStorePort attachmentStore;
+
+    @Autowired
+    private PipelineLatencyRecorder latencyRecorder;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Value("${app.messaging.bulk.confirm-timeout-ms:10000}")
+    private long confirmTimeoutMillis;
+
     /**
      * PROGRAMACIÓN ASÍNCRONA DE MENSAJES - NO BLOQUEA
      */
@@ -38,9 +69,10 @@ public class AsyncMessagePublisher {
         try {
             QueueMessage message = QueueMessage.forEmail(to, subject, content);
             message.setScheduledTime(scheduledTime);
+            message.setUserId(QueueMessage.DEFAULT_USER);
 
             // ✅ NUEVO: Crear status de mensaje programado
-            messageStatusService.createMessageStatus(message.getId(), to, "EMAIL", "currentUser");
+            messageStatusService.createMessageStatus(message.getId(), to, "EMAIL", message.getUserId());
 
             // Enviar a cola de programados o agregar al processor según la lógica
             if (scheduledTime.isAfter(LocalDateTime.now().plusMinutes(1))) {
@@ -66,14 +98,20 @@ public class AsyncMessagePublisher {
      * Método síncrono mejorado (compatible con código existente)
      */
     public String scheduleMessage(String to, String subject, String content, LocalDateTime scheduledTime) {
+        return scheduleMessage(to, subject, content, scheduledTime, QueueMessage.DEFAULT_USER);
+    }
+
+    public String scheduleMessage(String to, String subject, String content,
+                                  LocalDateTime scheduledTime, String userId) {
         logger.info("⏰ Programando mensaje para: {}", scheduledTime);
 
         QueueMessage message = QueueMessage.forEmail(to, subject, content);
         message.setScheduledTime(scheduledTime);
+        message.setUserId(resolveUser(userId));
 
         try {
             // ✅ NUEVO: Crear status de mensaje programado
-            messageStatusService.createMessageStatus(message.getId(), to, "EMAIL", "currentUser");
+            messageStatusService.createMessageStatus(message.getId(), to, "EMAIL", message.getUserId());
 
             if (scheduledTime.isAfter(LocalDateTime.now())) {
                 // Usar el processor asíncrono - NO BLOQUEA
@@ -83,11 +121,8 @@ public class AsyncMessagePublisher {
             } else {
                 logger.warn("⚠️ Fecha programada en el pasado, enviando inmediatamente");
                 // Enviar inmediatamente
-                rabbitTemplate.convertAndSend(
-                        RabbitMQConfig.DIRECT_EXCHANGE,
-                        RabbitMQConfig.EMAIL_ROUTING_KEY,
-                        message
-                );
+                MessageChannel channel = channelRegistry.of(message);
+                rabbitTemplate.convertAndSend(channel.getExchange(), channel.getRoutingKey(), message);
                 return message.getId();
             }
 
@@ -113,122 +148,122 @@ public class AsyncMessagePublisher {
 
     public String sendEmailToQueue(String to, String subject, String content,
                                    String attachmentPath, boolean isHtml) {
+        return sendEmailToQueue(to, subject, content, attachmentPath, isHtml, QueueMessage.DEFAULT_USER);
+    }
+
+    public String sendEmailToQueue(String to, String subject, String content,
+                                   String attachmentPath, boolean isHtml, String userId) {
+        return sendEmailToQueue(to, subject, content, attachmentPath, null, isHtml, userId);
+    }
+
+    public String sendEmailToQueue(String to, String subject, String content, String attachmentPath,
+                                   String attachmentId, boolean isHtml, String userId) {
         logger.info("📧 Enviando email a cola: {}", to);
 
         QueueMessage message = QueueMessage.forEmail(to, subject, content);
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
         message.setAttachmentPath(attachmentPath);
         message.setHtml(isHtml);
-
-        try {
-            // ✅ NUEVO: Crear status ANTES de enviar a la cola
-            messageStatusService.createMessageStatus(message.getId(), to, "EMAIL", "currentUser");
-
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.DIRECT_EXCHANGE,
-                    RabbitMQConfig.EMAIL_ROUTING_KEY,
-                    message
-            );
-
-            logger.info("✅ Email encolado exitosamente. ID: {}", message.getId());
-            return message.getId();
-
-        } catch (Exception e) {
-            logger.error("❌ Error encolando email: {}", e.getMessage());
-
-            // ✅ NUEVO: Actualizar status a fallido si falla el encolado
-            messageStatusService.updateMessageStatus(
-                    message.getId(),
-                    com.tfgproject.domain.model.MessageStatusEnum.FAILED,
-                    e.getMessage()
-            );
-
-            throw new RuntimeException("Error al encolar email: " + e.getMessage());
+        message.setUserId(userId);
+        if (attachmentId != null && !attachmentId.isEmpty()) {
+            StoredAttachment stored = attachmentStore.find(attachmentId)
+                    .orElseThrow(() -> new IllegalArgumentException("Adjunto no encontrado: " + attachmentId));
+            message.setAttachmentId(stored.getId());
+            message.setAttachmentName(stored.getFileName());
         }
+        return enqueue(message);
     }
 
     public String sendSmsToQueue(String to, String content, String sender) {
+        return sendSmsToQueue(to, content, sender, QueueMessage.DEFAULT_USER);
+    }
+
+    public String sendSmsToQueue(String to, String content, String sender, String userId) {
         logger.info("📱 Enviando SMS a cola: {}", to);
 
         QueueMessage message = QueueMessage.forSms(to, content, sender);
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setUserId(userId);
+        return enqueue(message);
+    }
 
-        try {
-            // ✅ NUEVO: Crear status ANTES de enviar a la cola
-            messageStatusService.createMessageStatus(message.getId(), to, "SMS", "currentUser");
-
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.DIRECT_EXCHANGE,
-                    RabbitMQConfig.SMS_ROUTING_KEY,
-                    message
-            );
-
-            logger.info("✅ SMS encolado exitosamente. ID: {}", message.getId());
-            return message.getId();
-
-        } catch (Exception e) {
-            logger.error("❌ Error encolando SMS: {}", e.getMessage());
-
-            // ✅ NUEVO: Actualizar status a fallido si falla el encolado
-            messageStatusService.updateMessageStatus(
-                    message.getId(),
-                    com.tfgproject.domain.model.MessageStatusEnum.FAILED,
-                    e.getMessage()
-            );
+    public String sendWhatsAppToQueue(String to, String content, String userId) {
+        logger.info("💬 Enviando WhatsApp a cola: {}", to);
 
-            throw new RuntimeException("Error al encolar SMS: " + e.getMessage());
-        }
+        QueueMessage message = QueueMessage.forWhatsApp(to, content);
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setUserId(userId);
+        return enqueue(message);
     }
 
     // === CASO DE USO 02: DIFUSIÓN MÚLTIPLES CANALES ===
     public String broadcastMessage(List<String> recipients, String content, String subject) {
+        return broadcastMessage(recipients, content, subject, QueueMessage.DEFAULT_USER);
+    }
+
+    public String broadcastMessage(List<String> recipients, String content, String subject, String userId) {
         logger.info("📢 Enviando difusión a {} destinatarios", recipients.size());
 
         QueueMessage message = QueueMessage.forBroadcast(recipients, content, subject);
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        message.setUserId(userId);
+        return enqueue(message);
+    }
+
+    /**
+     * Encola un mensaje de cualquier canal registrado por la ruta que declara el propio canal.
+     * Da de alta un estado por destinatario (la difusión tiene varios) antes de publicar; si la
+     * publicación falla los marca FAILED y lanza la excepción.
+     */
+    public String enqueue(QueueMessage message) {
+        MessageChannel channel = channelRegistry.of(message);
+        String type = channel.getType().name();
+
+        if (message.getStageTime(PipelineLatencyRecorder.ACCEPTED) == null) {
+            message.markStage(PipelineLatencyRecorder.ACCEPTED, PipelineLatencyRecorder.nowMicros());
+        }
+        message.setUserId(resolveUser(message.getUserId()));
+        storeLocalAttachment(message);
+        retainAttachment(message);
 
         try {
-            // ✅ NUEVO: Crear status para cada destinatario en la difusión
-            for (String recipient : recipients) {
-                messageStatusService.createMessageStatus(
-                        message.getId() + "-" + recipient.hashCode(), // ID único por destinatario
-                        recipient,
-                        "BROADCAST",
-                        "currentUser"
-                );
+            // Status ANTES de enviar a la cola
+            for (String recipient : message.getRecipients()) {
+                messageStatusService.createMessageStatus(message.statusIdFor(recipient), recipient, type, message.getUserId());
             }
+            message.markStage(PipelineLatencyRecorder.STATUS_CREATED, PipelineLatencyRecorder.nowMicros());
 
-            // Usar FANOUT para enviar a todas las colas
-            rabbitTemplate.convertAndSend(
-                    RabbitMQConfig.FANOUT_EXCHANGE,
-                    "", // Fanout no usa routing key
-                    message
-            );
+            publish(channel.getExchange(), channel.getRoutingKey(), message, type);
 
-            logger.info("✅ Difusión encolada exitosamente. ID: {}", message.getId());
+            logger.info("✅ {} encolado exitosamente. ID: {}", type, message.getId());
             return message.getId();
 
         } catch (Exception e) {
-            logger.error("❌ Error encolando difusión: {}", e.getMessage());
+            logger.error("❌ Error encolando {}: {}", type, e.getMessage());
 
-            // ✅ NUEVO: Actualizar status a fallido para todos los destinatarios
-            for (String recipient : recipients) {
+            for (String recipient : message.getRecipients()) {
                 messageStatusService.updateMessageStatus(
-                        message.getId() + "-" + recipient.hashCode(),
+                        message.statusIdFor(recipient),
                         com.tfgproject.domain.model.MessageStatusEnum.FAILED,
                         e.getMessage()
                 );
             }
 
-            throw new RuntimeException("Error al encolar difusión: " + e.getMessage());
+            releaseAttachment(message);
+            throw new RuntimeException("Error al encolar " + channel.getType().getKey() + ": " + e.getMessage());
         }
     }
+
     public String scheduleSms(String to, String content, String sender, LocalDateTime scheduledTime) {
         logger.info("📱 Programando SMS para: {}", scheduledTime);
 
         QueueMessage message = QueueMessage.forSms(to, content, sender); // ← IMPORTANTE: forSms()
         message.setScheduledTime(scheduledTime);
+        message.setUserId(QueueMessage.DEFAULT_USER);
 
         try {
             // ✅ NUEVO: Crear status de SMS programado
-            messageStatusService.createMessageStatus(message.getId(), to, "SMS", "currentUser");
+            messageStatusService.createMessageStatus(message.getId(), to, "SMS", message.getUserId());
 
             if (scheduledTime.isAfter(LocalDateTime.now())) {
                 // Usar el processor asíncrono - NO BLOQUEA
@@ -238,11 +273,8 @@ public class AsyncMessagePublisher {
             } else {
                 logger.warn("⚠️ Fecha programada en el pasado, enviando SMS inmediatamente");
                 // Enviar inmediatamente
-                rabbitTemplate.convertAndSend(
-                        RabbitMQConfig.DIRECT_EXCHANGE,
-                        RabbitMQConfig.SMS_ROUTING_KEY,  // ← IMPORTANTE: SMS_ROUTING_KEY
-                        message
-                );
+                MessageChannel channel = channelRegistry.of(message);
+                rabbitTemplate.convertAndSend(channel.getExchange(), channel.getRoutingKey(), message);
                 return message.getId();
             }
 
@@ -270,9 +302,10 @@ public class AsyncMessagePublisher {
         try {
             QueueMessage message = QueueMessage.forSms(to, content, sender); // ← IMPORTANTE: forSms()
             message.setScheduledTime(scheduledTime);
+            message.setUserId(QueueMessage.DEFAULT_USER);
 
             // ✅ NUEVO: Crear status de SMS programado
-            messageStatusService.createMessageStatus(message.getId(), to, "SMS", "currentUser");
+            messageStatusService.createMessageStatus(message.getId(), to, "SMS", message.getUserId());
 
             // Usar el processor asíncrono
             scheduledMessageProcessor.addScheduledMessageAsync(message);
@@ -286,6 +319,100 @@ public class AsyncMessagePublisher {
         }
     }
 
+    // === ENVÍO MASIVO ===
+
+    /**
+     * Publica un lote de mensajes ya construidos, cada uno por la ruta de su canal.
+     * Los estados se dan de alta con un único INSERT por lotes y cada publicación lleva su propia
+     * confirmación del broker, que se esperan juntas al final con un único plazo.
+     *
+     * Solo quedan FAILED los mensajes rechazados o sin confirmar; el resto del lote ya está en la
+     * cola. Los sin confirmar conservan su referencia al adjunto porque el broker puede haberlos
+     * encolado igualmente. Si falla alguno se lanza BatchPublishException con sus ids.
+     */
+    public void publishBatch(List<QueueMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<MessageStatus>> statuses = new HashMap<>();
+        for (QueueMessage message : messages) {
+            List<MessageStatus> messageStatuses = statuses.computeIfAbsent(message.getId(), id -> new ArrayList<>());
+            for (String recipient : message.getRecipients()) {
+                MessageStatus status = MessageStatus.create(message.statusIdFor(recipient), recipient, message.getType());
+                status.setUserId(message.getUserId());
+                messageStatuses.add(status);
+            }
+        }
+        messageStatusService.createMessageStatuses(statuses.values().stream().flatMap(List::stream).toList());
+
+        long start = PipelineLatencyRecorder.nowMicros();
+        messages.forEach(message -> {
+            message.markStage(PipelineLatencyRecorder.STATUS_CREATED, start);
+            retainAttachment(message);
+        });
+
+        // Publicación sin esperar: cada mensaje guarda su confirmación correlacionada
+        List<CorrelationData> confirms = new ArrayList<>(messages.size());
+        Map<String, String> rejected = new LinkedHashMap<>();
+        for (QueueMessage message : messages) {
+            CorrelationData correlation = new CorrelationData(message.getId());
+            confirms.add(correlation);
+            try {
+                message.markStage(PipelineLatencyRecorder.PUBLISHED, PipelineLatencyRecorder.nowMicros());
+                MessageChannel channel = channelRegistry.of(message);
+                rabbitTemplate.convertAndSend(channel.getExchange(), channel.getRoutingKey(), message, correlation);
+            } catch (Exception e) {
+                rejected.put(message.getId(), e.getMessage());
+            }
+        }
+
+        Map<String, String> unconfirmed = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + confirmTimeoutMillis * 1_000_000L;
+        for (CorrelationData correlation : confirms) {
+            if (rejected.containsKey(correlation.getId())) {
+                continue;
+            }
+            try {
+                CorrelationData.Confirm confirm = correlation.getFuture()
+                        .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (!confirm.isAck()) {
+                    rejected.put(correlation.getId(), "Rechazado por el broker: " + confirm.getReason());
+                }
+            } catch (TimeoutException e) {
+                unconfirmed.put(correlation.getId(), "Sin confirmación del broker en " + confirmTimeoutMillis + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unconfirmed.put(correlation.getId(), "Interrumpido esperando la confirmación del broker");
+            } catch (ExecutionException e) {
+                unconfirmed.put(correlation.getId(), e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+
+        if (rejected.isEmpty() && unconfirmed.isEmpty()) {
+            logger.info("✅ Lote de {} mensajes encolado y confirmado", messages.size());
+            return;
+        }
+
+        Map<String, String> failed = new LinkedHashMap<>(rejected);
+        failed.putAll(unconfirmed);
+        for (QueueMessage message : messages) {
+            String reason = failed.get(message.getId());
+            if (reason == null) {
+                continue;
+            }
+            messageStatusService.markFailed(statuses.get(message.getId()), reason);
+            // Un rechazo seguro no está en la cola; uno sin confirmar podría estarlo
+            if (rejected.containsKey(message.getId())) {
+                releaseAttachment(message);
+            }
+        }
+        logger.error("❌ Lote de {} mensajes: {} rechazados y {} sin confirmar",
+                messages.size(), rejected.size(), unconfirmed.size());
+        throw new BatchPublishException("Error al encolar " + failed.size() + " de " + messages.size()
+                + " mensajes: " + failed.values().iterator().next(), failed.keySet());
+    }
+
     // === MÉTODO GENÉRICO PARA REINTENTOS ===
     public void retryMessage(QueueMessage message, String queueName) {
         logger.info("🔄 Reintentando mensaje ID: {}", message.getId());
@@ -316,4 +443,61 @@ public class AsyncMessagePublisher {
             throw new RuntimeException("Error al reenviar mensaje: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Publica marcando la etapa y midiendo cuánto tarda el broker en aceptar el mensaje
+     */
+    private void publish(String exchange, String routingKey, QueueMessage message, String channel) {
+        long start = PipelineLatencyRecorder.nowMicros();
+        message.markStage(PipelineLatencyRecorder.PUBLISHED, start);
+        rabbitTemplate.convertAndSend(exchange, routingKey, message);
+        latencyRecorder.record(channel, PipelineLatencyRecorder.STAGE_PUBLISH, PipelineLatencyRecorder.nowMicros() - start);
+    }
+
+    // === ADJUNTOS ===
+
+    /**
+     * Copia el fichero local al almacén compartido para que cualquier nodo consumidor pueda leerlo
+     */
+    private void storeLocalAttachment(QueueMessage message) {
+        String path = message.getAttachmentPath();
+        if (message.getAttachmentId() != null || path == null || path.isEmpty()) {
+            return;
+        }
+
+        Path file = Paths.get(path);
+        if (!Files.isRegularFile(file)) {
+            logger.warn("⚠️ El archivo adjunto no existe: {}", path);
+            return;
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            StoredAttachment stored = attachmentStore.store(in, file.getFileName().toString(), null);
+            message.setAttachmentId(stored.getId());
+            message.setAttachmentName(file.getFileName().toString());
+        } catch (IOException e) {
+            logger.warn("⚠️ No se pudo guardar el adjunto {} en el almacén: {}", path, e.getMessage());
+        }
+    }
+
+    private void retainAttachment(QueueMessage message) {
+        if (message.getAttachmentId() != null) {
+            attachmentStore.retain(message.getAttachmentId());
+        }
+    }
+
+    private void releaseAttachment(QueueMessage message) {
+        if (message.getAttachmentId() != null) {
+            try {
+                attachmentStore.release(message.getAttachmentId());
+            } catch (Exception e) {
+                logger.warn("⚠️ No se pudo liberar el adjunto {}: {}", message.getAttachmentId(), e.getMessage());
+            }
+        }
+    }
+
+    // Usuario por defecto si la petición no indica ninguno
+    private String resolveUser(String userId) {
+        return userId != null && !userId.isBlank() ? userId : QueueMessage.DEFAULT_USER;
+    }
+}
@@ -1,11 +1,15 @@
 package com.tfgproject.infrastructure.service;
 
-import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import com.tfgproject.infrastructure.config.NodeIdentity;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.MessageChannel;
 import com.tfgproject.shared.model.QueueMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -14,7 +18,6 @@ import java.time.LocalDateTime;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class AsyncScheduledMessageProcessor {
@@ -23,8 +26,27 @@ public class AsyncScheduledMessageProcessor {
     @Autowired
     private RabbitTemplate rabbitTemplate;
 
-    // Almacén thread-safe de mensajes programados
-    private final ConcurrentMap<String, QueueMessage> scheduledMessages = new ConcurrentHashMap<>();
+    // Almacén compartido entre nodos: cada mensaje vencido lo reclama un único nodo
+    @Autowired
+    private ScheduledMessageRepositoryPort scheduledMessageRepository;
+
+    @Autowired
+    private NodeIdentity nodeIdentity;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Value("${app.scheduler.poll-ms:30000}")
+    private long pollMillis;
+
+    @Value("${app.scheduler.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.scheduler.claim-timeout-ms:120000}")
+    private long claimTimeoutMillis;
+
+    @Value("${app.scheduler.node-ttl-ms:90000}")
+    private long nodeTtlMillis;
 
     /**
      * Agregar mensaje programado de forma asíncrona
@@ -34,54 +56,58 @@ public class AsyncScheduledMessageProcessor {
         logger.info("➕ Agregando mensaje programado asincrónicamente: {} para {}",
                 message.getId(), message.getScheduledTime());
 
-        scheduledMessages.put(message.getId(), message);
-        logger.info("✅ Mensaje programado agregado. Total mensajes: {}", scheduledMessages.size());
+        scheduledMessageRepository.save(message);
+        logger.info("✅ Mensaje programado agregado. Total mensajes: {}", getScheduledMessageCount());
     }
 
     /**
      * Método síncrono para compatibilidad
      */
     public void addScheduledMessage(QueueMessage message) {
-        scheduledMessages.put(message.getId(), message);
+        scheduledMessageRepository.save(message);
         logger.info("➕ Mensaje programado agregado: {} para {}. Total: {}",
-                message.getId(), message.getScheduledTime(), scheduledMessages.size());
+                message.getId(), message.getScheduledTime(), getScheduledMessageCount());
     }
 
     /**
-     * Procesamiento asíncrono cada 30 segundos (más frecuente)
+     * Procesamiento asíncrono cada 30 segundos (más frecuente).
+     * Cada nodo reclama lotes de su partición; ningún mensaje se envía dos veces.
      */
-    @Scheduled(fixedRate = 30000) // Cada 30 segundos
+    @Scheduled(fixedRateString = "${app.scheduler.poll-ms:30000}")
     @Async("taskExecutor")
     public void processScheduledMessages() {
-        if (scheduledMessages.isEmpty()) {
-            logger.debug("📭 No hay mensajes programados para procesar");
-            return;
-        }
-
         LocalDateTime now = LocalDateTime.now();
-        logger.info("🔍 Procesando {} mensajes programados - Hora actual: {}",
-                scheduledMessages.size(), now);
-
-        // Obtener mensajes que deben enviarse
-        List<QueueMessage> messagesToSend = scheduledMessages.values().stream()
-                .filter(message -> {
-                    LocalDateTime scheduledTime = message.getScheduledTime();
-                    boolean shouldSend = scheduledTime != null &&
-                            (now.isAfter(scheduledTime) || now.isEqual(scheduledTime));
-
-                    if (shouldSend) {
-                        logger.info("⏰ Mensaje {} listo para envío - Programado: {}, Ahora: {}",
-                                message.getId(), scheduledTime, now);
-                    }
+        String nodeId = nodeIdentity.getNodeId();
+
+        // Latido y posición de este nodo entre los vivos
+        scheduledMessageRepository.heartbeat(nodeId, now);
+        List<String> liveNodes = scheduledMessageRepository.findLiveNodes(now.minusNanos(nodeTtlMillis * 1_000_000L));
+        int partitions = Math.max(1, liveNodes.size());
+        int partition = Math.max(0, liveNodes.indexOf(nodeId));
+
+        // Reclamaciones de nodos que murieron a mitad de envío
+        int released = scheduledMessageRepository.releaseExpiredClaims(now.minusNanos(claimTimeoutMillis * 1_000_000L));
+        if (released > 0) {
+            logger.warn("♻️ {} mensajes programados liberados de nodos sin respuesta", released);
+        }
 
-                    return shouldSend;
-                })
-                .collect(Collectors.toList());
+        int total = 0;
+        List<QueueMessage> claimed;
+        do {
+            claimed = scheduledMessageRepository.claimDue(now, nodeId, partition, partitions, batchSize);
+            if (!claimed.isEmpty()) {
+                logger.info("📬 Nodo {} ({}/{}) reclamó {} mensajes listos para envío - Hora actual: {}",
+                        nodeId, partition + 1, partitions, claimed.size(), now);
+            }
 
-        logger.info("📬 Encontrados {} mensajes listos para envío", messagesToSend.size());
+            // Procesar cada mensaje de forma asíncrona
+            claimed.forEach(this::sendScheduledMessageAsync);
+            total += claimed.size();
+        } while (claimed.size() == batchSize);
 
-        // Procesar cada mensaje de forma asíncrona
-        messagesToSend.forEach(this::sendScheduledMessageAsync);
+        if (total == 0) {
+            logger.debug("📭 No hay mensajes programados para procesar");
+        }
     }
 
     /**
@@ -93,28 +119,21 @@ public class AsyncScheduledMessageProcessor {
             logger.info("🚀 Enviando mensaje programado: {} (Tipo: {})",
                     message.getId(), message.getType());
 
-            // Enviar según el tipo
-            if ("EMAIL".equals(message.getType())) {
-                rabbitTemplate.convertAndSend(
-                        RabbitMQConfig.DIRECT_EXCHANGE,
-                        RabbitMQConfig.EMAIL_ROUTING_KEY,
-                        message
-                );
-                logger.info("📧 Email programado enviado a cola: {}", message.getRecipients().get(0));
-
-            } else if ("SMS".equals(message.getType())) {
-                rabbitTemplate.convertAndSend(
-                        RabbitMQConfig.DIRECT_EXCHANGE,
-                        RabbitMQConfig.SMS_ROUTING_KEY,
-                        message
-                );
-                logger.info("📱 SMS programado enviado a cola: {}", message.getRecipients().get(0));
-            }
+            // Para la latencia cuenta desde que vence, no desde que se programó
+            long now = PipelineLatencyRecorder.nowMicros();
+            message.setStageTimes(null);
+            message.markStage(PipelineLatencyRecorder.ACCEPTED, now);
+            message.markStage(PipelineLatencyRecorder.PUBLISHED, now);
+
+            // Ruta del canal del mensaje (EMAIL, SMS, WHATSAPP, BROADCAST...)
+            MessageChannel channel = channelRegistry.of(message);
+            rabbitTemplate.convertAndSend(channel.getExchange(), channel.getRoutingKey(), message);
+            logger.info("📨 {} programado enviado a cola: {}", channel.getType(), message.getRecipients().get(0));
 
-            // Remover del almacén después del envío exitoso
-            scheduledMessages.remove(message.getId());
-            logger.info("✅ Mensaje programado {} enviado y removido. Restantes: {}",
-                    message.getId(), scheduledMessages.size());
+            // Marcar como enviado después del envío exitoso
+            scheduledMessageRepository.markDispatched(message.getId());
+            logger.info("✅ Mensaje programado {} enviado. Restantes: {}",
+                    message.getId(), getScheduledMessageCount());
 
         } catch (Exception e) {
             logger.error("❌ Error enviando mensaje programado {}: {}",
@@ -134,11 +153,13 @@ public class AsyncScheduledMessageProcessor {
         if (message.getRetryCount() >= 3) {
             logger.error("💀 Mensaje programado {} descartado tras {} intentos",
                     message.getId(), message.getRetryCount());
-            scheduledMessages.remove(message.getId());
+            scheduledMessageRepository.markFailed(message.getId());
         } else {
             logger.warn("🔄 Mensaje programado {} marcado para reintento ({}/3)",
                     message.getId(), message.getRetryCount());
-            // El mensaje permanece en el mapa para ser reintentado
+            // Vuelve a PENDING para que cualquier nodo lo reintente en el siguiente ciclo
+            scheduledMessageRepository.markPendingForRetry(message.getId(), message.getRetryCount(),
+                    LocalDateTime.now().plusNanos(pollMillis * 1_000_000L));
         }
     }
 
@@ -146,8 +167,7 @@ public class AsyncScheduledMessageProcessor {
      * Cancelar mensaje programado
      */
     public boolean cancelScheduledMessage(String messageId) {
-        QueueMessage removed = scheduledMessages.remove(messageId);
-        if (removed != null) {
+        if (scheduledMessageRepository.deletePending(messageId)) {
             logger.info("❌ Mensaje programado cancelado: {}", messageId);
             return true;
         }
@@ -159,23 +179,23 @@ public class AsyncScheduledMessageProcessor {
      * Obtener estadísticas
      */
     public int getScheduledMessageCount() {
-        return scheduledMessages.size();
+        return (int) scheduledMessageRepository.countPending();
     }
 
     /**
      * Obtener todos los mensajes programados (para debugging)
      */
     public ConcurrentMap<String, QueueMessage> getAllScheduledMessages() {
-        return new ConcurrentHashMap<>(scheduledMessages);
+        ConcurrentMap<String, QueueMessage> messages = new ConcurrentHashMap<>();
+        scheduledMessageRepository.findPending().forEach(message -> messages.put(message.getId(), message));
+        return messages;
     }
 
     /**
      * Método para obtener mensajes programados por usuario
      */
     public List<QueueMessage> getScheduledMessagesByUser(String userId) {
-        return scheduledMessages.values().stream()
-                .filter(message -> userId.equals(message.getUserId()))
-                .collect(Collectors.toList());
+        return scheduledMessageRepository.findPendingByUser(userId);
     }
 
     /**
@@ -186,18 +206,12 @@ public class AsyncScheduledMessageProcessor {
     public void cleanExpiredMessages() {
         LocalDateTime threshold = LocalDateTime.now().minusDays(1); // Mensajes de más de 1 día
 
-        List<String> expiredIds = scheduledMessages.values().stream()
-                .filter(message -> message.getScheduledTime().isBefore(threshold))
-                .map(QueueMessage::getId)
-                .collect(Collectors.toList());
+        List<String> expiredIds = scheduledMessageRepository.deleteExpired(threshold);
 
-        expiredIds.forEach(id -> {
-            scheduledMessages.remove(id);
-            logger.warn("🗑️ Mensaje programado expirado removido: {}", id);
-        });
+        expiredIds.forEach(id -> logger.warn("🗑️ Mensaje programado expirado removido: {}", id));
 
         if (!expiredIds.isEmpty()) {
             logger.info("🧹 Limpieza completada: {} mensajes expirados removidos", expiredIds.size());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.tfgproject.infrastructure.service;
+
+import java.util.Set;
+
+/**
+ * Parte de un lote no llegó al broker (rechazado o sin confirmar a tiempo).
+ * El resto del lote está encolado; solo los mensajes indicados han quedado FAILED.
+ */
+public class BatchPublishException extends RuntimeException {
+
+    private final Set<String> failedMessageIds;
+
+    public BatchPublishException(String message, Set<String> failedMessageIds) {
+        super(message);
+        this.failedMessageIds = Set.copyOf(failedMessageIds);
+    }
+
+    public Set<String> getFailedMessageIds() {
+        return failedMessageIds;
+    }
+
+    public boolean isFailed(String messageId) {
+        return failedMessageIds.contains(messageId);
+    }
+}
@@ -0,0 +1,214 @@
+package com.tfgproject.infrastructure.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Envío masivo: lee un array JSON o NDJSON en streaming, valida cada elemento y encola por lotes.
+ *
+ * Solo se mantiene en memoria el lote en curso (mensajes y sus resultados), así que el consumo
+ * no depende del tamaño de la petición. Los resultados se entregan al sink lote a lote y en orden.
+ */
+@Service
+public class BulkMessageService {
+    private static final Logger logger = LoggerFactory.getLogger(BulkMessageService.class);
+
+    @Autowired
+    private AsyncMessagePublisher messagePublisher;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${app.messaging.bulk.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Procesa el cuerpo completo. Cada elemento produce uno o dos resultados (canal "both")
+     * con su índice; al final se devuelve el resumen.
+     */
+    public Map<String, Object> process(InputStream body, String defaultUserId, Consumer<Map<String, Object>> sink) throws IOException {
+        Batch batch = new Batch(sink);
+        int index = 0;
+        String parseError = null;
+
+        // readValues recorre igual un array raíz que una secuencia de objetos separados por saltos de línea
+        try (MappingIterator<MessageRequest> items = objectMapper.readerFor(MessageRequest.class).readValues(body)) {
+            while (items.hasNextValue()) {
+                MessageRequest item = items.nextValue();
+                accept(batch, index++, item, defaultUserId);
+                if (batch.messages.size() >= batchSize) {
+                    batch.flush();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Sin un elemento válido no se puede saber dónde empieza el siguiente: se corta aquí
+            parseError = "JSON no válido en el elemento " + index + ": " + e.getMessage();
+            batch.results.add(error(index, parseError));
+        }
+        batch.flush();
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("summary", true);
+        summary.put("items", index);
+        summary.put("accepted", batch.accepted);
+        summary.put("rejected", batch.rejected);
+        summary.put("batches", batch.batches);
+        if (parseError != null) {
+            summary.put("error", parseError);
+        }
+        logger.info("📦 Envío masivo: {} elementos, {} encolados, {} rechazados en {} lotes",
+                index, batch.accepted, batch.rejected, batch.batches);
+        return summary;
+    }
+
+    private void accept(Batch batch, int index, MessageRequest item, String defaultUserId) {
+        String invalid = validate(item);
+        if (invalid != null) {
+            batch.results.add(error(index, invalid));
+            batch.rejected++;
+            return;
+        }
+
+        String userId = item.getUserId() != null && !item.getUserId().isBlank() ? item.getUserId() : defaultUserId;
+        try {
+            // Se convierten todos los canales antes de añadir nada: el elemento entra entero o no entra
+            List<QueueMessage> messages = new ArrayList<>();
+            for (ChannelType type : item.getChannelTypes()) {
+                QueueMessage message = channelRegistry.get(type).toQueueMessage(item);
+                message.setUserId(userId != null ? userId : QueueMessage.DEFAULT_USER);
+                messages.add(message);
+            }
+            messages.forEach(message -> batch.add(index, message));
+        } catch (IllegalArgumentException e) {
+            batch.results.add(error(index, e.getMessage()));
+            batch.rejected++;
+        }
+    }
+
+    private String validate(MessageRequest item) {
+        if (item == null) {
+            return "Elemento vacío";
+        }
+        Set<ConstraintViolation<MessageRequest>> violations = validator.validate(item);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (!item.isValid()) {
+            return "Canal no soportado o falta el asunto del email";
+        }
+        if (item.isBroadcast() || item.isScheduled()) {
+            return "Las difusiones y los mensajes programados no se admiten en el envío masivo";
+        }
+        if (item.getAttachmentPath() != null && !item.getAttachmentPath().isEmpty()) {
+            return "Usa attachmentId (POST /api/attachments) en lugar de attachmentPath";
+        }
+        return null;
+    }
+
+    private static Map<String, Object> error(int index, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        result.put("success", false);
+        result.put("error", message);
+        return result;
+    }
+
+    /**
+     * Lote en curso: mensajes por publicar y resultados pendientes de entregar, en orden de llegada
+     */
+    private class Batch {
+        private final Consumer<Map<String, Object>> sink;
+        private final List<QueueMessage> messages = new ArrayList<>();
+        private final List<Map<String, Object>> results = new ArrayList<>();
+        private int accepted;
+        private int rejected;
+        private int batches;
+
+        Batch(Consumer<Map<String, Object>> sink) {
+            this.sink = sink;
+        }
+
+        void add(int index, QueueMessage message) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", index);
+            result.put("success", true);
+            result.put("messageId", message.getId());
+            result.put("channel", message.getType().toLowerCase());
+            messages.add(message);
+            results.add(result);
+        }
+
+        void flush() {
+            if (!messages.isEmpty()) {
+                batches++;
+                try {
+                    messagePublisher.publishBatch(messages);
+                } catch (BatchPublishException e) {
+                    // Solo los mensajes rechazados o sin confirmar pasan a error
+                    results.stream()
+                            .filter(result -> e.isFailed((String) result.get("messageId")))
+                            .forEach(result -> fail(result, e.getMessage()));
+                } catch (RuntimeException e) {
+                    results.stream()
+                            .filter(result -> result.containsKey("messageId"))
+                            .forEach(result -> fail(result, e.getMessage()));
+                }
+                countPublishedItems();
+            }
+            results.forEach(sink);
+            messages.clear();
+            results.clear();
+        }
+
+        /**
+         * Cuenta por elemento, como los rechazos de validación: un "both" con sus dos mensajes
+         * encolados es un aceptado, y con alguno fallido es un rechazado
+         */
+        private void countPublishedItems() {
+            Map<Object, Boolean> items = new LinkedHashMap<>();
+            for (Map<String, Object> result : results) {
+                if (result.containsKey("messageId")) {
+                    items.merge(result.get("index"), Boolean.TRUE.equals(result.get("success")), Boolean::logicalAnd);
+                }
+            }
+            for (boolean success : items.values()) {
+                if (success) {
+                    accepted++;
+                } else {
+                    rejected++;
+                }
+            }
+        }
+
+        private void fail(Map<String, Object> result, String error) {
+            result.put("success", false);
+            result.put("error", error);
+        }
+    }
+}
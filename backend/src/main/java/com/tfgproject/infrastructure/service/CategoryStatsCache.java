@@ -0,0 +1,362 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.port.out.ContactChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estadísticas por categoría (contactos de la categoría y sus subcategorías, cuántos tienen
+ * email, teléfono o WhatsApp, y número de subcategorías) mantenidas en memoria.
+ *
+ * Cada cambio de pertenencia, de canales de un contacto o de jerarquía ajusta solo los contadores
+ * de la categoría afectada y sus antecesoras, así que leerlas no depende del tamaño de la categoría.
+ * Un contacto cuenta una vez por categoría aunque esté en varias de sus subcategorías; para saberlo
+ * basta con recorrer las pocas categorías del propio contacto.
+ *
+ * Los cambios llegan por ContactChangeNotifier al confirmar la transacción y son idempotentes,
+ * de modo que repetir un evento ya incluido en la carga inicial no descuadra los contadores.
+ */
+@Service
+public class CategoryStatsCache implements ContactChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(CategoryStatsCache.class);
+
+    static final int EMAIL = 1;
+    static final int PHONE = 2;
+    static final int WHATSAPP = 4;
+    private static final int MAX_DEPTH = 64;   // corta ciclos si la jerarquía estuviera corrupta
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private final Map<Long, Member> members = new HashMap<>();
+    private volatile boolean ready;
+
+    // === CONSTRUCCIÓN ===
+
+    /**
+     * Carga inicial en segundo plano; mientras tanto las estadísticas se calculan con la base de datos
+     */
+    @Async("taskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (this) {
+            ready = false;
+            nodes.clear();
+            members.clear();
+            // Primero todos los nodos: el padre puede llegar después que sus hijas
+            jdbcTemplate.query("SELECT id, parent_id FROM categories", rs -> {
+                long id = rs.getLong(1);
+                long parent = rs.getLong(2);
+                nodes.put(id, new Node(rs.wasNull() ? null : parent));
+            });
+            for (Node node : new ArrayList<>(nodes.values())) {
+                adjustSubcategories(node.parent, 1);
+            }
+            jdbcTemplate.query("SELECT m.category_id, m.contact_id, c.email, c.phone, c.whatsapp_id " +
+                    "FROM category_contact m JOIN contacts c ON c.id = m.contact_id", rs -> {
+                addMembershipLocked(rs.getLong(1), rs.getLong(2), flags(rs.getString(3), rs.getString(4), rs.getString(5)));
+            });
+            ready = true;
+        }
+        logger.info("📊 Estadísticas de {} categorías calculadas en {} ms ({} contactos con categoría)",
+                nodes.size(), System.currentTimeMillis() - start, members.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    // === EVENTOS ===
+
+    @Override
+    public synchronized void categoryAdded(Long categoryId, Long parentId) {
+        addCategoryLocked(categoryId, parentId);
+    }
+
+    @Override
+    public synchronized void categoryRemoved(Long categoryId) {
+        removeCategoryLocked(categoryId);
+    }
+
+    @Override
+    public synchronized void membershipAdded(Long categoryId, Contact contact) {
+        addMembershipLocked(categoryId, contact.getId(), flags(contact.getEmail(), contact.getPhone(), contact.getWhatsappId()));
+    }
+
+    @Override
+    public synchronized void membershipRemoved(Long categoryId, Long contactId) {
+        removeMembershipLocked(categoryId, contactId);
+    }
+
+    @Override
+    public synchronized void contactSaved(Contact contact) {
+        setChannelsLocked(contact.getId(), flags(contact.getEmail(), contact.getPhone(), contact.getWhatsappId()));
+    }
+
+    @Override
+    public synchronized void contactRemoved(Long contactId) {
+        Member member = members.get(contactId);
+        if (member != null) {
+            for (long categoryId : member.categories.clone()) {
+                removeMembershipLocked(categoryId, contactId);
+            }
+        }
+    }
+
+    /**
+     * Vuelve a leer los miembros directos de una categoría tras una operación masiva
+     * y aplica solo las diferencias
+     */
+    @Override
+    public void membershipsChanged(Long categoryId) {
+        Map<Long, Integer> current = new HashMap<>();
+        jdbcTemplate.query("SELECT c.id, c.email, c.phone, c.whatsapp_id FROM category_contact m " +
+                "JOIN contacts c ON c.id = m.contact_id WHERE m.category_id = ?", rs -> {
+            current.put(rs.getLong(1), flags(rs.getString(2), rs.getString(3), rs.getString(4)));
+        }, categoryId);
+
+        synchronized (this) {
+            List<Long> removed = new ArrayList<>();
+            for (Map.Entry<Long, Member> entry : members.entrySet()) {
+                if (entry.getValue().has(categoryId) && !current.containsKey(entry.getKey())) {
+                    removed.add(entry.getKey());
+                }
+            }
+            removed.forEach(contactId -> removeMembershipLocked(categoryId, contactId));
+            current.forEach((contactId, flags) -> {
+                setChannelsLocked(contactId, flags);
+                addMembershipLocked(categoryId, contactId, flags);
+            });
+        }
+    }
+
+    // === CONSULTA ===
+
+    /**
+     * Estadísticas de la categoría, o null si no se conoce (aún no cargada o recién creada)
+     */
+    public synchronized Map<String, Object> getStats(Long categoryId) {
+        Node node = nodes.get(categoryId);
+        if (!ready || node == null) {
+            return null;
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalContacts", node.total);
+        stats.put("contactsWithEmail", node.withEmail);
+        stats.put("contactsWithPhone", node.withPhone);
+        stats.put("contactsWithWhatsapp", node.withWhatsapp);
+        stats.put("subcategories", node.subcategories);
+        return stats;
+    }
+
+    // === MANTENIMIENTO INCREMENTAL ===
+
+    private void addCategoryLocked(Long categoryId, Long parentId) {
+        Node node = nodes.get(categoryId);
+        if (node == null) {
+            nodes.put(categoryId, new Node(parentId));
+            adjustSubcategories(parentId, 1);
+        }
+    }
+
+    private void removeCategoryLocked(Long categoryId) {
+        Node node = nodes.get(categoryId);
+        if (node == null) {
+            return;
+        }
+
+        List<Long> directMembers = new ArrayList<>();
+        for (Map.Entry<Long, Member> entry : members.entrySet()) {
+            if (entry.getValue().has(categoryId)) {
+                directMembers.add(entry.getKey());
+            }
+        }
+        directMembers.forEach(contactId -> removeMembershipLocked(categoryId, contactId));
+
+        // Las subcategorías suben un nivel: sus contactos siguen contando en los mismos antecesores
+        int children = 0;
+        for (Node other : nodes.values()) {
+            if (categoryId.equals(other.parent)) {
+                other.parent = node.parent;
+                children++;
+            }
+        }
+        adjustSubcategories(node.parent, children - 1);
+        nodes.remove(categoryId);
+    }
+
+    private void addMembershipLocked(long categoryId, long contactId, int flags) {
+        if (!nodes.containsKey(categoryId)) {
+            return;
+        }
+        Member member = members.computeIfAbsent(contactId, id -> new Member(flags));
+        if (member.has(categoryId)) {
+            return;
+        }
+
+        int depth = 0;
+        for (Long ancestor = categoryId; ancestor != null && depth++ < MAX_DEPTH; ancestor = parentOf(ancestor)) {
+            if (!covers(member, ancestor)) {
+                nodes.get(ancestor).add(member.flags, 1);
+            }
+        }
+        member.add(categoryId);
+    }
+
+    private void removeMembershipLocked(long categoryId, long contactId) {
+        Member member = members.get(contactId);
+        if (member == null || !member.has(categoryId)) {
+            return;
+        }
+        member.remove(categoryId);
+
+        int depth = 0;
+        for (Long ancestor = categoryId; ancestor != null && depth++ < MAX_DEPTH; ancestor = parentOf(ancestor)) {
+            Node node = nodes.get(ancestor);
+            if (node != null && !covers(member, ancestor)) {
+                node.add(member.flags, -1);
+            }
+        }
+        if (member.categories.length == 0) {
+            members.remove(contactId);
+        }
+    }
+
+    private void setChannelsLocked(long contactId, int flags) {
+        Member member = members.get(contactId);
+        if (member == null || member.flags == flags) {
+            return;
+        }
+        for (Long categoryId : coveredCategories(member)) {
+            Node node = nodes.get(categoryId);
+            node.add(member.flags, -1);
+            node.add(flags, 1);
+        }
+        member.flags = flags;
+    }
+
+    /**
+     * ¿Está el contacto en la categoría o en alguna de sus subcategorías?
+     */
+    private boolean covers(Member member, long categoryId) {
+        for (long own : member.categories) {
+            int depth = 0;
+            for (Long ancestor = own; ancestor != null && depth++ < MAX_DEPTH; ancestor = parentOf(ancestor)) {
+                if (ancestor == categoryId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Set<Long> coveredCategories(Member member) {
+        Set<Long> covered = new HashSet<>();
+        for (long own : member.categories) {
+            int depth = 0;
+            for (Long ancestor = own; ancestor != null && depth++ < MAX_DEPTH; ancestor = parentOf(ancestor)) {
+                if (nodes.containsKey(ancestor)) {
+                    covered.add(ancestor);
+                }
+            }
+        }
+        return covered;
+    }
+
+    private Long parentOf(long categoryId) {
+        Node node = nodes.get(categoryId);
+        return node != null ? node.parent : null;
+    }
+
+    private void adjustSubcategories(Long parentId, int delta) {
+        Node parent = parentId != null ? nodes.get(parentId) : null;
+        if (parent != null) {
+            parent.subcategories += delta;
+        }
+    }
+
+    static int flags(String email, String phone, String whatsappId) {
+        int flags = 0;
+        if (email != null && !email.trim().isEmpty()) flags |= EMAIL;
+        if (phone != null && !phone.trim().isEmpty()) flags |= PHONE;
+        if (whatsappId != null && !whatsappId.trim().isEmpty()) flags |= WHATSAPP;
+        return flags;
+    }
+
+    private static final class Node {
+        private Long parent;
+        private int total;
+        private int withEmail;
+        private int withPhone;
+        private int withWhatsapp;
+        private int subcategories;
+
+        Node(Long parent) {
+            this.parent = parent;
+        }
+
+        void add(int flags, int delta) {
+            total += delta;
+            if ((flags & EMAIL) != 0) withEmail += delta;
+            if ((flags & PHONE) != 0) withPhone += delta;
+            if ((flags & WHATSAPP) != 0) withWhatsapp += delta;
+        }
+    }
+
+    /**
+     * Canales de un contacto y categorías a las que pertenece directamente (suelen ser pocas)
+     */
+    private static final class Member {
+        private int flags;
+        private long[] categories = new long[0];
+
+        Member(int flags) {
+            this.flags = flags;
+        }
+
+        boolean has(long categoryId) {
+            for (long own : categories) {
+                if (own == categoryId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(long categoryId) {
+            categories = Arrays.copyOf(categories, categories.length + 1);
+            categories[categories.length - 1] = categoryId;
+        }
+
+        void remove(long categoryId) {
+            for (int i = 0; i < categories.length; i++) {
+                if (categories[i] == categoryId) {
+                    categories[i] = categories[categories.length - 1];
+                    categories = Arrays.copyOf(categories, categories.length - 1);
+                    return;
+                }
+            }
+        }
+    }
+}
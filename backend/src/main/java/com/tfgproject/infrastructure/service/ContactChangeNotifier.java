@@ -0,0 +1,86 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.port.out.ContactChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reparte los cambios de contactos y categorías entre los ContactChangeListener
+ * cuando la transacción confirma (o en el acto, si no hay transacción).
+ * Un oyente que falla no impide que reciban el evento los demás.
+ */
+@Component
+public class ContactChangeNotifier {
+    private static final Logger logger = LoggerFactory.getLogger(ContactChangeNotifier.class);
+
+    @Autowired(required = false)
+    private List<ContactChangeListener> listeners = List.of();
+
+    public void contactSaved(Contact contact) {
+        publish(listener -> listener.contactSaved(contact));
+    }
+
+    public void contactRemoved(Long contactId) {
+        publish(listener -> listener.contactRemoved(contactId));
+    }
+
+    public void contactsImported(long afterId) {
+        publish(listener -> listener.contactsImported(afterId));
+    }
+
+    public void categoryAdded(Long categoryId, Long parentId) {
+        publish(listener -> listener.categoryAdded(categoryId, parentId));
+    }
+
+    public void categoryUpdated(Long categoryId) {
+        publish(listener -> listener.categoryUpdated(categoryId));
+    }
+
+    public void categoryRemoved(Long categoryId) {
+        publish(listener -> listener.categoryRemoved(categoryId));
+    }
+
+    public void membershipAdded(Long categoryId, Contact contact) {
+        publish(listener -> listener.membershipAdded(categoryId, contact));
+    }
+
+    public void membershipRemoved(Long categoryId, Long contactId) {
+        publish(listener -> listener.membershipRemoved(categoryId, contactId));
+    }
+
+    public void membershipsChanged(Long categoryId) {
+        publish(listener -> listener.membershipsChanged(categoryId));
+    }
+
+    private void publish(Consumer<ContactChangeListener> event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deliver(event);
+                }
+            });
+        } else {
+            deliver(event);
+        }
+    }
+
+    private void deliver(Consumer<ContactChangeListener> event) {
+        for (ContactChangeListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (Exception e) {
+                logger.warn("⚠️ {} no pudo aplicar un cambio de contactos: {}",
+                        listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+}
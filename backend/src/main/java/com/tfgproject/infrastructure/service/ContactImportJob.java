@@ -0,0 +1,114 @@
+package com.tfgproject.infrastructure.service;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estado de una importación de contactos en segundo plano.
+ * Los contadores se actualizan desde el hilo de importación y se consultan desde las peticiones de progreso.
+ */
+public class ContactImportJob {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    private final String id;
+    private final String format;
+    private final Path source;
+    private final Path errorFile;
+    private final long totalBytes;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    final AtomicLong bytesRead = new AtomicLong();
+    final AtomicLong processed = new AtomicLong();
+    final AtomicLong imported = new AtomicLong();
+    final AtomicLong duplicates = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+
+    private volatile Status status = Status.PENDING;
+    private volatile String error;
+    private volatile LocalDateTime finishedAt;
+
+    public ContactImportJob(String id, String format, Path source, Path errorFile, long totalBytes) {
+        this.id = id;
+        this.format = format;
+        this.source = source;
+        this.errorFile = errorFile;
+        this.totalBytes = totalBytes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    public Path getErrorFile() {
+        return errorFile;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getImported() {
+        return imported.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void finish(String failure) {
+        error = failure;
+        finishedAt = LocalDateTime.now();
+        status = failure == null ? Status.COMPLETED : Status.FAILED;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", id);
+        map.put("format", format);
+        map.put("status", status.name());
+        map.put("progress", totalBytes > 0 ? Math.min(100.0, Math.round(bytesRead.get() * 1000.0 / totalBytes) / 10.0) : 100.0);
+        map.put("processed", processed.get());
+        map.put("imported", imported.get());
+        map.put("duplicates", duplicates.get());
+        map.put("rejected", rejected.get());
+        map.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            map.put("finishedAt", finishedAt.toString());
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        if (rejected.get() + duplicates.get() > 0) {
+            map.put("errorsUrl", "/api/contacts/import/" + id + "/errors");
+        }
+        return map;
+    }
+}
@@ -0,0 +1,422 @@
+package com.tfgproject.infrastructure.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.application.dto.request.ContactRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Importación masiva de contactos desde CSV o NDJSON.
+ *
+ * El cuerpo se vuelca a disco y se procesa en segundo plano fila a fila: los duplicados se
+ * descartan contra un índice en memoria de emails y teléfonos (precargado de la tabla), y los
+ * contactos válidos se insertan por lotes JDBC en una transacción por lote. Las filas
+ * rechazadas se escriben en un CSV de errores que se puede descargar al terminar.
+ */
+@Service
+public class ContactImportService {
+    private static final Logger logger = LoggerFactory.getLogger(ContactImportService.class);
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    private static final String INSERT_CONTACT =
+            "INSERT INTO contacts (name, email, phone, whatsapp_id, notes, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ContactChangeNotifier contactChanges;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    @Value("${app.contacts.import.dir:./data/imports}")
+    private String importDir;
+
+    @Value("${app.contacts.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.contacts.import.retention-ms:86400000}")
+    private long retentionMillis;
+
+    private final Map<String, ContactImportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Guarda el fichero en disco (en streaming) y lanza la importación en segundo plano
+     */
+    public ContactImportJob startImport(InputStream body, String format) throws IOException {
+        Path dir = Paths.get(importDir);
+        Files.createDirectories(dir);
+
+        String id = UUID.randomUUID().toString();
+        Path source = dir.resolve(id + "." + format);
+        long size = Files.copy(body, source);
+
+        ContactImportJob job = new ContactImportJob(id, format, source, dir.resolve(id + "-errores.csv"), size);
+        jobs.put(id, job);
+        logger.info("📥 Importación de contactos {} recibida ({} bytes, {})", id, size, format);
+
+        taskExecutor.execute(() -> runImport(job));
+        return job;
+    }
+
+    public Optional<ContactImportJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    /**
+     * Formato a partir del parámetro explícito o, si no lo hay, del Content-Type
+     */
+    public static String resolveFormat(String format, String contentType) {
+        if (format != null && !format.isBlank()) {
+            String normalized = format.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.equals(FORMAT_CSV) && !normalized.equals(FORMAT_NDJSON) && !normalized.equals("json")) {
+                throw new IllegalArgumentException("Formato no soportado: " + format + " (csv o ndjson)");
+            }
+            return normalized.equals(FORMAT_CSV) ? FORMAT_CSV : FORMAT_NDJSON;
+        }
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv") ? FORMAT_CSV : FORMAT_NDJSON;
+    }
+
+    void runImport(ContactImportJob job) {
+        job.start();
+        long start = System.currentTimeMillis();
+        // Las filas se insertan por JDBC: al terminar se indexan las que tengan id mayor
+        Long lastIdBefore = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM contacts", Long.class);
+
+        try (InputStream in = new CountingInputStream(Files.newInputStream(job.getSource()), job);
+             BufferedWriter errors = Files.newBufferedWriter(job.getErrorFile(), StandardCharsets.UTF_8)) {
+            errors.write("fila,error,datos\n");
+
+            ImportRun run = new ImportRun(job, errors, loadExistingIndex());
+            String failure = null;
+            try {
+                if (FORMAT_CSV.equals(job.getFormat())) {
+                    readCsv(in, run);
+                } else {
+                    readNdjson(in, run);
+                }
+            } catch (IOException e) {
+                // Fichero mal formado: se guarda lo leído hasta ese punto y el trabajo queda FAILED
+                failure = e.getMessage();
+            }
+            run.flush();
+            errors.flush();
+            job.finish(failure);
+
+            if (failure != null) {
+                logger.error("❌ Importación de contactos {} interrumpida: {}", job.getId(), failure);
+            }
+
+        } catch (Exception e) {
+            logger.error("❌ Importación de contactos {} interrumpida: {}", job.getId(), e.getMessage());
+            job.finish(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(job.getSource());
+            } catch (IOException e) {
+                logger.warn("⚠️ No se pudo borrar el fichero de importación {}: {}", job.getSource(), e.getMessage());
+            }
+        }
+
+        if (job.getImported() > 0) {
+            contactChanges.contactsImported(lastIdBefore != null ? lastIdBefore : 0L);
+        }
+
+        logger.info("✅ Importación {} terminada en {} ms: {} importados, {} duplicados, {} rechazados",
+                job.getId(), System.currentTimeMillis() - start, job.getImported(), job.getDuplicates(), job.getRejected());
+    }
+
+    // === LECTURA ===
+
+    private void readCsv(InputStream in, ImportRun run) throws IOException {
+        CsvRowReader reader = new CsvRowReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = reader.next();
+        if (header == null) {
+            return;
+        }
+
+        // Columnas por nombre, en cualquier orden; se ignoran las desconocidas
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT).replace("_", "");
+            columns.put(name, i);
+        }
+        if (!columns.containsKey("name") && !columns.containsKey("nombre")) {
+            throw new IOException("La cabecera del CSV debe incluir la columna name");
+        }
+
+        List<String> row;
+        while ((row = reader.next()) != null) {
+            ContactRequest request = new ContactRequest(
+                    column(row, columns, "name", "nombre"),
+                    column(row, columns, "email", "correo"),
+                    column(row, columns, "phone", "telefono"),
+                    column(row, columns, "whatsappid", "whatsapp"),
+                    column(row, columns, "notes", "notas"));
+            run.accept(reader.getRowLine(), request, String.join(",", row.stream().map(ContactImportService::csvField).toList()));
+        }
+    }
+
+    private void readNdjson(InputStream in, ImportRun run) throws IOException {
+        long index = 0;
+        try (MappingIterator<ContactRequest> items = objectMapper.readerFor(ContactRequest.class).readValues(in)) {
+            while (items.hasNextValue()) {
+                index++;
+                ContactRequest request = items.nextValue();
+                run.accept(index, request, objectMapper.writeValueAsString(request));
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("JSON no válido en el elemento " + (index + 1) + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String column(List<String> row, Map<String, Integer> columns, String name, String alias) {
+        Integer index = columns.containsKey(name) ? columns.get(name) : columns.get(alias);
+        if (index == null || index >= row.size()) {
+            return null;
+        }
+        String value = row.get(index);
+        return value.isBlank() ? null : value;
+    }
+
+    // === DEDUPLICACIÓN ===
+
+    /**
+     * Índice de emails y teléfonos ya guardados, leído en streaming sin cargar entidades
+     */
+    private Set<String> loadExistingIndex() {
+        Set<String> keys = new HashSet<>();
+        jdbcTemplate.query("SELECT email, phone FROM contacts", rs -> {
+            addKeys(keys, rs.getString(1), rs.getString(2));
+        });
+        return keys;
+    }
+
+    private static void addKeys(Set<String> keys, String email, String phone) {
+        if (email != null && !email.isBlank()) {
+            keys.add(emailKey(email));
+        }
+        if (phone != null && !phone.isBlank()) {
+            keys.add(phoneKey(phone));
+        }
+    }
+
+    static String emailKey(String email) {
+        return "e:" + email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String phoneKey(String phone) {
+        return "p:" + phone.replaceAll("[\\s\\-()]", "");
+    }
+
+    // === ESCRITURA ===
+
+    private void insertBatch(List<ContactRequest> batch) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_CONTACT, batch, batch.size(), (ps, contact) -> {
+                    ps.setString(1, contact.getName().trim());
+                    ps.setString(2, contact.getEmail() != null ? contact.getEmail().trim() : null);
+                    ps.setString(3, contact.getPhone() != null ? contact.getPhone().trim() : null);
+                    ps.setString(4, contact.getWhatsappId());
+                    ps.setString(5, contact.getNotes());
+                    ps.setTimestamp(6, now);
+                    ps.setTimestamp(7, now);
+                }));
+    }
+
+    /**
+     * Una importación en curso: índice de claves, lote pendiente y fichero de errores
+     */
+    private class ImportRun {
+        private final ContactImportJob job;
+        private final BufferedWriter errors;
+        private final Set<String> keys;
+        private final List<ContactRequest> batch = new ArrayList<>();
+        private final List<Long> batchRows = new ArrayList<>();
+        private final List<String> batchRaw = new ArrayList<>();
+
+        ImportRun(ContactImportJob job, BufferedWriter errors, Set<String> keys) {
+            this.job = job;
+            this.errors = errors;
+            this.keys = keys;
+        }
+
+        void accept(long row, ContactRequest request, String raw) throws IOException {
+            job.processed.incrementAndGet();
+
+            String invalid = validate(request);
+            if (invalid != null) {
+                reject(row, invalid, raw);
+                job.rejected.incrementAndGet();
+                return;
+            }
+
+            String emailKey = request.getEmail() != null ? emailKey(request.getEmail()) : null;
+            String phoneKey = request.getPhone() != null ? phoneKey(request.getPhone()) : null;
+            if ((emailKey != null && keys.contains(emailKey)) || (phoneKey != null && keys.contains(phoneKey))) {
+                reject(row, "Duplicado: ya existe un contacto con este email o teléfono", raw);
+                job.duplicates.incrementAndGet();
+                return;
+            }
+            addKeys(keys, request.getEmail(), request.getPhone());
+
+            batch.add(request);
+            batchRows.add(row);
+            batchRaw.add(raw);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                insertBatch(batch);
+                job.imported.addAndGet(batch.size());
+            } catch (DataAccessException e) {
+                // El lote se deshizo entero: se reintenta fila a fila para aislar la que falla
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        insertBatch(List.of(batch.get(i)));
+                        job.imported.incrementAndGet();
+                    } catch (DataAccessException rowError) {
+                        reject(batchRows.get(i), "Error de base de datos: " + rowError.getMostSpecificCause().getMessage(), batchRaw.get(i));
+                        job.rejected.incrementAndGet();
+                    }
+                }
+            }
+            batch.clear();
+            batchRows.clear();
+            batchRaw.clear();
+        }
+
+        private void reject(long row, String reason, String raw) throws IOException {
+            errors.write(row + "," + csvField(reason) + "," + csvField(raw) + "\n");
+        }
+    }
+
+    private String validate(ContactRequest request) {
+        if (request == null) {
+            return "Fila vacía";
+        }
+        Set<ConstraintViolation<ContactRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (!request.hasValidContactInfo()) {
+            return "El contacto debe tener al menos email o teléfono";
+        }
+        return null;
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    /**
+     * Borra los trabajos terminados (y su fichero de errores) pasado el tiempo de retención
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void cleanFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusNanos(retentionMillis * 1_000_000L);
+        jobs.values().removeIf(job -> {
+            if (!job.isFinished() || job.getFinishedAt().isAfter(threshold)) {
+                return false;
+            }
+            try {
+                Files.deleteIfExists(job.getErrorFile());
+            } catch (IOException e) {
+                logger.warn("⚠️ No se pudo borrar el fichero de errores {}: {}", job.getErrorFile(), e.getMessage());
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Cuenta los bytes leídos del fichero para informar del progreso
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final ContactImportJob job;
+
+        CountingInputStream(InputStream in, ContactImportJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                job.bytesRead.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                job.bytesRead.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
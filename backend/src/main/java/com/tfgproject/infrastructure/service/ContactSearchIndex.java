@@ -0,0 +1,531 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.port.out.ContactChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda en memoria sobre nombre, email, teléfono y notas de los contactos.
+ *
+ * Diccionario de términos ordenado (búsqueda exacta y por prefijo con un rango del árbol) con
+ * listas de apariciones en las que solo se añade al final: cada versión de un contacto recibe un
+ * documento nuevo y la anterior se marca como borrada, y las listas se compactan cuando los
+ * borrados pasan de un umbral. La búsqueda aproximada (una o dos erratas) se limita a las
+ * palabras de nombre y notas que empiezan por la misma letra.
+ *
+ * Las consultas devuelven ids de contacto ordenados por relevancia; la página se carga después de la base de datos.
+ */
+@Service
+public class ContactSearchIndex implements ContactChangeListener {
+    private static final Logger logger = LoggerFactory.getLogger(ContactSearchIndex.class);
+
+    static final int FIELD_NAME = 0;
+    static final int FIELD_EMAIL = 1;
+    static final int FIELD_PHONE = 2;
+    static final int FIELD_NOTES = 3;
+    private static final float[] FIELD_WEIGHTS = {4f, 3f, 3f, 1f};
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern PHONE_QUERY = Pattern.compile("\\+?[\\d\\s().\\-]*\\d{3}[\\d\\s().\\-]*");
+    private static final int MAX_NOTE_TERMS = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.contacts.search.max-candidates:10000}")
+    private int maxCandidates;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Posting> terms = new TreeMap<>();
+    private final TreeSet<String> wordTerms = new TreeSet<>();   // candidatos para la búsqueda aproximada
+    private final Map<Long, Integer> docByContact = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private long[] docContact = new long[1024];
+    private int docCount;
+    private int deletedDocs;
+    private volatile boolean ready;
+
+    // === CONSTRUCCIÓN Y SINCRONIZACIÓN ===
+
+    /**
+     * Carga inicial en segundo plano; mientras tanto las búsquedas van a la base de datos
+     */
+    @Async("taskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            clear();
+            jdbcTemplate.query("SELECT id, name, email, phone, notes FROM contacts", rs -> {
+                indexLocked(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+            });
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("🔎 Índice de contactos construido: {} contactos, {} términos en {} ms",
+                size(), terms.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Indexa los contactos con id mayor que el dado (altas por lotes JDBC, p. ej. importaciones)
+     */
+    public void indexSince(long afterId) {
+        lock.writeLock().lock();
+        try {
+            jdbcTemplate.query("SELECT id, name, email, phone, notes FROM contacts WHERE id > ?", rs -> {
+                indexLocked(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+            }, afterId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(Contact contact) {
+        lock.writeLock().lock();
+        try {
+            indexLocked(contact.getId(), contact.getName(), contact.getEmail(), contact.getPhone(), contact.getNotes());
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long contactId) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docByContact.remove(contactId);
+            if (doc != null) {
+                live.clear(doc);
+                deletedDocs++;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // === EVENTOS DE CONTACTOS ===
+
+    @Override
+    public void contactSaved(Contact contact) {
+        index(contact);
+    }
+
+    @Override
+    public void contactRemoved(Long contactId) {
+        remove(contactId);
+    }
+
+    @Override
+    public void contactsImported(long afterId) {
+        indexSince(afterId);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    public int size() {
+        return docByContact.size();
+    }
+
+    private void clear() {
+        terms.clear();
+        wordTerms.clear();
+        docByContact.clear();
+        live.clear();
+        docContact = new long[1024];
+        docCount = 0;
+        deletedDocs = 0;
+    }
+
+    private void indexLocked(long contactId, String name, String email, String phone, String notes) {
+        Integer previous = docByContact.get(contactId);
+        if (previous != null) {
+            live.clear(previous);
+            deletedDocs++;
+        }
+
+        int doc = docCount++;
+        if (doc >= docContact.length) {
+            docContact = Arrays.copyOf(docContact, docContact.length * 2);
+        }
+        docContact[doc] = contactId;
+        live.set(doc);
+        docByContact.put(contactId, doc);
+
+        addTerms(doc, FIELD_NAME, wordTokens(name, Integer.MAX_VALUE), true);
+        addTerms(doc, FIELD_EMAIL, emailTokens(email), false);
+        addTerms(doc, FIELD_PHONE, phoneTokens(phone), false);
+        addTerms(doc, FIELD_NOTES, wordTokens(notes, MAX_NOTE_TERMS), true);
+    }
+
+    private void addTerms(int doc, int field, Set<String> tokens, boolean words) {
+        for (String token : tokens) {
+            terms.computeIfAbsent(token, t -> new Posting()).add(doc << 2 | field);
+            if (words) {
+                wordTerms.add(token);
+            }
+        }
+    }
+
+    /**
+     * Reescribe las listas sin los documentos borrados cuando estos pasan del 25 %
+     */
+    private void compactIfNeeded() {
+        if (deletedDocs < 10_000 || deletedDocs * 4 < docCount) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int[] remap = new int[docCount];
+        long[] contacts = new long[Math.max(1024, docByContact.size() * 2)];
+        int next = 0;
+        for (int doc = live.nextSetBit(0); doc >= 0 && doc < docCount; doc = live.nextSetBit(doc + 1)) {
+            remap[doc] = next;
+            contacts[next] = docContact[doc];
+            docByContact.put(docContact[doc], next);
+            next++;
+        }
+
+        var iterator = terms.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Posting posting = iterator.next().getValue();
+            int kept = 0;
+            for (int i = 0; i < posting.size; i++) {
+                int doc = posting.entries[i] >>> 2;
+                if (live.get(doc)) {
+                    posting.entries[kept++] = remap[doc] << 2 | (posting.entries[i] & 3);
+                }
+            }
+            posting.size = kept;
+            if (kept == 0) {
+                iterator.remove();
+            }
+        }
+        wordTerms.retainAll(terms.keySet());
+
+        live.clear();
+        live.set(0, next);
+        docContact = contacts;
+        docCount = next;
+        deletedDocs = 0;
+        logger.info("🧹 Índice de contactos compactado en {} ms", System.currentTimeMillis() - start);
+    }
+
+    // === CONSULTA ===
+
+    /**
+     * Búsqueda por palabras: todas deben coincidir (exacta, por prefijo o, si fuzzy, con erratas)
+     */
+    public SearchResult search(String query, int page, int size, boolean fuzzy) {
+        long start = System.nanoTime();
+        List<QueryToken> tokens = queryTokens(query);
+        if (tokens.isEmpty()) {
+            return new SearchResult(List.of(), 0, false, 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            boolean truncated = false;
+            List<Map<Integer, Float>> perToken = new ArrayList<>(tokens.size());
+            for (QueryToken token : tokens) {
+                Map<Integer, Float> scores = new HashMap<>();
+                truncated |= collect(token, fuzzy, scores);
+                if (scores.isEmpty()) {
+                    return new SearchResult(List.of(), 0, false, (System.nanoTime() - start) / 1000);
+                }
+                perToken.add(scores);
+            }
+
+            // Intersección partiendo de la palabra más selectiva
+            perToken.sort(Comparator.comparingInt(Map::size));
+            int wanted = Math.max(1, (page + 1) * size);
+            PriorityQueue<float[]> top = new PriorityQueue<>(wanted + 1,
+                    (a, b) -> a[0] != b[0] ? Float.compare(a[0], b[0]) : Float.compare(b[1], a[1]));
+            int total = 0;
+            for (Map.Entry<Integer, Float> entry : perToken.get(0).entrySet()) {
+                float score = entry.getValue();
+                boolean all = true;
+                for (int i = 1; i < perToken.size() && all; i++) {
+                    Float other = perToken.get(i).get(entry.getKey());
+                    if (other == null) {
+                        all = false;
+                    } else {
+                        score += other;
+                    }
+                }
+                if (!all) {
+                    continue;
+                }
+                total++;
+                top.add(new float[]{score, entry.getKey()});
+                if (top.size() > wanted) {
+                    top.poll();
+                }
+            }
+
+            List<float[]> ranked = new ArrayList<>(top);
+            ranked.sort((a, b) -> a[0] != b[0] ? Float.compare(b[0], a[0]) : Float.compare(a[1], b[1]));
+            List<Long> ids = new ArrayList<>(size);
+            for (int i = page * size; i < ranked.size() && ids.size() < size; i++) {
+                ids.add(docContact[(int) ranked.get(i)[1]]);
+            }
+            return new SearchResult(ids, total, truncated, (System.nanoTime() - start) / 1000);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Puntúa los documentos de una palabra de la consulta. Devuelve true si se cortó por el máximo de candidatos.
+     */
+    private boolean collect(QueryToken token, boolean fuzzy, Map<Integer, Float> scores) {
+        String term = token.term;
+
+        Posting exact = terms.get(term);
+        if (exact != null) {
+            score(exact, 3f, token, scores);
+        }
+
+        NavigableMap<String, Posting> prefixed = terms.subMap(term, false, term + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Posting> entry : prefixed.entrySet()) {
+            if (scores.size() >= maxCandidates) {
+                return true;
+            }
+            score(entry.getValue(), 2f * term.length() / entry.getKey().length(), token, scores);
+        }
+
+        int distance = term.length() >= 8 ? 2 : term.length() >= 4 ? 1 : 0;
+        if (fuzzy && token.words && distance > 0) {
+            String first = term.substring(0, 1);
+            for (String candidate : wordTerms.subSet(first, first + Character.MAX_VALUE)) {
+                if (scores.size() >= maxCandidates) {
+                    return true;
+                }
+                if (Math.abs(candidate.length() - term.length()) <= distance && !candidate.equals(term)
+                        && !candidate.startsWith(term) && editDistance(term, candidate, distance) <= distance) {
+                    score(terms.get(candidate), 1f, token, scores);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void score(Posting posting, float base, QueryToken token, Map<Integer, Float> scores) {
+        for (int i = 0; i < posting.size; i++) {
+            int entry = posting.entries[i];
+            int doc = entry >>> 2;
+            int field = entry & 3;
+            if (!live.get(doc) || (token.phone && field != FIELD_PHONE)) {
+                continue;
+            }
+            float score = base * FIELD_WEIGHTS[field];
+            scores.merge(doc, score, Math::max);
+        }
+    }
+
+    /**
+     * Distancia de Damerau-Levenshtein (con transposiciones) acotada: corta en cuanto supera el máximo
+     */
+    static int editDistance(String a, String b, int max) {
+        int[] prevPrev = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], prevPrev[j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = current;
+            current = recycled;
+        }
+        return prev[b.length()];
+    }
+
+    // === NORMALIZACIÓN ===
+
+    static String fold(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static Set<String> wordTokens(String text, int max) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : NON_ALNUM.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+                if (tokens.size() >= max) {
+                    break;
+                }
+            }
+        }
+        return tokens;
+    }
+
+    static Set<String> emailTokens(String email) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (email == null || email.isBlank()) {
+            return tokens;
+        }
+        String folded = fold(email.trim());
+        tokens.add(folded);
+        int at = folded.indexOf('@');
+        if (at > 0) {
+            tokens.add(folded.substring(0, at));
+            tokens.add(folded.substring(at + 1));
+        }
+        tokens.addAll(wordTokens(folded, Integer.MAX_VALUE));
+        return tokens;
+    }
+
+    static Set<String> phoneTokens(String phone) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (phone == null) {
+            return tokens;
+        }
+        String digits = phone.replaceAll("\\D", "");
+        if (!digits.isEmpty()) {
+            tokens.add(digits);
+            // Número nacional sin prefijo de país: "+34 644..." también se encuentra por "644..."
+            if (digits.length() > 9) {
+                tokens.add(digits.substring(digits.length() - 9));
+            }
+        }
+        return tokens;
+    }
+
+    private static List<QueryToken> queryTokens(String query) {
+        List<QueryToken> tokens = new ArrayList<>();
+        if (query == null) {
+            return tokens;
+        }
+        // Un teléfono escrito con espacios ("699 888 777") es una sola palabra
+        if (PHONE_QUERY.matcher(query.trim()).matches()) {
+            tokens.add(new QueryToken(query.replaceAll("\\D", ""), false, true));
+            return tokens;
+        }
+        for (String raw : query.trim().split("\\s+")) {
+            if (raw.isEmpty()) {
+                continue;
+            }
+            if (raw.contains("@")) {
+                tokens.add(new QueryToken(fold(raw), false, false));
+            } else if (PHONE_QUERY.matcher(raw).matches()) {
+                tokens.add(new QueryToken(raw.replaceAll("\\D", ""), false, true));
+            } else {
+                for (String word : wordTokens(raw, Integer.MAX_VALUE)) {
+                    tokens.add(new QueryToken(word, true, false));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static final class QueryToken {
+        private final String term;
+        private final boolean words;
+        private final boolean phone;
+
+        QueryToken(String term, boolean words, boolean phone) {
+            this.term = term;
+            this.words = words;
+            this.phone = phone;
+        }
+    }
+
+    /**
+     * Lista de apariciones: entradas (documento << 2 | campo) en orden de alta
+     */
+    private static final class Posting {
+        private int[] entries = new int[2];
+        private int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+    }
+
+    public static class SearchResult {
+        private final List<Long> contactIds;
+        private final int total;
+        private final boolean truncated;
+        private final long tookMicros;
+
+        public SearchResult(List<Long> contactIds, int total, boolean truncated, long tookMicros) {
+            this.contactIds = contactIds;
+            this.total = total;
+            this.truncated = truncated;
+            this.tookMicros = tookMicros;
+        }
+
+        public List<Long> getContactIds() {
+            return contactIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public long getTookMicros() {
+            return tookMicros;
+        }
+    }
+}
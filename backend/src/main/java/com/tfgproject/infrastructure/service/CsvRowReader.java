@@ -0,0 +1,134 @@
+package com.tfgproject.infrastructure.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector de CSV fila a fila (RFC 4180): campos entre comillas, comillas dobladas y saltos de
+ * línea dentro de un campo. Solo guarda la fila en curso, así que el fichero puede ser enorme.
+ *
+ * El separador se deduce de la cabecera: ';' si aparece antes que ',' (Excel en español), si no ','.
+ */
+public class CsvRowReader {
+
+    private final Reader in;
+    private char separator;
+    private boolean separatorKnown;
+    private int pending = -2; // carácter leído de más; -2 = ninguno
+    private long line = 1;
+    private long rowLine;
+
+    public CsvRowReader(Reader in) {
+        this.in = in;
+    }
+
+    public CsvRowReader(Reader in, char separator) {
+        this.in = in;
+        this.separator = separator;
+        this.separatorKnown = true;
+    }
+
+    /**
+     * Siguiente fila, o null al final del fichero. Las líneas vacías se saltan.
+     */
+    public List<String> next() throws IOException {
+        while (true) {
+            rowLine = line;
+            List<String> row = readRow();
+            if (row == null) {
+                return null;
+            }
+            if (row.size() > 1 || !row.get(0).isEmpty()) {
+                return row;
+            }
+        }
+    }
+
+    /**
+     * Línea del fichero en la que empieza la última fila devuelta
+     */
+    public long getRowLine() {
+        return rowLine;
+    }
+
+    private List<String> readRow() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Comillas sin cerrar en la fila que empieza en la línea " + rowLine);
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == -1 || c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        unread(next);
+                    }
+                }
+                if (c != -1) {
+                    line++;
+                }
+                fields.add(wasQuoted ? field.toString() : field.toString().trim());
+                return fields;
+            } else if (c == '"' && field.toString().isBlank()) {
+                field.setLength(0);
+                quoted = true;
+                wasQuoted = true;
+            } else if (isSeparator((char) c)) {
+                fields.add(wasQuoted ? field.toString() : field.toString().trim());
+                field.setLength(0);
+                wasQuoted = false;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private boolean isSeparator(char c) {
+        if (!separatorKnown && (c == ',' || c == ';')) {
+            separator = c;
+            separatorKnown = true;
+        }
+        return separatorKnown && c == separator;
+    }
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+}
@@ -0,0 +1,176 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.service.MessageStatusService;
+import com.tfgproject.shared.model.EmailMessage;
+import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.shared.model.SmsMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Envío directo de mensajes sueltos y urgentes (OTP): sin pasar por RabbitMQ.
+ *
+ * El envío se hace en un pool propio con un tiempo máximo. Si falla se encola al momento;
+ * si vence el tiempo, el envío ya está en curso y no se puede deshacer, así que solo se
+ * encola cuando termine sin éxito (nunca se envía dos veces).
+ */
+@Service
+public class DirectSendService {
+    private static final Logger logger = LoggerFactory.getLogger(DirectSendService.class);
+
+    public enum Outcome { SENT, QUEUED, DEFERRED }
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private SmsService smsService;
+
+    @Autowired
+    private MessageStatusService messageStatusService;
+
+    @Autowired
+    private PipelineLatencyRecorder latencyRecorder;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.messaging.direct.timeout-ms:3000}")
+    private long timeoutMillis;
+
+    @Value("${app.messaging.direct.threads:4}")
+    private int threads;
+
+    @Value("${app.messaging.direct.queue-capacity:50}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "DirectSend-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    public Outcome sendEmail(EmailMessage message, String userId, Supplier<String> enqueue) {
+        return send("EMAIL", message.getTo(), userId, () -> emailService.sendEmail(message), enqueue);
+    }
+
+    public Outcome sendSms(SmsMessage message, String userId, Supplier<String> enqueue) {
+        return send("SMS", message.getTo(), userId, () -> smsService.sendSms(message), enqueue);
+    }
+
+    Outcome send(String channel, String recipient, String userId, BooleanSupplier provider, Supplier<String> enqueue) {
+        long start = PipelineLatencyRecorder.nowMicros();
+        CompletableFuture<Boolean> attempt;
+        try {
+            attempt = CompletableFuture.supplyAsync(provider::getAsBoolean, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("⚡ Envío directo {} saturado, se encola para {}", channel, recipient);
+            return fallback(channel, enqueue);
+        }
+
+        try {
+            if (attempt.get(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                latencyRecorder.record(channel, PipelineLatencyRecorder.STAGE_DIRECT_SEND, PipelineLatencyRecorder.nowMicros() - start);
+                recordSentAsync(channel, recipient, userId);
+                count(channel, Outcome.SENT);
+                return Outcome.SENT;
+            }
+            logger.warn("⚡ Envío directo {} a {} fallido, se encola", channel, recipient);
+            return fallback(channel, enqueue);
+
+        } catch (TimeoutException e) {
+            // Sigue en curso: solo se encola si termina sin éxito
+            logger.warn("⚡ Envío directo {} a {} superó {} ms, se encolará si no se completa", channel, recipient, timeoutMillis);
+            attempt.whenComplete((sent, error) -> {
+                if (Boolean.TRUE.equals(sent)) {
+                    recordSent(channel, recipient, userId);
+                } else {
+                    fallback(channel, enqueue);
+                }
+            });
+            count(channel, Outcome.DEFERRED);
+            return Outcome.DEFERRED;
+
+        } catch (ExecutionException e) {
+            // Incluye todos los proveedores con circuito abierto: el mensaje espera en la cola
+            logger.warn("⚡ Envío directo {} a {} no disponible ({}), se encola", channel, recipient, e.getCause().getMessage());
+            return fallback(channel, enqueue);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            attempt.whenComplete((sent, error) -> {
+                if (!Boolean.TRUE.equals(sent)) {
+                    fallback(channel, enqueue);
+                }
+            });
+            return Outcome.DEFERRED;
+        }
+    }
+
+    private Outcome fallback(String channel, Supplier<String> enqueue) {
+        String messageId = enqueue.get();
+        logger.info("📬 Envío {} encolado como respaldo. ID: {}", channel, messageId);
+        count(channel, Outcome.QUEUED);
+        return Outcome.QUEUED;
+    }
+
+    // El mensaje ya salió: si el pool está lleno se registra aquí, nunca se convierte en un fallo
+    private void recordSentAsync(String channel, String recipient, String userId) {
+        try {
+            executor.execute(() -> recordSent(channel, recipient, userId));
+        } catch (RejectedExecutionException e) {
+            recordSent(channel, recipient, userId);
+        }
+    }
+
+    // El historial refleja también los envíos que no pasaron por la cola
+    private void recordSent(String channel, String recipient, String userId) {
+        try {
+            String messageId = UUID.randomUUID().toString();
+            messageStatusService.createMessageStatus(messageId, recipient, channel,
+                    userId != null ? userId : QueueMessage.DEFAULT_USER);
+            messageStatusService.updateMessageStatus(messageId, MessageStatusEnum.SENT, null);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo registrar el envío directo a {}: {}", recipient, e.getMessage());
+        }
+    }
+
+    private void count(String channel, Outcome outcome) {
+        if (meterRegistry != null) {
+            meterRegistry.counter("messaging.direct.sends", "channel", channel,
+                    "outcome", outcome.name().toLowerCase()).increment();
+        }
+    }
+}
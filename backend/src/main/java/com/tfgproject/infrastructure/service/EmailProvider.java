@@ -0,0 +1,6 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.EmailMessage;
+
+public interface EmailProvider extends MessageProvider<EmailMessage> {
+}
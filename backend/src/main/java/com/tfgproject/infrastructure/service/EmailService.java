@@ -1,79 +1,44 @@
- package com.tfgproject.infrastructure.service;
+package com.tfgproject.infrastructure.service;
 
 import com.tfgproject.shared.model.EmailMessage;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import java.io.File;
-import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class EmailService {
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
 
     @Autowired
-    private JavaMailSender emailSender;
-
-
-    public boolean sendSimpleMessage(EmailMessage emailMessage) {
-        try {
-            logger.info("Enviando email simple a {}", emailMessage.getTo());
-
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(emailMessage.getTo());
-            message.setSubject(emailMessage.getSubject());
-            message.setText(emailMessage.getText());
-            message.setSentDate(new Date());
-
-            emailSender.send(message);
-            logger.info("Email enviado correctamente");
-            return true;
-        } catch (Exception e) {
-            logger.error("Error enviando email: {}", e.getMessage(), e);
-            return false;
-        }
-    }
+    private List<EmailProvider> providers;
 
+    @Autowired
+    private SendRateGovernor sendRateGovernor;
 
-    public boolean sendMessageWithAttachment(EmailMessage emailMessage) {
-        try {
-            logger.info("Enviando email con adjunto/HTML a {}", emailMessage.getTo());
+    @Autowired
+    private ProviderSendMetrics providerSendMetrics;
 
-            MimeMessage message = emailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
+    @Autowired
+    private ProviderHealthRegistry providerHealth;
 
-            helper.setTo(emailMessage.getTo());
-            helper.setSubject(emailMessage.getSubject());
-            helper.setText(emailMessage.getText(), emailMessage.isHtml());
-            helper.setSentDate(new Date());
+    // Proveedores con peso, p. ej. "smtp:3,stub:1"
+    @Value("${app.providers.email:smtp}")
+    private String providerWeights;
 
-            // Añadir adjunto si existe
-            if (emailMessage.getAttachmentPath() != null && !emailMessage.getAttachmentPath().isEmpty()) {
-                File file = new File(emailMessage.getAttachmentPath());
-                if (file.exists()) {
-                    helper.addAttachment(file.getName(), file);
-                } else {
-                    logger.warn("El archivo adjunto no existe: {}", emailMessage.getAttachmentPath());
-                }
-            }
+    private ProviderRouter<EmailMessage> router;
 
-            emailSender.send(message);
-            logger.info("Email con adjunto/HTML enviado correctamente");
-            return true;
-        } catch (MessagingException e) {
-            logger.error("Error enviando email con adjunto/HTML: {}", e.getMessage(), e);
-            return false;
-        }
+    @PostConstruct
+    public void initRouter() {
+        router = new ProviderRouter<>(ProviderHealthRegistry.EMAIL, providers,
+                ProviderRouter.parseWeights(providerWeights), providerHealth, sendRateGovernor, providerSendMetrics);
     }
 
-
     public boolean sendEmail(EmailMessage emailMessage) {
         System.out.println("🛠️ SERVICE: EmailService.sendEmail() ejecutándose");
         System.out.println("🛠️ SERVICE: Enviando a: " + emailMessage.getTo());
@@ -84,14 +49,20 @@ public class EmailService {
             return false;
         }
 
-        // Decidir método
-        if (emailMessage.isHtml() ||
-                (emailMessage.getAttachmentPath() != null && !emailMessage.getAttachmentPath().isEmpty())) {
-            System.out.println("🛠️ SERVICE: Usando sendMessageWithAttachment");
-            return sendMessageWithAttachment(emailMessage);
-        } else {
-            System.out.println("🛠️ SERVICE: Usando sendSimpleMessage");
-            return sendSimpleMessage(emailMessage);
+        // El router elige proveedor según peso, latencia y errores, y cambia de proveedor si falla.
+        // Si todos tienen el circuito abierto o no queda cuota lanza ProviderUnavailableException
+        boolean sent = router.send(emailMessage);
+        if (!sent) {
+            logger.warn("❌ Ningún proveedor pudo enviar el email a {}", emailMessage.getTo());
         }
+        return sent;
+    }
+
+    public List<Map<String, Object>> getProviderStats() {
+        return router.getStats();
+    }
+
+    public List<String> getProviderIds() {
+        return router.getProviderIds();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,536 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.QueueMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reparto equitativo de envíos entre usuarios (Deficit Round-Robin).
+ *
+ * Cada usuario tiene su propia cola virtual delante de los proveedores. En cada
+ * ronda el usuario recibe un quantum de envíos, limitado por su cuota de
+ * concurrencia y su tasa máxima, de modo que una difusión enorme de un usuario
+ * no bloquea los mensajes del resto.
+ *
+ * Los consumidores confirman cada mensaje al broker cuando termina su último envío, así que
+ * lo que hay aquí en memoria está limitado por el prefetch de los listeners y sigue en
+ * RabbitMQ hasta completarse. Al parar, los envíos que no empezaron se descartan con
+ * DroppableTask.drop, que devuelve al broker solo esos destinatarios.
+ */
+@Service
+public class FairShareDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(FairShareDispatcher.class);
+
+    @Value("${app.messaging.fair-share.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.messaging.fair-share.workers:4}")
+    private int workers;
+
+    @Value("${app.messaging.fair-share.quantum:1}")
+    private int quantum;
+
+    @Value("${app.messaging.fair-share.max-in-flight-per-user:2}")
+    private int maxInFlightPerUser;
+
+    @Value("${app.messaging.fair-share.rate-per-user:0}")
+    private double ratePerUser; // envíos por segundo, 0 = sin límite
+
+    // Estado protegido por el lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final Condition sendFinished = lock.newCondition();
+    private final Map<String, UserQueue> userQueues = new HashMap<>();
+    // Canales en pausa (todos sus proveedores caídos) y envíos en curso por canal
+    private final Set<String> closedChannels = new HashSet<>();
+    private final Map<String, Integer> inFlightByChannel = new HashMap<>();
+    private final ArrayDeque<UserQueue> activeUsers = new ArrayDeque<>();
+    private int totalQueued;
+    private int totalInFlight;
+
+    private ExecutorService workerPool;
+    private Thread dispatcherThread;
+    private volatile boolean running;
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.info("⚖️ Reparto equitativo desactivado, los envíos se ejecutan en el consumidor");
+            return;
+        }
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "FairDispatch-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "FairDispatch-DRR");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+
+        logger.info("⚖️ Reparto equitativo iniciado: {} workers, quantum={}, maxInFlight/usuario={}, tasa/usuario={}",
+                workers, quantum, maxInFlightPerUser, ratePerUser > 0 ? ratePerUser + "/s" : "sin límite");
+    }
+
+    /**
+     * Se para al empezar el cierre del contexto, antes que los listeners: sus canales siguen
+     * abiertos para confirmar los mensajes de lo que termina y de lo que se devuelve
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        stop();
+    }
+
+    @PreDestroy
+    public void stop() {
+        lock.lock();
+        try {
+            running = false;
+            stopped = true;
+        } finally {
+            lock.unlock();
+        }
+        if (dispatcherThread != null) {
+            dispatcherThread.interrupt();
+            try {
+                // Termina de entregar a los workers lo que ya había elegido
+                dispatcherThread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Lo que no llegó a empezar vuelve al broker destinatario a destinatario
+        List<Runnable> dropped = drain();
+        dropped.forEach(this::drop);
+        if (!dropped.isEmpty()) {
+            logger.info("⚖️ {} envíos devueltos a la cola al parar el reparto equitativo", dropped.size());
+        }
+
+        if (workerPool != null) {
+            workerPool.shutdown();
+            try {
+                workerPool.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // === ENCOLADO ===
+
+    public void submit(String userId, String channel, Runnable task) {
+        submitAll(userId, channel, List.of(task));
+    }
+
+    /**
+     * Encola los envíos de un mensaje en la cola virtual del usuario. Los que sean DroppableTask
+     * se descartan con drop si el reparto se para antes de ejecutarlos.
+     */
+    public void submitAll(String userId, String channel, List<Runnable> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        String user = userId != null ? userId : QueueMessage.DEFAULT_USER;
+        boolean queued = false;
+        boolean closed = false;
+
+        lock.lock();
+        try {
+            if (running && closedChannels.contains(channel)) {
+                closed = true;
+            } else if (running) {
+                UserQueue queue = userQueues.computeIfAbsent(user, UserQueue::new);
+                long now = System.nanoTime();
+                for (Runnable task : tasks) {
+                    queue.items.addLast(new WorkItem(task, channel, now));
+                }
+                totalQueued += tasks.size();
+
+                if (!queue.active) {
+                    queue.active = true;
+                    activeUsers.addLast(queue);
+                }
+                stateChanged.signal();
+                queued = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (queued) {
+            logger.debug("⚖️ {} envíos {} encolados para usuario {}", tasks.size(), channel, user);
+        } else if (closed || stopped) {
+            // Canal en pausa o reparto parado: los envíos vuelven al broker sin empezar
+            tasks.forEach(this::drop);
+        } else {
+            tasks.forEach(this::runSafely);
+        }
+    }
+
+    // === BUCLE DRR ===
+
+    private void dispatchLoop() {
+        List<Dispatch> ready = new ArrayList<>();
+
+        while (running) {
+            lock.lock();
+            try {
+                long waitNanos = selectReady(ready);
+                if (ready.isEmpty()) {
+                    if (waitNanos > 0) {
+                        stateChanged.awaitNanos(waitNanos);
+                    } else {
+                        stateChanged.await();
+                    }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            for (Dispatch dispatch : ready) {
+                workerPool.execute(() -> execute(dispatch));
+            }
+            ready.clear();
+        }
+    }
+
+    /**
+     * Una pasada de Deficit Round-Robin sobre los usuarios activos.
+     * Devuelve los nanosegundos hasta que algún usuario limitado por tasa recupere un token
+     * (0 si solo hay que esperar a que termine algún envío o llegue trabajo nuevo).
+     */
+    private long selectReady(List<Dispatch> ready) {
+        long now = System.nanoTime();
+        long nextTokenNanos = 0;
+        int visits = activeUsers.size();
+
+        while (visits-- > 0 && totalInFlight < workers) {
+            UserQueue queue = activeUsers.pollFirst();
+            queue.refill(now, ratePerUser);
+
+            if (queue.inFlight >= maxInFlightPerUser || !queue.hasToken(ratePerUser)) {
+                // Bloqueado por su cuota: conserva el turno pero no acumula déficit
+                if (!queue.hasToken(ratePerUser)) {
+                    long untilToken = queue.nanosUntilToken(ratePerUser);
+                    nextTokenNanos = nextTokenNanos == 0 ? untilToken : Math.min(nextTokenNanos, untilToken);
+                }
+                activeUsers.addLast(queue);
+                continue;
+            }
+
+            queue.deficit += quantum;
+            while (queue.deficit >= 1 && !queue.items.isEmpty()
+                    && queue.inFlight < maxInFlightPerUser
+                    && queue.hasToken(ratePerUser)
+                    && totalInFlight < workers) {
+
+                WorkItem item = queue.items.pollFirst();
+                queue.deficit--;
+                queue.inFlight++;
+                queue.takeToken(ratePerUser);
+                totalInFlight++;
+                inFlightByChannel.merge(item.channel, 1, Integer::sum);
+                totalQueued--;
+
+                long waited = now - item.enqueuedAt;
+                queue.dispatched++;
+                queue.totalWaitNanos += waited;
+                queue.maxWaitNanos = Math.max(queue.maxWaitNanos, waited);
+
+                ready.add(new Dispatch(queue, item));
+            }
+
+            if (queue.items.isEmpty()) {
+                queue.deficit = 0;
+                queue.active = false;
+            } else {
+                activeUsers.addLast(queue);
+            }
+        }
+
+        return nextTokenNanos;
+    }
+
+    /**
+     * Vacía las colas virtuales y devuelve los envíos que no llegaron a empezar
+     */
+    private List<Runnable> drain() {
+        List<Runnable> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            for (UserQueue queue : userQueues.values()) {
+                for (WorkItem item : queue.items) {
+                    dropped.add(item.task);
+                }
+                totalQueued -= queue.items.size();
+                queue.items.clear();
+                queue.deficit = 0;
+                queue.active = false;
+            }
+            activeUsers.clear();
+        } finally {
+            lock.unlock();
+        }
+        return dropped;
+    }
+
+    // === PAUSA POR CANAL ===
+
+    /**
+     * Deja de repartir envíos del canal: los encolados y los que lleguen se descartan (vuelven al
+     * broker) hasta openChannel. Devuelve cuántos se descartaron.
+     */
+    public int closeChannel(String channel) {
+        List<Runnable> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            closedChannels.add(channel);
+            for (UserQueue queue : userQueues.values()) {
+                queue.items.removeIf(item -> {
+                    if (!item.channel.equals(channel)) {
+                        return false;
+                    }
+                    dropped.add(item.task);
+                    return true;
+                });
+                if (queue.items.isEmpty() && queue.active) {
+                    queue.deficit = 0;
+                    queue.active = false;
+                    activeUsers.remove(queue);
+                }
+            }
+            totalQueued -= dropped.size();
+        } finally {
+            lock.unlock();
+        }
+
+        dropped.forEach(this::drop);
+        if (!dropped.isEmpty()) {
+            logger.info("⚖️ {} envíos {} devueltos a la cola al pausar el canal", dropped.size(), channel);
+        }
+        return dropped.size();
+    }
+
+    public void openChannel(String channel) {
+        lock.lock();
+        try {
+            closedChannels.remove(channel);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Espera a que terminen los envíos del canal en curso. False si vence el tiempo antes.
+     */
+    public boolean awaitIdle(String channel, long timeoutMillis) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (inFlightByChannel.getOrDefault(channel, 0) > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = sendFinished.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drop(Runnable task) {
+        if (task instanceof DroppableTask droppable) {
+            try {
+                droppable.drop();
+            } catch (Exception e) {
+                logger.error("💥 Error devolviendo un envío descartado: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void execute(Dispatch dispatch) {
+        try {
+            dispatch.item.task.run();
+        } catch (Exception e) {
+            logger.error("💥 Error en envío {} del usuario {}: {}",
+                    dispatch.item.channel, dispatch.queue.userId, e.getMessage());
+        } finally {
+            lock.lock();
+            try {
+                dispatch.queue.inFlight--;
+                totalInFlight--;
+                inFlightByChannel.merge(dispatch.item.channel, -1, Integer::sum);
+                stateChanged.signal();
+                sendFinished.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            logger.error("💥 Error en envío directo: {}", e.getMessage());
+        }
+    }
+
+    // === ESTADÍSTICAS ===
+
+    /**
+     * Profundidad de cola, envíos en curso y tiempos de espera por usuario
+     */
+    public List<Map<String, Object>> getUserQueueStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        long now = System.nanoTime();
+
+        lock.lock();
+        try {
+            for (UserQueue queue : userQueues.values()) {
+                WorkItem oldest = queue.items.peekFirst();
+
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("userId", queue.userId);
+                entry.put("queueDepth", queue.items.size());
+                entry.put("inFlight", queue.inFlight);
+                entry.put("dispatched", queue.dispatched);
+                entry.put("avgWaitMs", queue.dispatched > 0 ? queue.totalWaitNanos / queue.dispatched / 1_000_000.0 : 0.0);
+                entry.put("maxWaitMs", queue.maxWaitNanos / 1_000_000.0);
+                entry.put("oldestWaitMs", oldest != null ? (now - oldest.enqueuedAt) / 1_000_000.0 : 0.0);
+                stats.add(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    public int getTotalQueued() {
+        lock.lock();
+        try {
+            return totalQueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTotalInFlight() {
+        lock.lock();
+        try {
+            return totalInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // === ESTRUCTURAS INTERNAS ===
+
+    /**
+     * Envío que sabe devolverse al broker si el reparto lo descarta antes de ejecutarlo
+     */
+    public interface DroppableTask extends Runnable {
+        void drop();
+    }
+
+    private static final class WorkItem {
+        final Runnable task;
+        final String channel;
+        final long enqueuedAt;
+
+        WorkItem(Runnable task, String channel, long enqueuedAt) {
+            this.task = task;
+            this.channel = channel;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Dispatch {
+        final UserQueue queue;
+        final WorkItem item;
+
+        Dispatch(UserQueue queue, WorkItem item) {
+            this.queue = queue;
+            this.item = item;
+        }
+    }
+
+    private static final class UserQueue {
+        final String userId;
+        final ArrayDeque<WorkItem> items = new ArrayDeque<>();
+        long deficit;
+        int inFlight;
+        boolean active;
+
+        // Token bucket para la cuota de tasa
+        double tokens = 1;
+        long lastRefill = System.nanoTime();
+
+        long dispatched;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        UserQueue(String userId) {
+            this.userId = userId;
+        }
+
+        void refill(long now, double rate) {
+            if (rate <= 0) {
+                return;
+            }
+            double burst = Math.max(1.0, rate);
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * rate);
+            lastRefill = now;
+        }
+
+        boolean hasToken(double rate) {
+            return rate <= 0 || tokens >= 1;
+        }
+
+        void takeToken(double rate) {
+            if (rate > 0) {
+                tokens -= 1;
+            }
+        }
+
+        long nanosUntilToken(double rate) {
+            return Math.max(1_000_000L, (long) ((1 - tokens) / rate * 1e9));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.tfgproject.infrastructure.service;
+
+/**
+ * Proveedor de envío de un canal (SMTP, Twilio, stub...). Cada implementación es un bean;
+ * ProviderRouter elige entre los configurados con app.providers.&lt;canal&gt;.
+ */
+public interface MessageProvider<M> {
+
+    /**
+     * Nombre usado en la configuración de pesos y en métricas
+     */
+    String getName();
+
+    /**
+     * Clave de cuota en SendRateGovernor, o null si el proveedor no tiene límite propio
+     */
+    String quotaKey(M message);
+
+    /**
+     * Envía el mensaje; false o una excepción cuentan como fallo del proveedor
+     */
+    boolean send(M message) throws Exception;
+}
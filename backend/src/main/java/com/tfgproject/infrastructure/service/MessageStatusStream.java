@@ -0,0 +1,273 @@
+package com.tfgproject.infrastructure.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.model.MessageStatusEvent;
+import com.tfgproject.domain.port.out.MessageStatusEventPort;
+import com.tfgproject.domain.port.out.MessageStatusRepositoryPort;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Feed en vivo de estados para el dashboard (SSE).
+ *
+ * Las transiciones llegan desde MessageStatusService y se agrupan por messageId; a ritmo fijo
+ * se envía un único lote de cambios más los contadores, serializado una vez por filtro de usuario.
+ * Los contadores se mantienen en memoria y solo se recalculan contra la base cada resync-ms,
+ * así que el coste no crece con el número de clientes conectados.
+ */
+@Service
+public class MessageStatusStream implements MessageStatusEventPort {
+    private static final Logger logger = LoggerFactory.getLogger(MessageStatusStream.class);
+
+    @Autowired
+    private MessageStatusRepositoryPort messageStatusRepository;
+
+    @Autowired
+    private ScheduledMessageRepositoryPort scheduledMessageRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.status-stream.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMillis = 1_800_000;
+
+    @Value("${app.status-stream.keepalive-ms:15000}")
+    private long keepaliveMillis = 15_000;
+
+    @Value("${app.status-stream.max-deltas:500}")
+    private int maxDeltas = 500;
+
+    private final ConcurrentMap<String, MessageStatusEvent> pending = new ConcurrentHashMap<>();
+    private final AtomicLongArray counters = new AtomicLongArray(MessageStatusEnum.values().length);
+    private final AtomicLong version = new AtomicLong();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile long scheduledCount;
+    private long sentVersion = -1;
+    private long lastSendMillis;
+
+    @PostConstruct
+    public void init() {
+        try {
+            resync();
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudieron cargar los contadores iniciales: {}", e.getMessage());
+        }
+    }
+
+    // === ENTRADA: TRANSICIONES ===
+
+    @Override
+    public void publish(MessageStatusEvent event) {
+        if (event.getPreviousStatus() != null) {
+            counters.decrementAndGet(event.getPreviousStatus().ordinal());
+        }
+        if (event.getStatus() != null) {
+            counters.incrementAndGet(event.getStatus().ordinal());
+        }
+        version.incrementAndGet();
+
+        // Solo interesa el último estado de cada mensaje dentro del intervalo
+        if (!subscribers.isEmpty()) {
+            pending.put(event.getMessageId(), event);
+        }
+    }
+
+    // === SALIDA: SUSCRIPTORES ===
+
+    public SseEmitter subscribe(String userId) {
+        return register(new SseEmitter(emitterTimeoutMillis), userId);
+    }
+
+    public SseEmitter register(SseEmitter emitter, String userId) {
+        Subscriber subscriber = new Subscriber(emitter, userId);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        // El cliente recibe el estado actual sin esperar al siguiente ciclo
+        try {
+            Map<String, Object> payload = payload(List.of(), false, snapshot());
+            emitter.send(SseEmitter.event().name("status").data(objectMapper.writeValueAsString(payload)));
+        } catch (IOException e) {
+            subscribers.remove(subscriber);
+        }
+
+        logger.info("📡 Nuevo suscriptor del feed de estados ({} activos)", subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * Un envío por ciclo con todos los cambios acumulados
+     */
+    @Scheduled(fixedRateString = "${app.status-stream.interval-ms:1000}")
+    public void flush() {
+        if (subscribers.isEmpty()) {
+            pending.clear();
+            return;
+        }
+
+        List<MessageStatusEvent> deltas = drain();
+        long currentVersion = version.get();
+        long now = System.currentTimeMillis();
+        boolean changed = !deltas.isEmpty() || currentVersion != sentVersion;
+
+        if (!changed) {
+            if (now - lastSendMillis >= keepaliveMillis) {
+                broadcastKeepalive();
+                lastSendMillis = now;
+            }
+            return;
+        }
+
+        boolean truncated = deltas.size() > maxDeltas;
+        Map<String, Object> snapshot = snapshot();
+        Map<String, String> serializedByUser = new HashMap<>();
+
+        for (Subscriber subscriber : subscribers) {
+            String key = subscriber.userId != null ? subscriber.userId : "";
+            String json = serializedByUser.computeIfAbsent(key,
+                    user -> serialize(payload(filter(deltas, subscriber.userId), truncated, snapshot)));
+            if (json != null) {
+                send(subscriber, SseEmitter.event().name("status").data(json));
+            }
+        }
+
+        sentVersion = currentVersion;
+        lastSendMillis = now;
+    }
+
+    /**
+     * Corrige la deriva de los contadores (otros nodos, borrados) con una consulta por ciclo
+     */
+    @Scheduled(fixedRateString = "${app.status-stream.resync-ms:60000}")
+    public void resync() {
+        for (MessageStatusEnum status : MessageStatusEnum.values()) {
+            counters.set(status.ordinal(), messageStatusRepository.countByStatus(status));
+        }
+        scheduledCount = scheduledMessageRepository.countPending();
+        version.incrementAndGet();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        long total = 0;
+        for (MessageStatusEnum status : MessageStatusEnum.values()) {
+            long count = Math.max(0, counters.get(status.ordinal()));
+            byStatus.put(status.name(), count);
+            total += count;
+        }
+
+        long successful = byStatus.get(MessageStatusEnum.SENT.name()) + byStatus.get(MessageStatusEnum.DELIVERED.name());
+        long pendingMessages = byStatus.get(MessageStatusEnum.QUEUED.name()) + byStatus.get(MessageStatusEnum.PROCESSING.name());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("totalMessages", total);
+        snapshot.put("successfulMessages", successful);
+        snapshot.put("failedMessages", byStatus.get(MessageStatusEnum.FAILED.name()));
+        snapshot.put("pendingMessages", pendingMessages);
+        snapshot.put("scheduledMessages", scheduledCount);
+        snapshot.put("successRate", total > 0 ? Math.round(successful * 10000.0 / total) / 100.0 : 0.0);
+        snapshot.put("statusBreakdown", byStatus);
+        return snapshot;
+    }
+
+    // === INTERNOS ===
+
+    private List<MessageStatusEvent> drain() {
+        List<MessageStatusEvent> deltas = new ArrayList<>();
+        Iterator<String> keys = pending.keySet().iterator();
+        while (keys.hasNext()) {
+            MessageStatusEvent event = pending.remove(keys.next());
+            if (event != null) {
+                deltas.add(event);
+            }
+        }
+        return deltas;
+    }
+
+    private List<MessageStatusEvent> filter(List<MessageStatusEvent> deltas, String userId) {
+        List<MessageStatusEvent> result = new ArrayList<>();
+        for (MessageStatusEvent event : deltas) {
+            if (result.size() >= maxDeltas) {
+                break;
+            }
+            if (userId == null || userId.equals(event.getUserId())) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Object> payload(List<MessageStatusEvent> deltas, boolean truncated, Map<String, Object> snapshot) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("deltas", deltas);
+        payload.put("truncated", truncated);
+        payload.put("counters", snapshot);
+        payload.put("timestamp", LocalDateTime.now());
+        return payload;
+    }
+
+    private String serialize(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            logger.error("❌ Error serializando el feed de estados: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void broadcastKeepalive() {
+        for (Subscriber subscriber : subscribers) {
+            send(subscriber, SseEmitter.event().comment("keepalive"));
+        }
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter.send(event);
+        } catch (Exception e) {
+            // Cliente desconectado
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private static class Subscriber {
+        final SseEmitter emitter;
+        final String userId;
+
+        Subscriber(SseEmitter emitter, String userId) {
+            this.emitter = emitter;
+            this.userId = userId;
+        }
+    }
+}
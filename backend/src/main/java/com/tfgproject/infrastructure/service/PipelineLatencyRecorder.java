@@ -0,0 +1,132 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.QueueMessage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latencias por canal y etapa del pipeline, en memoria (microsegundos).
+ *
+ * Las marcas de tiempo de las etapas compartidas viajan en QueueMessage; las de cada
+ * destinatario (espera de reparto, envío al proveedor, actualización de estado) se miden
+ * en el consumidor. Consultar percentiles no toca la base de datos.
+ */
+@Service
+public class PipelineLatencyRecorder {
+
+    // Marcas guardadas en el mensaje
+    public static final String ACCEPTED = "accepted";
+    public static final String STATUS_CREATED = "statusCreated";
+    public static final String PUBLISHED = "published";
+
+    // Etapas medidas
+    public static final String STAGE_STATUS_INSERT = "statusInsert";
+    public static final String STAGE_PUBLISH = "publish";
+    public static final String STAGE_QUEUE_WAIT = "queueWait";
+    public static final String STAGE_DISPATCH_WAIT = "dispatchWait";
+    public static final String STAGE_PROVIDER_SEND = "providerSend";
+    public static final String STAGE_STATUS_UPDATE = "statusUpdate";
+    public static final String STAGE_END_TO_END = "endToEnd";
+    public static final String STAGE_DIRECT_SEND = "directSend";
+
+    private static final double[] EXPORTED_QUANTILES = {0.5, 0.99, 0.999};
+
+    // Opcional: sin registro (tests) solo se guardan los histogramas
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+    }
+
+    public void record(String channel, String stage, long micros) {
+        histograms.computeIfAbsent(channel + ":" + stage, key -> createHistogram(channel, stage)).record(micros);
+    }
+
+    // Cada histograma se exporta como messaging.pipeline.latency{channel,stage,quantile} en segundos
+    private LatencyHistogram createHistogram(String channel, String stage) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (meterRegistry != null) {
+            for (double quantile : EXPORTED_QUANTILES) {
+                Gauge.builder("messaging.pipeline.latency", histogram,
+                                h -> h.getValueAtPercentile(quantile * 100) / 1_000_000.0)
+                        .tags("channel", channel, "stage", stage, "quantile", String.valueOf(quantile))
+                        .baseUnit("seconds")
+                        .register(meterRegistry);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Registra el intervalo entre dos marcas del mensaje, si ambas existen
+     */
+    public void recordBetween(String channel, String stage, QueueMessage message, String from, String to) {
+        Long start = message.getStageTime(from);
+        Long end = message.getStageTime(to);
+        if (start != null && end != null) {
+            record(channel, stage, end - start);
+        }
+    }
+
+    /**
+     * Al consumir: etapas del lado del publicador y espera en la cola
+     */
+    public void recordConsumed(String channel, QueueMessage message, long consumedAtMicros) {
+        recordBetween(channel, STAGE_STATUS_INSERT, message, ACCEPTED, STATUS_CREATED);
+        Long published = message.getStageTime(PUBLISHED);
+        if (published != null) {
+            record(channel, STAGE_QUEUE_WAIT, consumedAtMicros - published);
+        }
+    }
+
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        histograms.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(entry -> {
+                    String[] key = entry.getKey().split(":", 2);
+                    LatencyHistogram histogram = entry.getValue();
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("channel", key[0]);
+                    row.put("stage", key[1]);
+                    row.put("count", histogram.getCount());
+                    row.put("meanMs", millis(Math.round(histogram.getMean())));
+                    row.put("p50Ms", millis(histogram.getValueAtPercentile(50)));
+                    row.put("p99Ms", millis(histogram.getValueAtPercentile(99)));
+                    row.put("p999Ms", millis(histogram.getValueAtPercentile(99.9)));
+                    row.put("maxMs", millis(histogram.getMax()));
+                    stats.add(row);
+                });
+        return stats;
+    }
+
+    public LatencyHistogram getHistogram(String channel, String stage) {
+        return histograms.get(channel + ":" + stage);
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return histograms;
+    }
+
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+}
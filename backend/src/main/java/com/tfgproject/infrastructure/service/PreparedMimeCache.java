@@ -0,0 +1,326 @@
+package com.tfgproject.infrastructure.service;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.activation.FileTypeMap;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Partes MIME ya codificadas por QueueMessage.id.
+ *
+ * En una difusión el adjunto se lee y se codifica en base64 una sola vez y se guarda fuera
+ * del heap; cada destinatario solo crea un envoltorio ligero sobre esos bytes. El cuerpo
+ * también se reutiliza mientras no cambie (si la plantilla lo personaliza, se codifica aparte).
+ */
+@Service
+public class PreparedMimeCache {
+    private static final Logger logger = LoggerFactory.getLogger(PreparedMimeCache.class);
+    private static final int MIME_LINE_BYTES = 57;
+    private static final int ENCODE_CHUNK_BYTES = MIME_LINE_BYTES * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    @Value("${app.email.prepared-cache.max-bytes:268435456}")
+    private long maxBytes = 256L * 1024 * 1024;
+
+    @Value("${app.email.prepared-cache.idle-ttl-ms:600000}")
+    private long idleTtlMillis = 600_000;
+
+    private final ConcurrentMap<String, PreparedMessage> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Parte del cuerpo para un destinatario: compartida si el texto coincide con el ya codificado
+     */
+    public MimeBodyPart bodyPart(String messageId, String text, boolean html) throws MessagingException {
+        String contentType = (html ? "text/html" : "text/plain") + "; charset=UTF-8";
+        if (messageId == null) {
+            return wrap(encode(text.getBytes(StandardCharsets.UTF_8)), contentType, null);
+        }
+
+        PreparedMessage prepared = entry(messageId);
+        EncodedPart body = prepared.body;
+        if (body == null) {
+            synchronized (prepared) {
+                if (prepared.body == null) {
+                    misses.incrementAndGet();
+                    prepared.body = account(prepared, new EncodedPart(text, contentType, null,
+                            encode(text.getBytes(StandardCharsets.UTF_8))));
+                    return wrap(prepared.body.encoded, contentType, null);
+                }
+                body = prepared.body;
+            }
+        }
+
+        if (body.key.equals(text) && body.contentType.equals(contentType)) {
+            hits.incrementAndGet();
+            return wrap(body.encoded, contentType, null);
+        }
+
+        // Cuerpo personalizado: no se cachea
+        return wrap(encode(text.getBytes(StandardCharsets.UTF_8)), contentType, null);
+    }
+
+    /**
+     * Parte del adjunto: se lee (mmap) y se codifica una vez por mensaje y fichero
+     */
+    public MimeBodyPart attachmentPart(String messageId, File file) throws MessagingException, IOException {
+        return attachmentPart(messageId, file, file.getName(), contentTypeOf(file));
+    }
+
+    public MimeBodyPart attachmentPart(String messageId, File file, String fileName, String contentType)
+            throws MessagingException, IOException {
+        String key = file.getAbsolutePath() + "@" + file.lastModified();
+        if (messageId == null) {
+            return wrap(encodeFile(file), contentType, fileName);
+        }
+
+        PreparedMessage prepared = entry(messageId);
+        EncodedPart attachment = prepared.attachments.get(key);
+        if (attachment != null) {
+            hits.incrementAndGet();
+        } else {
+            synchronized (prepared) {
+                attachment = prepared.attachments.get(key);
+                if (attachment == null) {
+                    misses.incrementAndGet();
+                    attachment = account(prepared, new EncodedPart(key, contentType, fileName, encodeFile(file)));
+                    prepared.attachments.put(key, attachment);
+                    logger.info("📎 Adjunto {} preparado para el mensaje {} ({} bytes codificados)",
+                            fileName, messageId, attachment.encoded.capacity());
+                } else {
+                    hits.incrementAndGet();
+                }
+            }
+        }
+        return wrap(attachment.encoded, attachment.contentType, attachment.fileName);
+    }
+
+    public void release(String messageId) {
+        PreparedMessage removed = entries.remove(messageId);
+        if (removed != null) {
+            totalBytes.addAndGet(-removed.bytes.get());
+        }
+    }
+
+    /**
+     * Libera los mensajes sin uso reciente (la difusión ya terminó)
+     */
+    @Scheduled(fixedRateString = "${app.email.prepared-cache.sweep-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTtlMillis;
+        entries.forEach((id, prepared) -> {
+            if (prepared.lastAccess < cutoff) {
+                release(id);
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("messages", entries.size());
+        stats.put("bytes", totalBytes.get());
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    // === INTERNOS ===
+
+    private PreparedMessage entry(String messageId) {
+        PreparedMessage prepared = entries.computeIfAbsent(messageId, id -> new PreparedMessage());
+        prepared.lastAccess = System.currentTimeMillis();
+        return prepared;
+    }
+
+    private EncodedPart account(PreparedMessage prepared, EncodedPart part) {
+        prepared.bytes.addAndGet(part.encoded.capacity());
+        totalBytes.addAndGet(part.encoded.capacity());
+        // Una parte grande puede necesitar expulsar varios mensajes para volver bajo el límite
+        while (totalBytes.get() > maxBytes && evictOldest()) {
+            // sigue expulsando
+        }
+        return part;
+    }
+
+    // Expulsa el mensaje menos usado recientemente; las partes en vuelo siguen siendo válidas
+    private boolean evictOldest() {
+        String oldestId = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, PreparedMessage> entry : entries.entrySet()) {
+            if (entry.getValue().lastAccess < oldest) {
+                oldest = entry.getValue().lastAccess;
+                oldestId = entry.getKey();
+            }
+        }
+        if (oldestId == null) {
+            return false;
+        }
+        release(oldestId);
+        return true;
+    }
+
+    private static ByteBuffer encode(byte[] raw) {
+        byte[] encoded = Base64.getMimeEncoder().encode(raw);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.length);
+        buffer.put(encoded).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Codifica el fichero por bloques de líneas completas directamente en el buffer fuera del heap,
+     * sin copia intermedia del fichero entero
+     */
+    private static ByteBuffer encodeFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(mimeEncodedLength(size)));
+            if (size == 0) {
+                return buffer.asReadOnlyBuffer();
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            Base64.Encoder encoder = Base64.getMimeEncoder();
+            byte[] chunk = new byte[ENCODE_CHUNK_BYTES];
+            byte[] encoded = new byte[ENCODE_CHUNK_BYTES / 3 * 4 + ENCODE_CHUNK_BYTES / MIME_LINE_BYTES * 2];
+            while (mapped.hasRemaining()) {
+                int count = Math.min(chunk.length, mapped.remaining());
+                mapped.get(chunk, 0, count);
+                int length = encoder.encode(count == chunk.length ? chunk : Arrays.copyOf(chunk, count), encoded);
+                buffer.put(encoded, 0, length);
+                // Cada bloque termina en línea completa: el salto entre bloques lo pone aquí
+                if (mapped.hasRemaining()) {
+                    buffer.put(CRLF);
+                }
+            }
+            return buffer.flip().asReadOnlyBuffer();
+        }
+    }
+
+    // Base64 MIME: líneas de 76 caracteres (57 bytes) separadas por CRLF, sin salto final
+    private static long mimeEncodedLength(long size) {
+        long chars = (size + 2) / 3 * 4;
+        long lines = (chars + 75) / 76;
+        return chars + Math.max(0, lines - 1) * 2;
+    }
+
+    private static String contentTypeOf(File file) {
+        return FileTypeMap.getDefaultFileTypeMap().getContentType(file);
+    }
+
+    private static MimeBodyPart wrap(ByteBuffer encoded, String contentType, String fileName) throws MessagingException {
+        PreencodedMimeBodyPart part = new PreencodedMimeBodyPart("base64");
+        part.setDataHandler(new DataHandler(new ByteBufferDataSource(encoded, contentType, fileName)));
+        part.setHeader("Content-Type", contentType);
+        part.setHeader("Content-Transfer-Encoding", "base64");
+        if (fileName != null) {
+            part.setDisposition(Part.ATTACHMENT);
+            try {
+                part.setFileName(MimeUtility.encodeText(fileName));
+            } catch (UnsupportedEncodingException e) {
+                part.setFileName(fileName);
+            }
+        }
+        return part;
+    }
+
+    private static class PreparedMessage {
+        volatile long lastAccess = System.currentTimeMillis();
+        volatile EncodedPart body;
+        final Map<String, EncodedPart> attachments = new ConcurrentHashMap<>();
+        final AtomicLong bytes = new AtomicLong();
+    }
+
+    private static class EncodedPart {
+        final String key;
+        final String contentType;
+        final String fileName;
+        final ByteBuffer encoded;
+
+        EncodedPart(String key, String contentType, String fileName, ByteBuffer encoded) {
+            this.key = key;
+            this.contentType = contentType;
+            this.fileName = fileName;
+            this.encoded = encoded;
+        }
+    }
+
+    /**
+     * Cada lectura usa su propia vista del buffer compartido, así que es segura entre hilos
+     */
+    private static class ByteBufferDataSource implements DataSource {
+        private final ByteBuffer buffer;
+        private final String contentType;
+        private final String name;
+
+        ByteBufferDataSource(ByteBuffer buffer, String contentType, String name) {
+            this.buffer = buffer;
+            this.contentType = contentType;
+            this.name = name;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            ByteBuffer view = buffer.duplicate();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return view.hasRemaining() ? view.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (!view.hasRemaining()) {
+                        return -1;
+                    }
+                    int count = Math.min(len, view.remaining());
+                    view.get(b, off, count);
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Parte MIME de solo lectura");
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return name != null ? name : "body";
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.tfgproject.infrastructure.service;
+
+/**
+ * Circuit breaker por proveedor sobre una ventana de las últimas llamadas.
+ *
+ * Se abre cuando la tasa de fallos o de llamadas lentas supera el umbral; tras la espera
+ * pasa a semiabierto y deja pasar unas pocas llamadas de prueba antes de cerrarse.
+ */
+public class ProviderCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Ventana circular con el resultado de cada llamada
+    private final byte[] outcomes;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+    private long timesOpened;
+
+    public ProviderCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                                  double slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenCalls) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallMillis * 1_000_000L;
+        this.openNanos = openMillis * 1_000_000L;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.outcomes = new byte[this.windowSize];
+    }
+
+    /**
+     * Reserva una llamada. En semiabierto solo se conceden las llamadas de prueba.
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        advance(nowNanos);
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resultado de una llamada concedida; devuelve el estado resultante
+     */
+    public synchronized State onResult(boolean success, long elapsedNanos, long nowNanos) {
+        boolean slow = elapsedNanos >= slowCallNanos;
+
+        if (state == State.HALF_OPEN) {
+            if (!success || slow) {
+                open(nowNanos);
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return state;
+        }
+        if (state == State.OPEN) {
+            return state; // llamada que empezó antes de abrirse
+        }
+
+        record(!success ? FAILURE : (slow ? SLOW : SUCCESS));
+        if (recorded >= minimumCalls
+                && (getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+            open(nowNanos);
+        }
+        return state;
+    }
+
+    /**
+     * Una llamada concedida que no llegó al proveedor (p. ej. sin cuota) devuelve su permiso
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls - halfOpenSuccesses) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized State getState(long nowNanos) {
+        advance(nowNanos);
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0 : (double) slowCalls / recorded;
+    }
+
+    public synchronized long getTimesOpened() {
+        return timesOpened;
+    }
+
+    private void advance(long nowNanos) {
+        if (state == State.OPEN && nowNanos - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+    }
+
+    private void record(byte outcome) {
+        if (recorded == windowSize) {
+            byte evicted = outcomes[position];
+            if (evicted == FAILURE) {
+                failures--;
+            } else if (evicted == SLOW) {
+                slowCalls--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[position] = outcome;
+        position = (position + 1) % windowSize;
+        if (outcome == FAILURE) {
+            failures++;
+        } else if (outcome == SLOW) {
+            slowCalls++;
+        }
+    }
+
+    private void open(long nowNanos) {
+        state = State.OPEN;
+        openedAt = nowNanos;
+        timesOpened++;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,318 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.infrastructure.service.ProviderCircuitBreaker.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Salud de cada proveedor de envío: circuit breaker, límite de concurrencia adaptativo y bulkhead.
+ *
+ * Cuando el circuito de todos los proveedores de un canal está abierto se detiene el listener
+ * de su cola, de modo que los mensajes esperan en el broker; en cuanto alguno pasa a
+ * semiabierto se reanuda y las primeras llamadas sirven de prueba.
+ */
+@Service
+public class ProviderHealthRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ProviderHealthRegistry.class);
+
+    // Canales: cada proveedor se registra como "canal:nombre"
+    public static final String EMAIL = SendRateGovernor.EMAIL_PROVIDER;
+    public static final String SMS = "sms";
+    public static final String WHATSAPP = "whatsapp";
+
+    @Autowired(required = false)
+    private RabbitListenerEndpointRegistry listenerRegistry;
+
+    @Autowired(required = false)
+    private FairShareDispatcher fairShareDispatcher;
+
+    @Value("${app.provider-health.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.provider-health.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.provider-health.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.provider-health.failure-rate:0.5}")
+    private double failureRate;
+
+    @Value("${app.provider-health.slow-call-rate:0.8}")
+    private double slowCallRate;
+
+    @Value("${app.provider-health.slow-call-ms:10000}")
+    private long slowCallMillis;
+
+    @Value("${app.provider-health.open-ms:30000}")
+    private long openMillis;
+
+    @Value("${app.provider-health.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${app.provider-health.initial-limit:4}")
+    private int initialLimit;
+
+    @Value("${app.provider-health.min-limit:1}")
+    private int minLimit;
+
+    @Value("${app.provider-health.max-limit:8}")
+    private int maxLimit;
+
+    @Value("${app.provider-health.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${app.provider-health.latency-tolerance:2.5}")
+    private double latencyTolerance;
+
+    @Value("${app.provider-health.max-wait-ms:5000}")
+    private long maxWaitMillis;
+
+    @Value("${app.provider-health.pause-drain-ms:15000}")
+    private long pauseDrainMillis = 15000;
+
+    private final ConcurrentMap<String, ProviderHealth> providers = new ConcurrentHashMap<>();
+    private final Set<String> pausedChannels = ConcurrentHashMap.newKeySet();
+
+    // Listener que consume la cola de cada canal; lo registra ChannelRegistry
+    private final ConcurrentMap<String, String> listeners = new ConcurrentHashMap<>();
+
+    public void registerListener(String channel, String listenerId) {
+        listeners.put(channel, listenerId);
+    }
+
+    /**
+     * Reserva una llamada al proveedor o lanza ProviderUnavailableException
+     */
+    public void acquire(String provider) {
+        if (!enabled) {
+            return;
+        }
+
+        String rejection = reserve(provider, maxWaitMillis);
+        if (rejection != null) {
+            throw new ProviderUnavailableException(provider, rejection);
+        }
+    }
+
+    /**
+     * Como acquire pero sin esperar: false si el proveedor no admite la llamada ahora
+     */
+    public boolean tryAcquire(String provider) {
+        return !enabled || reserve(provider, 0) == null;
+    }
+
+    /**
+     * Devuelve una llamada reservada que finalmente no se hizo
+     */
+    public void cancel(String provider) {
+        if (!enabled) {
+            return;
+        }
+
+        ProviderHealth health = healthOf(provider);
+        health.limit.cancel();
+        health.breaker.release();
+    }
+
+    /**
+     * Resultado de una llamada reservada con acquire
+     */
+    public void complete(String provider, boolean success, long elapsedNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        ProviderHealth health = healthOf(provider);
+        health.limit.release(success, elapsedNanos);
+        State state = health.breaker.onResult(success, elapsedNanos, System.nanoTime());
+        if (state == State.OPEN) {
+            logger.warn("🔌 Circuito de {} abierto durante {} ms", provider, openMillis);
+            String channel = channelOf(provider);
+            if (allOpen(channel, System.nanoTime())) {
+                pause(channel);
+            }
+        }
+    }
+
+    /**
+     * Reanuda los listeners de los canales con algún proveedor que ya admite llamadas de prueba
+     */
+    @Scheduled(fixedDelayString = "${app.provider-health.check-ms:1000}")
+    public void resumeRecovered() {
+        long now = System.nanoTime();
+        for (String channel : pausedChannels) {
+            if (!allOpen(channel, now)) {
+                resume(channel);
+            }
+        }
+    }
+
+    /**
+     * El proveedor acepta llamadas (circuito cerrado o semiabierto)
+     */
+    public boolean isAvailable(String provider) {
+        return !enabled || getState(provider) != State.OPEN;
+    }
+
+    public State getState(String provider) {
+        return healthOf(provider).breaker.getState(System.nanoTime());
+    }
+
+    public int getConcurrencyLimit(String provider) {
+        return healthOf(provider).limit.getLimit();
+    }
+
+    public List<Map<String, Object>> getProviderStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        long now = System.nanoTime();
+        providers.forEach((provider, health) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("provider", provider);
+            entry.put("state", health.breaker.getState(now).name());
+            entry.put("listenerPaused", pausedChannels.contains(channelOf(provider)));
+            entry.put("failureRate", health.breaker.getFailureRate());
+            entry.put("slowCallRate", health.breaker.getSlowCallRate());
+            entry.put("timesOpened", health.breaker.getTimesOpened());
+            entry.put("concurrencyLimit", health.limit.getLimit());
+            entry.put("inFlight", health.limit.getInFlight());
+            entry.put("minLatencyMs", health.limit.getMinRttMillis());
+            entry.put("bulkheadRejections", health.limit.getRejected());
+            stats.add(entry);
+        });
+        return stats;
+    }
+
+    // null si la llamada queda reservada; si no, el motivo del rechazo
+    private String reserve(String provider, long waitMillis) {
+        ProviderHealth health = healthOf(provider);
+        if (!health.breaker.tryAcquire(System.nanoTime())) {
+            return "circuito abierto";
+        }
+        try {
+            if (!health.limit.acquire(waitMillis)) {
+                health.breaker.release();
+                return "bulkhead lleno (" + health.limit.getLimit() + " en curso)";
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            health.breaker.release();
+            return "interrumpido";
+        }
+    }
+
+    private ProviderHealth healthOf(String provider) {
+        return providers.computeIfAbsent(provider, key -> new ProviderHealth(
+                new ProviderCircuitBreaker(windowSize, minimumCalls, failureRate, slowCallRate,
+                        slowCallMillis, openMillis, halfOpenCalls),
+                new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, backoffRatio, latencyTolerance, windowSize)));
+    }
+
+    // Los proveedores se identifican como "canal:nombre" (p. ej. "email:smtp")
+    private static String channelOf(String provider) {
+        int separator = provider.indexOf(':');
+        return separator < 0 ? provider : provider.substring(0, separator);
+    }
+
+    private boolean allOpen(String channel, long now) {
+        for (Map.Entry<String, ProviderHealth> entry : providers.entrySet()) {
+            if (channelOf(entry.getKey()).equals(channel) && entry.getValue().breaker.getState(now) != State.OPEN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void pause(String channel) {
+        if (!pausedChannels.add(channel)) {
+            return;
+        }
+        logger.warn("⏸️ Todos los proveedores de {} con circuito abierto: se detiene el consumo de su cola", channel);
+
+        // Suele llamarlo el envío que abre el circuito, que es uno de los que hay que esperar
+        Thread stopper = new Thread(() -> stopConsuming(channel), "ProviderPause-" + channel);
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    /**
+     * Parar el listener cierra su canal AMQP y el broker devolvería enteros los mensajes sin
+     * confirmar, con destinatarios ya enviados. Antes se devuelve al broker lo que el reparto
+     * tiene pendiente del canal y se espera a los envíos en curso.
+     */
+    private void stopConsuming(String channel) {
+        String dispatcherChannel = channel.toUpperCase(Locale.ROOT);
+        if (fairShareDispatcher != null) {
+            synchronized (this) {
+                if (!pausedChannels.contains(channel)) {
+                    return;
+                }
+                fairShareDispatcher.closeChannel(dispatcherChannel);
+            }
+            try {
+                if (!fairShareDispatcher.awaitIdle(dispatcherChannel, pauseDrainMillis)) {
+                    logger.warn("⚠️ Envíos de {} aún en curso tras {} ms: se detiene el listener igualmente",
+                            channel, pauseDrainMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            MessageListenerContainer container = containerOf(channel);
+            if (pausedChannels.contains(channel) && container != null && container.isRunning()) {
+                container.stop(() -> logger.info("⏸️ Listener de {} detenido", channel));
+            }
+        }
+    }
+
+    private synchronized void resume(String channel) {
+        if (!pausedChannels.remove(channel)) {
+            return;
+        }
+        logger.info("▶️ Algún proveedor de {} admite llamadas de prueba: se reanuda el consumo", channel);
+        if (fairShareDispatcher != null) {
+            fairShareDispatcher.openChannel(channel.toUpperCase(Locale.ROOT));
+        }
+
+        MessageListenerContainer container = containerOf(channel);
+        if (container != null && !container.isRunning()) {
+            container.start();
+        }
+    }
+
+    private MessageListenerContainer containerOf(String channel) {
+        String listenerId = listeners.get(channel);
+        if (listenerRegistry == null || listenerId == null) {
+            return null;
+        }
+        return listenerRegistry.getListenerContainer(listenerId);
+    }
+
+    private static final class ProviderHealth {
+        final ProviderCircuitBreaker breaker;
+        final AdaptiveConcurrencyLimit limit;
+
+        ProviderHealth(ProviderCircuitBreaker breaker, AdaptiveConcurrencyLimit limit) {
+            this.breaker = breaker;
+            this.limit = limit;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.domain.port.out.SendQuotaRepositoryPort;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Token bucket local de un proveedor cuyo ritmo es la parte proporcional del límite global.
+ *
+ * Cada nodo publica un latido en el almacén compartido; en cada rebalanceo el ritmo local
+ * pasa a ser globalRate / nodosVivos. La cuota diaria se reserva por bloques en el almacén,
+ * así que entre todos los nodos nunca se supera.
+ */
+public class ProviderRateGovernor {
+
+    // Espera antes de reintentar la reserva diaria cuando otros nodos se adelantan
+    private static final long DAILY_CLAIM_RETRY_NANOS = 10_000_000L;
+
+    private final String provider;
+    private final String nodeId;
+    private final double globalRatePerSecond; // 0 = sin límite
+    private final long dailyLimit;            // 0 = sin límite
+    private final long dailyChunk;
+    private final long nodeTtlMillis;
+    private final SendQuotaRepositoryPort store;
+
+    // Estado protegido por this
+    private double localRate;
+    private int liveNodes = 1;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long dailyAllowance;
+    private LocalDate allowanceDay;
+    private boolean dailyExhausted;
+
+    public ProviderRateGovernor(String provider, String nodeId, double globalRatePerSecond, long dailyLimit,
+                                long dailyChunk, long nodeTtlMillis, SendQuotaRepositoryPort store) {
+        this.provider = provider;
+        this.nodeId = nodeId;
+        this.globalRatePerSecond = globalRatePerSecond;
+        this.dailyLimit = dailyLimit;
+        this.dailyChunk = Math.max(1, dailyChunk);
+        this.nodeTtlMillis = nodeTtlMillis;
+        this.store = store;
+        this.localRate = globalRatePerSecond;
+        this.tokens = Math.max(1.0, globalRatePerSecond);
+    }
+
+    /**
+     * Publica el latido y recalcula la parte del límite global que corresponde a este nodo
+     */
+    public void rebalance(Instant now) {
+        store.heartbeat(provider, nodeId, now);
+        List<String> nodes = store.findLiveNodes(provider, now.minusMillis(nodeTtlMillis));
+        int count = Math.max(1, nodes.size());
+
+        synchronized (this) {
+            refill(System.nanoTime());
+            liveNodes = count;
+            localRate = globalRatePerSecond / count;
+            tokens = Math.min(tokens, burst());
+        }
+    }
+
+    public void leave() {
+        store.removeNode(provider, nodeId);
+    }
+
+    /**
+     * Intenta consumir un envío. Devuelve 0 si se concede, el tiempo de espera en nanosegundos
+     * hasta el siguiente token (o hasta reintentar la reserva diaria) si hay que esperar, o -1
+     * si la cuota diaria está agotada.
+     */
+    public long tryAcquire() {
+        synchronized (this) {
+            if (globalRatePerSecond > 0) {
+                refill(System.nanoTime());
+                if (tokens < 1) {
+                    return Math.max(1_000_000L, (long) ((1 - tokens) / localRate * 1e9));
+                }
+            }
+
+            long dailyWait = reserveDaily();
+            if (dailyWait != 0) {
+                return dailyWait;
+            }
+
+            if (globalRatePerSecond > 0) {
+                tokens -= 1;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Espera hasta obtener un envío o hasta que venza el timeout
+     */
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (true) {
+            long waitNanos = tryAcquire();
+            if (waitNanos == 0) {
+                return true;
+            }
+            if (waitNanos < 0 || System.nanoTime() + waitNanos > deadline) {
+                return false;
+            }
+            Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+        }
+    }
+
+    // La cuota diaria se reserva por bloques para no tocar la base en cada envío.
+    // Devuelve 0 si hay envío, -1 si el día está agotado o la espera antes de reintentar la reserva
+    private long reserveDaily() {
+        if (dailyLimit <= 0) {
+            return 0;
+        }
+
+        LocalDate today = LocalDate.now();
+        if (!today.equals(allowanceDay)) {
+            allowanceDay = today;
+            dailyAllowance = 0;
+            dailyExhausted = false;
+        }
+
+        if (dailyAllowance == 0 && !dailyExhausted) {
+            long claimed = store.claimDailyBudget(provider, today, dailyChunk, dailyLimit);
+            if (claimed < 0) {
+                // Otros nodos se adelantaron pero queda cupo: no se da el día por agotado
+                return DAILY_CLAIM_RETRY_NANOS;
+            }
+            dailyAllowance = claimed;
+            dailyExhausted = claimed == 0;
+        }
+
+        if (dailyAllowance == 0) {
+            return -1;
+        }
+        dailyAllowance--;
+        return 0;
+    }
+
+    private void refill(long now) {
+        if (globalRatePerSecond <= 0) {
+            return;
+        }
+        tokens = Math.min(burst(), tokens + (now - lastRefill) / 1e9 * localRate);
+        lastRefill = now;
+    }
+
+    private double burst() {
+        return Math.max(1.0, localRate);
+    }
+
+    // === CONSULTA ===
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public synchronized double getLocalRate() {
+        return localRate;
+    }
+
+    public synchronized int getLiveNodes() {
+        return liveNodes;
+    }
+
+    public synchronized long getDailyAllowance() {
+        return dailyAllowance;
+    }
+
+    public double getGlobalRatePerSecond() {
+        return globalRatePerSecond;
+    }
+
+    public long getDailyLimit() {
+        return dailyLimit;
+    }
+}
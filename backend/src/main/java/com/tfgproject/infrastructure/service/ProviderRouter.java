@@ -0,0 +1,237 @@
+package com.tfgproject.infrastructure.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reparte los envíos de un canal entre varios proveedores con peso.
+ *
+ * El peso configurado se ajusta con la latencia y la tasa de error recientes de cada
+ * proveedor (media exponencial). Cada envío prueba los proveedores en orden aleatorio
+ * ponderado sin esperar; uno limitado por cuota, saturado o que falla cede el envío al
+ * siguiente. Solo si ninguno está disponible se espera por el mejor.
+ */
+public class ProviderRouter<M> {
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRouter.class);
+
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String channel;
+    private final List<Route<M>> routes = new ArrayList<>();
+    private final ProviderHealthRegistry providerHealth;
+    private final SendRateGovernor rateGovernor;
+    private final ProviderSendMetrics sendMetrics;
+
+    public ProviderRouter(String channel, List<? extends MessageProvider<M>> providers, Map<String, Double> weights,
+                          ProviderHealthRegistry providerHealth, SendRateGovernor rateGovernor,
+                          ProviderSendMetrics sendMetrics) {
+        this.channel = channel;
+        this.providerHealth = providerHealth;
+        this.rateGovernor = rateGovernor;
+        this.sendMetrics = sendMetrics;
+
+        Map<String, MessageProvider<M>> byName = new LinkedHashMap<>();
+        providers.forEach(provider -> byName.put(provider.getName(), provider));
+        weights.forEach((name, weight) -> {
+            MessageProvider<M> provider = byName.get(name);
+            if (provider == null) {
+                logger.warn("⚠️ Proveedor {} configurado para {} pero no disponible", name, channel);
+            } else if (weight > 0) {
+                routes.add(new Route<>(channel + ":" + name, provider, weight));
+            }
+        });
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("Sin proveedores de envío para " + channel + ": " + weights.keySet());
+        }
+        logger.info("🔀 Proveedores de {}: {}", channel, weights);
+    }
+
+    /**
+     * "smtp:3,ses:1" → {smtp=3.0, ses=1.0}; un nombre sin peso vale 1
+     */
+    public static Map<String, Double> parseWeights(String spec) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        if (spec == null) {
+            return weights;
+        }
+        for (String entry : spec.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.lastIndexOf(':');
+            if (separator < 0) {
+                weights.put(trimmed, 1.0);
+            } else {
+                weights.put(trimmed.substring(0, separator).trim(), Double.parseDouble(trimmed.substring(separator + 1).trim()));
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Envía por el primer proveedor que lo acepte. Lanza ProviderUnavailableException si todos
+     * tienen el circuito abierto o el mejor se queda sin cuota (el mensaje debe volver a la cola).
+     */
+    public boolean send(M message) {
+        List<Route<M>> candidates = rank();
+        if (candidates.isEmpty()) {
+            throw new ProviderUnavailableException(channel, "todos los proveedores con circuito abierto");
+        }
+
+        boolean attempted = false;
+        for (Route<M> route : candidates) {
+            if (!providerHealth.tryAcquire(route.id)) {
+                continue;
+            }
+            if (!tryQuota(route, message)) {
+                providerHealth.cancel(route.id);
+                continue;
+            }
+            attempted = true;
+            if (call(route, message)) {
+                return true;
+            }
+        }
+        if (attempted) {
+            return false;
+        }
+
+        // Ninguno disponible ahora: se espera por el mejor (back-pressure hacia el consumidor)
+        Route<M> best = candidates.get(0);
+        String quotaKey = best.provider.quotaKey(message);
+        if (quotaKey != null && !rateGovernor.acquire(quotaKey)) {
+            // Sin cuota no se ha intentado el envío: se aplaza, no es un fallo del mensaje
+            sendMetrics.record(best.id, ProviderSendMetrics.THROTTLED);
+            throw new ProviderUnavailableException(best.id, "cuota agotada");
+        }
+        providerHealth.acquire(best.id);
+        return call(best, message);
+    }
+
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Route<M> route : routes) {
+            synchronized (route) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("provider", route.id);
+                entry.put("weight", route.weight);
+                entry.put("latencyMs", Math.round(route.latencyMs * 100) / 100.0);
+                entry.put("errorRate", Math.round(route.errorRate * 1000) / 1000.0);
+                entry.put("score", route.score());
+                entry.put("sent", route.sent);
+                entry.put("failed", route.failed);
+                stats.add(entry);
+            }
+        }
+        return stats;
+    }
+
+    public List<String> getProviderIds() {
+        List<String> ids = new ArrayList<>();
+        routes.forEach(route -> ids.add(route.id));
+        return ids;
+    }
+
+    private boolean tryQuota(Route<M> route, M message) {
+        String quotaKey = route.provider.quotaKey(message);
+        if (quotaKey == null || rateGovernor.tryAcquire(quotaKey)) {
+            return true;
+        }
+        sendMetrics.record(route.id, ProviderSendMetrics.THROTTLED);
+        return false;
+    }
+
+    private boolean call(Route<M> route, M message) {
+        long start = System.nanoTime();
+        boolean sent = false;
+        try {
+            sent = route.provider.send(message);
+        } catch (Exception e) {
+            logger.warn("⚠️ Error en el proveedor {}: {}", route.id, e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            providerHealth.complete(route.id, sent, elapsed);
+            route.record(sent, elapsed);
+            sendMetrics.record(route.id, sent);
+        }
+        if (!sent) {
+            logger.warn("🔀 {} no pudo enviar, se prueba el siguiente proveedor", route.id);
+        }
+        return sent;
+    }
+
+    // Orden aleatorio ponderado por puntuación, solo proveedores con el circuito no abierto
+    private List<Route<M>> rank() {
+        List<Route<M>> pool = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        double total = 0;
+        for (Route<M> route : routes) {
+            if (providerHealth.isAvailable(route.id)) {
+                double score = route.score();
+                pool.add(route);
+                scores.add(score);
+                total += score;
+            }
+        }
+
+        List<Route<M>> ordered = new ArrayList<>(pool.size());
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (!pool.isEmpty()) {
+            double pick = random.nextDouble() * total;
+            int index = 0;
+            while (index < pool.size() - 1 && (pick -= scores.get(index)) > 0) {
+                index++;
+            }
+            ordered.add(pool.remove(index));
+            total -= scores.remove(index);
+        }
+        return ordered;
+    }
+
+    private static final class Route<M> {
+        final String id;
+        final MessageProvider<M> provider;
+        final double weight;
+
+        // Medias exponenciales; protegidas por el propio objeto
+        double latencyMs;
+        double errorRate;
+        boolean measured;
+        long sent;
+        long failed;
+
+        Route(String id, MessageProvider<M> provider, double weight) {
+            this.id = id;
+            this.provider = provider;
+            this.weight = weight;
+        }
+
+        synchronized void record(boolean success, long elapsedNanos) {
+            double millis = elapsedNanos / 1_000_000.0;
+            if (!measured) {
+                latencyMs = millis;
+                measured = true;
+            } else {
+                latencyMs += EWMA_ALPHA * (millis - latencyMs);
+            }
+            errorRate += EWMA_ALPHA * ((success ? 0 : 1) - errorRate);
+            if (success) {
+                sent++;
+            } else {
+                failed++;
+            }
+        }
+
+        // Peso × probabilidad de éxito / latencia; sin medidas todavía cuenta como 1 ms
+        synchronized double score() {
+            return weight * Math.max(0.01, 1 - errorRate) / Math.max(1.0, latencyMs);
+        }
+    }
+}
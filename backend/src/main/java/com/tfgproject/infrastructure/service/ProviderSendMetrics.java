@@ -0,0 +1,31 @@
+package com.tfgproject.infrastructure.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Contador de envíos por proveedor y resultado: messaging.provider.sends{provider,result}
+ */
+@Component
+public class ProviderSendMetrics {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+    public static final String THROTTLED = "throttled";
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    public void record(String provider, String result) {
+        if (meterRegistry == null) {
+            return;
+        }
+        meterRegistry.counter("messaging.provider.sends", "provider", provider, "result", result).increment();
+    }
+
+    public boolean record(String provider, boolean sent) {
+        record(provider, sent ? SUCCESS : FAILURE);
+        return sent;
+    }
+}
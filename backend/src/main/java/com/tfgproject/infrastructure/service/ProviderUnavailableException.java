@@ -0,0 +1,19 @@
+package com.tfgproject.infrastructure.service;
+
+/**
+ * El proveedor no admite más llamadas ahora (circuito abierto, bulkhead lleno o cuota agotada).
+ * El mensaje no se ha enviado y debe volver a la cola.
+ */
+public class ProviderUnavailableException extends RuntimeException {
+
+    private final String provider;
+
+    public ProviderUnavailableException(String provider, String reason) {
+        super("Proveedor " + provider + " no disponible: " + reason);
+        this.provider = provider;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+}
@@ -0,0 +1,262 @@
+package com.tfgproject.infrastructure.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.application.dto.response.QueueStatusResponse;
+import com.tfgproject.application.dto.response.QueueStatusResponse.QueueInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Estado de las colas de RabbitMQ muestreado en segundo plano.
+ *
+ * Una sola llamada a la API de gestión por ciclo trae contadores y ritmos de todas las colas;
+ * si no está disponible se usa declare-passive por AMQP (solo contadores). Las lecturas
+ * (endpoint, métricas) devuelven siempre la última muestra y nunca llegan al broker.
+ */
+@Service
+public class QueueStatusPoller {
+    private static final Logger logger = LoggerFactory.getLogger(QueueStatusPoller.class);
+
+    public static final String SOURCE_MANAGEMENT = "management";
+    public static final String SOURCE_AMQP = "amqp";
+    public static final String SOURCE_NONE = "none";
+
+    private static final String COLUMNS = "name,messages,messages_ready,messages_unacknowledged,consumers,state,"
+            + "message_stats.publish_details.rate,message_stats.deliver_get_details.rate";
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Colas y bindings declarados en la aplicación: las de reintento o nuevos canales se monitorizan solas
+    @Autowired(required = false)
+    private List<Queue> declaredQueues = Collections.emptyList();
+
+    @Autowired(required = false)
+    private List<Binding> declaredBindings = Collections.emptyList();
+
+    // Las que declara cada canal con MessageChannel.getTopology llegan agrupadas
+    @Autowired(required = false)
+    private List<Declarables> declaredGroups = Collections.emptyList();
+
+    @Value("${app.queue-status.management-url:http://localhost:15672}")
+    private String managementUrl;
+
+    @Value("${spring.rabbitmq.username:guest}")
+    private String username;
+
+    @Value("${spring.rabbitmq.password:guest}")
+    private String password;
+
+    @Value("${spring.rabbitmq.virtual-host:/}")
+    private String virtualHost;
+
+    @Value("${app.queue-status.timeout-ms:2000}")
+    private long timeoutMillis;
+
+    @Value("${app.queue-status.stale-ms:15000}")
+    private long staleMillis;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private volatile Map<String, QueueInfo> lastQueues = Collections.emptyMap();
+    private volatile String lastSource = SOURCE_NONE;
+    private volatile Instant sampledAt;
+
+    @Scheduled(fixedRateString = "${app.queue-status.poll-ms:5000}")
+    public void poll() {
+        Map<String, String> monitored = getMonitoredQueues();
+        Map<String, QueueInfo> queues;
+        String source;
+
+        try {
+            queues = fetchFromManagement(monitored.keySet());
+            source = SOURCE_MANAGEMENT;
+        } catch (Exception e) {
+            logger.debug("API de gestión de RabbitMQ no disponible: {}", e.getMessage());
+            try {
+                queues = fetchViaAmqp(monitored.keySet());
+                source = SOURCE_AMQP;
+            } catch (Exception amqpError) {
+                // Se conserva la última muestra; las lecturas la marcarán como obsoleta
+                logger.warn("⚠️ No se pudo consultar el estado de las colas: {}", amqpError.getMessage());
+                return;
+            }
+        }
+
+        // Profundidad de la DLQ junto a cada cola de trabajo
+        for (Map.Entry<String, String> entry : monitored.entrySet()) {
+            QueueInfo info = queues.get(entry.getKey());
+            if (info != null && entry.getValue() != null) {
+                info.setDeadLetterQueue(entry.getValue());
+                QueueInfo dead = queues.get(entry.getValue());
+                info.setDeadLetterCount(dead != null && dead.getMessageCount() != null
+                        ? dead.getMessageCount().longValue() : null);
+            }
+        }
+
+        lastQueues = Collections.unmodifiableMap(queues);
+        lastSource = source;
+        sampledAt = Instant.now();
+    }
+
+    public QueueStatusResponse getStatus() {
+        Instant sample = sampledAt;
+        if (sample == null) {
+            return QueueStatusResponse.builder()
+                    .status("UNAVAILABLE")
+                    .source(SOURCE_NONE)
+                    .stale(true)
+                    .queues(Collections.emptyMap())
+                    .build();
+        }
+        return QueueStatusResponse.builder()
+                .status("ACTIVE")
+                .timestamp(LocalDateTime.ofInstant(sample, ZoneId.systemDefault()))
+                .source(lastSource)
+                .stale(isStale())
+                .queues(lastQueues)
+                .build();
+    }
+
+    public Optional<QueueInfo> getQueue(String name) {
+        return Optional.ofNullable(lastQueues.get(name));
+    }
+
+    public boolean isStale() {
+        Instant sample = sampledAt;
+        return sample == null || sample.plusMillis(staleMillis).isBefore(Instant.now());
+    }
+
+    /**
+     * Colas declaradas, en orden, con su cola de mensajes muertos (o null)
+     */
+    public Map<String, String> getMonitoredQueues() {
+        Map<String, String> monitored = new LinkedHashMap<>();
+        for (Queue queue : declared(declaredQueues, Queue.class)) {
+            monitored.put(queue.getName(), deadLetterQueueOf(queue));
+        }
+        return monitored;
+    }
+
+    private String deadLetterQueueOf(Queue queue) {
+        Object exchange = queue.getArguments().get("x-dead-letter-exchange");
+        Object routingKey = queue.getArguments().get("x-dead-letter-routing-key");
+        if (exchange == null) {
+            return null;
+        }
+        for (Binding binding : declared(declaredBindings, Binding.class)) {
+            if (binding.isDestinationQueue() && exchange.equals(binding.getExchange())
+                    && (routingKey == null || routingKey.equals(binding.getRoutingKey()))) {
+                return binding.getDestination();
+            }
+        }
+        return null;
+    }
+
+    private <T extends Declarable> List<T> declared(List<T> beans, Class<T> type) {
+        if (declaredGroups.isEmpty()) {
+            return beans;
+        }
+        List<T> all = new ArrayList<>(beans);
+        declaredGroups.forEach(group -> all.addAll(group.getDeclarablesByType(type)));
+        return all;
+    }
+
+    // === API DE GESTIÓN: una petición para todas las colas del vhost ===
+    private Map<String, QueueInfo> fetchFromManagement(Iterable<String> names) throws IOException, InterruptedException {
+        String vhost = URLEncoder.encode(virtualHost, StandardCharsets.UTF_8);
+        String columns = URLEncoder.encode(COLUMNS, StandardCharsets.UTF_8);
+        String credentials = Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(managementUrl + "/api/queues/" + vhost + "?columns=" + columns))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Authorization", "Basic " + credentials)
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+
+        Map<String, JsonNode> byName = new LinkedHashMap<>();
+        for (JsonNode node : objectMapper.readTree(response.body())) {
+            byName.put(node.path("name").asText(), node);
+        }
+
+        Map<String, QueueInfo> queues = new LinkedHashMap<>();
+        for (String name : names) {
+            JsonNode node = byName.get(name);
+            if (node == null) {
+                continue;
+            }
+            JsonNode stats = node.path("message_stats");
+            queues.put(name, QueueInfo.builder()
+                    .name(name)
+                    .messageCount(node.path("messages").asInt())
+                    .consumerCount(node.path("consumers").asInt())
+                    .state(node.path("state").asText(null))
+                    .messagesReady(node.path("messages_ready").asLong())
+                    .messagesUnacknowledged(node.path("messages_unacknowledged").asLong())
+                    .publishRate(stats.path("publish_details").path("rate").asDouble(0))
+                    .deliverRate(stats.path("deliver_get_details").path("rate").asDouble(0))
+                    .build());
+        }
+        return queues;
+    }
+
+    // === RESPALDO AMQP: declare-passive por cola, sin ritmos ===
+    private Map<String, QueueInfo> fetchViaAmqp(Iterable<String> names) {
+        Map<String, QueueInfo> queues = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            QueueInformation information = amqpAdmin.getQueueInfo(name);
+            if (information == null) {
+                missing.add(name);
+                continue;
+            }
+            queues.put(name, QueueInfo.builder()
+                    .name(name)
+                    .messageCount(information.getMessageCount())
+                    .consumerCount(information.getConsumerCount())
+                    .messagesReady((long) information.getMessageCount())
+                    .build());
+        }
+        if (!missing.isEmpty()) {
+            logger.debug("Colas no encontradas en el broker: {}", missing);
+        }
+        return queues;
+    }
+}
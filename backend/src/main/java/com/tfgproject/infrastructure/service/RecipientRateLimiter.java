@@ -0,0 +1,60 @@
+package com.tfgproject.infrastructure.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ritmo máximo de mensajes a un mismo destinatario (p. ej. WhatsApp limita los mensajes
+ * seguidos de una empresa a un mismo número).
+ *
+ * Cada número reserva el siguiente hueco libre de su casilla en una tabla de tamaño fijo, así
+ * que la memoria no crece con el número de destinatarios. Dos números en la misma casilla
+ * comparten ritmo: solo puede retrasar envíos, nunca dejar pasar más de la cuenta.
+ */
+public class RecipientRateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLongArray nextFree;
+    private final int mask;
+
+    public RecipientRateLimiter(long intervalMillis, int slots) {
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        int size = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.nextFree = new AtomicLongArray(size);
+        this.mask = size - 1;
+        long initial = System.nanoTime() - intervalNanos;
+        for (int i = 0; i < size; i++) {
+            nextFree.set(i, initial);
+        }
+    }
+
+    /**
+     * Reserva el siguiente envío al destinatario y devuelve cuántos ns hay que esperar (0 = ya).
+     * Si la espera pasaría de maxWaitNanos no reserva nada y devuelve -1.
+     */
+    public long reserve(String recipient, long nowNanos, long maxWaitNanos) {
+        if (intervalNanos <= 0) {
+            return 0;
+        }
+        int slot = slotOf(recipient);
+        while (true) {
+            long next = nextFree.get(slot);
+            long start = next - nowNanos > 0 ? next : nowNanos;
+            long wait = start - nowNanos;
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (nextFree.compareAndSet(slot, next, start + intervalNanos)) {
+                return wait;
+            }
+        }
+    }
+
+    public int getSlots() {
+        return nextFree.length();
+    }
+
+    private int slotOf(String recipient) {
+        int hash = recipient.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
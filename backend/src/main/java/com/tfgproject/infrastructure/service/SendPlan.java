@@ -0,0 +1,120 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.ChannelType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de planificar un envío multicanal: por contacto, los canales elegidos (máscara de bits),
+ * y por canal, las direcciones ya sin repetir listas para encolar.
+ */
+public class SendPlan {
+    public static final int EMAIL = bit(ChannelType.EMAIL);
+    public static final int SMS = bit(ChannelType.SMS);
+    public static final int WHATSAPP = bit(ChannelType.WHATSAPP);
+
+    private long[] contactIds = new long[16];
+    private byte[] channels = new byte[16];
+    private int size;
+
+    private final List<String> emails = new ArrayList<>();
+    private final List<String> phones = new ArrayList<>();
+    private final List<String> whatsappIds = new ArrayList<>();
+
+    private int unreachable;
+    private int duplicateContacts;
+    private int sharedAddresses;
+
+    /**
+     * Bit del canal en la máscara: uno por ChannelType, en el orden del enum
+     */
+    public static int bit(ChannelType type) {
+        return 1 << type.ordinal();
+    }
+
+    void add(long contactId, int channelMask) {
+        if (size == contactIds.length) {
+            contactIds = Arrays.copyOf(contactIds, size * 2);
+            channels = Arrays.copyOf(channels, size * 2);
+        }
+        contactIds[size] = contactId;
+        channels[size] = (byte) channelMask;
+        size++;
+    }
+
+    void addEmail(String email) {
+        emails.add(email);
+    }
+
+    void addPhone(String phone) {
+        phones.add(phone);
+    }
+
+    void addWhatsapp(String whatsappId) {
+        whatsappIds.add(whatsappId);
+    }
+
+    void markUnreachable() {
+        unreachable++;
+    }
+
+    void markDuplicateContact() {
+        duplicateContacts++;
+    }
+
+    void markSharedAddress() {
+        sharedAddresses++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long contactIdAt(int index) {
+        return contactIds[index];
+    }
+
+    public int channelsAt(int index) {
+        return channels[index];
+    }
+
+    public List<String> getEmails() {
+        return emails;
+    }
+
+    public List<String> getPhones() {
+        return phones;
+    }
+
+    public List<String> getWhatsappIds() {
+        return whatsappIds;
+    }
+
+    public int getUnreachable() {
+        return unreachable;
+    }
+
+    public int getMessageCount() {
+        return emails.size() + phones.size() + whatsappIds.size();
+    }
+
+    public boolean isEmpty() {
+        return getMessageCount() == 0;
+    }
+
+    public Map<String, Object> toSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("contacts", size);
+        summary.put("emailRecipients", emails.size());
+        summary.put("smsRecipients", phones.size());
+        summary.put("whatsappRecipients", whatsappIds.size());
+        summary.put("unreachable", unreachable);
+        summary.put("duplicateContacts", duplicateContacts);
+        summary.put("sharedAddresses", sharedAddresses);
+        return summary;
+    }
+}
@@ -0,0 +1,186 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.MessageChannel;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Planificador de envíos multicanal: decide en una sola pasada por qué canal(es) se contacta
+ * a cada persona, en vez de encolar email y SMS por separado.
+ *
+ * Política "preferred": solo el primer canal disponible según la prioridad (si el contacto no
+ * tiene email se cae al siguiente). Política "all": todos los canales pedidos que tenga.
+ * En ambas un contacto repetido (p. ej. en dos subcategorías) o una dirección compartida
+ * por dos contactos solo generan un mensaje.
+ */
+@Service
+public class SendPlanner {
+    public static final String POLICY_PREFERRED = "preferred";
+    public static final String POLICY_ALL = "all";
+
+    @Autowired
+    private AsyncMessagePublisher messagePublisher;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Value("${app.messaging.channel-policy.mode:preferred}")
+    private String defaultPolicy = POLICY_PREFERRED;
+
+    // Orden de preferencia entre los canales de Contact.getAvailableChannels()
+    @Value("${app.messaging.channel-policy.priority:EMAIL,SMS,WHATSAPP}")
+    private String priority = "EMAIL,SMS,WHATSAPP";
+
+    /**
+     * @param requested máscara de canales pedidos (SendPlan.EMAIL | SendPlan.SMS ...)
+     * @param policy    "preferred", "all" o null para la política por defecto
+     */
+    public SendPlan plan(Iterable<Contact> contacts, int requested, String policy) {
+        boolean all = POLICY_ALL.equalsIgnoreCase(policy != null ? policy : defaultPolicy);
+        int[] order = priorityOrder();
+
+        SendPlan plan = new SendPlan();
+        Set<Long> seenContacts = new HashSet<>();
+        Set<String> seenAddresses = new HashSet<>();
+
+        for (Contact contact : contacts) {
+            if (contact.getId() != null && !seenContacts.add(contact.getId())) {
+                plan.markDuplicateContact();
+                continue;
+            }
+
+            int available = mask(contact.getAvailableChannels()) & requested;
+            if (available == 0) {
+                plan.markUnreachable();
+                continue;
+            }
+
+            int chosen = 0;
+            for (int channel : order) {
+                if ((available & channel) != 0) {
+                    chosen |= channel;
+                    if (!all) {
+                        break;
+                    }
+                }
+            }
+
+            plan.add(contact.getId() != null ? contact.getId() : -1L, chosen);
+            if ((chosen & SendPlan.EMAIL) != 0) {
+                addAddress(plan, seenAddresses, "e:" + contact.getEmail().trim().toLowerCase(Locale.ROOT),
+                        () -> plan.addEmail(contact.getEmail().trim()));
+            }
+            if ((chosen & SendPlan.SMS) != 0) {
+                addAddress(plan, seenAddresses, "p:" + contact.getPhone().replaceAll("[\\s\\-()]", ""),
+                        () -> plan.addPhone(contact.getPhone().trim()));
+            }
+            if ((chosen & SendPlan.WHATSAPP) != 0) {
+                addAddress(plan, seenAddresses, "w:" + contact.getWhatsappId().trim(),
+                        () -> plan.addWhatsapp(contact.getWhatsappId().trim()));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Encola el plan: una difusión para los emails y un lote confirmado para SMS y WhatsApp
+     */
+    public Map<String, Object> dispatch(SendPlan plan, String subject, String content, String sender, String userId) {
+        Map<String, Object> result = new LinkedHashMap<>(plan.toSummary());
+
+        if (!plan.getEmails().isEmpty()) {
+            result.put("messageId", messagePublisher.broadcastMessage(plan.getEmails(), content, subject,
+                    userId != null ? userId : QueueMessage.DEFAULT_USER));
+        }
+        List<QueueMessage> messages = new ArrayList<>(plan.getPhones().size() + plan.getWhatsappIds().size());
+        addMessages(messages, ChannelType.SMS, plan.getPhones(), content, sender, userId);
+        addMessages(messages, ChannelType.WHATSAPP, plan.getWhatsappIds(), content, sender, userId);
+        if (!messages.isEmpty()) {
+            messagePublisher.publishBatch(messages);
+        }
+        result.put("totalRecipients", plan.getMessageCount());
+        return result;
+    }
+
+    // Cada canal construye sus mensajes igual que para un envío suelto
+    private void addMessages(List<QueueMessage> messages, ChannelType type, List<String> addresses,
+                             String content, String sender, String userId) {
+        if (addresses.isEmpty()) {
+            return;
+        }
+        MessageChannel channel = channelRegistry.get(type);
+        for (String address : addresses) {
+            MessageRequest request = new MessageRequest();
+            request.setTo(address);
+            request.setContent(content);
+            request.setSender(sender);
+            request.setUserId(userId != null ? userId : QueueMessage.DEFAULT_USER);
+            messages.add(channel.toQueueMessage(request));
+        }
+    }
+
+    public static int mask(Set<String> channels) {
+        int mask = 0;
+        for (String channel : channels) {
+            mask |= bit(channel);
+        }
+        return mask;
+    }
+
+    public static int requested(boolean email, boolean sms) {
+        return requested(email, sms, false);
+    }
+
+    public static int requested(boolean email, boolean sms, boolean whatsapp) {
+        return (email ? SendPlan.EMAIL : 0) | (sms ? SendPlan.SMS : 0) | (whatsapp ? SendPlan.WHATSAPP : 0);
+    }
+
+    private int[] priorityOrder() {
+        List<Integer> order = new ArrayList<>();
+        for (String channel : priority.split(",")) {
+            int bit = bit(channel.trim());
+            if (bit != 0 && !order.contains(bit)) {
+                order.add(bit);
+            }
+        }
+        // Los canales que no figuren en la configuración van al final
+        for (ChannelType type : ChannelType.values()) {
+            int bit = bit(type.name());
+            if (bit != 0 && !order.contains(bit)) {
+                order.add(bit);
+            }
+        }
+        return order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Solo cuentan los canales con dirección por contacto; un nombre desconocido no aporta bit
+    private static int bit(String channel) {
+        if (!ChannelType.isKnown(channel)) {
+            return 0;
+        }
+        ChannelType type = ChannelType.of(channel);
+        return type.isDirect() ? SendPlan.bit(type) : 0;
+    }
+
+    private static void addAddress(SendPlan plan, Set<String> seen, String key, Runnable add) {
+        if (seen.add(key)) {
+            add.run();
+        } else {
+            plan.markSharedAddress();
+        }
+    }
+}
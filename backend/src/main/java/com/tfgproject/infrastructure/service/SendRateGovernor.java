@@ -0,0 +1,200 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.domain.port.out.SendQuotaRepositoryPort;
+import com.tfgproject.infrastructure.config.NodeIdentity;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Límite global de envíos por proveedor, coordinado entre todos los nodos de la aplicación.
+ *
+ * Email usa una única cuota (Gmail por segundo y por día); SMS usa una cuota por número
+ * remitente, como aplica Twilio, y WhatsApp una por número de empresa, como la Cloud API.
+ */
+@Service
+public class SendRateGovernor {
+    private static final Logger logger = LoggerFactory.getLogger(SendRateGovernor.class);
+
+    public static final String EMAIL_PROVIDER = "email";
+    public static final String SMS_PROVIDER_PREFIX = "sms:";
+    public static final String WHATSAPP_PROVIDER_PREFIX = "whatsapp:";
+
+    @Autowired
+    private SendQuotaRepositoryPort quotaRepository;
+
+    @Autowired
+    private NodeIdentity nodeIdentity;
+
+    @Value("${app.rate-governor.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rate-governor.node-ttl-ms:15000}")
+    private long nodeTtlMillis;
+
+    @Value("${app.rate-governor.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMillis;
+
+    @Value("${app.rate-governor.daily-chunk:50}")
+    private long dailyChunk;
+
+    @Value("${app.rate-governor.email.rate-per-second:10}")
+    private double emailRatePerSecond;
+
+    @Value("${app.rate-governor.email.daily-limit:2000}")
+    private long emailDailyLimit;
+
+    @Value("${app.rate-governor.sms.rate-per-second:1}")
+    private double smsRatePerSecond;
+
+    @Value("${app.rate-governor.sms.daily-limit:0}")
+    private long smsDailyLimit;
+
+    @Value("${app.rate-governor.whatsapp.rate-per-second:80}")
+    private double whatsappRatePerSecond;
+
+    @Value("${app.rate-governor.whatsapp.daily-limit:0}")
+    private long whatsappDailyLimit;
+
+    private final ConcurrentMap<String, ProviderRateGovernor> governors = new ConcurrentHashMap<>();
+
+    /**
+     * Bloquea hasta que el proveedor admita un envío más. Devuelve false si se agota
+     * la cuota diaria o se supera el tiempo de espera.
+     */
+    public boolean acquire(String provider) {
+        if (!enabled) {
+            return true;
+        }
+
+        ProviderRateGovernor governor = governorFor(provider);
+        try {
+            boolean granted = governor.acquire(acquireTimeoutMillis);
+            if (!granted) {
+                logger.warn("🚦 Cuota de envío agotada para {} (nodo {})", provider, getNodeId());
+            }
+            return granted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Sin esperar: true si el proveedor admite un envío ahora mismo
+     */
+    public boolean tryAcquire(String provider) {
+        if (!enabled) {
+            return true;
+        }
+        return governorFor(provider).tryAcquire() == 0;
+    }
+
+    public boolean acquireSms(String sender) {
+        return acquire(smsProvider(sender));
+    }
+
+    public static String smsProvider(String sender) {
+        return SMS_PROVIDER_PREFIX + (sender != null ? sender : "default");
+    }
+
+    public static String whatsappProvider(String phoneNumberId) {
+        return WHATSAPP_PROVIDER_PREFIX + (phoneNumberId != null && !phoneNumberId.isEmpty() ? phoneNumberId : "default");
+    }
+
+    /**
+     * Latido periódico: los nodos que entran o salen cambian el reparto en el siguiente ciclo
+     */
+    @Scheduled(fixedRateString = "${app.rate-governor.heartbeat-ms:5000}")
+    public void rebalance() {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        for (ProviderRateGovernor governor : governors.values()) {
+            try {
+                int before = governor.getLiveNodes();
+                governor.rebalance(now);
+                if (before != governor.getLiveNodes()) {
+                    logger.info("🚦 {}: {} nodos activos, ritmo local {}/s",
+                            governor.getProvider(), governor.getLiveNodes(),
+                            String.format("%.2f", governor.getLocalRate()));
+                }
+            } catch (Exception e) {
+                logger.error("❌ Error rebalanceando cuota de {}: {}", governor.getProvider(), e.getMessage());
+            }
+        }
+
+        try {
+            quotaRepository.removeStaleNodes(now.minusMillis(nodeTtlMillis * 4));
+        } catch (Exception e) {
+            logger.debug("No se pudieron limpiar nodos caducados: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        for (ProviderRateGovernor governor : governors.values()) {
+            try {
+                governor.leave();
+            } catch (Exception e) {
+                logger.debug("No se pudo liberar la cuota de {}: {}", governor.getProvider(), e.getMessage());
+            }
+        }
+    }
+
+    public List<Map<String, Object>> getGovernorStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (ProviderRateGovernor governor : governors.values()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("provider", governor.getProvider());
+            entry.put("nodeId", getNodeId());
+            entry.put("liveNodes", governor.getLiveNodes());
+            entry.put("globalRatePerSecond", governor.getGlobalRatePerSecond());
+            entry.put("localRatePerSecond", governor.getLocalRate());
+            entry.put("dailyLimit", governor.getDailyLimit());
+            entry.put("dailyAllowanceLeft", governor.getDailyAllowance());
+            stats.add(entry);
+        }
+        return stats;
+    }
+
+    public String getNodeId() {
+        return nodeIdentity.getNodeId();
+    }
+
+    private ProviderRateGovernor governorFor(String provider) {
+        return governors.computeIfAbsent(provider, key -> {
+            boolean isSms = key.startsWith(SMS_PROVIDER_PREFIX);
+            boolean isWhatsapp = key.startsWith(WHATSAPP_PROVIDER_PREFIX);
+            ProviderRateGovernor governor = new ProviderRateGovernor(
+                    key,
+                    getNodeId(),
+                    isWhatsapp ? whatsappRatePerSecond : isSms ? smsRatePerSecond : emailRatePerSecond,
+                    isWhatsapp ? whatsappDailyLimit : isSms ? smsDailyLimit : emailDailyLimit,
+                    dailyChunk,
+                    nodeTtlMillis,
+                    quotaRepository
+            );
+            try {
+                governor.rebalance(Instant.now());
+            } catch (Exception e) {
+                logger.warn("⚠️ Sin almacén de cuotas para {}, usando límite completo: {}", key, e.getMessage());
+            }
+            return governor;
+        });
+    }
+}
@@ -0,0 +1,6 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.SmsMessage;
+
+public interface SmsProvider extends MessageProvider<SmsMessage> {
+}
@@ -1,38 +1,51 @@
 package com.tfgproject.infrastructure.service;
 
-import com.twilio.rest.api.v2010.account.Message;
-import com.twilio.type.PhoneNumber;
 import com.tfgproject.shared.model.SmsMessage;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class SmsService {
     private static final Logger logger = LoggerFactory.getLogger(SmsService.class);
 
+    @Autowired
+    private List<SmsProvider> providers;
+
+    @Autowired
+    private SendRateGovernor sendRateGovernor;
+
+    @Autowired
+    private ProviderSendMetrics providerSendMetrics;
+
+    @Autowired
+    private ProviderHealthRegistry providerHealth;
+
+    // Proveedores con peso, p. ej. "twilio:2,stub:1"
+    @Value("${app.providers.sms:twilio}")
+    private String providerWeights;
+
+    private ProviderRouter<SmsMessage> router;
+
+    @PostConstruct
+    public void initRouter() {
+        router = new ProviderRouter<>(ProviderHealthRegistry.SMS, providers,
+                ProviderRouter.parseWeights(providerWeights), providerHealth, sendRateGovernor, providerSendMetrics);
+    }
+
     public boolean sendSms(SmsMessage smsMessage) {
-        try {
-            logger.info("Enviando SMS a {} desde {}", smsMessage.getTo(), smsMessage.getSender());
-
-            // Formato internacional para España
-            String formattedNumber = smsMessage.getTo();
-            if (!formattedNumber.startsWith("+")) {
-                formattedNumber = "+34" + formattedNumber;
-            }
-
-            Message message = Message.creator(
-                    new PhoneNumber(formattedNumber),
-                    new com.twilio.type.PhoneNumber(smsMessage.getSender()),
-                    smsMessage.getText()
-            ).create();
-
-            logger.info("SMS enviado, SID: {}", message.getSid());
-            return true;
-        } catch (Exception e) {
-            logger.error("Error enviando SMS: {}", e.getMessage(), e);
-            return false;
+        // Si todos los proveedores tienen el circuito abierto o no queda cuota lanza ProviderUnavailableException
+        boolean sent = router.send(smsMessage);
+        if (!sent) {
+            logger.warn("❌ Ningún proveedor pudo enviar el SMS a {}", smsMessage.getTo());
         }
+        return sent;
     }
 
     // Método de conveniencia para el modo más simple
@@ -46,4 +59,12 @@ public class SmsService {
         SmsMessage smsMessage = new SmsMessage(to, text);
         return sendSms(smsMessage);
     }
-}
\ No newline at end of file
+
+    public List<Map<String, Object>> getProviderStats() {
+        return router.getStats();
+    }
+
+    public List<String> getProviderIds() {
+        return router.getProviderIds();
+    }
+}
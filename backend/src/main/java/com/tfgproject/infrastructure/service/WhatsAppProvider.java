@@ -0,0 +1,6 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.WhatsAppMessage;
+
+public interface WhatsAppProvider extends MessageProvider<WhatsAppMessage> {
+}
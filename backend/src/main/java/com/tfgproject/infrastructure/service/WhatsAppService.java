@@ -0,0 +1,58 @@
+package com.tfgproject.infrastructure.service;
+
+import com.tfgproject.shared.model.WhatsAppMessage;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class WhatsAppService {
+    private static final Logger logger = LoggerFactory.getLogger(WhatsAppService.class);
+
+    @Autowired
+    private List<WhatsAppProvider> providers;
+
+    @Autowired
+    private SendRateGovernor sendRateGovernor;
+
+    @Autowired
+    private ProviderSendMetrics providerSendMetrics;
+
+    @Autowired
+    private ProviderHealthRegistry providerHealth;
+
+    // Proveedores con peso, p. ej. "graph:1,stub:1"
+    @Value("${app.providers.whatsapp:graph}")
+    private String providerWeights;
+
+    private ProviderRouter<WhatsAppMessage> router;
+
+    @PostConstruct
+    public void initRouter() {
+        router = new ProviderRouter<>(ProviderHealthRegistry.WHATSAPP, providers,
+                ProviderRouter.parseWeights(providerWeights), providerHealth, sendRateGovernor, providerSendMetrics);
+    }
+
+    public boolean sendWhatsApp(WhatsAppMessage message) {
+        // Si todos los proveedores tienen el circuito abierto o no queda cuota lanza ProviderUnavailableException
+        boolean sent = router.send(message);
+        if (!sent) {
+            logger.warn("❌ Ningún proveedor pudo enviar el WhatsApp a {}", message.getTo());
+        }
+        return sent;
+    }
+
+    public List<Map<String, Object>> getProviderStats() {
+        return router.getStats();
+    }
+
+    public List<String> getProviderIds() {
+        return router.getProviderIds();
+    }
+}
@@ -0,0 +1,133 @@
+package com.tfgproject.infrastructure.template;
+
+import com.tfgproject.domain.model.Contact;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plantilla analizada una sola vez: tramos literales intercalados con campos.
+ * Renderizar es recorrer los arrays y volcar en un único StringBuilder dimensionado.
+ */
+public final class CompiledTemplate {
+
+    private final String source;
+    private final String[] literals;     // fields.length + 1 tramos
+    private final TemplateField[] fields;
+    private final String[] defaults;     // valor si el campo viene vacío, puede ser null
+    private final int literalLength;
+
+    private CompiledTemplate(String source, String[] literals, TemplateField[] fields, String[] defaults) {
+        this.source = source;
+        this.literals = literals;
+        this.fields = fields;
+        this.defaults = defaults;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Analiza {{campo}} y {{campo|valor por defecto}}. Los marcadores desconocidos se
+     * dejan tal cual como texto.
+     */
+    public static CompiledTemplate compile(String source) {
+        if (source == null) {
+            source = "";
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<TemplateField> fields = new ArrayList<>();
+        List<String> defaults = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf("{{", position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                break;
+            }
+
+            String expression = source.substring(open + 2, close).trim();
+            int pipe = expression.indexOf('|');
+            String key = (pipe >= 0 ? expression.substring(0, pipe) : expression).trim();
+            TemplateField field = TemplateField.fromKey(key);
+
+            literal.append(source, position, open);
+            if (field == null) {
+                literal.append(source, open, close + 2);
+            } else {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                fields.add(field);
+                defaults.add(pipe >= 0 ? expression.substring(pipe + 1).trim() : null);
+            }
+            position = close + 2;
+        }
+        literal.append(source, position, source.length());
+        literals.add(literal.toString());
+
+        return new CompiledTemplate(
+                source,
+                literals.toArray(new String[0]),
+                fields.toArray(new TemplateField[0]),
+                defaults.toArray(new String[0])
+        );
+    }
+
+    public String render(Contact contact, String recipient) {
+        return render(contact, recipient, false);
+    }
+
+    /**
+     * Con html, los valores de los campos y sus valores por defecto se escapan: vienen de
+     * contactos editables (o importados) y no deben inyectar marcado en el correo.
+     */
+    public String render(Contact contact, String recipient, boolean html) {
+        if (fields.length == 0) {
+            return source;
+        }
+
+        StringBuilder out = new StringBuilder(literalLength + fields.length * 16);
+        for (int i = 0; i < fields.length; i++) {
+            out.append(literals[i]);
+            String value = fields[i].resolve(contact, recipient);
+            if (value == null || value.isEmpty()) {
+                value = defaults[i];
+            }
+            if (value != null) {
+                out.append(html ? HtmlUtils.htmlEscape(value, "UTF-8") : value);
+            }
+        }
+        out.append(literals[fields.length]);
+        return out.toString();
+    }
+
+    public boolean hasPlaceholders() {
+        return fields.length > 0;
+    }
+
+    /**
+     * Indica si hace falta cargar el contacto (cualquier campo salvo el destinatario)
+     */
+    public boolean needsContact() {
+        for (TemplateField field : fields) {
+            if (field != TemplateField.RECIPIENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,87 @@
+package com.tfgproject.infrastructure.template;
+
+import com.tfgproject.domain.model.Contact;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Personalización de contenido por destinatario en el consumidor.
+ *
+ * El mensaje viaja por la cola con la plantilla sin expandir; cada plantilla se compila
+ * una vez y queda en una caché LRU, de modo que una difusión de N destinatarios solo
+ * paga N renderizados.
+ */
+@Service
+public class TemplateEngine {
+
+    @Value("${app.templates.cache-size:256}")
+    private int cacheSize = 256;
+
+    private final Map<String, CompiledTemplate> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private long hits;
+    private long misses;
+
+    public CompiledTemplate compile(String source) {
+        String key = source != null ? source : "";
+
+        // Sin marcadores no merece la pena ocupar la caché
+        if (!key.contains("{{")) {
+            return CompiledTemplate.compile(key);
+        }
+
+        synchronized (cache) {
+            CompiledTemplate template = cache.get(key);
+            if (template != null) {
+                hits++;
+                return template;
+            }
+            misses++;
+            template = CompiledTemplate.compile(key);
+            cache.put(key, template);
+            return template;
+        }
+    }
+
+    public String render(String source, Contact contact, String recipient) {
+        return render(source, contact, recipient, false);
+    }
+
+    /**
+     * Con html, los valores sustituidos se escapan para el cuerpo HTML
+     */
+    public String render(String source, Contact contact, String recipient, boolean html) {
+        if (source == null || !source.contains("{{")) {
+            return source;
+        }
+        return compile(source).render(contact, recipient, html);
+    }
+
+    public boolean needsContact(String... sources) {
+        for (String source : sources) {
+            if (source != null && source.contains("{{") && compile(source).needsContact()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, Object> getCacheStats() {
+        synchronized (cache) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("size", cache.size());
+            stats.put("capacity", cacheSize);
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            return stats;
+        }
+    }
+}
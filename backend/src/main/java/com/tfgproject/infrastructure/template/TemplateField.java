@@ -0,0 +1,69 @@
+package com.tfgproject.infrastructure.template;
+
+import com.tfgproject.domain.model.Contact;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Campos de Contact disponibles como {{marcador}} en las plantillas
+ */
+public enum TemplateField {
+    NAME("name", "nombre"),
+    FIRST_NAME("firstName", "primerNombre"),
+    EMAIL("email", "correo"),
+    PHONE("phone", "telefono"),
+    WHATSAPP("whatsapp", "whatsappId"),
+    NOTES("notes", "notas"),
+    RECIPIENT("recipient", "destinatario");
+
+    private static final Map<String, TemplateField> BY_KEY = new HashMap<>();
+
+    static {
+        for (TemplateField field : values()) {
+            for (String key : field.keys) {
+                BY_KEY.put(key.toLowerCase(Locale.ROOT), field);
+            }
+        }
+    }
+
+    private final String[] keys;
+
+    TemplateField(String... keys) {
+        this.keys = keys;
+    }
+
+    public static TemplateField fromKey(String key) {
+        return BY_KEY.get(key.toLowerCase(Locale.ROOT));
+    }
+
+    public String resolve(Contact contact, String recipient) {
+        if (this == RECIPIENT) {
+            return recipient;
+        }
+        if (contact == null) {
+            return null;
+        }
+
+        switch (this) {
+            case NAME:
+                return contact.getName();
+            case FIRST_NAME:
+                String name = contact.getName();
+                if (name == null) return null;
+                int space = name.indexOf(' ');
+                return space > 0 ? name.substring(0, space) : name;
+            case EMAIL:
+                return contact.getEmail();
+            case PHONE:
+                return contact.getPhone();
+            case WHATSAPP:
+                return contact.getWhatsappId();
+            case NOTES:
+                return contact.getNotes();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.tfgproject.infrastructure.workflow;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.domain.model.DeliveryWorkflow;
+import com.tfgproject.domain.model.WorkflowDefinition;
+import com.tfgproject.domain.port.out.DeliveryWorkflowRepositoryPort;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.BatchPublishException;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.shared.model.WorkflowEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Flujos de entrega con canales de respaldo: cada contacto recibe el mensaje por el primer canal
+ * de la cadena y, si el consumidor informa de un fallo o vence el plazo del paso sin confirmación,
+ * pasa al siguiente canal que tenga.
+ *
+ * Todo avance es asíncrono: los consumidores publican el resultado en workflow.queue y los
+ * plazos esperan en colas de retardo con TTL que devuelven el evento a la misma cola. El estado
+ * vive en base de datos y cada transición es una actualización condicional sobre el paso, así
+ * que eventos repetidos o tardíos no duplican envíos.
+ */
+@Service
+public class DeliveryWorkflowEngine {
+    private static final Logger logger = LoggerFactory.getLogger(DeliveryWorkflowEngine.class);
+
+    public static final int MAX_STEPS = 4;
+    private static final int DEFINITION_CACHE_SIZE = 256;
+
+    @Autowired
+    private DeliveryWorkflowRepositoryPort workflowRepository;
+
+    @Autowired
+    private AsyncMessagePublisher messagePublisher;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private ChannelRegistry channelRegistry;
+
+    @Value("${app.workflows.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${app.workflows.default-timeout-seconds:3600}")
+    private int defaultTimeoutSeconds = 3600;
+
+    @Value("${app.workflows.retention-ms:604800000}")
+    private long retentionMillis = 604_800_000L;
+
+    // Las definiciones son pocas (una por envío) y se leen en cada evento
+    private final Map<Long, WorkflowDefinition> definitions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, WorkflowDefinition> eldest) {
+            return size() > DEFINITION_CACHE_SIZE;
+        }
+    };
+
+    // === ALTA DE FLUJOS ===
+
+    /**
+     * Crea un flujo por contacto (sin repetidos) y envía el primer paso que cada uno pueda recibir.
+     * Los contactos sin dirección para ningún canal de la cadena se cuentan como inalcanzables.
+     */
+    public Map<String, Object> start(Iterable<Contact> contacts, List<String> channels, List<Integer> timeouts,
+                                     String subject, String content, String sender, boolean html, String userId) {
+        WorkflowDefinition definition = WorkflowDefinition.builder()
+                .channels(normalizeChannels(channels))
+                .timeouts(normalizeTimeouts(timeouts, channels.size()))
+                .subject(subject)
+                .content(content)
+                .sender(sender != null ? sender : "TFG-App")
+                .html(html)
+                .userId(userId != null ? userId : QueueMessage.DEFAULT_USER)
+                .build();
+        long definitionId = workflowRepository.saveDefinition(definition);
+        cacheDefinition(definition);
+
+        Set<Long> seen = new HashSet<>();
+        List<DeliveryWorkflow> batch = new ArrayList<>(batchSize);
+        int[] started = {0};
+        int[] failed = {0};
+        int unreachable = 0;
+
+        for (Contact contact : contacts) {
+            if (!seen.add(contact.getId())) {
+                continue;
+            }
+            DeliveryWorkflow workflow = new DeliveryWorkflow(null, definitionId, contact.getId(), 0,
+                    DeliveryWorkflow.ACTIVE, contact.getEmail(), contact.getPhone(), contact.getWhatsappId());
+            int first = nextReachableStep(definition, workflow, 0);
+            if (first < 0) {
+                unreachable++;
+                continue;
+            }
+            workflow.setStep(first);
+            batch.add(workflow);
+
+            if (batch.size() == batchSize) {
+                startBatch(definition, batch, started, failed);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        startBatch(definition, batch, started, failed);
+
+        logger.info("🔀 Flujo de entrega {} ({}) iniciado: {} contactos, {} inalcanzables, {} sin iniciar",
+                definitionId, String.join(" → ", definition.getChannels()), started[0], unreachable, failed[0]);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("definitionId", definitionId);
+        result.put("channels", definition.getChannels());
+        result.put("timeouts", definition.getTimeouts());
+        result.put("workflows", started[0]);
+        result.put("unreachable", unreachable);
+        result.put("failed", failed[0]);
+        return result;
+    }
+
+    /**
+     * Un lote que no se puede guardar se cuenta como no iniciado y se sigue con el siguiente
+     */
+    private void startBatch(WorkflowDefinition definition, List<DeliveryWorkflow> batch, int[] started, int[] failed) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            workflowRepository.insertAll(batch);
+        } catch (RuntimeException e) {
+            logger.error("💥 No se pudo guardar un lote de {} flujos: {}", batch.size(), e.getMessage());
+            failed[0] += batch.size();
+            return;
+        }
+        started[0] += batch.size();
+
+        List<QueueMessage> messages = new ArrayList<>(batch.size());
+        List<WorkflowEvent> timeouts = new ArrayList<>();
+        for (DeliveryWorkflow workflow : batch) {
+            messages.add(buildMessage(definition, workflow, workflow.getStep()));
+            if (!definition.isLastStep(workflow.getStep())) {
+                timeouts.add(timeoutEvent(definition, workflow.getId(), workflow.getStep()));
+            }
+        }
+        // Los plazos van antes que los mensajes: un flujo guardado nunca se queda sin forma de avanzar
+        delayAll(timeouts);
+        publishSteps(messages);
+    }
+
+    // === RESULTADOS DE LOS CONSUMIDORES ===
+
+    /**
+     * Lo llaman los consumidores de cada canal tras intentar el envío. No hace nada si el mensaje
+     * no pertenece a un flujo; si no se puede publicar, el plazo del paso hará avanzar el flujo.
+     */
+    public void report(QueueMessage message, boolean sent) {
+        if (message.getWorkflowId() == null) {
+            return;
+        }
+        WorkflowEvent event = new WorkflowEvent(message.getWorkflowId(), message.getWorkflowStep(),
+                sent ? WorkflowEvent.SENT : WorkflowEvent.FAILED, 0);
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.DIRECT_EXCHANGE, RabbitMQConfig.WORKFLOW_ROUTING_KEY, event);
+        } catch (Exception e) {
+            logger.warn("⚠️ No se pudo publicar el resultado del flujo {}: {}", message.getWorkflowId(), e.getMessage());
+        }
+    }
+
+    // === MÁQUINA DE ESTADOS ===
+
+    public void handle(WorkflowEvent event) {
+        switch (event.getOutcome()) {
+            case WorkflowEvent.SENT -> {
+                if (workflowRepository.finish(event.getWorkflowId(), event.getStep(), DeliveryWorkflow.DELIVERED)) {
+                    logger.debug("✅ Flujo {} entregado en el paso {}", event.getWorkflowId(), event.getStep());
+                }
+            }
+            case WorkflowEvent.FAILED -> advance(event.getWorkflowId(), event.getStep(), "fallo del canal");
+            case WorkflowEvent.TIMEOUT -> {
+                if (event.getDueAt() > System.currentTimeMillis()) {
+                    delay(event);
+                } else {
+                    advance(event.getWorkflowId(), event.getStep(), "plazo vencido");
+                }
+            }
+            default -> logger.warn("⚠️ Evento de flujo desconocido: {}", event.getOutcome());
+        }
+    }
+
+    private void advance(long workflowId, int step, String reason) {
+        Optional<DeliveryWorkflow> found = workflowRepository.find(workflowId);
+        if (found.isEmpty()) {
+            return;
+        }
+        DeliveryWorkflow workflow = found.get();
+        if (workflow.getState() != DeliveryWorkflow.ACTIVE || workflow.getStep() != step) {
+            // Evento repetido o de un paso ya superado
+            return;
+        }
+
+        WorkflowDefinition definition = getDefinition(workflow.getDefinitionId());
+        int next = definition != null ? nextReachableStep(definition, workflow, step + 1) : -1;
+        if (next < 0) {
+            if (workflowRepository.finish(workflowId, step, DeliveryWorkflow.EXHAUSTED)) {
+                logger.info("💀 Flujo {} sin más canales tras {} en el paso {}", workflowId, reason, step);
+            }
+            return;
+        }
+
+        // Solo quien gana la actualización condicional envía el siguiente paso
+        if (!workflowRepository.advance(workflowId, step, next)) {
+            return;
+        }
+        logger.info("↪️ Flujo {}: {} en {}, se pasa a {}", workflowId, reason,
+                definition.channelAt(step), definition.channelAt(next));
+
+        if (!definition.isLastStep(next)) {
+            try {
+                delay(timeoutEvent(definition, workflowId, next));
+            } catch (RuntimeException e) {
+                logger.warn("⚠️ No se pudo programar el plazo del flujo {}: {}", workflowId, e.getMessage());
+            }
+        }
+        publishSteps(List.of(buildMessage(definition, workflow, next)));
+    }
+
+    /**
+     * Publica los mensajes de un paso ya guardado. El paso ya no se puede repetir (el estado
+     * avanzó), así que los que no llegan al broker se tratan como un fallo del canal.
+     */
+    private void publishSteps(List<QueueMessage> messages) {
+        try {
+            messagePublisher.publishBatch(messages);
+        } catch (RuntimeException e) {
+            List<WorkflowEvent> failed = new ArrayList<>();
+            for (QueueMessage message : messages) {
+                if (!(e instanceof BatchPublishException batch) || batch.isFailed(message.getId())) {
+                    failed.add(new WorkflowEvent(message.getWorkflowId(), message.getWorkflowStep(), WorkflowEvent.FAILED, 0));
+                }
+            }
+            logger.warn("⚠️ {} pasos de flujo sin publicar, se pasa a su siguiente canal: {}", failed.size(), e.getMessage());
+            publishEvents(failed);
+        }
+    }
+
+    private void publishEvents(List<WorkflowEvent> events) {
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (WorkflowEvent event : events) {
+                    operations.convertAndSend(RabbitMQConfig.DIRECT_EXCHANGE, RabbitMQConfig.WORKFLOW_ROUTING_KEY, event);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("💥 No se pudieron publicar {} eventos de flujo: {}", events.size(), e.getMessage());
+        }
+    }
+
+    private int nextReachableStep(WorkflowDefinition definition, DeliveryWorkflow workflow, int from) {
+        for (int step = from; step < definition.length(); step++) {
+            if (workflow.addressFor(definition.channelAt(step)) != null) {
+                return step;
+            }
+        }
+        return -1;
+    }
+
+    private QueueMessage buildMessage(WorkflowDefinition definition, DeliveryWorkflow workflow, int step) {
+        String channel = definition.channelAt(step);
+
+        // Cada canal construye su mensaje igual que para un envío suelto
+        MessageRequest request = new MessageRequest();
+        request.setTo(workflow.addressFor(channel));
+        request.setSubject(definition.getSubject());
+        request.setContent(definition.getContent());
+        request.setSender(definition.getSender());
+        request.setHtml(definition.isHtml());
+        request.setUserId(definition.getUserId());
+
+        QueueMessage message = channelRegistry.get(channel).toQueueMessage(request);
+        message.setId("wf-" + workflow.getId() + "-" + step);
+        message.setWorkflowId(workflow.getId());
+        message.setWorkflowStep(step);
+        return message;
+    }
+
+    // === PLAZOS ===
+
+    private WorkflowEvent timeoutEvent(WorkflowDefinition definition, long workflowId, int step) {
+        long dueAt = System.currentTimeMillis() + definition.getTimeouts().get(step) * 1000L;
+        return new WorkflowEvent(workflowId, step, WorkflowEvent.TIMEOUT, dueAt);
+    }
+
+    private void delay(WorkflowEvent event) {
+        rabbitTemplate.convertAndSend(delayQueueFor(event.getDueAt() - System.currentTimeMillis()), event);
+    }
+
+    private void delayAll(List<WorkflowEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            rabbitTemplate.invoke(operations -> {
+                long now = System.currentTimeMillis();
+                for (WorkflowEvent event : events) {
+                    operations.convertAndSend(delayQueueFor(event.getDueAt() - now), event);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Los mensajes salen igual: el resultado que informe el consumidor hará avanzar el flujo
+            logger.warn("⚠️ No se pudieron programar {} plazos de flujo: {}", events.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Cola con el mayor retardo que no se pasa del plazo restante; los plazos largos dan varios
+     * saltos y el error final queda por debajo del retardo más corto
+     */
+    static String delayQueueFor(long remainingMillis) {
+        long[] tiers = RabbitMQConfig.WORKFLOW_DELAY_TIERS_MS;
+        long tier = tiers[0];
+        for (long candidate : tiers) {
+            if (candidate <= remainingMillis) {
+                tier = candidate;
+            }
+        }
+        return RabbitMQConfig.workflowDelayQueueName(tier);
+    }
+
+    // === CONSULTAS ===
+
+    public Optional<Map<String, Object>> getWorkflow(long workflowId) {
+        return workflowRepository.find(workflowId).map(workflow -> {
+            WorkflowDefinition definition = getDefinition(workflow.getDefinitionId());
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("id", workflow.getId());
+            info.put("definitionId", workflow.getDefinitionId());
+            info.put("contactId", workflow.getContactId());
+            info.put("state", DeliveryWorkflow.stateName(workflow.getState()));
+            info.put("step", workflow.getStep());
+            if (definition != null) {
+                info.put("channel", definition.channelAt(workflow.getStep()));
+                info.put("channels", definition.getChannels());
+            }
+            return info;
+        });
+    }
+
+    public Map<String, Long> getStats() {
+        return workflowRepository.countByState();
+    }
+
+    @Scheduled(fixedRate = 3600000) // Cada hora
+    public void purgeFinished() {
+        int deleted = workflowRepository.deleteFinished(LocalDateTime.now().minusNanos(retentionMillis * 1_000_000L));
+        if (deleted > 0) {
+            logger.info("🧹 {} flujos de entrega terminados eliminados", deleted);
+        }
+    }
+
+    // === VALIDACIÓN Y DEFINICIONES ===
+
+    private List<String> normalizeChannels(List<String> channels) {
+        if (channels == null || channels.isEmpty()) {
+            throw new IllegalArgumentException("La cadena de canales no puede estar vacía");
+        }
+        if (channels.size() > MAX_STEPS) {
+            throw new IllegalArgumentException("La cadena admite como máximo " + MAX_STEPS + " canales");
+        }
+        List<String> normalized = new ArrayList<>(channels.size());
+        for (String channel : channels) {
+            ChannelType type = ChannelType.isKnown(channel) ? ChannelType.of(channel) : null;
+            // Solo canales registrados con dirección por contacto; la difusión no tiene un destinatario que seguir
+            if (type == null || !type.isDirect() || !channelRegistry.supports(type)) {
+                throw new IllegalArgumentException("Canal no soportado en flujos de entrega: " + channel);
+            }
+            String name = type.name();
+            if (normalized.contains(name)) {
+                throw new IllegalArgumentException("Canal repetido en la cadena: " + name);
+            }
+            normalized.add(name);
+        }
+        return normalized;
+    }
+
+    private List<Integer> normalizeTimeouts(List<Integer> timeouts, int steps) {
+        List<Integer> normalized = new ArrayList<>(steps);
+        for (int step = 0; step < steps; step++) {
+            Integer timeout = timeouts != null && step < timeouts.size() ? timeouts.get(step) : null;
+            if (timeout != null && timeout <= 0) {
+                throw new IllegalArgumentException("Los plazos deben ser positivos (segundos)");
+            }
+            normalized.add(timeout != null ? timeout : defaultTimeoutSeconds);
+        }
+        return normalized;
+    }
+
+    private WorkflowDefinition getDefinition(long definitionId) {
+        synchronized (definitions) {
+            WorkflowDefinition cached = definitions.get(definitionId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        WorkflowDefinition loaded = workflowRepository.findDefinition(definitionId).orElse(null);
+        if (loaded != null) {
+            cacheDefinition(loaded);
+        }
+        return loaded;
+    }
+
+    private void cacheDefinition(WorkflowDefinition definition) {
+        synchronized (definitions) {
+            definitions.put(definition.getId(), definition);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tfgproject.shared.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Canales de envío. El nombre coincide con QueueMessage.type ("EMAIL", "SMS"...) y la clave en
+ * minúsculas con el canal de las peticiones y de los proveedores ("email", "sms"...).
+ */
+public enum ChannelType {
+    EMAIL,
+    SMS,
+    WHATSAPP,
+    BROADCAST;
+
+    private static final Map<String, ChannelType> BY_KEY = new HashMap<>();
+
+    static {
+        for (ChannelType type : values()) {
+            BY_KEY.put(type.getKey(), type);
+        }
+    }
+
+    public String getKey() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Canal con dirección propia en cada contacto (todos menos la difusión)
+     */
+    public boolean isDirect() {
+        return this != BROADCAST;
+    }
+
+    /**
+     * Canal por nombre o clave, sin distinguir mayúsculas
+     */
+    public static ChannelType of(String value) {
+        ChannelType type = value != null ? BY_KEY.get(value.trim().toLowerCase(Locale.ROOT)) : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Canal no soportado: " + value);
+        }
+        return type;
+    }
+
+    public static boolean isKnown(String value) {
+        return value != null && BY_KEY.containsKey(value.trim().toLowerCase(Locale.ROOT));
+    }
+}
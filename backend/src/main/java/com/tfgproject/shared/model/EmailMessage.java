@@ -12,8 +12,13 @@ public class EmailMessage {
     private String subject;
     private String text;
     private String attachmentPath;
+    private String attachmentId;
+    private String attachmentName;
     private boolean html = false;
 
+    // Id del QueueMessage de origen: permite reutilizar las partes MIME ya codificadas
+    private String messageId;
+
     // Constructor para mensaje simple
     public EmailMessage(String to, String subject, String text) {
         this.to = to;
@@ -5,25 +5,66 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class QueueMessage {
+    public static final String DEFAULT_USER = "currentUser";
+
     private String id;
-    private String type; // "EMAIL", "SMS", "BROADCAST"
+    private String type; // "EMAIL", "SMS", "WHATSAPP", "BROADCAST"
     private String content;
     private String subject;
     private List<String> recipients;
     private String sender;
     private String attachmentPath;
+    private String attachmentId;   // SHA-256 en el almacén de adjuntos
+    private String attachmentName;
     private boolean isHtml;
     private LocalDateTime scheduledTime;
     private LocalDateTime createdAt;
     private int retryCount;
     private String userId;
 
+    // Marca de tiempo (µs desde epoch) de cada etapa del pipeline, para medir latencias
+    private Map<String, Long> stageTimes;
+
+    // Flujo de entrega con canales de respaldo al que pertenece el mensaje (null si es un envío suelto)
+    private Long workflowId;
+    private int workflowStep;
+
+    /**
+     * Id del registro de estado de un destinatario: en difusiones hay uno por destinatario
+     */
+    public String statusIdFor(String recipient) {
+        return "BROADCAST".equals(type) ? id + "-" + recipient.hashCode() : id;
+    }
+
+    /**
+     * Copia del mensaje para un único destinatario (reencolar sin repetir el resto).
+     * Conserva id y tipo, así que el registro de estado sigue siendo el mismo.
+     */
+    public QueueMessage forRecipient(String recipient) {
+        return new QueueMessage(id, type, content, subject, List.of(recipient), sender,
+                attachmentPath, attachmentId, attachmentName, isHtml, scheduledTime, createdAt,
+                retryCount, userId, stageTimes != null ? new HashMap<>(stageTimes) : null, workflowId, workflowStep);
+    }
+
+    public void markStage(String stage, long epochMicros) {
+        if (stageTimes == null) {
+            stageTimes = new HashMap<>();
+        }
+        stageTimes.put(stage, epochMicros);
+    }
+
+    public Long getStageTime(String stage) {
+        return stageTimes != null ? stageTimes.get(stage) : null;
+    }
+
     // Constructor para email único
     public static QueueMessage forEmail(String to, String subject, String content) {
         QueueMessage msg = new QueueMessage();
@@ -50,6 +91,18 @@ public class QueueMessage {
         return msg;
     }
 
+    // Constructor para WhatsApp único
+    public static QueueMessage forWhatsApp(String to, String content) {
+        QueueMessage msg = new QueueMessage();
+        msg.setId(java.util.UUID.randomUUID().toString());
+        msg.setType("WHATSAPP");
+        msg.setRecipients(List.of(to));
+        msg.setContent(content);
+        msg.setCreatedAt(LocalDateTime.now());
+        msg.setRetryCount(0);
+        return msg;
+    }
+
     // Constructor para difusión
     public static QueueMessage forBroadcast(List<String> recipients, String content, String subject) {
         QueueMessage msg = new QueueMessage();
@@ -0,0 +1,19 @@
+package com.tfgproject.shared.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WhatsAppMessage {
+    private String to;      // número en formato internacional sin "+", como lo espera la Graph API
+    private String text;
+    private String messageId;
+
+    public WhatsAppMessage(String to, String text) {
+        this.to = to;
+        this.text = text;
+    }
+}
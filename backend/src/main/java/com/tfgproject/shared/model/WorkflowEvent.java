@@ -0,0 +1,24 @@
+package com.tfgproject.shared.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento que hace avanzar un flujo de entrega: resultado del consumidor del canal o vencimiento
+ * del plazo del paso. Solo lleva identificadores, así que los millones de plazos en espera
+ * ocupan muy poco en las colas de retardo.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowEvent {
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+    public static final String TIMEOUT = "TIMEOUT";
+
+    private long workflowId;
+    private int step;
+    private String outcome;
+    private long dueAt; // epoch ms; solo para TIMEOUT
+}
@@ -0,0 +1,151 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.StoredAttachment;
+import com.tfgproject.infrastructure.adapter.out.storage.FileSystemAttachmentStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deduplicación por SHA-256, lectura por canal y expulsión respetando las referencias
+ */
+public class AttachmentStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemAttachmentStore store;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:attachments-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        store = new FileSystemAttachmentStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", new JdbcTemplate(dataSource));
+        ReflectionTestUtils.setField(store, "directory", tempDir.toString());
+        ReflectionTestUtils.setField(store, "graceMillis", 0L);
+        store.initSchema();
+    }
+
+    @Test
+    public void testStreamedUploadsAreDeduplicatedBySha256() throws Exception {
+        long size = 5L * 1024 * 1024 + 123;
+        StoredAttachment first = store.store(generated(size, 7), "informe.txt", null);
+        StoredAttachment second = store.store(generated(size, 7), "copia.txt", null);
+
+        assertEquals(first.getId(), second.getId());
+        assertEquals(size, first.getSizeBytes());
+        assertEquals("text/plain", first.getContentType());
+        assertEquals(size, store.totalBytes());
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = generated(size, 7)) {
+            digest.update(in.readAllBytes());
+        }
+        assertEquals(HexFormat.of().formatHex(digest.digest()), first.getId());
+
+        try (FileChannel channel = store.openChannel(first.getId())) {
+            assertEquals(size, channel.size());
+            ByteBuffer head = ByteBuffer.allocate(16);
+            channel.read(head, 0);
+            byte[] expected = new byte[16];
+            generated(size, 7).read(expected);
+            assertEquals(ByteBuffer.wrap(expected), head.flip());
+        }
+
+        // Solo queda el fichero definitivo, sin temporales
+        try (var files = Files.walk(tempDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    public void testOnlyUnreferencedAttachmentsAreEvicted() throws Exception {
+        StoredAttachment inUse = store.store(new ByteArrayInputStream(new byte[1000]), "a.bin", null);
+        StoredAttachment idle = store.store(new ByteArrayInputStream(new byte[2000]), "b.bin", null);
+        store.retain(inUse.getId());
+
+        long freed = store.evictUnreferenced(1500);
+
+        assertEquals(2000, freed);
+        assertTrue(store.find(inUse.getId()).isPresent());
+        assertFalse(store.find(idle.getId()).isPresent());
+        assertFalse(Files.exists(store.resolve(idle.getId())));
+
+        // Al liberar la última referencia vuelve a ser candidato
+        store.release(inUse.getId());
+        assertEquals(1000, store.evictUnreferenced(0));
+        assertEquals(0, store.totalBytes());
+    }
+
+    @Test
+    public void testReuploadDuringEvictionKeepsAttachment() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:attachments-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        AtomicBoolean reuploaded = new AtomicBoolean();
+        // El mismo contenido se vuelve a subir entre la búsqueda de candidatos y el borrado
+        ReflectionTestUtils.setField(store, "jdbcTemplate", new JdbcTemplate(dataSource) {
+            @Override
+            public List<Map<String, Object>> queryForList(String sql, Object... args) {
+                List<Map<String, Object>> rows = super.queryForList(sql, args);
+                if (sql.contains("ref_count = 0") && reuploaded.compareAndSet(false, true)) {
+                    try {
+                        store.store(new ByteArrayInputStream(new byte[1000]), "otra.bin", null);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return rows;
+            }
+        });
+        store.initSchema();
+        StoredAttachment stored = store.store(new ByteArrayInputStream(new byte[1000]), "a.bin", null);
+        Thread.sleep(5);
+
+        assertEquals(0, store.evictUnreferenced(0));
+        assertTrue(reuploaded.get());
+        assertTrue(store.find(stored.getId()).isPresent());
+        assertTrue(Files.exists(store.resolve(stored.getId())));
+    }
+
+    @Test
+    public void testInvalidIdsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> store.resolve("../../etc/passwd"));
+        assertFalse(store.find("no-es-un-hash").isPresent());
+    }
+
+    private static InputStream generated(long size, int seed) {
+        return new InputStream() {
+            private long position;
+
+            @Override
+            public int read() {
+                if (position >= size) {
+                    return -1;
+                }
+                return (int) ((position++ * 31 + seed) & 0xFF);
+            }
+        };
+    }
+}
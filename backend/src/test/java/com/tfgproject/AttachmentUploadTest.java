@@ -0,0 +1,137 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.adapter.in.web.AttachmentController;
+import com.tfgproject.infrastructure.adapter.in.web.MultipartStreamReader;
+import com.tfgproject.infrastructure.adapter.out.storage.FileSystemAttachmentStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Subida multipart leída en streaming con un buffer pequeño y guardada por contenido
+ */
+public class AttachmentUploadTest {
+
+    private static final String BOUNDARY = "----TfgBoundary7MA4YWxk";
+
+    @TempDir
+    Path tempDir;
+
+    private FileSystemAttachmentStore store;
+    private AttachmentController controller;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:upload-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        store = new FileSystemAttachmentStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", new JdbcTemplate(dataSource));
+        ReflectionTestUtils.setField(store, "directory", tempDir.toString());
+        store.initSchema();
+
+        controller = new AttachmentController();
+        ReflectionTestUtils.setField(controller, "attachmentStore", store);
+        ReflectionTestUtils.setField(controller, "maxUploadBytes", 10L * 1024 * 1024);
+        ReflectionTestUtils.setField(controller, "bufferSize", 1024);
+    }
+
+    @Test
+    public void testReaderSplitsPartsAcrossBufferBoundaries() throws Exception {
+        byte[] big = randomBytes(200_000, 1);
+        byte[] tricky = ("casi\r\n--" + BOUNDARY.substring(0, 10) + " pero no").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = multipart(Map.of("descripcion", "Informe".getBytes()), List.of(
+                new FilePart("a.bin", big), new FilePart("trampa.txt", tricky)));
+
+        MultipartStreamReader reader = new MultipartStreamReader(new ByteArrayInputStream(body), BOUNDARY, 256);
+
+        MultipartStreamReader.Part field = reader.nextPart();
+        assertEquals("descripcion", field.getName());
+        assertNull(field.getFileName());
+
+        MultipartStreamReader.Part first = reader.nextPart();
+        assertEquals("a.bin", first.getFileName());
+        assertArrayEquals(big, first.getInputStream().readAllBytes());
+
+        MultipartStreamReader.Part second = reader.nextPart();
+        assertEquals("trampa.txt", second.getFileName());
+        assertArrayEquals(tricky, second.getInputStream().readAllBytes());
+
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    public void testUploadEndpointStoresFilesAndReturnsHandles() throws Exception {
+        byte[] content = randomBytes(3 * 1024 * 1024, 2);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/attachments");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(multipart(Map.of(), List.of(new FilePart("C:\\docs\\factura.txt", content))));
+
+        ResponseEntity<Map<String, Object>> response = controller.upload(request);
+
+        assertEquals(200, response.getStatusCode().value());
+        String attachmentId = (String) response.getBody().get("attachmentId");
+        assertEquals("factura.txt", store.find(attachmentId).orElseThrow().getFileName());
+        assertArrayEquals(content, Files.readAllBytes(store.resolve(attachmentId)));
+    }
+
+    @Test
+    public void testOversizedUploadIsRejected() throws Exception {
+        ReflectionTestUtils.setField(controller, "maxUploadBytes", 1000L);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/attachments");
+        request.setContentType("application/octet-stream");
+        request.addHeader("X-File-Name", "grande.bin");
+        request.setContent(randomBytes(5000, 3));
+
+        ResponseEntity<Map<String, Object>> response = controller.upload(request);
+
+        assertEquals(413, response.getStatusCode().value());
+        assertEquals(0, store.totalBytes());
+    }
+
+    private record FilePart(String fileName, byte[] content) {
+    }
+
+    private static byte[] multipart(Map<String, byte[]> fields, List<FilePart> files) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("preámbulo ignorado\r\n".getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\n\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            out.write(field.getValue());
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        for (FilePart file : files) {
+            out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\""
+                    + file.fileName() + "\"\r\nContent-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(file.content());
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,217 @@
+package com.tfgproject;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.domain.port.out.MessageStatusEventPort;
+import com.tfgproject.domain.service.MessageStatusService;
+import com.tfgproject.infrastructure.channel.BroadcastChannel;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.EmailChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
+import com.tfgproject.infrastructure.channel.WhatsAppChannel;
+import com.tfgproject.infrastructure.adapter.out.persistence.MessageStatusAdapter;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.BulkMessageService;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.shared.model.QueueMessage;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Envío masivo: array JSON y NDJSON, validación por elemento, altas por lotes en H2 y confirmación por lote
+ */
+public class BulkMessageServiceTest {
+
+    private BulkMessageService bulkMessageService;
+    private RabbitTemplate rabbitTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private List<Map<String, Object>> results;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:bulk-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE message_status (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "message_id VARCHAR(255) NOT NULL UNIQUE, status VARCHAR(50) NOT NULL, timestamp TIMESTAMP NOT NULL, " +
+                "error_message VARCHAR(255), recipient VARCHAR(255) NOT NULL, type VARCHAR(50) NOT NULL, " +
+                "subject VARCHAR(255), content VARCHAR(2000), user_id VARCHAR(255))");
+
+        MessageStatusAdapter statusAdapter = new MessageStatusAdapter();
+        ReflectionTestUtils.setField(statusAdapter, "jdbcTemplate", jdbcTemplate);
+        MessageStatusService statusService = new MessageStatusService();
+        ReflectionTestUtils.setField(statusService, "messageStatusRepository", statusAdapter);
+        ReflectionTestUtils.setField(statusService, "messageStatusEvents", mock(MessageStatusEventPort.class));
+
+        rabbitTemplate = mock(RabbitTemplate.class);
+        confirmWith(message -> new CorrelationData.Confirm(true, null));
+
+        EmailChannel emailChannel = new EmailChannel();
+        ReflectionTestUtils.setField(emailChannel, "attachmentStore", mock(AttachmentStorePort.class));
+        ChannelRegistry channels = new ChannelRegistry(
+                List.of(emailChannel, new SmsChannel(), new WhatsAppChannel(), new BroadcastChannel()));
+
+        AsyncMessagePublisher publisher = new AsyncMessagePublisher();
+        ReflectionTestUtils.setField(publisher, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(publisher, "messageStatusService", statusService);
+        ReflectionTestUtils.setField(publisher, "attachmentStore", mock(AttachmentStorePort.class));
+        ReflectionTestUtils.setField(publisher, "latencyRecorder", new PipelineLatencyRecorder());
+        ReflectionTestUtils.setField(publisher, "confirmTimeoutMillis", 200L);
+        ReflectionTestUtils.setField(publisher, "channelRegistry", channels);
+
+        bulkMessageService = new BulkMessageService();
+        ReflectionTestUtils.setField(bulkMessageService, "messagePublisher", publisher);
+        ReflectionTestUtils.setField(bulkMessageService, "channelRegistry", channels);
+        ReflectionTestUtils.setField(bulkMessageService, "objectMapper",
+                new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        ReflectionTestUtils.setField(bulkMessageService, "validator",
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(bulkMessageService, "batchSize", 100);
+
+        results = new ArrayList<>();
+    }
+
+    /**
+     * El broker confirma cada publicación con la respuesta indicada (null = nunca confirma)
+     */
+    private void confirmWith(Function<QueueMessage, CorrelationData.Confirm> broker) {
+        doAnswer(invocation -> {
+            CorrelationData.Confirm confirm = broker.apply(invocation.getArgument(2));
+            if (confirm != null) {
+                invocation.<CorrelationData>getArgument(3).getFuture().complete(confirm);
+            }
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+    }
+
+    private InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testJsonArrayReportsIdsAndPerItemErrorsInOrder() throws IOException {
+        String json = "[" +
+                "{\"to\":\"a@example.com\",\"subject\":\"Hola\",\"content\":\"Uno\",\"channel\":\"email\"}," +
+                "{\"to\":\"644023859\",\"content\":\"Dos\",\"channel\":\"sms\"}," +
+                "{\"to\":\"b@example.com\",\"content\":\"Sin asunto\",\"channel\":\"email\"}," +
+                "{\"to\":\"\",\"content\":\"Sin destino\",\"channel\":\"sms\"}," +
+                "{\"to\":\"c@example.com\",\"content\":\"Fax\",\"channel\":\"fax\"}" +
+                "]";
+
+        Map<String, Object> summary = bulkMessageService.process(body(json), "user-1", results::add);
+
+        assertEquals(5, summary.get("items"));
+        assertEquals(2, summary.get("accepted"));
+        assertEquals(3, summary.get("rejected"));
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(result -> result.get("index")).toList());
+        assertEquals(true, results.get(0).get("success"));
+        assertEquals("sms", results.get(1).get("channel"));
+        assertFalse((Boolean) results.get(2).get("success"));
+
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_status WHERE status = 'QUEUED' AND user_id = 'user-1'", Integer.class));
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.EMAIL_ROUTING_KEY),
+                any(QueueMessage.class), any(CorrelationData.class));
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.SMS_ROUTING_KEY),
+                any(QueueMessage.class), any(CorrelationData.class));
+        assertEquals(1, summary.get("batches"));
+    }
+
+    @Test
+    public void testLargeNdjsonStreamIsPublishedInBatches() throws IOException {
+        int total = 10_000;
+        // El cuerpo se genera línea a línea: nunca existe entero en memoria
+        InputStream ndjson = new SequenceInputStream(Collections.enumeration(IntStream.range(0, total)
+                .mapToObj(i -> body("{\"to\":\"6000" + i + "\",\"content\":\"OTP " + i + "\",\"channel\":\"sms\"}\n"))
+                .toList()));
+
+        Map<String, Object> summary = bulkMessageService.process(ndjson, null, results::add);
+
+        assertEquals(total, summary.get("accepted"));
+        assertEquals(100, summary.get("batches"));
+        assertEquals(total, results.size());
+        assertEquals(total, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_status", Integer.class));
+        verify(rabbitTemplate, times(total)).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+    }
+
+    @Test
+    public void testUnconfirmedBatchIsMarkedFailed() throws IOException {
+        confirmWith(message -> null);
+
+        String ndjson = "{\"to\":\"a@example.com\",\"phone\":\"644023859\",\"subject\":\"Hola\",\"content\":\"Ambos\",\"channel\":\"both\"}\n";
+        Map<String, Object> summary = bulkMessageService.process(body(ndjson), null, results::add);
+
+        // Un elemento "both" cuenta una vez aunque lleve dos mensajes
+        assertEquals(1, summary.get("items"));
+        assertEquals(0, summary.get("accepted"));
+        assertEquals(1, summary.get("rejected"));
+        assertEquals(2, results.size());
+        assertTrue(results.stream().noneMatch(result -> (Boolean) result.get("success")));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_status WHERE status = 'FAILED'", Integer.class));
+        verify(rabbitTemplate, atLeastOnce()).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.SMS_ROUTING_KEY),
+                any(QueueMessage.class), any(CorrelationData.class));
+    }
+
+    @Test
+    public void testOnlyNackedMessagesOfABatchFail() throws IOException {
+        // El broker rechaza solo los SMS
+        confirmWith(message -> new CorrelationData.Confirm(!"SMS".equals(message.getType()), "cola llena"));
+
+        String ndjson = "{\"to\":\"a@example.com\",\"subject\":\"Hola\",\"content\":\"Uno\",\"channel\":\"email\"}\n" +
+                "{\"to\":\"644023859\",\"content\":\"Dos\",\"channel\":\"sms\"}\n" +
+                "{\"to\":\"b@example.com\",\"phone\":\"644023860\",\"subject\":\"Hola\",\"content\":\"Ambos\",\"channel\":\"both\"}\n";
+        Map<String, Object> summary = bulkMessageService.process(body(ndjson), "user-1", results::add);
+
+        assertEquals(3, summary.get("items"));
+        assertEquals(1, summary.get("accepted"));
+        assertEquals(2, summary.get("rejected"));
+        assertEquals(List.of(true, false, true, false), results.stream().map(result -> result.get("success")).toList());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_status WHERE status = 'QUEUED'", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message_status WHERE status = 'FAILED' AND type = 'SMS'", Integer.class));
+    }
+
+    @Test
+    public void testMalformedJsonStopsAfterFlushingValidItems() throws IOException {
+        String ndjson = "{\"to\":\"644023859\",\"content\":\"Uno\",\"channel\":\"sms\"}\n{\"to\": oops}\n";
+
+        Map<String, Object> summary = bulkMessageService.process(body(ndjson), null, results::add);
+
+        assertEquals(1, summary.get("accepted"));
+        assertTrue(summary.containsKey("error"));
+        assertEquals(2, results.size());
+        assertEquals(1, results.get(1).get("index"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.ContactSelection;
+import com.tfgproject.domain.service.CategoryService;
+import com.tfgproject.infrastructure.adapter.out.persistence.CategoryRepository;
+import com.tfgproject.infrastructure.adapter.out.persistence.JdbcCategoryMembershipAdapter;
+import com.tfgproject.infrastructure.service.ContactChangeNotifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pertenencia masiva a categorías escrita directamente en category_contact
+ */
+public class CategoryMembershipTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcCategoryMembershipAdapter membership;
+    private CategoryService categoryService;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:membership-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE contacts (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                "email VARCHAR(255), phone VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE category_contact (category_id BIGINT NOT NULL, contact_id BIGINT NOT NULL, " +
+                "PRIMARY KEY (category_id, contact_id))");
+
+        List<Object[]> contacts = new ArrayList<>();
+        for (int i = 1; i <= 5000; i++) {
+            contacts.add(new Object[]{i % 2 == 0 ? "Cliente " + i : "Proveedor " + i, "c" + i + "@example.com", "600" + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contacts (name, email, phone) VALUES (?, ?, ?)", contacts);
+
+        membership = new JdbcCategoryMembershipAdapter();
+        ReflectionTestUtils.setField(membership, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(membership, "batchSize", 500);
+
+        CategoryRepository categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.existsById(anyLong())).thenAnswer(invocation -> (Long) invocation.getArgument(0) < 100);
+        categoryService = new CategoryService();
+        ReflectionTestUtils.setField(categoryService, "categoryRepository", categoryRepository);
+        ReflectionTestUtils.setField(categoryService, "categoryMembership", membership);
+        ReflectionTestUtils.setField(categoryService, "contactChanges", mock(ContactChangeNotifier.class));
+    }
+
+    private int members(long categoryId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM category_contact WHERE category_id = ?", Integer.class, categoryId);
+    }
+
+    @Test
+    public void testAddByIdsSkipsExistingMembersAndUnknownContacts() {
+        List<Long> ids = LongStream.rangeClosed(1, 3000).boxed().toList();
+        assertEquals(3000, categoryService.addContactsToCategory(1L, ContactSelection.builder().contactIds(ids).build()));
+
+        // Repetir más ids inexistentes: solo entran los nuevos
+        List<Long> more = LongStream.rangeClosed(2001, 6000).boxed().toList();
+        assertEquals(2000, categoryService.addContactsToCategory(1L, ContactSelection.builder().contactIds(more).build()));
+        assertEquals(5000, members(1));
+    }
+
+    @Test
+    public void testAddFromSearchAndSourceCategoryInOneStatement() {
+        assertEquals(2500, membership.addContacts(1L, ContactSelection.builder().search("cliente").build()));
+        assertEquals(2500, members(1));
+
+        // Solo los miembros de la categoría 1 que además cumplen la búsqueda
+        int copied = membership.addContacts(2L, ContactSelection.builder().sourceCategoryId(1L).search("Cliente 1").build());
+        int expected = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM contacts WHERE LOWER(name) LIKE '%cliente 1%'", Integer.class);
+        assertEquals(expected, copied);
+        assertEquals(expected, members(2));
+    }
+
+    @Test
+    public void testRemoveAndMove() {
+        membership.addContacts(1L, ContactSelection.builder().search("proveedor").build());
+        assertEquals(2500, members(1));
+
+        assertEquals(2, membership.removeContacts(1L, ContactSelection.builder().contactIds(List.of(1L, 3L, 2L)).build()));
+        assertEquals(2498, members(1));
+
+        Map<String, Integer> moved = categoryService.moveContacts(1L, 2L, null);
+        assertEquals(2498, moved.get("added"));
+        assertEquals(2498, moved.get("removed"));
+        assertEquals(0, members(1));
+        assertEquals(2498, members(2));
+    }
+
+    @Test
+    public void testRejectsUnknownCategoryAndEmptySelection() {
+        assertThrows(IllegalArgumentException.class,
+                () -> categoryService.addContactsToCategory(500L, ContactSelection.builder().search("x").build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> categoryService.removeContactsFromCategory(1L, new ContactSelection()));
+        assertThrows(IllegalArgumentException.class, () -> categoryService.moveContacts(1L, 1L, null));
+    }
+}
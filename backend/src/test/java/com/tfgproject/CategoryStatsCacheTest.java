@@ -0,0 +1,206 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.service.CategoryStatsCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Estadísticas por categoría mantenidas de forma incremental, comparadas con el cálculo completo
+ */
+public class CategoryStatsCacheTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private CategoryStatsCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:stats-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE categories (id BIGINT PRIMARY KEY, parent_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE contacts (id BIGINT PRIMARY KEY, email VARCHAR(255), phone VARCHAR(255), " +
+                "whatsapp_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE category_contact (category_id BIGINT NOT NULL, contact_id BIGINT NOT NULL, " +
+                "PRIMARY KEY (category_id, contact_id))");
+
+        // 1 -> (2 -> 4, 3)
+        jdbcTemplate.update("INSERT INTO categories VALUES (1, NULL), (2, 1), (3, 1), (4, 2)");
+        jdbcTemplate.update("INSERT INTO contacts VALUES (10, 'a@x.com', '600', NULL), (11, 'b@x.com', NULL, NULL), " +
+                "(12, NULL, '601', '34601'), (13, '', '602', NULL)");
+        jdbcTemplate.update("INSERT INTO category_contact VALUES (1, 10), (2, 10), (4, 10), (2, 11), (3, 12), (4, 13)");
+
+        cache = new CategoryStatsCache();
+        ReflectionTestUtils.setField(cache, "jdbcTemplate", jdbcTemplate);
+        cache.rebuild();
+    }
+
+    @Test
+    public void contactInSeveralSubcategoriesCountsOnce() {
+        Map<String, Object> root = cache.getStats(1L);
+        assertEquals(4, root.get("totalContacts"));
+        assertEquals(2, root.get("contactsWithEmail"));   // email vacío no cuenta
+        assertEquals(3, root.get("contactsWithPhone"));
+        assertEquals(1, root.get("contactsWithWhatsapp"));
+        assertEquals(2, root.get("subcategories"));
+
+        assertEquals(3, cache.getStats(2L).get("totalContacts"));
+        assertEquals(2, cache.getStats(4L).get("totalContacts"));
+        assertNull(cache.getStats(99L));
+    }
+
+    @Test
+    public void membershipAndChannelChangesAdjustAncestors() {
+        // Ya está en 2 y 4: salir de 4 no cambia 2 ni 1
+        cache.membershipRemoved(4L, 10L);
+        assertEquals(1, cache.getStats(4L).get("totalContacts"));
+        assertEquals(3, cache.getStats(2L).get("totalContacts"));
+        assertEquals(4, cache.getStats(1L).get("totalContacts"));
+
+        cache.membershipAdded(3L, contact(11L, "b@x.com", "603", null));
+        assertEquals(2, cache.getStats(3L).get("totalContacts"));
+        assertEquals(4, cache.getStats(1L).get("totalContacts"));
+
+        // El contacto 11 pasa a tener teléfono: cuenta en 1, 2 y 3 (una sola vez en 1)
+        cache.contactSaved(contact(11L, "b@x.com", "603", null));
+        assertEquals(4, cache.getStats(1L).get("contactsWithPhone"));
+        assertEquals(3, cache.getStats(2L).get("contactsWithPhone"));
+
+        // Repetir un evento no descuadra nada
+        cache.membershipAdded(3L, contact(11L, "b@x.com", "603", null));
+        cache.contactSaved(contact(11L, "b@x.com", "603", null));
+        assertEquals(4, cache.getStats(1L).get("contactsWithPhone"));
+
+        cache.contactRemoved(10L);
+        assertEquals(3, cache.getStats(1L).get("totalContacts"));
+        assertEquals(1, cache.getStats(2L).get("contactsWithEmail"));
+    }
+
+    @Test
+    public void deletingCategoryMovesSubcategoriesUp() {
+        cache.categoryAdded(5L, 2L);
+        assertEquals(2, cache.getStats(2L).get("subcategories"));
+
+        cache.categoryRemoved(2L);
+        assertNull(cache.getStats(2L));
+        // Las subcategorías 4 y 5 cuelgan ahora de 1; el contacto 11 (solo en 2) desaparece
+        assertEquals(3, cache.getStats(1L).get("subcategories"));
+        assertEquals(3, cache.getStats(1L).get("totalContacts"));
+    }
+
+    @Test
+    public void resyncAfterBulkOperationAppliesDifferences() {
+        jdbcTemplate.update("DELETE FROM category_contact WHERE category_id = 2");
+        jdbcTemplate.update("INSERT INTO category_contact VALUES (2, 12), (2, 13)");
+
+        cache.membershipsChanged(2L);
+
+        assertEquals(3, cache.getStats(2L).get("totalContacts"));   // 10 sigue por la 4
+        assertEquals(1, cache.getStats(2L).get("contactsWithEmail"));
+        assertEquals(3, cache.getStats(1L).get("totalContacts"));   // 11 ya no está en ninguna
+    }
+
+    @Test
+    public void randomChangesMatchFullRecomputation() {
+        Random random = new Random(42);
+        Map<Long, Long> parents = new HashMap<>(Map.of(1L, 0L, 2L, 1L, 3L, 1L, 4L, 2L));
+        for (long category = 5; category <= 30; category++) {
+            long parent = random.nextInt(4) == 0 ? 0L : 1 + random.nextInt((int) category - 1);
+            jdbcTemplate.update("INSERT INTO categories VALUES (?, ?)", category, parent == 0 ? null : parent);
+            cache.categoryAdded(category, parent == 0 ? null : parent);
+            parents.put(category, parent);
+        }
+        for (long id = 100; id < 400; id++) {
+            jdbcTemplate.update("INSERT INTO contacts VALUES (?, ?, ?, NULL)", id,
+                    random.nextBoolean() ? "c" + id + "@x.com" : null, random.nextBoolean() ? "6" + id : null);
+        }
+
+        for (int step = 0; step < 3000; step++) {
+            long category = 1 + random.nextInt(30);
+            long contactId = 100 + random.nextInt(300);
+            int action = random.nextInt(10);
+            if (action < 6) {
+                if (jdbcTemplate.update("MERGE INTO category_contact KEY (category_id, contact_id) VALUES (?, ?)",
+                        category, contactId) > 0) {
+                    cache.membershipAdded(category, load(contactId));
+                }
+            } else if (action < 9) {
+                jdbcTemplate.update("DELETE FROM category_contact WHERE category_id = ? AND contact_id = ?", category, contactId);
+                cache.membershipRemoved(category, contactId);
+            } else {
+                jdbcTemplate.update("UPDATE contacts SET email = ? WHERE id = ?",
+                        random.nextBoolean() ? "n" + step + "@x.com" : null, contactId);
+                cache.contactSaved(load(contactId));
+            }
+        }
+
+        for (long category : parents.keySet()) {
+            assertEquals(expected(category, parents), cache.getStats(category), "categoría " + category);
+        }
+
+        // Y la reconstrucción completa llega al mismo resultado
+        Map<String, Object> before = cache.getStats(1L);
+        cache.rebuild();
+        assertEquals(before, cache.getStats(1L));
+    }
+
+    private Contact load(long id) {
+        return jdbcTemplate.queryForObject("SELECT id, email, phone, whatsapp_id FROM contacts WHERE id = ?",
+                (rs, row) -> contact(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)), id);
+    }
+
+    private Map<String, Object> expected(long category, Map<Long, Long> parents) {
+        Set<Long> subtree = new HashSet<>();
+        subtree.add(category);
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (Map.Entry<Long, Long> entry : parents.entrySet()) {
+                if (subtree.contains(entry.getValue()) && subtree.add(entry.getKey())) {
+                    grew = true;
+                }
+            }
+        }
+
+        Set<Long> contacts = new HashSet<>();
+        for (Long member : subtree) {
+            contacts.addAll(jdbcTemplate.queryForList(
+                    "SELECT contact_id FROM category_contact WHERE category_id = ?", Long.class, member));
+        }
+        int email = 0;
+        int phone = 0;
+        int whatsapp = 0;
+        for (Long id : contacts) {
+            Contact contact = load(id);
+            email += contact.hasEmail() ? 1 : 0;
+            phone += contact.hasPhone() ? 1 : 0;
+            whatsapp += contact.hasWhatsApp() ? 1 : 0;
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalContacts", contacts.size());
+        stats.put("contactsWithEmail", email);
+        stats.put("contactsWithPhone", phone);
+        stats.put("contactsWithWhatsapp", whatsapp);
+        stats.put("subcategories", (int) parents.values().stream().filter(parent -> parent == category).count());
+        return stats;
+    }
+
+    private static Contact contact(Long id, String email, String phone, String whatsappId) {
+        return Contact.builder().id(id).name("c" + id).email(email).phone(phone).whatsappId(whatsappId).build();
+    }
+}
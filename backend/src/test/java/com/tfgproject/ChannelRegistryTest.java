@@ -0,0 +1,203 @@
+package com.tfgproject;
+
+import com.tfgproject.application.dto.request.MessageRequest;
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import com.tfgproject.domain.service.MessageStatusService;
+import com.tfgproject.infrastructure.channel.BroadcastChannel;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.EmailChannel;
+import com.tfgproject.infrastructure.channel.MessageChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
+import com.tfgproject.infrastructure.channel.WhatsAppChannel;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.AsyncScheduledMessageProcessor;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.QueueStatusPoller;
+import com.tfgproject.shared.model.ChannelType;
+import com.tfgproject.shared.model.QueueMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Registro de canales: búsqueda por tipo, envío programado de cualquier canal y canales
+ * enchufados sin tocar el publicador
+ */
+public class ChannelRegistryTest {
+
+    private RabbitTemplate rabbitTemplate;
+    private MessageStatusService statusService;
+    private EmailChannel emailChannel;
+
+    @BeforeEach
+    public void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        statusService = mock(MessageStatusService.class);
+        emailChannel = new EmailChannel();
+        ReflectionTestUtils.setField(emailChannel, "attachmentStore", mock(AttachmentStorePort.class));
+    }
+
+    @Test
+    public void testLookupByTypeNameAndMessage() {
+        ChannelRegistry registry = defaultRegistry();
+
+        assertSame(emailChannel, registry.get(ChannelType.EMAIL));
+        assertEquals(ChannelType.SMS, registry.get("sms").getType());
+        assertEquals(ChannelType.WHATSAPP, registry.get(" WhatsApp ").getType());
+        assertEquals(RabbitMQConfig.FANOUT_EXCHANGE,
+                registry.of(QueueMessage.forBroadcast(List.of("a@example.com"), "Hola", "Asunto")).getExchange());
+
+        assertThrows(IllegalArgumentException.class, () -> registry.get("fax"));
+        assertThrows(IllegalArgumentException.class, () -> new ChannelRegistry(List.of(emailChannel)).get(ChannelType.SMS));
+        assertThrows(IllegalStateException.class, () -> new ChannelRegistry(List.of(emailChannel, new EmailChannel())));
+    }
+
+    @Test
+    public void testListenersAreRegisteredForHealthPausing() {
+        ProviderHealthRegistry health = mock(ProviderHealthRegistry.class);
+        ChannelRegistry registry = defaultRegistry();
+        ReflectionTestUtils.setField(registry, "providerHealth", health);
+
+        registry.registerListeners();
+
+        verify(health).registerListener("email", RabbitMQConfig.EMAIL_LISTENER_ID);
+        verify(health).registerListener("sms", RabbitMQConfig.SMS_LISTENER_ID);
+        verify(health).registerListener("whatsapp", RabbitMQConfig.WHATSAPP_LISTENER_ID);
+        verify(health, never()).registerListener(eq("broadcast"), any());
+    }
+
+    @Test
+    public void testScheduledMessagesOfEveryChannelAreDispatched() {
+        ScheduledMessageRepositoryPort repository = mock(ScheduledMessageRepositoryPort.class);
+        AsyncScheduledMessageProcessor processor = new AsyncScheduledMessageProcessor();
+        ReflectionTestUtils.setField(processor, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(processor, "scheduledMessageRepository", repository);
+        ReflectionTestUtils.setField(processor, "channelRegistry", defaultRegistry());
+
+        QueueMessage broadcast = QueueMessage.forBroadcast(List.of("a@example.com", "644023859"), "Aviso", "Asunto");
+        QueueMessage whatsapp = QueueMessage.forWhatsApp("644023859", "Hola");
+        processor.sendScheduledMessageAsync(broadcast);
+        processor.sendScheduledMessageAsync(whatsapp);
+
+        // La difusión ya no se pierde: va al fanout como en el envío inmediato
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.FANOUT_EXCHANGE, "", broadcast);
+        verify(rabbitTemplate).convertAndSend(RabbitMQConfig.DIRECT_EXCHANGE, RabbitMQConfig.WHATSAPP_ROUTING_KEY, whatsapp);
+        verify(repository).markDispatched(broadcast.getId());
+        verify(repository).markDispatched(whatsapp.getId());
+    }
+
+    @Test
+    public void testPluggedChannelIsPublishedByItsOwnRoute() {
+        TestChannel custom = new TestChannel();
+        AsyncMessagePublisher publisher = publisher(new ChannelRegistry(List.of(emailChannel, custom)));
+
+        MessageRequest request = new MessageRequest();
+        request.setTo("644023859");
+        request.setContent("Hola");
+        request.setChannel("whatsapp");
+        String id = publisher.enqueue(custom.toQueueMessage(request));
+
+        verify(rabbitTemplate).convertAndSend(eq("test.exchange"), eq("test.key"), any(QueueMessage.class));
+        verify(statusService).createMessageStatus(id, "644023859", "WHATSAPP", QueueMessage.DEFAULT_USER);
+    }
+
+    @Test
+    public void testBroadcastEnqueueTracksEachRecipientAndFailsThemAll() {
+        AsyncMessagePublisher publisher = publisher(defaultRegistry());
+        QueueMessage broadcast = QueueMessage.forBroadcast(List.of("a@example.com", "b@example.com"), "Aviso", "Asunto");
+        doThrow(new AmqpException("broker caído")).when(rabbitTemplate)
+                .convertAndSend(eq(RabbitMQConfig.FANOUT_EXCHANGE), eq(""), any(QueueMessage.class));
+
+        assertThrows(RuntimeException.class, () -> publisher.enqueue(broadcast));
+
+        for (String recipient : broadcast.getRecipients()) {
+            verify(statusService).createMessageStatus(broadcast.statusIdFor(recipient), recipient, "BROADCAST", QueueMessage.DEFAULT_USER);
+            verify(statusService).updateMessageStatus(broadcast.statusIdFor(recipient), MessageStatusEnum.FAILED, "broker caído");
+        }
+    }
+
+    @Test
+    public void testChannelTopologyIsDeclaredAndMonitored() {
+        TestChannel custom = new TestChannel();
+        QueueStatusPoller poller = new QueueStatusPoller();
+        ReflectionTestUtils.setField(poller, "declaredQueues", List.of(new RabbitMQConfig().scheduledQueue()));
+        ReflectionTestUtils.setField(poller, "declaredGroups",
+                List.of(new RabbitMQConfig().channelTopology(List.of(emailChannel, custom))));
+
+        Map<String, String> monitored = poller.getMonitoredQueues();
+
+        assertEquals(List.of(RabbitMQConfig.SCHEDULED_QUEUE, RabbitMQConfig.EMAIL_QUEUE, RabbitMQConfig.EMAIL_DLQ, "test.queue"),
+                List.copyOf(monitored.keySet()));
+        // La DLQ del canal de serie se resuelve con los bindings de su propia topología
+        assertEquals(RabbitMQConfig.EMAIL_DLQ, monitored.get(RabbitMQConfig.EMAIL_QUEUE));
+    }
+
+    private ChannelRegistry defaultRegistry() {
+        return new ChannelRegistry(List.of(emailChannel, new SmsChannel(), new WhatsAppChannel(), new BroadcastChannel()));
+    }
+
+    private AsyncMessagePublisher publisher(ChannelRegistry registry) {
+        AsyncMessagePublisher publisher = new AsyncMessagePublisher();
+        ReflectionTestUtils.setField(publisher, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(publisher, "messageStatusService", statusService);
+        ReflectionTestUtils.setField(publisher, "attachmentStore", mock(AttachmentStorePort.class));
+        ReflectionTestUtils.setField(publisher, "latencyRecorder", new PipelineLatencyRecorder());
+        ReflectionTestUtils.setField(publisher, "channelRegistry", registry);
+        return publisher;
+    }
+
+    /**
+     * Canal con exchange, clave y cola propios, como lo añadiría un módulo nuevo
+     */
+    private static final class TestChannel implements MessageChannel {
+
+        @Override
+        public ChannelType getType() {
+            return ChannelType.WHATSAPP;
+        }
+
+        @Override
+        public String getExchange() {
+            return "test.exchange";
+        }
+
+        @Override
+        public String getRoutingKey() {
+            return "test.key";
+        }
+
+        @Override
+        public List<Declarable> getTopology() {
+            Queue queue = QueueBuilder.durable("test.queue").build();
+            return List.of(queue, new Binding("test.queue", Binding.DestinationType.QUEUE, "test.exchange", "test.key", null));
+        }
+
+        @Override
+        public QueueMessage toQueueMessage(MessageRequest request) {
+            return QueueMessage.forWhatsApp(request.getTo(), request.getContent());
+        }
+    }
+}
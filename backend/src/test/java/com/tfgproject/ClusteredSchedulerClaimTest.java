@@ -0,0 +1,105 @@
+package com.tfgproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.infrastructure.adapter.out.persistence.JdbcScheduledMessageAdapter;
+import com.tfgproject.shared.model.QueueMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Varios nodos reclamando a la vez los mensajes vencidos: ninguno se dispara dos veces
+ */
+public class ClusteredSchedulerClaimTest {
+
+    private JdbcScheduledMessageAdapter repository;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:scheduler-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        repository = new JdbcScheduledMessageAdapter();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", new JdbcTemplate(dataSource));
+        ReflectionTestUtils.setField(repository, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        repository.initSchema();
+    }
+
+    @Test
+    public void testConcurrentNodesNeverClaimTheSameMessage() throws InterruptedException {
+        int totalMessages = 1000;
+        LocalDateTime due = LocalDateTime.now().minusSeconds(5);
+        for (int i = 0; i < totalMessages; i++) {
+            QueueMessage message = QueueMessage.forEmail("user" + i + "@example.com", "Asunto", "Contenido");
+            message.setScheduledTime(due);
+            repository.save(message);
+        }
+
+        int nodes = 4;
+        Map<String, Integer> claimCounts = new ConcurrentHashMap<>();
+        AtomicInteger[] perNode = new AtomicInteger[nodes];
+        List<Thread> threads = new ArrayList<>();
+
+        for (int n = 0; n < nodes; n++) {
+            int partition = n;
+            perNode[n] = new AtomicInteger();
+            Thread thread = new Thread(() -> {
+                // Un lote vacío puede ser solo una carrera perdida: se sigue mientras queden pendientes
+                while (repository.countPending() > 0) {
+                    List<QueueMessage> claimed = repository.claimDue(LocalDateTime.now(), "node-" + partition, partition, nodes, 50);
+                    for (QueueMessage message : claimed) {
+                        claimCounts.merge(message.getId(), 1, Integer::sum);
+                        repository.markDispatched(message.getId());
+                    }
+                    perNode[partition].addAndGet(claimed.size());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(totalMessages, claimCounts.size());
+        assertTrue(claimCounts.values().stream().allMatch(count -> count == 1), "Ningún mensaje debe dispararse dos veces");
+        assertEquals(0, repository.countPending());
+
+        for (int n = 0; n < nodes; n++) {
+            System.out.println("📊 Nodo " + n + " envió " + perNode[n].get() + " mensajes");
+        }
+    }
+
+    @Test
+    public void testFutureMessagesAreNotClaimedAndExpiredClaimsAreReleased() {
+        QueueMessage future = QueueMessage.forSms("644023859", "Más tarde", "TFG-App");
+        future.setScheduledTime(LocalDateTime.now().plusHours(1));
+        repository.save(future);
+
+        QueueMessage due = QueueMessage.forSms("644023859", "Ahora", "TFG-App");
+        due.setScheduledTime(LocalDateTime.now().minusSeconds(1));
+        repository.save(due);
+
+        List<QueueMessage> claimed = repository.claimDue(LocalDateTime.now(), "node-a", 0, 1, 10);
+        assertEquals(1, claimed.size());
+        assertEquals(due.getId(), claimed.get(0).getId());
+
+        // node-a muere sin confirmar: su reclamación caduca y otro nodo la recoge
+        assertEquals(1, repository.releaseExpiredClaims(LocalDateTime.now().plusSeconds(1)));
+        List<QueueMessage> reclaimed = repository.claimDue(LocalDateTime.now(), "node-b", 0, 1, 10);
+        assertEquals(1, reclaimed.size());
+        assertEquals(2, repository.countPending());
+    }
+}
@@ -0,0 +1,142 @@
+package com.tfgproject;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.infrastructure.service.ContactChangeNotifier;
+import com.tfgproject.infrastructure.service.ContactImportJob;
+import com.tfgproject.infrastructure.service.ContactImportService;
+import com.tfgproject.infrastructure.service.CsvRowReader;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Importación de contactos: CSV y NDJSON, duplicados contra la tabla y dentro del fichero, y fichero de errores
+ */
+public class ContactImportServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ContactImportService importService;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:import-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE contacts (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                "email VARCHAR(255) UNIQUE, phone VARCHAR(255), whatsapp_id VARCHAR(255), notes VARCHAR(255), " +
+                "created_at TIMESTAMP, updated_at TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO contacts (name, email, phone) VALUES ('Existente', 'ana@example.com', '644023859')");
+
+        importService = new ContactImportService();
+        ReflectionTestUtils.setField(importService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(importService, "transactionManager", new DataSourceTransactionManager(dataSource));
+        ReflectionTestUtils.setField(importService, "objectMapper",
+                new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        ReflectionTestUtils.setField(importService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(importService, "taskExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(importService, "importDir", tempDir.toString());
+        ReflectionTestUtils.setField(importService, "contactChanges", new ContactChangeNotifier());
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+    }
+
+    private ContactImportJob importText(String text, String format) throws IOException {
+        return importService.startImport(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), format);
+    }
+
+    @Test
+    public void testCsvImportSkipsDuplicatesAndReportsBadRows() throws IOException {
+        String csv = "﻿nombre;email;phone;notes\n" +
+                "Luis;luis@example.com;600111222;\"Cliente; preferente\"\n" +
+                "Ana duplicada;ANA@example.com;;\n" +          // ya existe en la tabla
+                "Teléfono repetido;;644 023 859;\n" +          // mismo teléfono con espacios
+                "Marta;marta@example.com;;\"Dice \"\"hola\"\"\"\n" +
+                "Marta otra vez;marta@example.com;;\n" +        // repetida dentro del fichero
+                "X;no-es-un-email;;\n" +
+                "Sin canales;;;\n" +
+                "Pedro;;+34 600 333 444;\n";
+
+        ContactImportJob job = importText(csv, ContactImportService.FORMAT_CSV);
+
+        assertEquals(ContactImportJob.Status.COMPLETED, job.getStatus());
+        assertEquals(3, job.getImported());
+        assertEquals(3, job.getDuplicates());
+        assertEquals(2, job.getRejected());
+        assertEquals(100.0, job.toMap().get("progress"));
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contacts", Integer.class));
+        assertEquals("Dice \"hola\"", jdbcTemplate.queryForObject(
+                "SELECT notes FROM contacts WHERE email = 'marta@example.com'", String.class));
+
+        List<String> errors = Files.readAllLines(job.getErrorFile());
+        assertEquals("fila,error,datos", errors.get(0));
+        assertEquals(6, errors.size());
+        assertTrue(errors.get(1).startsWith("3,Duplicado"));
+        assertFalse(Files.exists(job.getSource()), "El fichero subido se borra al terminar");
+    }
+
+    @Test
+    public void testNdjsonImportInBatches() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 25; i++) {
+            ndjson.append("{\"name\":\"Contacto ").append(i).append("\",\"email\":\"c").append(i).append("@example.com\"}\n");
+        }
+        ndjson.append("{\"name\":\"Sin canales\"}\n");
+
+        ContactImportJob job = importText(ndjson.toString(), ContactImportService.FORMAT_NDJSON);
+
+        assertEquals(25, job.getImported());
+        assertEquals(1, job.getRejected());
+        assertEquals(26, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contacts", Integer.class));
+    }
+
+    @Test
+    public void testMalformedNdjsonFailsTheJobKeepingWhatWasImported() throws IOException {
+        ContactImportJob job = importText("{\"name\":\"Uno\",\"phone\":\"600000001\"}\n{\"name\": oops}\n",
+                ContactImportService.FORMAT_NDJSON);
+
+        assertEquals(ContactImportJob.Status.FAILED, job.getStatus());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contacts", Integer.class));
+    }
+
+    @Test
+    public void testCsvReaderHandlesQuotedNewlinesAndLineNumbers() throws IOException {
+        CsvRowReader reader = new CsvRowReader(new StringReader("a,b\r\n\"multi\nlínea\",2\n\n3,\"\"\n"));
+
+        assertEquals(List.of("a", "b"), reader.next());
+        assertEquals(List.of("multi\nlínea", "2"), reader.next());
+        assertEquals(2, reader.getRowLine());
+        assertEquals(List.of("3", ""), reader.next());
+        assertEquals(5, reader.getRowLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void testFormatResolution() {
+        assertEquals(ContactImportService.FORMAT_CSV, ContactImportService.resolveFormat(null, "text/csv; charset=UTF-8"));
+        assertEquals(ContactImportService.FORMAT_NDJSON, ContactImportService.resolveFormat(null, "application/x-ndjson"));
+        assertEquals(ContactImportService.FORMAT_NDJSON, ContactImportService.resolveFormat("json", "text/csv"));
+    }
+}
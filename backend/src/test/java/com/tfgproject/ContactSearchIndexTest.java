@@ -0,0 +1,137 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.service.ContactSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Índice de búsqueda de contactos: prefijos, erratas, acentos, relevancia, paginación y sincronización
+ */
+public class ContactSearchIndexTest {
+
+    private ContactSearchIndex index;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:search-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE contacts (id BIGINT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+                "email VARCHAR(255), phone VARCHAR(255), notes VARCHAR(255))");
+        jdbcTemplate.update("INSERT INTO contacts (name, email, phone, notes) VALUES " +
+                "('José Martínez', 'jose.martinez@example.com', '+34 644 023 859', 'Cliente de Sevilla'), " +
+                "('María López', 'maria@empresa.es', '655111222', 'Proveedora'), " +
+                "('Josefa Ruiz', 'josefa@example.com', NULL, 'Conoce a José'), " +
+                "('Alejandro Fernández', NULL, '699888777', NULL)");
+
+        index = new ContactSearchIndex();
+        ReflectionTestUtils.setField(index, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(index, "maxCandidates", 10_000);
+        index.rebuild();
+    }
+
+    @Test
+    public void prefixMatchesAreRankedByField() {
+        ContactSearchIndex.SearchResult result = index.search("jos", 0, 10, false);
+
+        assertEquals(2, result.getTotal());
+        // "José" en el nombre pesa más que la misma palabra en las notas
+        assertEquals(List.of(1L, 3L), result.getContactIds());
+    }
+
+    @Test
+    public void accentsAndCaseAreIgnored() {
+        assertEquals(List.of(4L), index.search("FERNANDEZ", 0, 10, false).getContactIds());
+        assertEquals(List.of(2L), index.search("maría lópez", 0, 10, false).getContactIds());
+    }
+
+    @Test
+    public void fuzzyToleratesTypos() {
+        assertTrue(index.search("alejnadro", 0, 10, false).getContactIds().isEmpty());
+        assertEquals(List.of(4L), index.search("alejnadro", 0, 10, true).getContactIds());
+        assertEquals(List.of(1L), index.search("martines", 0, 10, true).getContactIds());
+    }
+
+    @Test
+    public void emailAndPhoneTerms() {
+        assertEquals(List.of(2L), index.search("empresa", 0, 10, false).getContactIds());
+        assertEquals(List.of(3L), index.search("josefa@example.com", 0, 10, false).getContactIds());
+        // Con y sin prefijo de país, y por el principio del número
+        assertEquals(List.of(1L), index.search("644023859", 0, 10, false).getContactIds());
+        assertEquals(List.of(1L), index.search("+34644", 0, 10, false).getContactIds());
+        assertEquals(List.of(4L), index.search("699 888", 0, 10, false).getContactIds());
+    }
+
+    @Test
+    public void allWordsMustMatch() {
+        assertEquals(List.of(1L), index.search("jose sevilla", 0, 10, false).getContactIds());
+        assertTrue(index.search("jose madrid", 0, 10, false).getContactIds().isEmpty());
+    }
+
+    @Test
+    public void updatesAndDeletesAreVisibleImmediately() {
+        index.index(Contact.builder().id(2L).name("María Gómez").email("maria@empresa.es").build());
+        assertTrue(index.search("lopez", 0, 10, false).getContactIds().isEmpty());
+        assertEquals(List.of(2L), index.search("gomez", 0, 10, false).getContactIds());
+
+        index.remove(1L);
+        assertEquals(List.of(3L), index.search("jose", 0, 10, false).getContactIds());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void paginationKeepsTotal() {
+        for (int i = 0; i < 25; i++) {
+            index.index(Contact.builder().id(100L + i).name("Socio " + i).build());
+        }
+
+        ContactSearchIndex.SearchResult first = index.search("socio", 0, 10, false);
+        ContactSearchIndex.SearchResult last = index.search("socio", 2, 10, false);
+
+        assertEquals(25, first.getTotal());
+        assertEquals(10, first.getContactIds().size());
+        assertEquals(5, last.getContactIds().size());
+    }
+
+    @Test
+    public void lookupStaysFastOnLargeIndex() {
+        String[] names = {"Ana", "Luis", "Carmen", "Pedro", "Lucía", "Javier", "Marta", "Sergio", "Elena", "Pablo"};
+        String[] surnames = {"García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez", "Pérez"};
+        for (int i = 0; i < 200_000; i++) {
+            index.index(Contact.builder().id(1_000L + i)
+                    .name(names[i % names.length] + " " + surnames[(i / 10) % surnames.length] + " " + i)
+                    .email("user" + i + "@example.com")
+                    .phone("6" + String.format("%08d", i))
+                    .build());
+        }
+
+        // Calentamiento
+        for (int i = 0; i < 200; i++) {
+            index.search("user" + i, 0, 20, true);
+        }
+
+        long start = System.nanoTime();
+        int queries = 1_000;
+        for (int i = 0; i < queries; i++) {
+            index.search("user" + (i * 97) + "@example.com", 0, 20, false);
+            index.search("6" + String.format("%08d", i * 31), 0, 20, false);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / (queries * 2);
+        System.out.printf("🔎 Búsqueda exacta sobre %d contactos: %.1f µs por consulta%n", index.size(), micros);
+
+        // Exacto primero, después los que lo tienen como prefijo (user123450...)
+        assertEquals(1_000L + 12_345, index.search("user12345", 0, 20, false).getContactIds().get(0));
+        assertTrue(micros < 1_000, "búsqueda por email/teléfono por debajo del milisegundo");
+    }
+}
@@ -0,0 +1,264 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.adapter.out.persistence.JdbcDeliveryWorkflowAdapter;
+import com.tfgproject.infrastructure.channel.BroadcastChannel;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.EmailChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
+import com.tfgproject.infrastructure.channel.WhatsAppChannel;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.BatchPublishException;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
+import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.shared.model.WorkflowEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Flujos de entrega email → SMS: avance por fallo o plazo, sin envíos duplicados
+ */
+public class DeliveryWorkflowEngineTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private AsyncMessagePublisher publisher;
+    private RabbitTemplate rabbitTemplate;
+    private DeliveryWorkflowEngine engine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:workflow-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE contacts (id BIGINT PRIMARY KEY, email VARCHAR(255), phone VARCHAR(255), " +
+                "whatsapp_id VARCHAR(255))");
+
+        JdbcDeliveryWorkflowAdapter adapter = new JdbcDeliveryWorkflowAdapter();
+        ReflectionTestUtils.setField(adapter, "jdbcTemplate", jdbcTemplate);
+        adapter.initSchema();
+
+        publisher = mock(AsyncMessagePublisher.class);
+        rabbitTemplate = mock(RabbitTemplate.class);
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class))).thenAnswer(invocation ->
+                invocation.<RabbitOperations.OperationsCallback<Object>>getArgument(0).doInRabbit(rabbitTemplate));
+
+        engine = new DeliveryWorkflowEngine();
+        ReflectionTestUtils.setField(engine, "workflowRepository", adapter);
+        ReflectionTestUtils.setField(engine, "messagePublisher", publisher);
+        ReflectionTestUtils.setField(engine, "rabbitTemplate", rabbitTemplate);
+        ReflectionTestUtils.setField(engine, "channelRegistry", new ChannelRegistry(
+                List.of(new EmailChannel(), new SmsChannel(), new WhatsAppChannel(), new BroadcastChannel())));
+    }
+
+    private Contact contact(long id, String email, String phone) {
+        jdbcTemplate.update("INSERT INTO contacts VALUES (?, ?, ?, NULL)", id, email, phone);
+        return Contact.builder().id(id).name("Contacto " + id).email(email).phone(phone).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<QueueMessage> publishedMessages(int calls) {
+        ArgumentCaptor<List<QueueMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(publisher, times(calls)).publishBatch(captor.capture());
+        List<QueueMessage> messages = new ArrayList<>();
+        captor.getAllValues().forEach(messages::addAll);
+        return messages;
+    }
+
+    private long workflowOf(long contactId) {
+        return jdbcTemplate.queryForObject("SELECT id FROM delivery_workflows WHERE contact_id = ?", Long.class, contactId);
+    }
+
+    private Map<String, Object> workflow(long contactId) {
+        return engine.getWorkflow(workflowOf(contactId)).orElseThrow();
+    }
+
+    @Test
+    public void firstStepGoesToFirstReachableChannel() {
+        Map<String, Object> result = engine.start(List.of(
+                contact(1, "a@x.com", "600000001"),
+                contact(2, null, "600000002"),
+                contact(3, null, null)), List.of("email", "sms"), List.of(60, 60), "Asunto", "Hola", null, false, "u1");
+
+        assertEquals(2, result.get("workflows"));
+        assertEquals(1, result.get("unreachable"));
+
+        List<QueueMessage> messages = publishedMessages(1);
+        assertEquals("EMAIL", messages.get(0).getType());
+        assertEquals(List.of("a@x.com"), messages.get(0).getRecipients());
+        assertEquals("SMS", messages.get(1).getType());
+        assertEquals(1, messages.get(1).getWorkflowStep());
+        assertEquals("u1", messages.get(1).getUserId());
+
+        // Solo el paso de email tiene plazo: el SMS es el último canal
+        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), any(WorkflowEvent.class));
+    }
+
+    @Test
+    public void failureFallsBackToNextChannelOnce() {
+        engine.start(List.of(contact(1, "a@x.com", "600000001")), List.of("EMAIL", "SMS"), null,
+                "Asunto", "Hola", null, false, null);
+        long id = workflowOf(1);
+        clearInvocations(publisher);
+
+        engine.handle(new WorkflowEvent(id, 0, WorkflowEvent.FAILED, 0));
+        // El plazo vencido del mismo paso llega después y no vuelve a enviar
+        engine.handle(new WorkflowEvent(id, 0, WorkflowEvent.TIMEOUT, System.currentTimeMillis() - 1));
+
+        List<QueueMessage> messages = publishedMessages(1);
+        assertEquals("SMS", messages.get(0).getType());
+        assertEquals(List.of("600000001"), messages.get(0).getRecipients());
+        assertEquals("wf-" + id + "-1", messages.get(0).getId());
+        assertEquals("SMS", workflow(1).get("channel"));
+        assertEquals("ACTIVE", workflow(1).get("state"));
+    }
+
+    @Test
+    public void sentCompletesAndLaterTimeoutIsIgnored() {
+        engine.start(List.of(contact(1, "a@x.com", "600000001")), List.of("EMAIL", "SMS"), null,
+                "Asunto", "Hola", null, false, null);
+        long id = workflowOf(1);
+        clearInvocations(publisher);
+
+        engine.handle(new WorkflowEvent(id, 0, WorkflowEvent.SENT, 0));
+        engine.handle(new WorkflowEvent(id, 0, WorkflowEvent.TIMEOUT, System.currentTimeMillis() - 1));
+
+        verify(publisher, never()).publishBatch(any());
+        assertEquals("DELIVERED", workflow(1).get("state"));
+        assertEquals(1L, engine.getStats().get("DELIVERED"));
+    }
+
+    @Test
+    public void failureOnLastChannelExhaustsWorkflow() {
+        engine.start(List.of(contact(1, "a@x.com", null)), List.of("EMAIL", "SMS"), null,
+                "Asunto", "Hola", null, false, null);
+        long id = workflowOf(1);
+        clearInvocations(publisher);
+
+        // Sin teléfono no hay siguiente canal
+        engine.handle(new WorkflowEvent(id, 0, WorkflowEvent.FAILED, 0));
+
+        verify(publisher, never()).publishBatch(any());
+        assertEquals("EXHAUSTED", workflow(1).get("state"));
+    }
+
+    @Test
+    public void pendingTimeoutIsDelayedAgainInMatchingTier() {
+        long dueAt = System.currentTimeMillis() + 90_000;
+        engine.handle(new WorkflowEvent(42L, 0, WorkflowEvent.TIMEOUT, dueAt));
+
+        ArgumentCaptor<WorkflowEvent> event = ArgumentCaptor.forClass(WorkflowEvent.class);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.workflowDelayQueueName(60_000)), event.capture());
+        assertEquals(dueAt, event.getValue().getDueAt());
+        verify(publisher, never()).publishBatch(any());
+    }
+
+    @Test
+    public void reportIgnoresMessagesOutsideWorkflows() {
+        engine.report(QueueMessage.forEmail("a@x.com", "Asunto", "Hola"), false);
+        verify(rabbitTemplate, never()).convertAndSend(anyString(), anyString(), any(Object.class));
+
+        QueueMessage step = QueueMessage.forEmail("a@x.com", "Asunto", "Hola");
+        step.setWorkflowId(7L);
+        engine.report(step, false);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.WORKFLOW_ROUTING_KEY),
+                eq(new WorkflowEvent(7L, 0, WorkflowEvent.FAILED, 0)));
+    }
+
+    @Test
+    public void invalidChainsAreRejected() {
+        List<Contact> contacts = List.of(contact(1, "a@x.com", null));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.start(contacts, List.of("EMAIL", "EMAIL"), null, "A", "B", null, false, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.start(contacts, List.of("FAX"), null, "A", "B", null, false, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.start(contacts, List.of("BROADCAST"), null, "A", "B", null, false, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.start(contacts, List.of("EMAIL", "SMS"), List.of(0), "A", "B", null, false, null));
+    }
+
+    @Test
+    public void largeAudienceIsStartedInBatches() {
+        ReflectionTestUtils.setField(engine, "batchSize", 1000);
+        List<Object[]> rows = new ArrayList<>();
+        List<Contact> contacts = new ArrayList<>();
+        for (long id = 1; id <= 20_000; id++) {
+            rows.add(new Object[]{id, "c" + id + "@x.com", "6" + id});
+            contacts.add(Contact.builder().id(id).email("c" + id + "@x.com").phone("6" + id).build());
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO contacts VALUES (?, ?, ?, NULL)", rows);
+
+        long start = System.nanoTime();
+        engine.start(contacts, List.of("EMAIL", "SMS"), null, "Asunto", "Hola", null, false, null);
+        System.out.printf("Flujos: 20000 iniciados en %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+        verify(publisher, times(20)).publishBatch(any());
+        assertEquals(20_000L, engine.getStats().get("ACTIVE"));
+    }
+
+    @Test
+    public void unpublishedFirstStepFailsOverInsteadOfStalling() {
+        contact(1, "a@x.com", "600000001");
+        contact(2, "b@x.com", "600000002");
+        // El primer lote no llega al broker para el contacto 2: su paso se da por fallido
+        doThrow(new BatchPublishException("sin confirmación", Set.of("wf-2-0")))
+                .when(publisher).publishBatch(any());
+
+        Map<String, Object> result = engine.start(List.of(
+                Contact.builder().id(1L).email("a@x.com").phone("600000001").build(),
+                Contact.builder().id(2L).email("b@x.com").phone("600000002").build()),
+                List.of("EMAIL", "SMS"), null, "Asunto", "Hola", null, false, null);
+
+        assertEquals(2, result.get("workflows"));
+        long failed = workflowOf(2);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.WORKFLOW_ROUTING_KEY),
+                eq(new WorkflowEvent(failed, 0, WorkflowEvent.FAILED, 0)));
+        verify(rabbitTemplate, never()).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.WORKFLOW_ROUTING_KEY),
+                eq(new WorkflowEvent(workflowOf(1), 0, WorkflowEvent.FAILED, 0)));
+        // Los plazos de ambos se programan igualmente
+        verify(rabbitTemplate, times(2)).convertAndSend(anyString(), any(WorkflowEvent.class));
+    }
+
+    @Test
+    public void unpublishedNextStepIsReportedAsFailed() {
+        engine.start(List.of(contact(1, "a@x.com", "600000001")), List.of("EMAIL", "SMS"), null,
+                "Asunto", "Hola", null, false, null);
+        long id = workflowOf(1);
+        doThrow(new IllegalStateException("broker caído")).when(publisher).publishBatch(any());
+
+        engine.handle(new WorkflowEvent(id, 0, WorkflowEvent.FAILED, 0));
+
+        // El SMS no salió: su fallo hace que el flujo termine en lugar de quedarse activo
+        verify(rabbitTemplate).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE), eq(RabbitMQConfig.WORKFLOW_ROUTING_KEY),
+                eq(new WorkflowEvent(id, 1, WorkflowEvent.FAILED, 0)));
+        engine.handle(new WorkflowEvent(id, 1, WorkflowEvent.FAILED, 0));
+        assertEquals("EXHAUSTED", workflow(1).get("state"));
+    }
+}
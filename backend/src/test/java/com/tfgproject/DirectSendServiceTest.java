@@ -0,0 +1,181 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.service.MessageStatusService;
+import com.tfgproject.infrastructure.service.DirectSendService;
+import com.tfgproject.infrastructure.service.EmailService;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderUnavailableException;
+import com.tfgproject.infrastructure.service.SmsService;
+import com.tfgproject.shared.model.EmailMessage;
+import com.tfgproject.shared.model.SmsMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Envío directo: éxito sin cola, respaldo en la cola si falla, y nunca dos envíos si vence el tiempo
+ */
+public class DirectSendServiceTest {
+
+    private DirectSendService directSendService;
+    private EmailService emailService;
+    private SmsService smsService;
+    private MessageStatusService messageStatusService;
+    private AtomicInteger enqueued;
+
+    @BeforeEach
+    public void setUp() {
+        emailService = mock(EmailService.class);
+        smsService = mock(SmsService.class);
+        messageStatusService = mock(MessageStatusService.class);
+        enqueued = new AtomicInteger();
+
+        directSendService = new DirectSendService();
+        ReflectionTestUtils.setField(directSendService, "emailService", emailService);
+        ReflectionTestUtils.setField(directSendService, "smsService", smsService);
+        ReflectionTestUtils.setField(directSendService, "messageStatusService", messageStatusService);
+        ReflectionTestUtils.setField(directSendService, "latencyRecorder", new PipelineLatencyRecorder());
+        ReflectionTestUtils.setField(directSendService, "timeoutMillis", 200L);
+        ReflectionTestUtils.setField(directSendService, "threads", 1);
+        ReflectionTestUtils.setField(directSendService, "queueCapacity", 1);
+        directSendService.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        directSendService.stop();
+    }
+
+    private String enqueue() {
+        enqueued.incrementAndGet();
+        return "queued-id";
+    }
+
+    @Test
+    public void testSuccessfulSendSkipsTheQueueAndRecordsStatus() {
+        when(smsService.sendSms(any(SmsMessage.class))).thenReturn(true);
+
+        DirectSendService.Outcome outcome = directSendService.sendSms(sms("644023859"), "user-1", this::enqueue);
+
+        assertEquals(DirectSendService.Outcome.SENT, outcome);
+        assertEquals(0, enqueued.get());
+        verify(messageStatusService, timeout(1000)).createMessageStatus(anyString(), eq("644023859"), eq("SMS"), eq("user-1"));
+        verify(messageStatusService, timeout(1000)).updateMessageStatus(anyString(), eq(MessageStatusEnum.SENT), isNull());
+    }
+
+    @Test
+    public void testFailedOrUnavailableSendFallsBackToTheQueue() {
+        when(emailService.sendEmail(any(EmailMessage.class))).thenReturn(false);
+        assertEquals(DirectSendService.Outcome.QUEUED,
+                directSendService.sendEmail(new EmailMessage("a@example.com", "OTP", "1234"), null, this::enqueue));
+
+        when(smsService.sendSms(any(SmsMessage.class))).thenThrow(new ProviderUnavailableException("sms:twilio", "circuito abierto"));
+        assertEquals(DirectSendService.Outcome.QUEUED,
+                directSendService.sendSms(sms("644023859"), null, this::enqueue));
+
+        assertEquals(2, enqueued.get());
+    }
+
+    @Test
+    public void testTimeoutEnqueuesOnlyIfTheSendEventuallyFails() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(smsService.sendSms(any(SmsMessage.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+
+        // Vence el tiempo pero el proveedor termina bien: no se encola
+        assertEquals(DirectSendService.Outcome.DEFERRED, directSendService.sendSms(sms("600000001"), null, this::enqueue));
+        release.countDown();
+        verify(messageStatusService, timeout(1000)).updateMessageStatus(anyString(), eq(MessageStatusEnum.SENT), isNull());
+        assertEquals(0, enqueued.get());
+
+        // Vence el tiempo y el proveedor acaba fallando: se encola una sola vez
+        CountDownLatch failLater = new CountDownLatch(1);
+        when(emailService.sendEmail(any(EmailMessage.class))).thenAnswer(invocation -> {
+            failLater.await(5, TimeUnit.SECONDS);
+            return false;
+        });
+        assertEquals(DirectSendService.Outcome.DEFERRED,
+                directSendService.sendEmail(new EmailMessage("a@example.com", "OTP", "1234"), null, this::enqueue));
+        assertEquals(0, enqueued.get());
+        failLater.countDown();
+
+        long deadline = System.currentTimeMillis() + 1000;
+        while (enqueued.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, enqueued.get());
+    }
+
+    @Test
+    public void testSaturatedPoolFallsBackToTheQueue() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(smsService.sendSms(any(SmsMessage.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+
+        // Un hilo ocupado y una plaza en cola: el tercer envío se rechaza y va a la cola
+        directSendService.sendSms(sms("600000001"), null, this::enqueue);
+        directSendService.sendSms(sms("600000002"), null, this::enqueue);
+        DirectSendService.Outcome outcome = directSendService.sendSms(sms("600000003"), null, this::enqueue);
+        release.countDown();
+
+        assertEquals(DirectSendService.Outcome.QUEUED, outcome);
+        assertTrue(enqueued.get() >= 1);
+    }
+
+    @Test
+    public void testSentMessageIsRecordedEvenIfThePoolIsFull() {
+        // El pool acepta el envío pero rechaza la tarea que registra el estado
+        ThreadPoolExecutor full = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1)) {
+            private final AtomicInteger tasks = new AtomicInteger();
+
+            @Override
+            public void execute(Runnable command) {
+                if (tasks.incrementAndGet() > 1) {
+                    throw new RejectedExecutionException("pool lleno");
+                }
+                super.execute(command);
+            }
+        };
+        ReflectionTestUtils.setField(directSendService, "executor", full);
+        when(smsService.sendSms(any(SmsMessage.class))).thenReturn(true);
+
+        DirectSendService.Outcome outcome = directSendService.sendSms(sms("644023859"), "user-1", this::enqueue);
+        full.shutdown();
+
+        assertEquals(DirectSendService.Outcome.SENT, outcome);
+        assertEquals(0, enqueued.get());
+        verify(messageStatusService).updateMessageStatus(anyString(), eq(MessageStatusEnum.SENT), isNull());
+    }
+
+    private SmsMessage sms(String to) {
+        SmsMessage message = new SmsMessage();
+        message.setTo(to);
+        message.setText("Código 1234");
+        message.setSender("TFG-App");
+        return message;
+    }
+}
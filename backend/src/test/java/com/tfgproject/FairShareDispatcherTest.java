@@ -0,0 +1,151 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifica que un usuario con una difusión grande no bloquea al resto
+ */
+public class FairShareDispatcherTest {
+
+    private FairShareDispatcher dispatcher;
+
+    @BeforeEach
+    public void setUp() {
+        dispatcher = new FairShareDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "workers", 1);
+        ReflectionTestUtils.setField(dispatcher, "quantum", 1);
+        ReflectionTestUtils.setField(dispatcher, "maxInFlightPerUser", 1);
+        ReflectionTestUtils.setField(dispatcher, "ratePerUser", 0.0);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void testSmallUserIsNotBlockedByBigBroadcast() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(201);
+
+        // El primer envío bloquea el único worker hasta que ambos usuarios han encolado
+        dispatcher.submit("bulkUser", "EMAIL", () -> {
+            await(gate);
+            order.add("bulkUser");
+            done.countDown();
+        });
+
+        List<Runnable> bulk = new ArrayList<>();
+        for (int i = 0; i < 199; i++) {
+            bulk.add(() -> {
+                order.add("bulkUser");
+                done.countDown();
+            });
+        }
+        dispatcher.submitAll("bulkUser", "EMAIL", bulk);
+        dispatcher.submit("smallUser", "SMS", () -> {
+            order.add("smallUser");
+            done.countDown();
+        });
+
+        gate.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        int smallPosition = order.indexOf("smallUser");
+        System.out.println("📊 Posición del usuario pequeño: " + smallPosition + " de " + order.size());
+        assertTrue(smallPosition <= 2, "El usuario pequeño debería atenderse en la siguiente ronda");
+    }
+
+    @Test
+    public void testPerUserStatsAreVisible() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(3);
+        dispatcher.submitAll("statsUser", "EMAIL", List.of(done::countDown, done::countDown, done::countDown));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Map<String, Object> stats = dispatcher.getUserQueueStats().stream()
+                .filter(entry -> "statsUser".equals(entry.get("userId")))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(3L, stats.get("dispatched"));
+        assertEquals(0, stats.get("queueDepth"));
+    }
+
+    @Test
+    public void testQueuedSendsAreHandedBackOnStop() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        List<String> dropped = Collections.synchronizedList(new ArrayList<>());
+
+        // El único worker queda ocupado y los otros envíos del mensaje siguen en la cola virtual
+        dispatcher.submitAll("stopUser", "EMAIL", List.of(
+                droppable("a", () -> {
+                    started.countDown();
+                    await(gate);
+                }, ran, dropped),
+                droppable("b", () -> { }, ran, dropped),
+                droppable("c", () -> { }, ran, dropped)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread stopper = new Thread(dispatcher::stop);
+        stopper.start();
+        // Se suelta el worker cuando la parada ya ha vaciado la cola virtual
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (dispatcher.getTotalQueued() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        gate.countDown();
+        stopper.join(10_000);
+
+        // El envío en curso termina; solo vuelven al broker los destinatarios que no empezaron
+        assertEquals(List.of("a"), ran);
+        assertEquals(List.of("b", "c"), dropped);
+        assertEquals(0, dispatcher.getTotalQueued());
+
+        dispatcher.submitAll("stopUser", "EMAIL", List.of(droppable("d", () -> { }, ran, dropped)));
+        assertEquals(List.of("a"), ran);
+        assertEquals(List.of("b", "c", "d"), dropped);
+    }
+
+    private static FairShareDispatcher.DroppableTask droppable(String recipient, Runnable send,
+                                                               List<String> ran, List<String> dropped) {
+        return new FairShareDispatcher.DroppableTask() {
+            @Override
+            public void run() {
+                send.run();
+                ran.add(recipient);
+            }
+
+            @Override
+            public void drop() {
+                dropped.add(recipient);
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.service.LatencyHistogram;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.shared.model.QueueMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Percentiles dentro del error del histograma y registro concurrente sin pérdidas
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value);
+        }
+
+        assertWithin(500_000, histogram.getValueAtPercentile(50));
+        assertWithin(990_000, histogram.getValueAtPercentile(99));
+        assertWithin(999_000, histogram.getValueAtPercentile(99.9));
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(1_000_000, histogram.getCount());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) histogram.record(3);
+        for (int i = 0; i < 10; i++) histogram.record(100);
+
+        assertEquals(3, histogram.getValueAtPercentile(50));
+        assertEquals(100, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecordingLosesNothing() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 5000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800_000, histogram.getCount());
+        assertEquals(4999, histogram.getMax());
+    }
+
+    @Test
+    public void testStageTimestampsCarriedInMessageAreRecorded() {
+        PipelineLatencyRecorder recorder = new PipelineLatencyRecorder();
+        QueueMessage message = QueueMessage.forEmail("ana@example.com", "Hola", "Contenido");
+        message.markStage(PipelineLatencyRecorder.ACCEPTED, 1_000);
+        message.markStage(PipelineLatencyRecorder.STATUS_CREATED, 4_000);
+        message.markStage(PipelineLatencyRecorder.PUBLISHED, 5_000);
+
+        recorder.recordConsumed("EMAIL", message, 25_000);
+
+        assertEquals(3_000, recorder.getHistogram("EMAIL", PipelineLatencyRecorder.STAGE_STATUS_INSERT).getMax());
+        assertEquals(20_000, recorder.getHistogram("EMAIL", PipelineLatencyRecorder.STAGE_QUEUE_WAIT).getMax());
+
+        Map<String, Object> queueWait = recorder.getStats().stream()
+                .filter(row -> PipelineLatencyRecorder.STAGE_QUEUE_WAIT.equals(row.get("stage")))
+                .findFirst().orElseThrow();
+        assertEquals(20.0, (double) queueWait.get("p99Ms"), 0.5);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.02,
+                "Esperado ~" + expected + " pero fue " + actual);
+    }
+}
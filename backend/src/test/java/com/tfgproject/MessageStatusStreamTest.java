@@ -0,0 +1,113 @@
+package com.tfgproject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tfgproject.domain.model.MessageStatusEnum;
+import com.tfgproject.domain.model.MessageStatusEvent;
+import com.tfgproject.domain.port.out.MessageStatusRepositoryPort;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import com.tfgproject.infrastructure.service.MessageStatusStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cambios agrupados por mensaje y un único envío por ciclo y suscriptor
+ */
+public class MessageStatusStreamTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private MessageStatusRepositoryPort repository;
+    private MessageStatusStream stream;
+
+    @BeforeEach
+    public void setUp() {
+        repository = mock(MessageStatusRepositoryPort.class);
+        when(repository.countByStatus(any())).thenReturn(0L);
+        when(repository.countByStatus(MessageStatusEnum.SENT)).thenReturn(10L);
+
+        stream = new MessageStatusStream();
+        ReflectionTestUtils.setField(stream, "messageStatusRepository", repository);
+        ReflectionTestUtils.setField(stream, "scheduledMessageRepository", mock(ScheduledMessageRepositoryPort.class));
+        ReflectionTestUtils.setField(stream, "objectMapper", objectMapper);
+        stream.init();
+    }
+
+    @Test
+    public void testTransitionsAreCoalescedAndCountersUpdatedInMemory() throws Exception {
+        List<CapturingEmitter> clients = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            CapturingEmitter client = new CapturingEmitter();
+            stream.register(client, null);
+            clients.add(client);
+        }
+
+        stream.publish(event("m1", "ana", null, MessageStatusEnum.QUEUED));
+        stream.publish(event("m1", "ana", MessageStatusEnum.QUEUED, MessageStatusEnum.PROCESSING));
+        stream.publish(event("m1", "ana", MessageStatusEnum.PROCESSING, MessageStatusEnum.SENT));
+        stream.publish(event("m2", "luis", null, MessageStatusEnum.QUEUED));
+        stream.flush();
+
+        for (CapturingEmitter client : clients) {
+            assertEquals(2, client.events.size()); // estado inicial + un lote
+        }
+
+        JsonNode batch = objectMapper.readTree(clients.get(0).events.get(1));
+        assertEquals(2, batch.get("deltas").size());
+        assertEquals(11, batch.get("counters").get("successfulMessages").asLong());
+        assertEquals(1, batch.get("counters").get("pendingMessages").asLong());
+
+        // Sin cambios no se reenvía nada
+        stream.flush();
+        assertEquals(2, clients.get(0).events.size());
+
+        // Los contadores solo se consultaron en la carga inicial, no por cliente
+        verify(repository, times(1)).countByStatus(MessageStatusEnum.SENT);
+    }
+
+    @Test
+    public void testUserFilterOnlyReceivesOwnDeltas() throws Exception {
+        CapturingEmitter ana = new CapturingEmitter();
+        stream.register(ana, "ana");
+
+        stream.publish(event("m1", "ana", null, MessageStatusEnum.QUEUED));
+        stream.publish(event("m2", "luis", null, MessageStatusEnum.QUEUED));
+        stream.flush();
+
+        JsonNode batch = objectMapper.readTree(ana.events.get(1));
+        assertEquals(1, batch.get("deltas").size());
+        assertEquals("m1", batch.get("deltas").get(0).get("messageId").asText());
+    }
+
+    private static MessageStatusEvent event(String id, String userId, MessageStatusEnum from, MessageStatusEnum to) {
+        return MessageStatusEvent.builder().messageId(id).userId(userId).type("EMAIL")
+                .previousStatus(from).status(to).build();
+    }
+
+    private static class CapturingEmitter extends SseEmitter {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder data = new StringBuilder();
+            builder.build().forEach(item -> {
+                String text = item.getData().toString();
+                if (!text.startsWith("event:") && !text.startsWith("data:") && !text.equals("\n\n") && !text.equals("\n")) {
+                    data.append(text);
+                }
+            });
+            events.add(data.toString());
+        }
+    }
+}
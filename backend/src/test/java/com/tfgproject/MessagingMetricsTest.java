@@ -0,0 +1,109 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.port.out.AttachmentStorePort;
+import com.tfgproject.domain.port.out.ScheduledMessageRepositoryPort;
+import com.tfgproject.application.dto.response.QueueStatusResponse;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.config.MessagingMetrics;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.MessageStatusStream;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.ProviderSendMetrics;
+import com.tfgproject.infrastructure.service.QueueStatusPoller;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Los gauges y contadores propios aparecen en el registro con sus etiquetas
+ */
+public class MessagingMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private QueueStatusPoller poller;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        poller = mock(QueueStatusPoller.class);
+        when(poller.getMonitoredQueues()).thenReturn(Map.of(
+                RabbitMQConfig.EMAIL_QUEUE, RabbitMQConfig.EMAIL_DLQ, RabbitMQConfig.SMS_QUEUE, RabbitMQConfig.SMS_DLQ));
+        when(poller.getQueue(anyString())).thenReturn(Optional.empty());
+
+        ScheduledMessageRepositoryPort scheduledRepository = mock(ScheduledMessageRepositoryPort.class);
+        when(scheduledRepository.countPending()).thenReturn(7L);
+        FairShareDispatcher dispatcher = mock(FairShareDispatcher.class);
+        when(dispatcher.getTotalQueued()).thenReturn(3);
+        AttachmentStorePort attachmentStore = mock(AttachmentStorePort.class);
+        when(attachmentStore.totalBytes()).thenReturn(1024L);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.initialize();
+
+        MessagingMetrics metrics = new MessagingMetrics();
+        ReflectionTestUtils.setField(metrics, "queueStatusPoller", poller);
+        ReflectionTestUtils.setField(metrics, "scheduledMessageRepository", scheduledRepository);
+        ReflectionTestUtils.setField(metrics, "fairShareDispatcher", dispatcher);
+        ReflectionTestUtils.setField(metrics, "messageStatusStream", mock(MessageStatusStream.class));
+        ReflectionTestUtils.setField(metrics, "attachmentStore", attachmentStore);
+        ReflectionTestUtils.setField(metrics, "providerHealthRegistry", mock(ProviderHealthRegistry.class));
+        ReflectionTestUtils.setField(metrics, "channelRegistry", new ChannelRegistry(List.of()));
+        ReflectionTestUtils.setField(metrics, "taskExecutor", executor);
+        ReflectionTestUtils.setField(metrics, "taskScheduler", new ThreadPoolTaskScheduler());
+        metrics.bindTo(registry);
+    }
+
+    @Test
+    public void testQueueGaugesReadPollerCacheAndFallBackToNaN() {
+        when(poller.getQueue(RabbitMQConfig.EMAIL_QUEUE)).thenReturn(Optional.of(QueueStatusResponse.QueueInfo.builder()
+                .name(RabbitMQConfig.EMAIL_QUEUE).messageCount(42).consumerCount(2).build()));
+
+        assertEquals(42, registry.get("messaging.queue.messages").tag("queue", RabbitMQConfig.EMAIL_QUEUE).gauge().value());
+        assertEquals(2, registry.get("messaging.queue.consumers").tag("queue", RabbitMQConfig.EMAIL_QUEUE).gauge().value());
+        assertTrue(Double.isNaN(registry.get("messaging.queue.messages").tag("queue", RabbitMQConfig.SMS_QUEUE).gauge().value()));
+    }
+
+    @Test
+    public void testInternalStateGauges() {
+        assertEquals(7, registry.get("messaging.scheduled.pending").gauge().value());
+        assertEquals(3, registry.get("messaging.fairshare.queued").gauge().value());
+        assertEquals(1024, registry.get("messaging.attachments.bytes").gauge().value());
+        assertEquals(0, registry.get("messaging.executor.utilization").tag("name", "taskExecutor").gauge().value());
+    }
+
+    @Test
+    public void testProviderCountersAndLatencyQuantiles() {
+        ProviderSendMetrics sendMetrics = new ProviderSendMetrics();
+        ReflectionTestUtils.setField(sendMetrics, "meterRegistry", registry);
+        sendMetrics.record("email", true);
+        sendMetrics.record("email", false);
+        sendMetrics.record("email", ProviderSendMetrics.THROTTLED);
+        assertEquals(1, registry.get("messaging.provider.sends").tags("provider", "email", "result", "success").counter().count());
+        assertEquals(1, registry.get("messaging.provider.sends").tags("provider", "email", "result", "throttled").counter().count());
+
+        PipelineLatencyRecorder recorder = new PipelineLatencyRecorder();
+        ReflectionTestUtils.setField(recorder, "meterRegistry", registry);
+        for (int i = 1; i <= 100; i++) {
+            recorder.record("EMAIL", PipelineLatencyRecorder.STAGE_PROVIDER_SEND, i * 1_000L);
+        }
+        double p50 = registry.get("messaging.pipeline.latency")
+                .tags("channel", "EMAIL", "stage", PipelineLatencyRecorder.STAGE_PROVIDER_SEND, "quantile", "0.5")
+                .gauge().value();
+        assertEquals(0.05, p50, 0.002);
+    }
+}
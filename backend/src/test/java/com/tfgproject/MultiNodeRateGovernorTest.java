@@ -0,0 +1,149 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.port.out.SendQuotaRepositoryPort;
+import com.tfgproject.infrastructure.adapter.out.persistence.JdbcSendQuotaAdapter;
+import com.tfgproject.infrastructure.service.ProviderRateGovernor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Varios "nodos" en la misma JVM compartiendo la cuota a través de una base H2
+ */
+public class MultiNodeRateGovernorTest {
+
+    private JdbcSendQuotaAdapter sharedStore;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:governor-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        sharedStore = new JdbcSendQuotaAdapter();
+        ReflectionTestUtils.setField(sharedStore, "jdbcTemplate", new JdbcTemplate(dataSource));
+        sharedStore.initSchema();
+    }
+
+    @Test
+    public void testBudgetIsSplitAndRebalancedWhenNodesJoinAndLeave() {
+        List<ProviderRateGovernor> nodes = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            nodes.add(new ProviderRateGovernor("email", "node-" + i, 30, 0, 50, 60_000, sharedStore));
+        }
+
+        Instant now = Instant.now();
+        nodes.forEach(node -> node.rebalance(now));
+        nodes.forEach(node -> node.rebalance(now));
+
+        for (ProviderRateGovernor node : nodes) {
+            assertEquals(3, node.getLiveNodes());
+            assertEquals(10.0, node.getLocalRate(), 0.001);
+        }
+
+        // Un nodo sale: los restantes absorben su parte
+        nodes.get(2).leave();
+        nodes.get(0).rebalance(now);
+        nodes.get(1).rebalance(now);
+
+        assertEquals(2, nodes.get(0).getLiveNodes());
+        assertEquals(15.0, nodes.get(0).getLocalRate(), 0.001);
+        assertEquals(15.0, nodes.get(1).getLocalRate(), 0.001);
+    }
+
+    @Test
+    public void testClusterThroughputStaysUnderGlobalRate() throws InterruptedException {
+        double globalRate = 20;
+        List<ProviderRateGovernor> nodes = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            nodes.add(new ProviderRateGovernor("sms:+34600000000", "node-" + i, globalRate, 0, 50, 60_000, sharedStore));
+        }
+        Instant now = Instant.now();
+        nodes.forEach(node -> node.rebalance(now));
+        nodes.forEach(node -> node.rebalance(now));
+
+        AtomicInteger granted = new AtomicInteger();
+        long durationMillis = 1500;
+        long end = System.currentTimeMillis() + durationMillis;
+
+        List<Thread> threads = new ArrayList<>();
+        for (ProviderRateGovernor node : nodes) {
+            Thread thread = new Thread(() -> {
+                try {
+                    while (System.currentTimeMillis() < end) {
+                        if (node.acquire(Math.max(1, end - System.currentTimeMillis()))) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Ritmo sostenido + ráfaga inicial de cada nodo
+        double maxExpected = globalRate * durationMillis / 1000.0 + globalRate;
+        System.out.println("📊 Envíos concedidos en el clúster: " + granted.get() + " (máximo " + maxExpected + ")");
+        assertTrue(granted.get() <= maxExpected);
+        assertTrue(granted.get() >= globalRate);
+    }
+
+    @Test
+    public void testDailyLimitIsNeverExceededAcrossNodes() {
+        long dailyLimit = 120;
+        List<ProviderRateGovernor> nodes = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            nodes.add(new ProviderRateGovernor("email", "node-" + i, 0, dailyLimit, 25, 60_000, sharedStore));
+        }
+
+        int granted = 0;
+        for (int round = 0; round < 100; round++) {
+            for (ProviderRateGovernor node : nodes) {
+                if (node.tryAcquire() == 0) {
+                    granted++;
+                }
+            }
+        }
+
+        assertEquals(dailyLimit, granted);
+    }
+
+    @Test
+    public void testLostDailyClaimIsRetriedInsteadOfExhaustingTheDay() {
+        // Primera reserva perdida frente a otros nodos con cupo restante, la siguiente gana
+        SendQuotaRepositoryPort contended = mock(SendQuotaRepositoryPort.class);
+        when(contended.claimDailyBudget(eq("email"), any(LocalDate.class), anyLong(), anyLong()))
+                .thenReturn(-1L, 2L, 0L);
+        ProviderRateGovernor node = new ProviderRateGovernor("email", "node-1", 0, 100, 2, 60_000, contended);
+
+        assertTrue(node.tryAcquire() > 0);
+        assertEquals(0, node.tryAcquire());
+        assertEquals(0, node.tryAcquire());
+        // Solo un 0 del almacén agota el día
+        assertEquals(-1, node.tryAcquire());
+        assertEquals(-1, node.tryAcquire());
+        verify(contended, times(3)).claimDailyBudget(eq("email"), any(LocalDate.class), anyLong(), anyLong());
+    }
+}
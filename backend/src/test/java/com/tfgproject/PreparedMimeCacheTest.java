@@ -0,0 +1,115 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.service.PreparedMimeCache;
+import jakarta.mail.BodyPart;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El adjunto de una difusión se codifica una vez y el correo resultante es idéntico al original
+ */
+public class PreparedMimeCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testAttachmentIsEncodedOnceAndRoundTrips() throws Exception {
+        byte[] content = new byte[300_000];
+        new Random(42).nextBytes(content);
+        File file = Files.write(tempDir.resolve("informe.pdf"), content).toFile();
+
+        PreparedMimeCache cache = new PreparedMimeCache();
+        Session session = Session.getInstance(new Properties());
+
+        for (int i = 0; i < 5; i++) {
+            MimeMessage message = new MimeMessage(session);
+            message.setRecipients(jakarta.mail.Message.RecipientType.TO, "user" + i + "@example.com");
+            message.setSubject("Informe");
+            MimeMultipart multipart = new MimeMultipart("mixed");
+            multipart.addBodyPart(cache.bodyPart("msg-1", "Hola, adjunto el informe", false));
+            multipart.addBodyPart(cache.attachmentPart("msg-1", file));
+            message.setContent(multipart);
+            message.saveChanges();
+
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            message.writeTo(raw);
+
+            MimeMessage parsed = new MimeMessage(session, new ByteArrayInputStream(raw.toByteArray()));
+            MimeMultipart parts = (MimeMultipart) parsed.getContent();
+            assertEquals("Hola, adjunto el informe", parts.getBodyPart(0).getContent().toString().trim());
+
+            BodyPart attachment = parts.getBodyPart(1);
+            assertEquals("informe.pdf", attachment.getFileName());
+            assertArrayEquals(content, attachment.getInputStream().readAllBytes());
+        }
+
+        // Cuerpo y adjunto: un fallo cada uno, el resto aciertos
+        assertEquals(2L, cache.getStats().get("misses"));
+        assertEquals(8L, cache.getStats().get("hits"));
+    }
+
+    @Test
+    public void testPersonalizedBodiesAreNotShared() throws Exception {
+        PreparedMimeCache cache = new PreparedMimeCache();
+        cache.bodyPart("msg-2", "Hola Ana", true);
+        BodyPart other = cache.bodyPart("msg-2", "Hola Luis", true);
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        other.writeTo(raw);
+        assertEquals("Hola Luis", new MimeMessage(Session.getInstance(new Properties()),
+                new ByteArrayInputStream(raw.toByteArray())).getContent().toString());
+
+        cache.release("msg-2");
+        assertEquals(0L, cache.getStats().get("bytes"));
+    }
+
+    @Test
+    public void testChunkedEncodingMatchesMimeEncoder() throws Exception {
+        PreparedMimeCache cache = new PreparedMimeCache();
+        Random random = new Random(7);
+        // Vacío, menos de una línea, justo un bloque y varios bloques con resto
+        for (int size : new int[]{0, 1, 57 * 1024, 57 * 1024 * 3 + 100}) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            File file = Files.write(tempDir.resolve("f" + size + ".bin"), content).toFile();
+
+            BodyPart part = cache.attachmentPart(null, file);
+            byte[] encoded = part.getDataHandler().getInputStream().readAllBytes();
+            assertArrayEquals(Base64.getMimeEncoder().encode(content), encoded, "tamaño " + size);
+        }
+    }
+
+    @Test
+    public void testLargePartEvictsUntilUnderLimit() throws Exception {
+        PreparedMimeCache cache = new PreparedMimeCache();
+        ReflectionTestUtils.setField(cache, "maxBytes", 10_000L);
+        for (int i = 0; i < 4; i++) {
+            cache.bodyPart("msg-" + i, "x".repeat(1500), false);
+        }
+
+        // Ocupa más que los cuatro mensajes anteriores juntos: hay que expulsarlos todos
+        File file = Files.write(tempDir.resolve("grande.bin"), new byte[6000]).toFile();
+        cache.attachmentPart("msg-grande", file);
+
+        assertTrue((Long) cache.getStats().get("bytes") <= 10_000L);
+        assertEquals(1, cache.getStats().get("messages"));
+    }
+}
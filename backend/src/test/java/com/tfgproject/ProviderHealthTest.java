@@ -0,0 +1,228 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.AdaptiveConcurrencyLimit;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.ProviderCircuitBreaker;
+import com.tfgproject.infrastructure.service.ProviderCircuitBreaker.State;
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.ProviderUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Circuit breaker, límite AIMD y pausa del listener cuando el proveedor falla
+ */
+public class ProviderHealthTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void testBreakerOpensOnFailuresAndClosesAfterProbes() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(10, 5, 0.5, 1.0, 1000, 100, 2);
+        long now = 0;
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire(now));
+            breaker.onResult(i % 2 == 0, 10 * MS, now);
+        }
+        assertEquals(State.CLOSED, breaker.getState(now));
+        assertTrue(breaker.tryAcquire(now));
+        assertEquals(State.OPEN, breaker.onResult(false, 10 * MS, now));
+        assertFalse(breaker.tryAcquire(now + 50 * MS));
+
+        // Semiabierto: solo dos llamadas de prueba
+        now += 100 * MS;
+        assertTrue(breaker.tryAcquire(now));
+        assertTrue(breaker.tryAcquire(now));
+        assertFalse(breaker.tryAcquire(now));
+        breaker.onResult(true, 10 * MS, now);
+        assertEquals(State.CLOSED, breaker.onResult(true, 10 * MS, now));
+        assertEquals(1, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void testSlowCallsOpenTheBreakerAndFailedProbeReopens() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(5, 5, 0.5, 0.6, 100, 100, 1);
+        for (int i = 0; i < 5; i++) {
+            breaker.tryAcquire(0);
+            breaker.onResult(true, i < 3 ? 500 * MS : 10 * MS, 0);
+        }
+        assertEquals(State.OPEN, breaker.getState(0));
+
+        assertTrue(breaker.tryAcquire(100 * MS));
+        assertEquals(State.OPEN, breaker.onResult(false, 10 * MS, 100 * MS));
+        assertEquals(2, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void testLimitGrowsWhileHealthyAndBacksOffOnLatency() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 0.5, 2.0, 100);
+
+        // Respuestas rápidas con el límite en uso: crecimiento aditivo
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.acquire(0));
+            assertTrue(limit.acquire(0));
+            limit.release(true, 10 * MS);
+            limit.release(true, 10 * MS);
+        }
+        int grown = limit.getLimit();
+        assertTrue(grown > 2, "El límite debe crecer: " + grown);
+
+        // Latencia muy por encima de la mínima: retroceso multiplicativo
+        assertTrue(limit.acquire(0));
+        limit.release(true, 100 * MS);
+        assertEquals(Math.max(1, grown / 2), limit.getLimit(), 1);
+
+        // Bulkhead: lleno y sin espera, la llamada se rechaza
+        int slots = limit.getLimit();
+        for (int i = 0; i < slots; i++) {
+            assertTrue(limit.acquire(0));
+        }
+        assertFalse(limit.acquire(10));
+        assertEquals(1, limit.getRejected());
+    }
+
+    @Test
+    public void testOpenCircuitPausesListenerAndResumesForProbes() throws InterruptedException {
+        RabbitListenerEndpointRegistry listeners = mock(RabbitListenerEndpointRegistry.class);
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(listeners.getListenerContainer(RabbitMQConfig.SMS_LISTENER_ID)).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+
+        ProviderHealthRegistry registry = newRegistry(listeners);
+        for (int i = 0; i < 4; i++) {
+            registry.acquire(ProviderHealthRegistry.SMS);
+            registry.complete(ProviderHealthRegistry.SMS, false, 5 * MS);
+        }
+        assertEquals(State.OPEN, registry.getState(ProviderHealthRegistry.SMS));
+        verify(container, timeout(2000)).stop(any(Runnable.class));
+        assertThrows(ProviderUnavailableException.class, () -> registry.acquire(ProviderHealthRegistry.SMS));
+
+        // Tras la espera el listener vuelve a consumir
+        when(container.isRunning()).thenReturn(false);
+        Thread.sleep(600);
+        registry.resumeRecovered();
+        verify(container).start();
+        assertEquals(State.HALF_OPEN, registry.getState(ProviderHealthRegistry.SMS));
+        registry.acquire(ProviderHealthRegistry.SMS);
+        registry.complete(ProviderHealthRegistry.SMS, true, 5 * MS);
+        assertEquals(State.CLOSED, registry.getState(ProviderHealthRegistry.SMS));
+        verify(listeners, never()).getListenerContainer(RabbitMQConfig.EMAIL_LISTENER_ID);
+    }
+
+    @Test
+    public void testPauseHandsBackQueuedSendsAndWaitsForThoseInFlight() throws InterruptedException {
+        RabbitListenerEndpointRegistry listeners = mock(RabbitListenerEndpointRegistry.class);
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(listeners.getListenerContainer(RabbitMQConfig.SMS_LISTENER_ID)).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+
+        FairShareDispatcher dispatcher = new FairShareDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "enabled", true);
+        ReflectionTestUtils.setField(dispatcher, "workers", 1);
+        ReflectionTestUtils.setField(dispatcher, "quantum", 1);
+        ReflectionTestUtils.setField(dispatcher, "maxInFlightPerUser", 1);
+        ReflectionTestUtils.setField(dispatcher, "ratePerUser", 0.0);
+        dispatcher.start();
+        ProviderHealthRegistry registry = newRegistry(listeners);
+        ReflectionTestUtils.setField(registry, "fairShareDispatcher", dispatcher);
+
+        // Un envío de SMS en curso y otro esperando en la cola virtual
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        dispatcher.submitAll("user-1", "SMS", List.of(
+                droppable("en curso", () -> {
+                    started.countDown();
+                    await(gate);
+                }, dropped),
+                droppable("encolado", () -> { }, dropped)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 4; i++) {
+            registry.acquire(ProviderHealthRegistry.SMS);
+            registry.complete(ProviderHealthRegistry.SMS, false, 5 * MS);
+        }
+
+        // Lo encolado vuelve al broker, pero el listener sigue mientras haya un envío en curso
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (dropped.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of("encolado"), dropped);
+        Thread.sleep(200);
+        verify(container, never()).stop(any(Runnable.class));
+
+        gate.countDown();
+        verify(container, timeout(2000)).stop(any(Runnable.class));
+
+        // Con el canal en pausa lo que aún llegue no se queda en memoria
+        dispatcher.submitAll("user-1", "SMS", List.of(droppable("tardío", () -> { }, dropped)));
+        assertEquals(List.of("encolado", "tardío"), dropped);
+        dispatcher.stop();
+    }
+
+    private static FairShareDispatcher.DroppableTask droppable(String name, Runnable send, List<String> dropped) {
+        return new FairShareDispatcher.DroppableTask() {
+            @Override
+            public void run() {
+                send.run();
+            }
+
+            @Override
+            public void drop() {
+                dropped.add(name);
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ProviderHealthRegistry newRegistry(RabbitListenerEndpointRegistry listeners) {
+        ProviderHealthRegistry registry = new ProviderHealthRegistry();
+        ReflectionTestUtils.setField(registry, "listenerRegistry", listeners);
+        // Lo que registra ChannelRegistry al arrancar
+        registry.registerListener(ProviderHealthRegistry.EMAIL, RabbitMQConfig.EMAIL_LISTENER_ID);
+        registry.registerListener(ProviderHealthRegistry.SMS, RabbitMQConfig.SMS_LISTENER_ID);
+        ReflectionTestUtils.setField(registry, "enabled", true);
+        ReflectionTestUtils.setField(registry, "windowSize", 10);
+        ReflectionTestUtils.setField(registry, "minimumCalls", 4);
+        ReflectionTestUtils.setField(registry, "failureRate", 0.5);
+        ReflectionTestUtils.setField(registry, "slowCallRate", 1.0);
+        ReflectionTestUtils.setField(registry, "slowCallMillis", 1000L);
+        ReflectionTestUtils.setField(registry, "openMillis", 500L);
+        ReflectionTestUtils.setField(registry, "halfOpenCalls", 1);
+        ReflectionTestUtils.setField(registry, "initialLimit", 2);
+        ReflectionTestUtils.setField(registry, "minLimit", 1);
+        ReflectionTestUtils.setField(registry, "maxLimit", 4);
+        ReflectionTestUtils.setField(registry, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(registry, "latencyTolerance", 2.5);
+        ReflectionTestUtils.setField(registry, "maxWaitMillis", 100L);
+        return registry;
+    }
+}
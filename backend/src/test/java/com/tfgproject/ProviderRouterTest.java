@@ -0,0 +1,133 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.adapter.out.stub.StubMessageProvider;
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.ProviderRouter;
+import com.tfgproject.infrastructure.service.ProviderSendMetrics;
+import com.tfgproject.infrastructure.service.ProviderUnavailableException;
+import com.tfgproject.infrastructure.service.SendRateGovernor;
+import com.tfgproject.shared.model.EmailMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reparto ponderado, cambio de proveedor ante fallos o cuota y circuitos abiertos
+ */
+public class ProviderRouterTest {
+
+    private ProviderHealthRegistry health;
+    private SendRateGovernor governor;
+
+    @BeforeEach
+    public void setUp() {
+        health = ProviderTestSupport.health();
+        governor = ProviderTestSupport.openGovernor();
+    }
+
+    @Test
+    public void testLoadIsSpreadByWeight() throws Exception {
+        Stub heavy = new Stub("heavy", null);
+        Stub light = new Stub("light", null);
+        ProviderRouter<EmailMessage> router = router(List.of(heavy, light), "heavy:3,light:1");
+
+        for (int i = 0; i < 400; i++) {
+            assertTrue(router.send(message()));
+        }
+        System.out.println("📊 heavy=" + heavy.getSent() + " light=" + light.getSent());
+        assertEquals(400, heavy.getSent() + light.getSent());
+        assertTrue(heavy.getSent() > light.getSent() * 1.5);
+        assertTrue(light.getSent() > 0);
+    }
+
+    @Test
+    public void testFailsOverToHealthyProviderAndOpensBrokenOne() {
+        Stub broken = new Stub("broken", null);
+        broken.setFailureRate(1.0);
+        Stub backup = new Stub("backup", null);
+        ProviderRouter<EmailMessage> router = router(List.of(broken, backup), "broken:10,backup:1");
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(router.send(message()));
+        }
+        assertEquals(50, backup.getSent());
+        // El circuito del roto se abre: deja de recibir tráfico
+        assertTrue(broken.getFailed() <= 5, "Fallos antes de abrir el circuito: " + broken.getFailed());
+        assertFalse(health.isAvailable("email:broken"));
+    }
+
+    @Test
+    public void testThrottledProviderYieldsToTheNext() {
+        Stub limited = new Stub("limited", "quota:limited");
+        Stub other = new Stub("other", null);
+        when(governor.tryAcquire("quota:limited")).thenReturn(false);
+        ProviderRouter<EmailMessage> router = router(List.of(limited, other), "limited:5,other:1");
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(router.send(message()));
+        }
+        assertEquals(0, limited.getSent());
+        assertEquals(20, other.getSent());
+    }
+
+    @Test
+    public void testExhaustedQuotaRequeuesInsteadOfFailing() {
+        Stub limited = new Stub("limited", "quota:limited");
+        when(governor.tryAcquire("quota:limited")).thenReturn(false);
+        when(governor.acquire("quota:limited")).thenReturn(false);
+        ProviderRouter<EmailMessage> router = router(List.of(limited), "limited");
+
+        assertThrows(ProviderUnavailableException.class, () -> router.send(message()));
+        assertEquals(0, limited.getSent());
+        assertEquals(0, limited.getFailed());
+    }
+
+    @Test
+    public void testAllCircuitsOpenRequeuesInsteadOfFailing() {
+        Stub only = new Stub("only", null);
+        only.setFailureRate(1.0);
+        ProviderRouter<EmailMessage> router = router(List.of(only), "only");
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(router.send(message()));
+        }
+        assertThrows(ProviderUnavailableException.class, () -> router.send(message()));
+    }
+
+    @Test
+    public void testUnknownProvidersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> router(List.of(new Stub("a", null)), "b:1"));
+        assertEquals(Map.of("smtp", 3.0, "ses", 1.0), ProviderRouter.parseWeights(" smtp:3 , ses "));
+    }
+
+    private ProviderRouter<EmailMessage> router(List<Stub> providers, String weights) {
+        return new ProviderRouter<>("email", providers, ProviderRouter.parseWeights(weights),
+                health, governor, new ProviderSendMetrics());
+    }
+
+    private static EmailMessage message() {
+        return new EmailMessage("destino@example.com", "Asunto", "Texto");
+    }
+
+    private static final class Stub extends StubMessageProvider<EmailMessage> {
+        private final String quotaKey;
+
+        Stub(String name, String quotaKey) {
+            super(name, 0, 0);
+            this.quotaKey = quotaKey;
+        }
+
+        @Override
+        public String quotaKey(EmailMessage message) {
+            return quotaKey;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.tfgproject;
+
+import com.tfgproject.infrastructure.service.ProviderHealthRegistry;
+import com.tfgproject.infrastructure.service.SendRateGovernor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Piezas comunes para los tests que montan un ProviderRouter sin contexto de Spring
+ */
+public final class ProviderTestSupport {
+
+    private ProviderTestSupport() {
+    }
+
+    /**
+     * Registro de salud con circuitos activos: abre tras 5 llamadas con la mitad fallidas
+     */
+    public static ProviderHealthRegistry health() {
+        ProviderHealthRegistry health = new ProviderHealthRegistry();
+        ReflectionTestUtils.setField(health, "enabled", true);
+        ReflectionTestUtils.setField(health, "windowSize", 10);
+        ReflectionTestUtils.setField(health, "minimumCalls", 5);
+        ReflectionTestUtils.setField(health, "failureRate", 0.5);
+        ReflectionTestUtils.setField(health, "slowCallRate", 1.0);
+        ReflectionTestUtils.setField(health, "slowCallMillis", 10_000L);
+        ReflectionTestUtils.setField(health, "openMillis", 60_000L);
+        ReflectionTestUtils.setField(health, "halfOpenCalls", 1);
+        ReflectionTestUtils.setField(health, "initialLimit", 4);
+        ReflectionTestUtils.setField(health, "minLimit", 1);
+        ReflectionTestUtils.setField(health, "maxLimit", 8);
+        ReflectionTestUtils.setField(health, "backoffRatio", 0.9);
+        ReflectionTestUtils.setField(health, "latencyTolerance", 100.0);
+        ReflectionTestUtils.setField(health, "maxWaitMillis", 100L);
+        return health;
+    }
+
+    /**
+     * Gobernador que concede todos los permisos (cada test puede restringir claves concretas)
+     */
+    public static SendRateGovernor openGovernor() {
+        SendRateGovernor governor = mock(SendRateGovernor.class);
+        when(governor.tryAcquire(anyString())).thenReturn(true);
+        when(governor.acquire(anyString())).thenReturn(true);
+        return governor;
+    }
+}
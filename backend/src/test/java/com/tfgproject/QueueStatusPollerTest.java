@@ -0,0 +1,128 @@
+package com.tfgproject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.tfgproject.application.dto.response.QueueStatusResponse;
+import com.tfgproject.infrastructure.channel.EmailChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.service.QueueStatusPoller;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * El poller lee la API de gestión (o AMQP como respaldo) y las lecturas sirven la caché
+ */
+public class QueueStatusPollerTest {
+
+    private static final String QUEUES_JSON = "["
+            + "{\"name\":\"email.queue\",\"messages\":12,\"messages_ready\":10,\"messages_unacknowledged\":2,"
+            + "\"consumers\":3,\"state\":\"running\",\"message_stats\":{\"publish_details\":{\"rate\":40.5},"
+            + "\"deliver_get_details\":{\"rate\":38.0}}},"
+            + "{\"name\":\"email.dlq\",\"messages\":4,\"messages_ready\":4,\"messages_unacknowledged\":0,\"consumers\":0},"
+            + "{\"name\":\"otra.cola\",\"messages\":99}]";
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private AmqpAdmin amqpAdmin;
+    private QueueStatusPoller poller;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/queues/", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = QUEUES_JSON.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        RabbitMQConfig config = new RabbitMQConfig();
+        amqpAdmin = mock(AmqpAdmin.class);
+        poller = new QueueStatusPoller();
+        ReflectionTestUtils.setField(poller, "amqpAdmin", amqpAdmin);
+        ReflectionTestUtils.setField(poller, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(poller, "declaredGroups",
+                List.of(config.channelTopology(List.of(new EmailChannel(), new SmsChannel()))));
+        ReflectionTestUtils.setField(poller, "managementUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(poller, "username", "guest");
+        ReflectionTestUtils.setField(poller, "password", "guest");
+        ReflectionTestUtils.setField(poller, "virtualHost", "/");
+        ReflectionTestUtils.setField(poller, "timeoutMillis", 2000L);
+        ReflectionTestUtils.setField(poller, "staleMillis", 15000L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testManagementSampleWithRatesAndDeadLetterDepth() {
+        assertEquals("UNAVAILABLE", poller.getStatus().getStatus());
+        assertEquals(RabbitMQConfig.EMAIL_DLQ, poller.getMonitoredQueues().get(RabbitMQConfig.EMAIL_QUEUE));
+
+        poller.poll();
+        QueueStatusResponse status = poller.getStatus();
+        assertEquals("ACTIVE", status.getStatus());
+        assertEquals(QueueStatusPoller.SOURCE_MANAGEMENT, status.getSource());
+        assertFalse(status.getStale());
+
+        QueueStatusResponse.QueueInfo email = status.getQueues().get(RabbitMQConfig.EMAIL_QUEUE);
+        assertEquals(12, email.getMessageCount());
+        assertEquals(3, email.getConsumerCount());
+        assertEquals(40.5, email.getPublishRate(), 0.001);
+        assertEquals(38.0, email.getDeliverRate(), 0.001);
+        assertEquals(4L, email.getDeadLetterCount());
+        assertFalse(status.getQueues().containsKey("otra.cola"));
+
+        // Muchas lecturas, una sola petición al broker
+        for (int i = 0; i < 100; i++) {
+            poller.getStatus();
+        }
+        assertEquals(1, requests.get());
+        verify(amqpAdmin, never()).getQueueInfo(anyString());
+    }
+
+    @Test
+    public void testFallsBackToAmqpAndKeepsLastSampleWhenBrokerIsDown() {
+        server.stop(0);
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.SMS_QUEUE)).thenReturn(new QueueInformation(RabbitMQConfig.SMS_QUEUE, 5, 1));
+        when(amqpAdmin.getQueueInfo(RabbitMQConfig.SMS_DLQ)).thenReturn(new QueueInformation(RabbitMQConfig.SMS_DLQ, 2, 0));
+
+        poller.poll();
+        QueueStatusResponse status = poller.getStatus();
+        assertEquals(QueueStatusPoller.SOURCE_AMQP, status.getSource());
+        assertEquals(5, status.getQueues().get(RabbitMQConfig.SMS_QUEUE).getMessageCount());
+        assertEquals(2L, status.getQueues().get(RabbitMQConfig.SMS_QUEUE).getDeadLetterCount());
+
+        // Sin broker: se conserva la muestra y pasa a obsoleta
+        when(amqpAdmin.getQueueInfo(anyString())).thenThrow(new IllegalStateException("sin conexión"));
+        ReflectionTestUtils.setField(poller, "staleMillis", -1L);
+        poller.poll();
+        assertTrue(poller.getStatus().getStale());
+        assertEquals(5, poller.getQueue(RabbitMQConfig.SMS_QUEUE).get().getMessageCount());
+    }
+}
@@ -0,0 +1,250 @@
+package com.tfgproject;
+
+import com.tfgproject.application.dto.request.SegmentRequest;
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.EmailChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
+import com.tfgproject.infrastructure.segment.SegmentBitmapCache;
+import com.tfgproject.infrastructure.segment.SegmentExpression;
+import com.tfgproject.infrastructure.segment.SegmentSendJob;
+import com.tfgproject.infrastructure.segment.SegmentService;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.BatchPublishException;
+import com.tfgproject.shared.model.QueueMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Segmentos de audiencia: análisis de expresiones, evaluación con bitmaps y volcado por bloques
+ */
+public class SegmentEngineTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SegmentBitmapCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:segments-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE categories (id BIGINT PRIMARY KEY, name VARCHAR(255), parent_id BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE contacts (id BIGINT PRIMARY KEY, email VARCHAR(255), phone VARCHAR(255), " +
+                "whatsapp_id VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE category_contact (category_id BIGINT NOT NULL, contact_id BIGINT NOT NULL, " +
+                "PRIMARY KEY (category_id, contact_id))");
+
+        jdbcTemplate.update("INSERT INTO categories VALUES (1, 'Trabajo', NULL), (2, 'Gerencia', 1), " +
+                "(3, 'Grupo de Pesca', NULL), (4, 'Pesca de Río', 3), (5, 'Unsubscribed', NULL)");
+        jdbcTemplate.update("INSERT INTO contacts VALUES (1, 'a@x.com', '600', NULL), (2, 'b@x.com', NULL, NULL), " +
+                "(3, NULL, '601', NULL), (4, 'd@x.com', '602', 'w4'), (5, 'e@x.com', '603', NULL), (6, NULL, NULL, NULL)");
+        jdbcTemplate.update("INSERT INTO category_contact VALUES (1, 1), (2, 2), (3, 3), (4, 4), (4, 5), (5, 5), (1, 6)");
+
+        cache = new SegmentBitmapCache();
+        ReflectionTestUtils.setField(cache, "jdbcTemplate", jdbcTemplate);
+    }
+
+    private int[] eval(String expression) {
+        return cache.evaluate(SegmentExpression.parse(expression)).toArray();
+    }
+
+    @Test
+    public void parsesPrecedenceQuotesAndMultiWordNames() {
+        assertEquals("((#1 AND NOT #5) OR #3)", SegmentExpression.parse("#1 and not #5 or #3").toString());
+        assertEquals("((\"Trabajo\" OR \"Grupo de Pesca\") AND hasphone)",
+                SegmentExpression.parse("(Trabajo OR Grupo de Pesca) && hasPhone").toString());
+        assertEquals("(\"Pesca de Río\" AND NOT haswhatsapp)",
+                SegmentExpression.parse("\"Pesca de Río\" & !hasWhatsapp").toString());
+
+        assertThrows(IllegalArgumentException.class, () -> SegmentExpression.parse("(Trabajo OR"));
+        assertThrows(IllegalArgumentException.class, () -> SegmentExpression.parse("Trabajo AND AND Pesca"));
+        assertThrows(IllegalArgumentException.class, () -> SegmentExpression.parse("\"sin cerrar"));
+    }
+
+    @Test
+    public void categoriesIncludeSubcategoriesAndCombineWithAttributes() {
+        assertArrayEquals(new int[]{1, 2, 6}, eval("Trabajo"));
+        assertArrayEquals(new int[]{3, 4, 5}, eval("grupo de pesca"));
+        assertArrayEquals(new int[]{1, 3, 4}, eval("(Trabajo OR Grupo de Pesca) AND NOT Unsubscribed AND hasPhone"));
+        assertArrayEquals(new int[]{3, 6}, eval("NOT hasEmail"));
+        assertArrayEquals(new int[]{4}, eval("#4 AND hasWhatsapp"));
+        assertArrayEquals(new int[]{1, 2, 3, 4, 6}, eval("all AND NOT Unsubscribed"));
+
+        assertThrows(IllegalArgumentException.class, () -> eval("Inexistente"));
+    }
+
+    @Test
+    public void bitmapsFollowContactAndCategoryChanges() {
+        assertArrayEquals(new int[]{1, 2, 6}, eval("Trabajo"));
+        assertArrayEquals(new int[]{1, 4, 5}, eval("hasPhone AND hasEmail"));
+
+        jdbcTemplate.update("INSERT INTO category_contact VALUES (2, 3)");
+        cache.membershipAdded(2L, Contact.builder().id(3L).name("c").phone("601").build());
+        assertArrayEquals(new int[]{1, 2, 3, 6}, eval("Trabajo"));
+
+        cache.contactSaved(Contact.builder().id(3L).name("c").email("c@x.com").phone("601").build());
+        assertArrayEquals(new int[]{1, 3, 4, 5}, eval("hasPhone AND hasEmail"));
+
+        cache.contactRemoved(1L);
+        assertArrayEquals(new int[]{2, 3, 6}, eval("Trabajo"));
+
+        // Operación masiva y cambio de jerarquía: se relee al usarse
+        jdbcTemplate.update("INSERT INTO category_contact VALUES (5, 4)");
+        cache.membershipsChanged(5L);
+        jdbcTemplate.update("UPDATE categories SET name = 'Bajas' WHERE id = 5");
+        cache.categoryUpdated(5L);
+        assertArrayEquals(new int[]{4, 5}, eval("Bajas"));
+
+        jdbcTemplate.update("INSERT INTO contacts VALUES (7, 'g@x.com', NULL, NULL)");
+        cache.contactsImported(6L);
+        assertArrayEquals(new int[]{2, 3, 4, 5, 7}, eval("hasEmail"));
+    }
+
+    private SegmentService segmentService(AsyncMessagePublisher publisher) {
+        SegmentService service = new SegmentService();
+        ReflectionTestUtils.setField(service, "bitmapCache", cache);
+        ReflectionTestUtils.setField(service, "messagePublisher", publisher);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "channelRegistry",
+                new ChannelRegistry(List.of(new EmailChannel(), new SmsChannel())));
+        ReflectionTestUtils.setField(service, "taskExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        return service;
+    }
+
+    @Test
+    public void sendStreamsSegmentInBatches() {
+        AsyncMessagePublisher publisher = mock(AsyncMessagePublisher.class);
+        List<List<String>> batches = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<QueueMessage> messages = invocation.getArgument(0);
+            batches.add(messages.stream().map(message -> message.getRecipients().get(0)).toList());
+            return null;
+        }).when(publisher).publishBatch(anyList());
+
+        SegmentRequest request = new SegmentRequest("Trabajo OR Grupo de Pesca", "sms", null, "Hola", null, "u1");
+        Map<String, Object> result = segmentService(publisher).startSend(request).toMap();
+
+        // 6 contactos en 3 bloques; 2 y 6 no tienen teléfono
+        assertEquals("COMPLETED", result.get("status"));
+        assertEquals(6L, result.get("segmentSize"));
+        assertEquals(4L, result.get("queued"));
+        assertEquals(2L, result.get("skipped"));
+        assertEquals(List.of(List.of("600"), List.of("601", "602"), List.of("603")), batches);
+    }
+
+    @Test
+    public void failedBatchesAreCountedAndSendContinues() {
+        AsyncMessagePublisher publisher = mock(AsyncMessagePublisher.class);
+        List<Integer> published = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<QueueMessage> messages = invocation.getArgument(0);
+            published.add(messages.size());
+            if (published.size() == 1) {
+                throw new IllegalStateException("broker caído");
+            }
+            if (published.size() == 2) {
+                throw new BatchPublishException("sin confirmación", Set.of(messages.get(1).getId()));
+            }
+            return null;
+        }).when(publisher).publishBatch(anyList());
+
+        SegmentRequest request = new SegmentRequest("Trabajo OR Grupo de Pesca", "sms", null, "Hola", null, "u1");
+        SegmentService service = segmentService(publisher);
+        SegmentSendJob job = service.startSend(request);
+
+        // Bloque 1 perdido entero, del 2 falla un mensaje, el 3 sale
+        assertEquals(List.of(1, 2, 1), published);
+        assertEquals(SegmentSendJob.Status.COMPLETED, job.getStatus());
+        assertEquals(2L, job.getFailed());
+        assertEquals(2L, job.getQueued());
+        assertSame(job, service.getJob(job.getId()).orElseThrow());
+    }
+
+    @Test
+    public void invalidExpressionIsRejectedBeforeStarting() {
+        SegmentService service = segmentService(mock(AsyncMessagePublisher.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.startSend(new SegmentRequest("Trabajo AND (", "email", "A", "Hola", null, null)));
+    }
+
+    @Test
+    public void evaluatesMillionsOfContactsInMilliseconds() {
+        int contacts = 5_000_000;
+        Random random = new Random(7);
+        RoaringBitmap all = RoaringBitmap.bitmapOfRange(1, contacts + 1);
+        RoaringBitmap phone = new RoaringBitmap();
+        RoaringBitmap trabajo = new RoaringBitmap();
+        RoaringBitmap pesca = new RoaringBitmap();
+        RoaringBitmap unsubscribed = new RoaringBitmap();
+        for (int id = 1; id <= contacts; id++) {
+            if (random.nextInt(10) < 7) phone.add(id);
+            if (random.nextInt(10) < 3) trabajo.add(id);
+            if (random.nextInt(10) < 2) pesca.add(id);
+            if (random.nextInt(100) < 5) unsubscribed.add(id);
+        }
+        for (RoaringBitmap bitmap : List.of(phone, trabajo, pesca, unsubscribed)) {
+            bitmap.runOptimize();
+        }
+
+        SegmentExpression.Source source = new SegmentExpression.Source() {
+            @Override
+            public RoaringBitmap all() {
+                return all;
+            }
+
+            @Override
+            public RoaringBitmap attribute(String attribute) {
+                return phone;
+            }
+
+            @Override
+            public RoaringBitmap category(String name, Long id) {
+                return switch (name) {
+                    case "Trabajo" -> trabajo;
+                    case "Pesca" -> pesca;
+                    default -> unsubscribed;
+                };
+            }
+        };
+        SegmentExpression expression = SegmentExpression.parse("(Trabajo OR Pesca) AND NOT Unsubscribed AND hasPhone");
+
+        for (int i = 0; i < 20; i++) {
+            expression.evaluate(source);
+        }
+        long start = System.nanoTime();
+        int runs = 50;
+        RoaringBitmap result = null;
+        for (int i = 0; i < runs; i++) {
+            result = expression.evaluate(source);
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0 / runs;
+        System.out.printf("🎯 Segmento sobre %d contactos: %d resultados en %.2f ms%n",
+                contacts, result.getLongCardinality(), millis);
+
+        RoaringBitmap expected = RoaringBitmap.andNot(RoaringBitmap.and(RoaringBitmap.or(trabajo, pesca), phone), unsubscribed);
+        assertEquals(expected, result);
+        assertTrue(millis < 200, "evaluación en milisegundos");
+    }
+}
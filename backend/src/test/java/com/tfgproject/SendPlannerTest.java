@@ -0,0 +1,136 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.channel.ChannelRegistry;
+import com.tfgproject.infrastructure.channel.EmailChannel;
+import com.tfgproject.infrastructure.channel.SmsChannel;
+import com.tfgproject.infrastructure.channel.WhatsAppChannel;
+import com.tfgproject.infrastructure.service.AsyncMessagePublisher;
+import com.tfgproject.infrastructure.service.SendPlan;
+import com.tfgproject.infrastructure.service.SendPlanner;
+import com.tfgproject.shared.model.QueueMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Planificación de envíos multicanal: un mensaje por contacto y dirección
+ */
+public class SendPlannerTest {
+
+    private static final int EMAIL_AND_SMS = SendPlan.EMAIL | SendPlan.SMS;
+
+    private AsyncMessagePublisher publisher;
+    private SendPlanner planner;
+
+    @BeforeEach
+    public void setUp() {
+        publisher = mock(AsyncMessagePublisher.class);
+        planner = new SendPlanner();
+        ReflectionTestUtils.setField(planner, "messagePublisher", publisher);
+        ReflectionTestUtils.setField(planner, "channelRegistry",
+                new ChannelRegistry(List.of(new EmailChannel(), new SmsChannel(), new WhatsAppChannel())));
+    }
+
+    private static Contact contact(long id, String email, String phone) {
+        return Contact.builder().id(id).name("Contacto " + id).email(email).phone(phone).build();
+    }
+
+    @Test
+    public void preferredPolicySendsOnlyFirstAvailableChannel() {
+        SendPlan plan = planner.plan(List.of(
+                contact(1, "a@x.com", "600000001"),
+                contact(2, null, "600000002"),
+                contact(3, "c@x.com", null)), EMAIL_AND_SMS, null);
+
+        assertEquals(List.of("a@x.com", "c@x.com"), plan.getEmails());
+        assertEquals(List.of("600000002"), plan.getPhones());   // sin email cae al SMS
+        assertEquals(3, plan.getMessageCount());
+    }
+
+    @Test
+    public void allPolicySendsEveryRequestedChannel() {
+        SendPlan plan = planner.plan(List.of(
+                contact(1, "a@x.com", "600000001"),
+                contact(2, null, "600000002")), EMAIL_AND_SMS, SendPlanner.POLICY_ALL);
+
+        assertEquals(List.of("a@x.com"), plan.getEmails());
+        assertEquals(List.of("600000001", "600000002"), plan.getPhones());
+        assertEquals(SendPlan.EMAIL | SendPlan.SMS, plan.channelsAt(0));
+    }
+
+    @Test
+    public void priorityOrderIsConfigurable() {
+        ReflectionTestUtils.setField(planner, "priority", "SMS,EMAIL");
+
+        SendPlan plan = planner.plan(List.of(contact(1, "a@x.com", "600000001")), EMAIL_AND_SMS, null);
+
+        assertTrue(plan.getEmails().isEmpty());
+        assertEquals(List.of("600000001"), plan.getPhones());
+    }
+
+    @Test
+    public void repeatedContactsAndSharedAddressesProduceOneMessage() {
+        Contact repeated = contact(1, "a@x.com", "600000001");
+        SendPlan plan = planner.plan(List.of(
+                repeated,
+                repeated,                                  // en dos subcategorías
+                contact(2, "A@X.com ", "600000002"),       // mismo email con otro formato
+                contact(3, null, "600 000 002")), EMAIL_AND_SMS, SendPlanner.POLICY_ALL);
+
+        assertEquals(List.of("a@x.com"), plan.getEmails());
+        assertEquals(List.of("600000001", "600000002"), plan.getPhones());
+
+        Map<String, Object> summary = plan.toSummary();
+        assertEquals(3, summary.get("contacts"));
+        assertEquals(1, summary.get("duplicateContacts"));
+        assertEquals(2, summary.get("sharedAddresses"));
+    }
+
+    @Test
+    public void contactsWithoutRequestedChannelAreUnreachable() {
+        SendPlan plan = planner.plan(List.of(
+                contact(1, null, "600000001"),
+                contact(2, "", null)), SendPlan.EMAIL, null);
+
+        assertTrue(plan.isEmpty());
+        assertEquals(2, plan.getUnreachable());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void dispatchBroadcastsEmailsAndBatchesSms() {
+        when(publisher.broadcastMessage(any(), anyString(), anyString(), anyString())).thenReturn("broadcast-1");
+        SendPlan plan = planner.plan(List.of(
+                contact(1, "a@x.com", null),
+                contact(2, "b@x.com", null),
+                contact(3, null, "600000003"),
+                contact(4, null, "600000004")), EMAIL_AND_SMS, null);
+
+        Map<String, Object> result = planner.dispatch(plan, "Asunto", "Hola", null, "u1");
+
+        verify(publisher).broadcastMessage(eq(List.of("a@x.com", "b@x.com")), eq("Hola"), eq("Asunto"), eq("u1"));
+        ArgumentCaptor<List<QueueMessage>> batch = ArgumentCaptor.forClass(List.class);
+        verify(publisher, times(1)).publishBatch(batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertEquals("u1", batch.getValue().get(0).getUserId());
+        assertEquals("SMS", batch.getValue().get(0).getType());
+        assertEquals(List.of("600000003"), batch.getValue().get(0).getRecipients());
+        assertEquals("broadcast-1", result.get("messageId"));
+        assertEquals(4, result.get("totalRecipients"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.tfgproject;
+
+import com.tfgproject.application.dto.response.CategorySummary;
+import com.tfgproject.application.dto.response.ContactSummary;
+import com.tfgproject.domain.model.Category;
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.adapter.out.persistence.CategoryRepository;
+import com.tfgproject.infrastructure.adapter.out.persistence.ContactRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Listados paginados: proyecciones construidas en la consulta, por página y por cursor
+ */
+@DataJpaTest
+public class SummaryPaginationTest {
+
+    @Autowired
+    private ContactRepository contactRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Test
+    public void contactSummariesCarryChannelFlags() {
+        assertFalse(contactRepository.existsByIdIsNotNull());
+
+        Contact both = contactRepository.save(Contact.builder().name("Ana").email("ana@example.com").phone("644023859").build());
+        Contact emailOnly = contactRepository.save(Contact.builder().name("Luis").email("luis@example.com").phone("").build());
+        contactRepository.save(Contact.builder().name("Marta").whatsappId("34655111222").build());
+
+        assertTrue(contactRepository.existsByIdIsNotNull());
+
+        Page<ContactSummary> page = contactRepository.findSummaries(PageRequest.of(0, 2, Sort.by("id")));
+        assertEquals(3, page.getTotalElements());
+        assertEquals(2, page.getContent().size());
+
+        ContactSummary first = page.getContent().get(0);
+        assertEquals(both.getId(), first.getId());
+        assertTrue(first.isHasEmail() && first.isHasPhone() && !first.isHasWhatsapp());
+
+        // Teléfono vacío cuenta como sin teléfono
+        ContactSummary second = page.getContent().get(1);
+        assertEquals(emailOnly.getId(), second.getId());
+        assertTrue(second.isHasEmail());
+        assertFalse(second.isHasPhone());
+    }
+
+    @Test
+    public void keysetWalksWholeTableInOrder() {
+        for (int i = 0; i < 7; i++) {
+            contactRepository.save(Contact.builder().name("Contacto " + i).build());
+        }
+
+        List<Long> seen = new java.util.ArrayList<>();
+        Long afterId = 0L;
+        List<ContactSummary> chunk;
+        do {
+            chunk = contactRepository.findSummariesAfter(afterId, Limit.of(3));
+            chunk.forEach(summary -> seen.add(summary.getId()));
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == 3);
+
+        assertEquals(7, seen.size());
+        assertEquals(seen.stream().sorted().toList(), seen);
+    }
+
+    @Test
+    public void categorySummariesIncludeRootsAndChildren() {
+        Category root = categoryRepository.save(Category.builder().name("Trabajo").build());
+        categoryRepository.save(Category.builder().name("Gerencia").parent(root).build());
+
+        List<CategorySummary> summaries = categoryRepository.findSummariesAfter(0L, Limit.of(10));
+
+        assertEquals(2, summaries.size());
+        assertNull(summaries.get(0).getParentId());
+        assertEquals(root.getId(), summaries.get(1).getParentId());
+        assertEquals(2, categoryRepository.findSummaries(PageRequest.of(0, 10)).getTotalElements());
+    }
+}
@@ -0,0 +1,74 @@
+package com.tfgproject;
+
+import com.tfgproject.domain.model.Contact;
+import com.tfgproject.infrastructure.template.CompiledTemplate;
+import com.tfgproject.infrastructure.template.TemplateEngine;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plantillas compiladas una vez y renderizadas por destinatario
+ */
+public class TemplateEngineTest {
+
+    @Test
+    public void testRendersContactFieldsAndDefaults() {
+        Contact contact = Contact.builder().name("Ana García").email("ana@example.com").build();
+        CompiledTemplate template = CompiledTemplate.compile(
+                "Hola {{firstName}} ({{ email }}), tu teléfono: {{phone|sin teléfono}}");
+
+        assertEquals("Hola Ana (ana@example.com), tu teléfono: sin teléfono",
+                template.render(contact, "ana@example.com"));
+        assertEquals("Hola  (), tu teléfono: sin teléfono", template.render(null, "x@example.com"));
+    }
+
+    @Test
+    public void testHtmlBodiesEscapeContactValues() {
+        Contact contact = Contact.builder().name("<a href=\"https://evil.example\">Ana</a>").build();
+        TemplateEngine engine = new TemplateEngine();
+        String source = "<p>Hola {{name}}, {{notes|<b>sin notas</b>}}</p>";
+
+        assertEquals("<p>Hola &lt;a href=&quot;https://evil.example&quot;&gt;Ana&lt;/a&gt;, &lt;b&gt;sin notas&lt;/b&gt;</p>",
+                engine.render(source, contact, "ana@example.com", true));
+        // Texto plano (SMS, asunto): sin escapar
+        assertEquals("<p>Hola <a href=\"https://evil.example\">Ana</a>, <b>sin notas</b></p>",
+                engine.render(source, contact, "ana@example.com"));
+        assertEquals("Hola García", CompiledTemplate.compile("Hola {{name}}")
+                .render(Contact.builder().name("García").build(), "x", true));
+    }
+
+    @Test
+    public void testUnknownPlaceholdersAndPlainTextAreKept() {
+        CompiledTemplate template = CompiledTemplate.compile("Precio {{precio}} para {{recipient}} {{sin cerrar");
+        assertEquals("Precio {{precio}} para 644023859 {{sin cerrar", template.render(null, "644023859"));
+        assertFalse(template.needsContact());
+
+        String plain = "Mensaje sin marcadores";
+        assertSame(plain, CompiledTemplate.compile(plain).render(null, "x"));
+    }
+
+    @Test
+    public void testCompiledTemplatesAreCachedWithLruEviction() {
+        TemplateEngine engine = new TemplateEngine();
+        ReflectionTestUtils.setField(engine, "cacheSize", 2);
+
+        CompiledTemplate first = engine.compile("A {{name}}");
+        assertSame(first, engine.compile("A {{name}}"));
+
+        engine.compile("B {{name}}");
+        engine.compile("A {{name}}");   // A pasa a ser la más reciente
+        engine.compile("C {{name}}");   // expulsa B
+
+        Map<String, Object> stats = engine.getCacheStats();
+        assertEquals(2, stats.get("size"));
+        assertSame(first, engine.compile("A {{name}}"));
+        assertTrue(engine.needsContact("Hola {{nombre}}"));
+    }
+}
@@ -0,0 +1,258 @@
+package com.tfgproject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.sun.net.httpserver.HttpServer;
+import com.tfgproject.domain.service.ContactService;
+import com.tfgproject.domain.service.MessageStatusService;
+import com.tfgproject.infrastructure.adapter.out.whatsapp.GraphApiWhatsAppProvider;
+import com.tfgproject.infrastructure.config.RabbitMQConfig;
+import com.tfgproject.infrastructure.messaging.WhatsAppConsumer;
+import com.tfgproject.infrastructure.service.FairShareDispatcher;
+import com.tfgproject.infrastructure.service.PipelineLatencyRecorder;
+import com.tfgproject.infrastructure.service.ProviderSendMetrics;
+import com.tfgproject.infrastructure.service.RecipientRateLimiter;
+import com.tfgproject.infrastructure.service.WhatsAppService;
+import com.tfgproject.infrastructure.template.TemplateEngine;
+import com.tfgproject.infrastructure.workflow.DeliveryWorkflowEngine;
+import com.tfgproject.shared.model.QueueMessage;
+import com.tfgproject.shared.model.WhatsAppMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Canal de WhatsApp: petición a la Cloud API, ritmo por número y consumidor por lotes
+ */
+public class WhatsAppChannelTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private HttpServer server;
+    private final List<JsonNode> requests = new CopyOnWriteArrayList<>();
+    private final List<String> authHeaders = new CopyOnWriteArrayList<>();
+    private final List<String> paths = new CopyOnWriteArrayList<>();
+    private volatile int responseStatus = 200;
+
+    @BeforeEach
+    public void startFakeGraphApi() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            paths.add(exchange.getRequestURI().getPath());
+            authHeaders.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            requests.add(JSON.readTree(exchange.getRequestBody().readAllBytes()));
+
+            byte[] body = (responseStatus == 200
+                    ? "{\"messaging_product\":\"whatsapp\",\"messages\":[{\"id\":\"wamid.TEST\"}]}"
+                    : "{\"error\":{\"message\":\"rate limit\",\"code\":130429}}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(responseStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void stopFakeGraphApi() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGraphProviderPostsTextMessage() {
+        GraphApiWhatsAppProvider provider = provider("123456");
+
+        assertTrue(provider.send(new WhatsAppMessage("+34 600 111 222", "Hola")));
+
+        assertEquals(List.of("/v21.0/123456/messages"), paths);
+        assertEquals("Bearer token", authHeaders.get(0));
+        JsonNode body = requests.get(0);
+        assertEquals("whatsapp", body.path("messaging_product").asText());
+        assertEquals("34600111222", body.path("to").asText());
+        assertEquals("text", body.path("type").asText());
+        assertEquals("Hola", body.path("text").path("body").asText());
+        assertEquals("whatsapp:123456", provider.quotaKey(null));
+    }
+
+    @Test
+    public void testGraphProviderReportsErrorsAndMissingConfig() {
+        responseStatus = 429;
+        assertFalse(provider("123456").send(new WhatsAppMessage("600111222", "Hola")));
+
+        // Sin número de empresa no se llega a llamar a la API
+        assertFalse(provider("").send(new WhatsAppMessage("600111222", "Hola")));
+        assertEquals(1, requests.size());
+        assertEquals("34600111222", GraphApiWhatsAppProvider.normalizeNumber("600 111 222"));
+        assertEquals("447700900123", GraphApiWhatsAppProvider.normalizeNumber("+44 7700 900123"));
+    }
+
+    @Test
+    public void testRecipientLimiterPacesEachNumber() {
+        RecipientRateLimiter limiter = new RecipientRateLimiter(1000, 1000);
+        long now = System.nanoTime();
+        long second = 1_000_000_000L;
+
+        assertEquals(1024, limiter.getSlots());
+        assertEquals(0, limiter.reserve("600111222", now, 5 * second));
+        assertEquals(second, limiter.reserve("600111222", now, 5 * second));
+        assertEquals(2 * second, limiter.reserve("600111222", now, 5 * second));
+        // Otro número no se ve afectado
+        assertEquals(0, limiter.reserve("600333444", now, 5 * second));
+
+        // Una espera mayor que el máximo no reserva nada
+        assertEquals(-1, limiter.reserve("600111222", now, second));
+        assertEquals(3 * second, limiter.reserve("600111222", now, 5 * second));
+        assertEquals(0, limiter.reserve("600111222", now + 10 * second, 5 * second));
+    }
+
+    @Test
+    public void testConsumerSendsOncePerNumberAndDefersTheRest() throws Exception {
+        Fixture fixture = new Fixture();
+
+        fixture.process(
+                message("600111222", "Primero"),
+                message("600333444", "Otro número"),
+                message("600111222", "Segundo"));
+
+        // Los dos primeros números salen ya; el segundo mensaje al mismo número espera en la cola de retardo
+        assertEquals(2, requests.size());
+        verify(fixture.rabbitTemplate, times(1)).convertAndSend(eq(RabbitMQConfig.WHATSAPP_DELAY_QUEUE), any(QueueMessage.class));
+        verify(fixture.workflowEngine, times(2)).report(any(QueueMessage.class), eq(true));
+
+        // El aplazado ya está en la cola de retardo, así que se confirman los tres originales
+        verify(fixture.channel).basicAck(1L, false);
+        verify(fixture.channel).basicAck(2L, false);
+        verify(fixture.channel).basicAck(3L, false);
+        verify(fixture.channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDroppedSendsGoBackAsRecipientCopies() throws Exception {
+        Fixture fixture = new Fixture();
+        // El reparto se para antes de ejecutar ningún envío
+        doAnswer(invocation -> {
+            for (Runnable task : (List<Runnable>) invocation.getArgument(2)) {
+                ((FairShareDispatcher.DroppableTask) task).drop();
+            }
+            return null;
+        }).when(fixture.dispatcher).submitAll(anyString(), anyString(), anyList());
+
+        QueueMessage message = message("600111222", "Hola");
+        message.setRecipients(List.of("600111222", "600333444"));
+        fixture.process(message);
+
+        // Cada destinatario vuelve como copia propia y el original se confirma, no se devuelve entero
+        assertEquals(0, requests.size());
+        verify(fixture.rabbitTemplate, times(2)).convertAndSend(eq(RabbitMQConfig.DIRECT_EXCHANGE),
+                eq(RabbitMQConfig.WHATSAPP_ROUTING_KEY), argThat((QueueMessage copy) -> copy.getRecipients().size() == 1));
+        verify(fixture.channel).basicAck(1L, false);
+        verify(fixture.channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+    }
+
+    @Test
+    public void testFailedSendIsReportedToTheWorkflow() throws Exception {
+        responseStatus = 400;
+        Fixture fixture = new Fixture();
+
+        fixture.process(message("600111222", "Hola"));
+
+        verify(fixture.workflowEngine).report(any(QueueMessage.class), eq(false));
+        verify(fixture.channel).basicAck(1L, false);
+        verify(fixture.channel, never()).basicNack(anyLong(), anyBoolean(), anyBoolean());
+        verify(fixture.messageStatusService).updateMessageStatus(anyString(), any(), eq("Error enviando WhatsApp"));
+    }
+
+    private GraphApiWhatsAppProvider provider(String phoneNumberId) {
+        return new GraphApiWhatsAppProvider("http://127.0.0.1:" + server.getAddress().getPort() + "/",
+                "v21.0", phoneNumberId, "token", 2000);
+    }
+
+    private static QueueMessage message(String to, String content) {
+        QueueMessage message = QueueMessage.forWhatsApp(to, content);
+        message.setUserId("user-1");
+        return message;
+    }
+
+    private final class Fixture {
+        final WhatsAppConsumer consumer = new WhatsAppConsumer();
+        final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        final DeliveryWorkflowEngine workflowEngine = mock(DeliveryWorkflowEngine.class);
+        final MessageStatusService messageStatusService = mock(MessageStatusService.class);
+        final Channel channel = mock(Channel.class);
+        final FairShareDispatcher dispatcher = mock(FairShareDispatcher.class);
+
+        @SuppressWarnings("unchecked")
+        Fixture() {
+            WhatsAppService whatsAppService = new WhatsAppService();
+            ReflectionTestUtils.setField(whatsAppService, "providers", List.of(provider("123456")));
+            ReflectionTestUtils.setField(whatsAppService, "sendRateGovernor", ProviderTestSupport.openGovernor());
+            ReflectionTestUtils.setField(whatsAppService, "providerSendMetrics", new ProviderSendMetrics());
+            ReflectionTestUtils.setField(whatsAppService, "providerHealth", ProviderTestSupport.health());
+            ReflectionTestUtils.setField(whatsAppService, "providerWeights", "graph:1");
+            whatsAppService.initRouter();
+
+            // El reparto justo se ejecuta en el propio hilo
+            doAnswer(invocation -> {
+                for (Runnable task : (List<Runnable>) invocation.getArgument(2)) {
+                    task.run();
+                }
+                return null;
+            }).when(dispatcher).submitAll(anyString(), anyString(), anyList());
+
+            ReflectionTestUtils.setField(consumer, "whatsAppService", whatsAppService);
+            ReflectionTestUtils.setField(consumer, "fairShareDispatcher", dispatcher);
+            ReflectionTestUtils.setField(consumer, "templateEngine", new TemplateEngine());
+            ReflectionTestUtils.setField(consumer, "contactService", mock(ContactService.class));
+            ReflectionTestUtils.setField(consumer, "messageStatusService", messageStatusService);
+            ReflectionTestUtils.setField(consumer, "latencyRecorder", new PipelineLatencyRecorder());
+            ReflectionTestUtils.setField(consumer, "rabbitTemplate", rabbitTemplate);
+            ReflectionTestUtils.setField(consumer, "workflowEngine", workflowEngine);
+            ReflectionTestUtils.setField(consumer, "perNumberIntervalMillis", 6_000L);
+            ReflectionTestUtils.setField(consumer, "rateLimitSlots", 1024);
+            consumer.initLimiter();
+        }
+
+        /**
+         * Entrega un lote con etiquetas de entrega 1, 2, 3...
+         */
+        void process(QueueMessage... messages) {
+            List<Message<QueueMessage>> batch = new ArrayList<>();
+            for (QueueMessage message : messages) {
+                batch.add(MessageBuilder.withPayload(message)
+                        .setHeader(AmqpHeaders.DELIVERY_TAG, (long) batch.size() + 1)
+                        .build());
+            }
+            consumer.processWhatsAppBatch(batch, channel);
+        }
+    }
+}